@@ -1,5 +1,6 @@
 package me.coley.recaf.command.impl;
 
+import me.coley.recaf.Recaf;
 import me.coley.recaf.command.completion.*;
 import me.coley.recaf.util.IOUtil;
 import me.coley.recaf.util.LangUtil;
@@ -33,6 +34,13 @@ public class LoadWorkspace implements Callable<Workspace> {
 	public Path javadoc;
 	@CommandLine.Option(names = { "--lazy" },  description = "Don't immediately load the workspace content.")
 	public boolean lazy;
+	@CommandLine.Option(names = { "--mapped" },  description = "Read archive content through memory mapping.")
+	public boolean mapped;
+	@CommandLine.Option(names = { "--offheap" },  description = "Store library content off-heap.")
+	public boolean offHeap;
+	@CommandLine.Option(names = { "--cache" },  description = "Use workspace snapshots when " +
+			"loading a workspace config.")
+	public boolean cache;
 	@CommandLine.Option(names = "--skip")
 	public List<String> skippedPrefixes;
 	private String status = "...";
@@ -80,8 +88,15 @@ public class LoadWorkspace implements Callable<Workspace> {
 				status = LangUtil.translate("ui.load.initialize.workspace");
 				// Represents an already existing workspace, so we can parse and return that here
 				Workspace workspace = null;
+				WorkspaceCache snapshots = cache ? new WorkspaceCache(Recaf.getDirectory("cache")
+						.resolve("workspaces")) : null;
+				boolean restored = false;
 				try {
 					workspace = WorkspaceIO.fromJson(input);
+					if (offHeap)
+						workspace.setOffHeapStorage(true);
+					if (snapshots != null)
+						restored = snapshots.restore(workspace);
 				} catch(Exception ex) {
 					throw new IllegalArgumentException("Failed to parse workspace config '" + name + "'", ex);
 				}
@@ -91,6 +106,10 @@ public class LoadWorkspace implements Callable<Workspace> {
 					status = LangUtil.translate("ui.load.loading");
 					workspace.getPrimary().getClasses();
 					workspace.getPrimary().getFiles();
+					// Snapshot the freshly loaded content so the next load can skip the load process
+					if (snapshots != null && !restored)
+						snapshots.saveAsync(workspace);
+					workspace.buildIndexes();
 				}
 				info("Loaded workspace from: {}", input.getFileName());
 				return workspace;
@@ -100,6 +119,8 @@ public class LoadWorkspace implements Callable<Workspace> {
 		//
 		if (skippedPrefixes != null)
 			resource.setSkippedPrefixes(skippedPrefixes);
+		if (mapped && resource instanceof FileSystemResource)
+			((FileSystemResource) resource).setMemoryMapped(true);
 		// Initial load classes & files
 		if (!lazy) {
 			status = LangUtil.translate("ui.load.loading");
@@ -115,7 +136,10 @@ public class LoadWorkspace implements Callable<Workspace> {
 			resource.setClassDocs(javadoc);
 		// Create workspace
 		Workspace workspace = new Workspace(resource);
+		workspace.setOffHeapStorage(offHeap);
 		workspace.analyzePhantoms();
+		if (!lazy)
+			workspace.buildIndexes();
 		status = LangUtil.translate("ui.load.done");
 		info("Loaded workspace from: {}", input.getFileName());
 		return workspace;
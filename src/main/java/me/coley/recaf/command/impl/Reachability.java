@@ -0,0 +1,69 @@
+package me.coley.recaf.command.impl;
+
+import me.coley.recaf.command.ControllerCommand;
+import me.coley.recaf.graph.flow.ReachabilityAnalysis;
+import picocli.CommandLine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Command for finding code that cannot be reached from the workspace's entry points.
+ *
+ * @author Matt
+ */
+@CommandLine.Command(name = "reachability", description = "Find classes and methods unreachable from entry points.")
+public class Reachability extends ControllerCommand implements Callable<ReachabilityAnalysis> {
+	@CommandLine.Option(names = { "--entry" }, description = "Additional entry method, as 'owner.name(desc)ret'.")
+	public List<String> entries = new ArrayList<>();
+	@CommandLine.Option(names = { "--keep" }, description = "Class to treat as entirely reachable, " +
+			"for instance if it is accessed by reflection.")
+	public List<String> keep = new ArrayList<>();
+	@CommandLine.Option(names = { "--servlets" }, description = "Use servlet methods as entry points.")
+	public boolean servlets;
+	@CommandLine.Option(names = { "--no-main" }, description = "Do not use main methods as entry points.")
+	public boolean noMain;
+	@CommandLine.Option(names = { "--methods" }, description = "List unreachable methods, not only classes.")
+	public boolean methods;
+
+	/**
+	 * @return Completed analysis.
+	 *
+	 * @throws Exception
+	 * 		<ul><li>IllegalArgumentException, invalid entry method</li></ul>
+	 */
+	@Override
+	public ReachabilityAnalysis call() throws Exception {
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(getWorkspace());
+		if (!noMain)
+			analysis.addMainEntryPoints();
+		if (servlets)
+			analysis.addServletEntryPoints();
+		for (String name : keep)
+			analysis.addClassEntryPoint(name);
+		for (String entry : entries) {
+			int paren = entry.indexOf('(');
+			int dot = paren < 0 ? -1 : entry.lastIndexOf('.', paren);
+			if (dot <= 0 || dot == paren - 1)
+				throw new IllegalArgumentException("Invalid entry method, expected 'owner.name(desc)ret': " + entry);
+			analysis.addEntryPoint(entry.substring(0, dot), entry.substring(dot + 1, paren),
+					entry.substring(paren));
+		}
+		analysis.run();
+		Set<String> deadClasses = analysis.getUnreachableClasses();
+		StringBuilder sb = new StringBuilder();
+		sb.append("Unreachable classes: ").append(deadClasses.size());
+		deadClasses.forEach(name -> sb.append("\n - ").append(name));
+		if (methods) {
+			Set<String> deadMethods = analysis.getUnreachableMethods();
+			sb.append("\nUnreachable methods: ").append(deadMethods.size());
+			deadMethods.forEach(name -> sb.append("\n - ").append(name));
+		}
+		info(sb.toString());
+		return analysis;
+	}
+}
@@ -128,7 +128,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 
 		@Override
 		public SearchCollector call() throws Exception {
-			return SearchBuilder.in(getWorkspace())
+			return SearchBuilder.in(getWorkspace()).indexed()
 					.query(new ClassReferenceQuery(name))
 					.build();
 		}
@@ -157,7 +157,7 @@ public class Search extends MetaCommand implements Callable<Void> {
 				error("Please give at least one parameter.");
 				return new SearchCollector(getWorkspace(), Collections.emptyList());
 			}
-			return SearchBuilder.in(getWorkspace())
+			return SearchBuilder.in(getWorkspace()).indexed()
 					.skipDebug()
 					.query(new MemberReferenceQuery(owner, name, desc, mode))
 					.build();
@@ -1,6 +1,7 @@
 package me.coley.recaf.config;
 
 import me.coley.recaf.util.IOUtil;
+import me.coley.recaf.workspace.HistorySpillPool;
 
 import java.io.File;
 import java.nio.file.Path;
@@ -13,6 +14,7 @@ import java.util.*;
  */
 public class ConfBackend extends Config {
 	private static final String CURRENT_DIR = System.getProperty("user.dir");
+	private static final long MEGABYTE = 1024L * 1024L;
 	/**
 	 * Recently opened files <i>(from primary resources)</i> - absolute paths.
 	 */
@@ -48,6 +50,12 @@ public class ConfBackend extends Config {
 	 */
 	@Conf("backend.compressexport")
 	public boolean compress = true;
+	/**
+	 * Memory budget for class and file history, in megabytes.
+	 * Older save-states past the budget are moved to disk.
+	 */
+	@Conf("backend.historybudget")
+	public int historyBudget = (int) (HistorySpillPool.DEFAULT_BUDGET / MEGABYTE);
 
 	ConfBackend() {
 		super("backend");
@@ -66,6 +74,7 @@ public class ConfBackend extends Config {
 		Set<String> temp = new LinkedHashSet<>(recentFiles);
 		recentFiles.clear();
 		recentFiles.addAll(temp);
+		HistorySpillPool.get().setBudget(historyBudget * MEGABYTE);
 	}
 
 	/**
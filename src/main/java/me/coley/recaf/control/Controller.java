@@ -141,6 +141,7 @@ public abstract class Controller implements Runnable {
 		register(Quit.class);
 		register(Wait.class);
 		register(Run.class);
+		register(Reachability.class);
 		// Load command plugins
 		PluginsManager.getInstance().ofType(CommandPlugin.class)
 				.forEach(commandPlugin -> register(commandPlugin.getClass()));
@@ -0,0 +1,74 @@
+package me.coley.recaf.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table of interned class names. Each name is given a dense integer id so that graph algorithms
+ * can work on primitive arrays and bitsets instead of sets of names.
+ * Other names, such as method keys, may be interned the same way.
+ * <br>
+ * Ids are never reused, a name keeps its id until the table is {@link #clear() cleared}.
+ *
+ * @author Matt
+ */
+public class ClassIdTable {
+	private final Map<String, Integer> ids = new HashMap<>();
+	private String[] names = new String[256];
+	private int size;
+
+	/**
+	 * @param name
+	 * 		Internal class name.
+	 *
+	 * @return Id of the name. A new id is assigned if the name is not yet in the table.
+	 */
+	public int intern(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		if (size == names.length)
+			names = Arrays.copyOf(names, size * 2);
+		names[size] = name;
+		ids.put(name, size);
+		return size++;
+	}
+
+	/**
+	 * @param name
+	 * 		Internal class name.
+	 *
+	 * @return Id of the name, or {@code -1} if the name is not in the table.
+	 */
+	public int getId(String name) {
+		Integer id = ids.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 * 		Class id.
+	 *
+	 * @return Internal class name of the id.
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return Number of interned names. Valid ids range from {@code 0} up to this value.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all names from the table.
+	 */
+	public void clear() {
+		ids.clear();
+		Arrays.fill(names, 0, size, null);
+		size = 0;
+	}
+}
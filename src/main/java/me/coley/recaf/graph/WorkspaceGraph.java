@@ -1,13 +1,21 @@
 package me.coley.recaf.graph;
 
+import me.coley.recaf.workspace.JavaResource;
 import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.ClassReader;
 
-import java.util.Set;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Graph implementation based off of Recaf workspaces as providers for vertex data.
+ * <br>
+ * Vertices looked up by name are cached per class, so repeated walks over the same classes do not
+ * read them again. Cached vertices of a class are dropped when the class is updated in the primary
+ * or phantom resource, or when the workspace's libraries change.
  *
  * @param <V>
  * 		Type of vertex data.
@@ -15,10 +23,23 @@ import java.util.stream.Collectors;
  * @author Matt
  */
 public abstract class WorkspaceGraph<V extends Vertex<ClassReader>> implements Graph<ClassReader, V> {
+	/**
+	 * Default number of classes to keep cached vertices for.
+	 */
+	public static final int DEFAULT_VERTEX_CACHE_LIMIT = 10_000;
 	/**
 	 * Workspace to use for generating vertices from.
 	 */
 	private final Workspace workspace;
+	/**
+	 * Map of class names to the cached vertices of the class, in least recently used order.
+	 */
+	private final Map<String, Map<String, V>> vertexCache = new LinkedHashMap<>(16, 0.75f, true);
+	private final BiConsumer<String, byte[]> vertexPutListener = (name, code) -> invalidateVertices(name);
+	private final Consumer<Object> vertexRemoveListener = this::invalidateVertices;
+	private volatile int vertexCacheLimit = DEFAULT_VERTEX_CACHE_LIMIT;
+	private int vertexCacheModifications;
+	private long vertexCacheVersion;
 
 	/**
 	 * Constructs a graph from the given workspace.
@@ -28,6 +49,10 @@ public abstract class WorkspaceGraph<V extends Vertex<ClassReader>> implements G
 	 */
 	public WorkspaceGraph(Workspace workspace) {
 		this.workspace = workspace;
+		for (JavaResource resource : Arrays.asList(workspace.getPrimary(), workspace.getPhantoms())) {
+			resource.getClasses().getPutListeners().add(vertexPutListener);
+			resource.getClasses().getRemoveListeners().add(vertexRemoveListener);
+		}
 	}
 
 	@Override
@@ -57,10 +82,87 @@ public abstract class WorkspaceGraph<V extends Vertex<ClassReader>> implements G
 	 * @return Class vertex of matching class.
 	 */
 	public V getVertex(String name) {
-		if (getWorkspace().hasClass(name)) {
-			ClassReader key = getWorkspace().getClassReader(name);
-			return getVertexFast(key);
+		return getCachedVertex(name, name, () -> {
+			if (getWorkspace().hasClass(name)) {
+				ClassReader key = getWorkspace().getClassReader(name);
+				return getVertexFast(key);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * @param limit
+	 * 		Number of classes to keep cached vertices for. Use {@code 0} to disable caching.
+	 */
+	public void setVertexCacheLimit(int limit) {
+		synchronized(vertexCache) {
+			vertexCacheLimit = limit;
+			vertexCache.clear();
+			vertexCacheVersion++;
+		}
+	}
+
+	/**
+	 * Stop following updates to the workspace's classes.
+	 * Used when the graph is replaced.
+	 */
+	public void detach() {
+		for (JavaResource resource : Arrays.asList(workspace.getPrimary(), workspace.getPhantoms())) {
+			resource.getClasses().getPutListeners().remove(vertexPutListener);
+			resource.getClasses().getRemoveListeners().remove(vertexRemoveListener);
+		}
+	}
+
+	/**
+	 * @param className
+	 * 		Name of the class the vertex belongs to.
+	 * @param key
+	 * 		Key of the vertex within the class.
+	 * @param factory
+	 * 		Creates the vertex if it is not cached. May return {@code null}, which is not cached.
+	 *
+	 * @return Cached or newly created vertex.
+	 */
+	protected V getCachedVertex(String className, String key, Supplier<V> factory) {
+		long version;
+		synchronized(vertexCache) {
+			// Library changes are not followed by listeners, so check if the libraries were modified
+			int libraries = getWorkspace().getLibraryModifications();
+			if (libraries != vertexCacheModifications) {
+				vertexCache.clear();
+				vertexCacheModifications = libraries;
+				vertexCacheVersion++;
+			}
+			Map<String, V> vertices = vertexCache.get(className);
+			V vertex = vertices == null ? null : vertices.get(key);
+			if (vertex != null)
+				return vertex;
+			version = vertexCacheVersion;
+		}
+		// Created outside the lock, as creating a vertex may look up others
+		V vertex = factory.get();
+		if (vertex == null || vertexCacheLimit <= 0)
+			return vertex;
+		synchronized(vertexCache) {
+			// Do not cache a vertex made from a class that has since been updated
+			if (version != vertexCacheVersion)
+				return vertex;
+			V existing = vertexCache.computeIfAbsent(className, k -> new HashMap<>()).putIfAbsent(key, vertex);
+			// Drop the least recently used classes
+			Iterator<String> it = vertexCache.keySet().iterator();
+			while (vertexCache.size() > vertexCacheLimit && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+			return existing == null ? vertex : existing;
+		}
+	}
+
+	private void invalidateVertices(Object name) {
+		synchronized(vertexCache) {
+			vertexCache.remove(name);
+			vertexCacheVersion++;
 		}
-		return null;
 	}
 }
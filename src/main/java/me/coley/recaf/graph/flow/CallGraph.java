@@ -0,0 +1,393 @@
+package me.coley.recaf.graph.flow;
+
+import me.coley.recaf.Recaf;
+import me.coley.recaf.graph.ClassIdTable;
+import me.coley.recaf.util.struct.ContentStamp;
+import me.coley.recaf.workspace.JavaResource;
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.*;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Index of the method calls made by the classes of a workspace's primary resource and libraries.
+ * Methods are interned into a {@link ClassIdTable} by their {@code owner.name desc} key, and both the calls
+ * a method makes and the calls made to it are stored as arrays of method ids. Method handles, such as those
+ * of lambdas and method references, count as calls of the methods they point to.
+ * <br>
+ * The index is built in parallel when first needed. Afterwards updates to the primary resource are
+ * applied as they happen, so only updated classes are read again. Changes to the libraries cause a rebuild.
+ *
+ * @author Matt
+ */
+public class CallGraph {
+	private static final int[] NONE = new int[0];
+	private final Workspace workspace;
+	private final ClassIdTable methods = new ClassIdTable();
+	private final Map<String, IndexedClass> classes = new HashMap<>();
+	private final BiConsumer<String, byte[]> putListener = this::onPut;
+	private final Consumer<Object> removeListener = this::onRemove;
+	private int[][] callees = new int[1024][];
+	private int[][] callers = new int[1024][];
+	private int[] callerCounts = new int[1024];
+	private boolean built;
+	private int libraryModifications;
+
+	/**
+	 * @param workspace
+	 * 		Workspace to index.
+	 */
+	public CallGraph(Workspace workspace) {
+		this.workspace = workspace;
+		workspace.getPrimary().getClasses().getPutListeners().add(putListener);
+		workspace.getPrimary().getClasses().getRemoveListeners().add(removeListener);
+	}
+
+	/**
+	 * @param owner
+	 * 		Class defining the method.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 * @param code
+	 * 		Bytecode of the class the calls are wanted for.
+	 *
+	 * @return Calls made by the method, as arrays of the owner, name and descriptor.
+	 * {@code null} if the given bytecode is not the indexed version of the class.
+	 */
+	public synchronized List<String[]> getCalls(String owner, String name, String desc, byte[] code) {
+		build();
+		IndexedClass indexed = classes.get(owner);
+		if (indexed == null || !indexed.matches(code))
+			return null;
+		return getCalls(owner, name, desc);
+	}
+
+	/**
+	 * @param owner
+	 * 		Class defining the method.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return Calls made by the indexed version of the method, as arrays of the owner, name and descriptor.
+	 * Empty if the method is not indexed.
+	 */
+	public synchronized List<String[]> getCalls(String owner, String name, String desc) {
+		build();
+		int id = methods.getId(key(owner, name, desc));
+		if (id < 0 || callees[id] == null)
+			return Collections.emptyList();
+		List<String[]> list = new ArrayList<>(callees[id].length);
+		for (int callee : callees[id])
+			list.add(split(methods.getName(callee)));
+		return list;
+	}
+
+	/**
+	 * @param owner
+	 * 		Class defining the method.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return Methods that call the given method, as arrays of the owner, name and descriptor.
+	 */
+	public synchronized List<String[]> getCallers(String owner, String name, String desc) {
+		build();
+		int id = methods.getId(key(owner, name, desc));
+		if (id < 0)
+			return Collections.emptyList();
+		List<String[]> list = new ArrayList<>(callerCounts[id]);
+		for (int i = 0; i < callerCounts[id]; i++)
+			list.add(split(methods.getName(callers[id][i])));
+		return list;
+	}
+
+	/**
+	 * @return Calls of the indexed primary classes, as a map of class names to maps of method keys
+	 * to the keys of called methods. Empty if the index has not been built.
+	 */
+	public synchronized Map<String, Map<String, List<String>>> export() {
+		Map<String, Map<String, List<String>>> map = new HashMap<>();
+		if (!built)
+			return map;
+		Map<String, byte[]> primary = workspace.getPrimary().getClasses();
+		classes.forEach((name, indexed) -> {
+			if (!indexed.matches(primary.get(name)))
+				return;
+			Map<String, List<String>> calls = new LinkedHashMap<>();
+			for (int id : indexed.methods)
+				calls.put(methods.getName(id), Arrays.stream(callees[id])
+						.mapToObj(methods::getName)
+						.collect(Collectors.toList()));
+			map.put(name, calls);
+		});
+		return map;
+	}
+
+	/**
+	 * Add previously {@link #export() exported} calls of primary classes, so they do not need to be read
+	 * again when the index is built.
+	 *
+	 * @param calls
+	 * 		Map of class names to maps of method keys to the keys of called methods.
+	 */
+	public synchronized void restore(Map<String, Map<String, List<String>>> calls) {
+		Map<String, byte[]> primary = workspace.getPrimary().getClasses();
+		calls.forEach((name, methodCalls) -> {
+			byte[] code = primary.get(name);
+			if (code != null) {
+				remove(name);
+				add(new ClassCalls(name, code, methodCalls));
+			}
+		});
+	}
+
+	/**
+	 * Stop following updates to the primary resource's classes.
+	 */
+	public void detach() {
+		workspace.getPrimary().getClasses().getPutListeners().remove(putListener);
+		workspace.getPrimary().getClasses().getRemoveListeners().remove(removeListener);
+	}
+
+	private void build() {
+		// Library changes are not followed by listeners, so check if the libraries were modified
+		int libraries = workspace.getLibraryModifications();
+		if (built && libraries == libraryModifications)
+			return;
+		if (built)
+			clear();
+		libraryModifications = libraries;
+		// Classes of the primary resource take priority over library classes of the same name
+		Map<String, byte[]> sources = new LinkedHashMap<>(workspace.getPrimary().getClasses());
+		for (JavaResource library : workspace.getLibraries())
+			library.getClasses().forEach(sources::putIfAbsent);
+		// Skip classes that have been restored, unless they have changed since
+		for (String name : new ArrayList<>(classes.keySet()))
+			if (!sources.containsKey(name))
+				remove(name);
+		sources.entrySet().removeIf(e -> {
+			IndexedClass indexed = classes.get(e.getKey());
+			if (indexed == null)
+				return false;
+			if (indexed.matches(e.getValue()))
+				return true;
+			remove(e.getKey());
+			return false;
+		});
+		long start = System.currentTimeMillis();
+		List<ClassCalls> parsed = sources.entrySet().parallelStream()
+				.map(e -> parse(e.getKey(), e.getValue()))
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		parsed.forEach(this::add);
+		built = true;
+		debug("Indexed calls of {} classes in {}ms", parsed.size(), System.currentTimeMillis() - start);
+	}
+
+	private void clear() {
+		methods.clear();
+		classes.clear();
+		Arrays.fill(callees, null);
+		Arrays.fill(callers, null);
+		Arrays.fill(callerCounts, 0);
+		built = false;
+	}
+
+	private synchronized void onPut(String name, byte[] code) {
+		if (!built)
+			return;
+		remove(name);
+		ClassCalls calls = parse(name, code);
+		if (calls != null)
+			add(calls);
+	}
+
+	private synchronized void onRemove(Object key) {
+		if (!built || !(key instanceof String))
+			return;
+		String name = (String) key;
+		remove(name);
+		// A library class of the same name is no longer shadowed by the primary class
+		for (JavaResource library : workspace.getLibraries()) {
+			byte[] code = library.getClasses().get(name);
+			if (code != null) {
+				ClassCalls calls = parse(name, code);
+				if (calls != null)
+					add(calls);
+				return;
+			}
+		}
+	}
+
+	private void add(ClassCalls calls) {
+		int[] declared = new int[calls.methods.size()];
+		int i = 0;
+		for (Map.Entry<String, List<String>> e : calls.methods.entrySet()) {
+			int caller = intern(e.getKey());
+			declared[i++] = caller;
+			int[] called = new int[e.getValue().size()];
+			int j = 0;
+			for (String key : e.getValue())
+				called[j++] = intern(key);
+			callees[caller] = called;
+			for (int callee : called)
+				addCaller(callee, caller);
+		}
+		classes.put(calls.name, new IndexedClass(calls.code, declared));
+	}
+
+	private void remove(String name) {
+		IndexedClass indexed = classes.remove(name);
+		if (indexed == null)
+			return;
+		for (int caller : indexed.methods) {
+			if (callees[caller] == null)
+				continue;
+			for (int callee : callees[caller])
+				removeCaller(callee, caller);
+			callees[caller] = null;
+		}
+	}
+
+	private void addCaller(int callee, int caller) {
+		int count = callerCounts[callee];
+		int[] array = callers[callee];
+		if (array == null)
+			array = callers[callee] = new int[4];
+		else if (count == array.length)
+			array = callers[callee] = Arrays.copyOf(array, count * 2);
+		array[count] = caller;
+		callerCounts[callee] = count + 1;
+	}
+
+	private void removeCaller(int callee, int caller) {
+		int count = callerCounts[callee];
+		int[] array = callers[callee];
+		for (int i = 0; i < count; i++) {
+			if (array[i] == caller) {
+				// Order does not matter, so move the last caller into the freed slot
+				array[i] = array[count - 1];
+				callerCounts[callee] = count - 1;
+				return;
+			}
+		}
+	}
+
+	private int intern(String key) {
+		int id = methods.intern(key);
+		if (id >= callees.length) {
+			int capacity = callees.length * 2;
+			callees = Arrays.copyOf(callees, capacity);
+			callers = Arrays.copyOf(callers, capacity);
+			callerCounts = Arrays.copyOf(callerCounts, capacity);
+		}
+		return id;
+	}
+
+	private static ClassCalls parse(String name, byte[] code) {
+		Map<String, List<String>> methodCalls = new LinkedHashMap<>();
+		try {
+			new ClassReader(code).accept(new ClassVisitor(Recaf.ASM_VERSION) {
+				@Override
+				public MethodVisitor visitMethod(int acc, String mname, String mdesc, String sig, String[] exc) {
+					// Calls are kept in order of first occurrence, without duplicates
+					Set<String> calls = new LinkedHashSet<>();
+					String key = key(name, mname, mdesc);
+					return new MethodVisitor(api) {
+						@Override
+						public void visitMethodInsn(int op, String owner, String name, String desc, boolean itf) {
+							calls.add(key(owner, name, desc));
+						}
+
+						@Override
+						public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... args) {
+							// Lambdas and method references call the methods their handles point to
+							add(bsm);
+							for (Object arg : args)
+								if (arg instanceof Handle)
+									add((Handle) arg);
+						}
+
+						@Override
+						public void visitLdcInsn(Object value) {
+							if (value instanceof Handle)
+								add((Handle) value);
+						}
+
+						private void add(Handle handle) {
+							// Field handles do not call anything
+							if (handle.getTag() >= Opcodes.H_INVOKEVIRTUAL)
+								calls.add(key(handle.getOwner(), handle.getName(), handle.getDesc()));
+						}
+
+						@Override
+						public void visitEnd() {
+							// Merge methods that are declared more than once
+							List<String> existing = methodCalls.get(key);
+							if (existing != null)
+								calls.addAll(existing);
+							methodCalls.put(key, new ArrayList<>(calls));
+						}
+					};
+				}
+			}, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		} catch (Exception ex) {
+			debug("Skipping calls of unreadable class '{}'", name);
+			return null;
+		}
+		return new ClassCalls(name, code, methodCalls);
+	}
+
+	private static String key(String owner, String name, String desc) {
+		return owner + "." + name + desc;
+	}
+
+	private static String[] split(String key) {
+		int dot = key.indexOf('.');
+		int paren = key.indexOf('(', dot);
+		return new String[] {key.substring(0, dot), key.substring(dot + 1, paren), key.substring(paren)};
+	}
+
+	/**
+	 * Calls of a single class, before they are added to the index.
+	 */
+	private static class ClassCalls {
+		private final String name;
+		private final byte[] code;
+		private final Map<String, List<String>> methods;
+
+		private ClassCalls(String name, byte[] code, Map<String, List<String>> methods) {
+			this.name = name;
+			this.code = code;
+			this.methods = methods;
+		}
+	}
+
+	/**
+	 * Indexed version of a class and the ids of the methods it declares.
+	 */
+	private static class IndexedClass {
+		private final ContentStamp stamp;
+		private final int[] methods;
+
+		private IndexedClass(byte[] code, int[] methods) {
+			this.stamp = ContentStamp.of(code);
+			this.methods = methods;
+		}
+
+		private boolean matches(byte[] other) {
+			return stamp.matches(other);
+		}
+	}
+}
@@ -4,13 +4,21 @@ import me.coley.recaf.graph.*;
 import org.objectweb.asm.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
 
 /**
  * Search implementation that builds an call graph.
+ * <br>
+ * The graph can also be {@link #buildParallel(Vertex) built in parallel}, which yields the same
+ * flow vertices as the serial {@link #build(Vertex) build}.
  *
  * @author Matt
  */
 public class FlowBuilder extends ClassDfsSearch implements ExhaustiveSearch<FlowVertex, ClassReader> {
+	// Vertices per task, below this a task computes edges instead of forking
+	private static final int TASK_SIZE = 8;
 	private final Map<String, Flow> vertices = new HashMap<>();
 	private int currentId;
 
@@ -21,6 +29,67 @@ public class FlowBuilder extends ClassDfsSearch implements ExhaustiveSearch<Flow
 		super(Type.CHILDREN);
 	}
 
+	/**
+	 * Builds the same graph as {@link #build(Vertex)}. The method bodies of the reachable vertices are
+	 * read concurrently, one layer of calls at a time. The search is then replayed over the collected edges
+	 * so that vertex ids and child order match the serial build.
+	 *
+	 * @param vertex
+	 * 		Initial vertex to build from.
+	 *
+	 * @return Set containing all visited vertices.
+	 */
+	public Set<FlowVertex> buildParallel(Vertex<ClassReader> vertex) {
+		Map<Vertex<ClassReader>, List<Vertex<ClassReader>>> edges = collectEdges(vertex);
+		// Replay the depth first search over the collected edges
+		List<Vertex<ClassReader>> path = new ArrayList<>();
+		Deque<Iterator<Vertex<ClassReader>>> stack = new ArrayDeque<>();
+		if (!shouldSkip(vertex)) {
+			onVisit(path, vertex);
+			path.add(vertex);
+			stack.push(edges.get(vertex).iterator());
+		}
+		while (!stack.isEmpty()) {
+			Iterator<Vertex<ClassReader>> it = stack.peek();
+			if (!it.hasNext()) {
+				stack.pop();
+				path.remove(path.size() - 1);
+				continue;
+			}
+			Vertex<ClassReader> next = it.next();
+			if (shouldSkip(next))
+				continue;
+			onVisit(path, next);
+			path.add(next);
+			stack.push(edges.get(next).iterator());
+		}
+		return visited().stream()
+				.map(v -> (FlowVertex) v)
+				.collect(Collectors.toSet());
+	}
+
+	private Map<Vertex<ClassReader>, List<Vertex<ClassReader>>> collectEdges(Vertex<ClassReader> root) {
+		Map<Vertex<ClassReader>, List<Vertex<ClassReader>>> edges = new HashMap<>();
+		List<Vertex<ClassReader>> layer = Collections.singletonList(root);
+		edges.put(root, null);
+		while (!layer.isEmpty()) {
+			EdgeTask task = new EdgeTask(layer, 0, layer.size());
+			ForkJoinPool.commonPool().invoke(task);
+			// Merge in layer order, so the next layer does not depend on task scheduling
+			List<Vertex<ClassReader>> next = new ArrayList<>();
+			for (int i = 0; i < layer.size(); i++) {
+				edges.put(layer.get(i), task.results[i]);
+				for (Vertex<ClassReader> other : task.results[i])
+					if (!edges.containsKey(other)) {
+						edges.put(other, null);
+						next.add(other);
+					}
+			}
+			layer = next;
+		}
+		return edges;
+	}
+
 	@Override
 	public void onVisit(List<Vertex<ClassReader>> path, Vertex<ClassReader> vertex) {
 		super.onVisit(path, vertex);
@@ -81,6 +150,44 @@ public class FlowBuilder extends ClassDfsSearch implements ExhaustiveSearch<Flow
 		return vertices;
 	}
 
+	/**
+	 * Task collecting the edges of a range of vertices, splitting the range until it is small enough.
+	 */
+	private class EdgeTask extends RecursiveAction {
+		private final List<Vertex<ClassReader>> layer;
+		private final List<Vertex<ClassReader>>[] results;
+		private final int start;
+		private final int end;
+
+		@SuppressWarnings("unchecked")
+		private EdgeTask(List<Vertex<ClassReader>> layer, int start, int end) {
+			this(layer, new List[layer.size()], start, end);
+		}
+
+		private EdgeTask(List<Vertex<ClassReader>> layer, List<Vertex<ClassReader>>[] results,
+						 int start, int end) {
+			this.layer = layer;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= TASK_SIZE) {
+				for (int i = start; i < end; i++) {
+					Vertex<ClassReader> vertex = layer.get(i);
+					results[i] = edges(vertex)
+							.map(edge -> edge.getOther(vertex))
+							.collect(Collectors.toList());
+				}
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new EdgeTask(layer, results, start, middle), new EdgeTask(layer, results, middle, end));
+		}
+	}
+
 	/**
 	 * {@link FlowVertex} wrapper &amp; minimal static control flow vertex.
 	 */
@@ -4,6 +4,9 @@ import me.coley.recaf.graph.WorkspaceGraph;
 import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.ClassReader;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * Graph model to represent the method call graph starting at some specified method <i>(Modled by
  * {@link me.coley.recaf.graph.flow.FlowVertex})</i>.
@@ -11,6 +14,8 @@ import org.objectweb.asm.ClassReader;
  * @author Matt
  */
 public class FlowGraph extends WorkspaceGraph<FlowVertex> {
+	private CallGraph callGraph;
+
 	/**
 	 * Constructs a flow graph from the given workspace.
 	 *
@@ -32,11 +37,13 @@ public class FlowGraph extends WorkspaceGraph<FlowVertex> {
 	 * @return FlowVertex outlining the given method.
 	 */
 	public FlowVertex getVertex(String owner, String name, String descriptor) {
-		if(getWorkspace().hasClass(owner)) {
-			ClassReader reader = getWorkspace().getClassReader(owner);
-			return getVertex(reader, name, descriptor);
-		}
-		return null;
+		return getCachedVertex(owner, name + descriptor, () -> {
+			if(getWorkspace().hasClass(owner)) {
+				ClassReader reader = getWorkspace().getClassReader(owner);
+				return getVertex(reader, name, descriptor);
+			}
+			return null;
+		});
 	}
 
 	/**
@@ -57,4 +64,40 @@ public class FlowGraph extends WorkspaceGraph<FlowVertex> {
 	public FlowVertex getVertex(ClassReader key) {
 		throw new UnsupportedOperationException("'getVertex' is not supported by FlowGraph, see documentation");
 	}
+
+	/**
+	 * @param owner
+	 * 		Class name.
+	 * @param name
+	 * 		Name of method in class.
+	 * @param descriptor
+	 * 		Descriptor of method in class.
+	 *
+	 * @return Vertices of methods that call the given method.
+	 */
+	public Set<FlowVertex> getCallers(String owner, String name, String descriptor) {
+		Set<FlowVertex> set = new LinkedHashSet<>();
+		for (String[] caller : getCallGraph().getCallers(owner, name, descriptor)) {
+			FlowVertex vertex = getVertex(caller[0], caller[1], caller[2]);
+			if (vertex != null)
+				set.add(vertex);
+		}
+		return set;
+	}
+
+	/**
+	 * @return Index of calls made by the workspace's classes.
+	 */
+	public synchronized CallGraph getCallGraph() {
+		if (callGraph == null)
+			callGraph = new CallGraph(getWorkspace());
+		return callGraph;
+	}
+
+	@Override
+	public synchronized void detach() {
+		super.detach();
+		if (callGraph != null)
+			callGraph.detach();
+	}
 }
@@ -16,6 +16,9 @@ import static org.objectweb.asm.ClassReader.*;
 public class FlowVertex extends ClassVertex<FlowGraph> {
 	private final String name;
 	private final String desc;
+	// Calls of the method, kept so the class is only parsed once.
+	// Referenced vertices are looked up on each use, so that updates to the called classes are seen.
+	private volatile List<String[]> calls;
 
 	/**
 	 * Constructs a flow vertex from the containing graph and class reader.<br>
@@ -50,10 +53,26 @@ public class FlowVertex extends ClassVertex<FlowGraph> {
 		// Only search if the method has been specified
 		if (name == null || desc == null)
 			return Collections.emptySet();
+		List<String[]> calls = this.calls;
+		if (calls == null) {
+			// Only read the class if the call graph does not cover this version of it
+			calls = graph.getCallGraph().getCalls(getOwner(), name, desc, getData().b);
+			if (calls == null) {
+				OutboundCollector collector = new OutboundCollector(graph, name, desc);
+				getData().accept(collector, SKIP_DEBUG | SKIP_FRAMES);
+				calls = collector.getCalls();
+			}
+			this.calls = calls;
+		}
 		// Collect & return references.
-		OutboundCollector collector = new OutboundCollector(graph, name, desc);
-		getData().accept(collector, SKIP_DEBUG | SKIP_FRAMES);
-		return collector.getOutbound();
+		Set<FlowReference> outbound = new LinkedHashSet<>();
+		for (String[] call : calls) {
+			FlowVertex vertex = graph.getVertex(call[0], call[1], call[2]);
+			// Classes that cannot be loaded are assumed to be core classes.
+			if (vertex != null)
+				outbound.add(new FlowReference(vertex, call[1], call[2]));
+		}
+		return outbound;
 	}
 
 	/**
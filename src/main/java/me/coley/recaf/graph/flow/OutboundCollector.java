@@ -17,6 +17,8 @@ public class OutboundCollector extends ClassVisitor {
 	private final String hostDesc;
 	// Collection of calls, using a insertion-order set for ordered iteration in later usages.
 	private final Set<FlowReference> outbound = new LinkedHashSet<>();
+	// All calls as owner, name and descriptor, including those to classes that could not be loaded.
+	private final List<String[]> calls = new ArrayList<>();
 
 	/**
 	 * Constructs an outbound method collector.
@@ -42,6 +44,7 @@ public class OutboundCollector extends ClassVisitor {
 			return new MethodVisitor(api) {
 				@Override
 				public void visitMethodInsn(int op, String owner, String name, String desc, boolean itf) {
+					calls.add(new String[] {owner, name, desc});
 					// Get vertex containing the method & add reference
 					FlowVertex vertex = graph.getVertex(owner, name, desc);
 					// If the vertex cannot be loaded it's assumed to be a core class.
@@ -60,4 +63,12 @@ public class OutboundCollector extends ClassVisitor {
 	public Set<FlowReference> getOutbound() {
 		return outbound;
 	}
+
+	/**
+	 * @return List of all method calls from the current host method, as arrays of the owner, name and descriptor.
+	 * Unlike {@link #getOutbound()}, calls to classes that could not be loaded are included.
+	 */
+	public List<String[]> getCalls() {
+		return calls;
+	}
 }
@@ -0,0 +1,299 @@
+package me.coley.recaf.graph.flow;
+
+import me.coley.recaf.graph.ClassIdTable;
+import me.coley.recaf.graph.inheritance.HierarchyGraph;
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.util.struct.Pair;
+import me.coley.recaf.workspace.Workspace;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Analysis of which methods and classes of a workspace are reachable from a set of entry points.
+ * <br>
+ * Calls are read from the workspace's {@link CallGraph}. Calls are dispatched with class hierarchy analysis,
+ * so a call reaches the implementation the called class inherits, along with the implementations of all of
+ * its descendants. Methods of reachable primary classes that override declarations outside the primary resource,
+ * such as {@code Runnable.run}, may be called back by that code and are treated as reachable as well.
+ * <br>
+ * Each method and each distinct call is only processed once, so the cost of the analysis grows linearly with
+ * the number of calls. Methods are identified by keys in the format {@code owner.name desc},
+ * for example {@code test/Main.main([Ljava/lang/String;)V}.
+ *
+ * @author Matt
+ */
+public class ReachabilityAnalysis {
+	private static final String MAIN_DESC = "([Ljava/lang/String;)V";
+	private static final Set<String> SERVLET_TYPES = new HashSet<>(Arrays.asList(
+			"javax/servlet/Servlet", "javax/servlet/GenericServlet", "javax/servlet/http/HttpServlet",
+			"jakarta/servlet/Servlet", "jakarta/servlet/GenericServlet", "jakarta/servlet/http/HttpServlet"));
+	private final Workspace workspace;
+	private final Set<String> entries = new LinkedHashSet<>();
+	private final ClassIdTable methods = new ClassIdTable();
+	private final BitSet reached = new BitSet();
+	private final Set<String> classes = new HashSet<>();
+	// Targets of each distinct call, and the class each method of a class is inherited from
+	private final Map<String, List<String>> targets = new HashMap<>();
+	private final Map<String, String> declarations = new HashMap<>();
+	private int[] worklist = new int[256];
+	private int worklistSize;
+
+	/**
+	 * @param workspace
+	 * 		Workspace to analyze.
+	 */
+	public ReachabilityAnalysis(Workspace workspace) {
+		this.workspace = workspace;
+	}
+
+	/**
+	 * @param owner
+	 * 		Class defining the method.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return Analysis instance.
+	 */
+	public ReachabilityAnalysis addEntryPoint(String owner, String name, String desc) {
+		entries.add(key(owner, name, desc));
+		return this;
+	}
+
+	/**
+	 * Add all methods of a class as entry points. Used for classes that are accessed in ways calls do not show,
+	 * such as reflection.
+	 *
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Analysis instance.
+	 */
+	public ReachabilityAnalysis addClassEntryPoint(String name) {
+		ClassHeader header = workspace.getClassHeader(name);
+		if (header != null)
+			for (Pair<String, String> def : header.getMethodDefs())
+				addEntryPoint(name, def.getKey(), def.getValue());
+		return this;
+	}
+
+	/**
+	 * Add the {@code main} methods of the primary resource's classes as entry points.
+	 *
+	 * @return Analysis instance.
+	 */
+	public ReachabilityAnalysis addMainEntryPoints() {
+		for (String name : workspace.getPrimary().getClasses().keySet()) {
+			ClassHeader header = workspace.getPrimary().getClassHeader(name);
+			if (header != null && header.hasMethod("main", MAIN_DESC))
+				addEntryPoint(name, "main", MAIN_DESC);
+		}
+		return this;
+	}
+
+	/**
+	 * Add all methods of the primary resource's servlet classes as entry points,
+	 * since the servlet container calls them.
+	 *
+	 * @return Analysis instance.
+	 */
+	public ReachabilityAnalysis addServletEntryPoints() {
+		HierarchyGraph hierarchy = workspace.getHierarchyGraph();
+		for (String name : workspace.getPrimary().getClasses().keySet())
+			if (hierarchy.getAllParents(name).anyMatch(SERVLET_TYPES::contains))
+				addClassEntryPoint(name);
+		return this;
+	}
+
+	/**
+	 * Run the analysis from the added entry points.
+	 *
+	 * @return Analysis instance.
+	 */
+	public ReachabilityAnalysis run() {
+		long start = System.currentTimeMillis();
+		methods.clear();
+		reached.clear();
+		classes.clear();
+		targets.clear();
+		declarations.clear();
+		worklistSize = 0;
+		CallGraph calls = workspace.getFlowGraph().getCallGraph();
+		HierarchyGraph hierarchy = workspace.getHierarchyGraph();
+		for (String entry : entries)
+			reach(entry);
+		while (worklistSize > 0) {
+			String[] method = split(methods.getName(worklist[--worklistSize]));
+			onReachable(method[0], hierarchy);
+			for (String[] call : calls.getCalls(method[0], method[1], method[2]))
+				for (String target : getTargets(call[0], call[1], call[2], hierarchy))
+					reach(target);
+		}
+		debug("Reachability analysis found {} methods in {} classes from {} entry points in {}ms",
+				reached.cardinality(), classes.size(), entries.size(), System.currentTimeMillis() - start);
+		return this;
+	}
+
+	/**
+	 * @param owner
+	 * 		Class defining the method.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return {@code true} if the method is reachable.
+	 */
+	public boolean isReachable(String owner, String name, String desc) {
+		int id = methods.getId(key(owner, name, desc));
+		return id >= 0 && reached.get(id);
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return {@code true} if any method of the class is reachable.
+	 */
+	public boolean isClassReachable(String name) {
+		return classes.contains(name);
+	}
+
+	/**
+	 * @return Keys of reachable methods, including those outside the primary resource.
+	 */
+	public Set<String> getReachableMethods() {
+		Set<String> set = new TreeSet<>();
+		for (int id = reached.nextSetBit(0); id >= 0; id = reached.nextSetBit(id + 1))
+			set.add(methods.getName(id));
+		return set;
+	}
+
+	/**
+	 * @return Names of classes with reachable methods, including those outside the primary resource.
+	 */
+	public Set<String> getReachableClasses() {
+		return new TreeSet<>(classes);
+	}
+
+	/**
+	 * @return Keys of methods declared in the primary resource that are not reachable.
+	 */
+	public Set<String> getUnreachableMethods() {
+		Set<String> set = new TreeSet<>();
+		for (String name : workspace.getPrimary().getClasses().keySet()) {
+			ClassHeader header = workspace.getPrimary().getClassHeader(name);
+			if (header == null)
+				continue;
+			for (Pair<String, String> def : header.getMethodDefs())
+				if (!isReachable(name, def.getKey(), def.getValue()))
+					set.add(key(name, def.getKey(), def.getValue()));
+		}
+		return set;
+	}
+
+	/**
+	 * @return Names of classes in the primary resource without any reachable methods.
+	 */
+	public Set<String> getUnreachableClasses() {
+		return workspace.getPrimary().getClasses().keySet().stream()
+				.filter(name -> !classes.contains(name))
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	private void reach(String key) {
+		int id = methods.intern(key);
+		if (reached.get(id))
+			return;
+		reached.set(id);
+		if (worklistSize == worklist.length)
+			worklist = Arrays.copyOf(worklist, worklistSize * 2);
+		worklist[worklistSize++] = id;
+	}
+
+	private void onReachable(String name, HierarchyGraph hierarchy) {
+		// Instances and static state of the class are in use, so the same goes for its parent classes
+		String current = name;
+		while (current != null && classes.add(current)) {
+			ClassHeader header = workspace.getClassHeader(current);
+			if (header == null)
+				return;
+			if (header.hasMethod("<clinit>", "()V"))
+				reach(key(current, "<clinit>", "()V"));
+			if (workspace.getPrimary().getClasses().containsKey(current))
+				for (Pair<String, String> def : header.getMethodDefs()) {
+					String mname = def.getKey();
+					String mdesc = def.getValue();
+					if (mname.charAt(0) != '<' && hierarchy.isLibrary(current, mname, mdesc))
+						reach(key(current, mname, mdesc));
+				}
+			current = header.getSuperName();
+		}
+	}
+
+	private List<String> getTargets(String owner, String name, String desc, HierarchyGraph hierarchy) {
+		String key = key(owner, name, desc);
+		List<String> list = targets.get(key);
+		if (list != null)
+			return list;
+		Set<String> set = new LinkedHashSet<>();
+		String declaring = getDeclaringClass(owner, name, desc, hierarchy);
+		set.add(declaring == null ? key : key(declaring, name, desc));
+		// Constructors and static initializers are not dispatched on the runtime type
+		if (name.charAt(0) != '<')
+			hierarchy.getAllDescendants(owner).forEach(child -> {
+				String inherited = getDeclaringClass(child, name, desc, hierarchy);
+				if (inherited != null)
+					set.add(key(inherited, name, desc));
+			});
+		list = new ArrayList<>(set);
+		targets.put(key, list);
+		return list;
+	}
+
+	private String getDeclaringClass(String type, String name, String desc, HierarchyGraph hierarchy) {
+		String key = key(type, name, desc);
+		if (declarations.containsKey(key))
+			return declarations.get(key);
+		String declaring = null;
+		// Check the class and its parent classes, then default methods of its interfaces
+		String current = type;
+		while (current != null && declaring == null) {
+			ClassHeader header = workspace.getClassHeader(current);
+			if (header == null)
+				break;
+			if (header.hasMethod(name, desc))
+				declaring = current;
+			current = header.getSuperName();
+		}
+		if (declaring == null) {
+			Iterator<String> parents = hierarchy.getAllParents(type).iterator();
+			while (parents.hasNext() && declaring == null) {
+				String parent = parents.next();
+				if (isDefaultMethod(parent, name, desc))
+					declaring = parent;
+			}
+		}
+		declarations.put(key, declaring);
+		return declaring;
+	}
+
+	private boolean isDefaultMethod(String type, String name, String desc) {
+		ClassHeader header = workspace.getClassHeader(type);
+		return header != null && header.isInterface() && header.hasMethod(name, desc);
+	}
+
+	private static String key(String owner, String name, String desc) {
+		return owner + "." + name + desc;
+	}
+
+	private static String[] split(String key) {
+		int paren = key.indexOf('(');
+		int dot = key.lastIndexOf('.', paren);
+		return new String[] {key.substring(0, dot), key.substring(dot + 1, paren), key.substring(paren)};
+	}
+}
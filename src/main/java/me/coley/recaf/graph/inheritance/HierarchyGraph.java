@@ -1,11 +1,18 @@
 package me.coley.recaf.graph.inheritance;
 
 import me.coley.recaf.graph.*;
+import me.coley.recaf.util.ClassHeader;
 import me.coley.recaf.util.ClassUtil;
+import me.coley.recaf.util.struct.Pair;
+import me.coley.recaf.workspace.JavaResource;
 import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.ClassReader;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -15,15 +22,41 @@ import static java.util.stream.Stream.*;
 /**
  * Graph model to represent the class inheritance of a loaded input. <br>
  * The graph is generative, meaning the graph's vertices and edges are dynamically generated when
- * requested. The relations are not stored due to their modifiable nature.
+ * requested. Only the parent to child relations of the primary resource are stored. They are kept
+ * current through the primary resource's class listeners, so only the edges of updated classes change.
+ * <br>
+ * Lookups such as {@link #getAllParents(String)} and {@link #isLibrary(String, String, String)} run on
+ * the interned ids of a {@link HierarchyIndex} rather than on vertices.
  *
  * @author Matt
  */
 public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	/**
-	 * Map of parent to children names.
+	 * Default number of {@link #getCommon(String, String) common parent} results to keep.
 	 */
-	private final Map<String, Set<String>> descendents = new HashMap<>();
+	public static final int DEFAULT_COMMON_CACHE_LIMIT = 100_000;
+	/**
+	 * Parent to children edges of the primary resource, and the parents of any looked up class.
+	 */
+	private final HierarchyIndex index = new HierarchyIndex(name -> getWorkspace().getClassHeader(name));
+	/**
+	 * Method declarations of the primary resource.
+	 */
+	private final MethodFamilyIndex families = new MethodFamilyIndex(getWorkspace().getPrimary());
+	private final BiConsumer<String, byte[]> putListener = this::onPut;
+	private final Consumer<Object> removeListener = this::onRemove;
+	/**
+	 * Map of class name pairs to their common parent.
+	 */
+	private final Map<Pair<String, String>, String> commonCache = new ConcurrentHashMap<>();
+	/**
+	 * Incremented whenever the {@link #commonCache} is cleared.
+	 */
+	private final AtomicLong commonGeneration = new AtomicLong();
+	private final BiConsumer<String, byte[]> phantomPutListener = (name, code) -> onPhantomUpdate(name);
+	private final Consumer<Object> phantomRemoveListener = this::onPhantomUpdate;
+	private volatile int commonCacheLimit = DEFAULT_COMMON_CACHE_LIMIT;
+	private volatile int libraryModifications;
 
 	/**
 	 * Constructs a hierarchy graph from the given workspace.
@@ -34,6 +67,21 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	public HierarchyGraph(Workspace workspace) {
 		super(workspace);
 		refresh();
+		attach();
+	}
+
+	/**
+	 * Constructs a hierarchy graph from the given workspace and previously computed edges.
+	 *
+	 * @param workspace
+	 * 		Workspace to pull classes from.
+	 * @param descendents
+	 * 		Map of parent to children names, as given by {@link #getDescendantEdges()}.
+	 */
+	public HierarchyGraph(Workspace workspace, Map<String, Set<String>> descendents) {
+		super(workspace);
+		descendents.forEach((parent, children) -> children.forEach(child -> index.link(parent, child)));
+		attach();
 	}
 
 	@Override
@@ -65,8 +113,10 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	public Set<HierarchyVertex> getHierarchy(HierarchyVertex vertex) {
 		if(vertex == null)
 			return Collections.emptySet();
-		ClassHierarchyBuilder builder = new ClassHierarchyBuilder();
-		return builder.build(vertex);
+		return getHierarchyNames(vertex).stream()
+				.map(this::getVertex)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toSet());
 	}
 
 	/**
@@ -76,7 +126,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Inheritance hierarchy containing the given class.
 	 */
 	public Set<String> getHierarchyNames(String name) {
-		return getHierarchyNames(getVertex(name));
+		return new HashSet<>(index().getHierarchy(name));
 	}
 
 	/**
@@ -86,7 +136,36 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Inheritance hierarchy containing the given class.
 	 */
 	public Set<String> getHierarchyNames(HierarchyVertex vertex) {
-		return getHierarchy(vertex).stream().map(v -> v.getData().getClassName()).collect(Collectors.toSet());
+		if(vertex == null)
+			return Collections.emptySet();
+		return getHierarchyNames(vertex.getClassName());
+	}
+
+	/**
+	 * @param owner
+	 * 		Class the method resides in.
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return Names of classes in the hierarchy of the owner that declare the method.
+	 * These declarations must be renamed together.
+	 */
+	public Set<String> getMethodFamily(String owner, String name, String desc) {
+		Map<String, byte[]> primary = getWorkspace().getPrimary().getClasses();
+		Set<String> declaring = families.getDeclaringClasses(name, desc);
+		Set<String> family = new HashSet<>();
+		for (String member : getHierarchyNames(owner)) {
+			if (declaring.contains(member)) {
+				family.add(member);
+			} else if (!primary.containsKey(member)) {
+				ClassHeader header = getWorkspace().getClassHeader(member);
+				if (header != null && header.hasMethod(name, desc))
+					family.add(member);
+			}
+		}
+		return family;
 	}
 
 	/**
@@ -96,10 +175,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Direct descendants of the class.
 	 */
 	public Stream<String> getDescendants(String name) {
-		if (descendents.containsKey(name))
-			return descendents.get(name).stream();
-		// Empty stream
-		return empty();
+		return index.getChildren(name).stream();
 	}
 
 	/**
@@ -109,11 +185,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return All descendants of the class.
 	 */
 	public Stream<String> getAllDescendants(String name) {
-		Set<String> descendentNames = descendents.get(name);
-		if (descendentNames == null)
-			return empty();
-		return concat(descendentNames.stream(),
-				descendentNames.stream().flatMap(this::getAllDescendants));
+		return index.getAllChildren(name, null).stream();
 	}
 
 	/**
@@ -125,12 +197,7 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return All descendants of the class, up until a point specified by the check condition.
 	 */
 	public Stream<String> getAllDescendantsWithBreakCondition(String name, Predicate<String> breakCheck) {
-		Set<String> descendentNames = descendents.get(name);
-		if (descendentNames == null)
-			return empty();
-		descendentNames.removeIf(breakCheck);
-		return concat(descendentNames.stream(),
-				descendentNames.stream().flatMap(d -> getAllDescendantsWithBreakCondition(d, breakCheck)));
+		return index.getAllChildren(name, breakCheck).stream();
 	}
 
 	/**
@@ -140,9 +207,9 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Direct parents of the class.
 	 */
 	public Stream<String> getParents(String name) {
-		HierarchyVertex vert = getVertex(name);
-		if (vert != null)
-			return getParents(vert);
+		ClassHeader header = getWorkspace().getClassHeader(name);
+		if (header != null)
+			return concat(of(header.getSuperName()), header.getInterfaces().stream());
 		// Empty stream
 		return empty();
 	}
@@ -166,11 +233,15 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return All parents of the class.
 	 */
 	public Stream<String> getAllParents(String name) {
-		return (getParents(name).map(this::getAllParents)
-				.reduce(getParents(name), Stream::concat));
+		if (name == null)
+			return empty();
+		return index().getAllParents(name).stream();
 	}
 
 	/**
+	 * Results are cached until the hierarchy changes, since frame computation asks for the same
+	 * pairs many times.
+	 *
 	 * @param first
 	 * 		First class name.
 	 * @param second
@@ -179,31 +250,34 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * @return Common parent of the classes.
 	 */
 	public String getCommon(String first, String second) {
-		// Full upwards hierarchy for the first
-		Set<String> firstParents = getAllParents(first).collect(Collectors.toSet());
-		firstParents.add(first);
-		// Base case
-		if (firstParents.contains(second))
-			return second;
-		// Iterate over second's parents via breadth-first-search
-		Queue<String> queue = new LinkedList<>();
-		queue.add(second);
-		do {
-			// Item to fetch parents of
-			String next = queue.poll();
-			if (next == null || next.equals("java/lang/Object"))
-				break;
-			for (String parent : getParents(next).collect(Collectors.toSet())) {
-				// Parent in the set of visited classes? Then its valid.
-				if(firstParents.contains(parent))
-					return parent;
-				// Queue up the parent
-				if (!parent.equals("java/lang/Object"))
-					queue.add(parent);
-			}
-		} while(!queue.isEmpty());
-		// Fallback option
-		return "java/lang/Object";
+		if (first == null || second == null)
+			return "java/lang/Object";
+		HierarchyIndex index = index();
+		if (commonCacheLimit <= 0)
+			return index.getCommon(first, second);
+		Pair<String, String> key = new Pair<>(first, second);
+		String common = commonCache.get(key);
+		if (common == null) {
+			long generation = commonGeneration.get();
+			common = index.getCommon(first, second);
+			if (commonCache.size() >= commonCacheLimit)
+				commonCache.clear();
+			commonCache.put(key, common);
+			// The hierarchy changed while computing, so the result may be outdated
+			if (commonGeneration.get() != generation)
+				commonCache.remove(key, common);
+		}
+		return common;
+	}
+
+	/**
+	 * @param limit
+	 * 		Number of {@link #getCommon(String, String) common parent} results to keep.
+	 * 		Use {@code 0} to disable caching.
+	 */
+	public void setCommonCacheLimit(int limit) {
+		this.commonCacheLimit = limit;
+		clearCommon();
 	}
 
 	/**
@@ -220,15 +294,14 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 * defines the given method,
 	 */
 	public boolean isLibrary(String owner, String name, String desc) {
-		// Get classes that are considered "library" classes (not included in Input)
-		Stream<HierarchyVertex> hierarchy = getHierarchy(owner).stream();
-		Stream<HierarchyVertex> libClasses = hierarchy.filter(vertex -> !getWorkspace()
-				.getPrimaryClassNames().contains(vertex.getClassName()));
-		// Check if the library classes have a matching method.
-		return libClasses
-					.map(ClassVertex::getData)
-					.flatMap(cr -> ClassUtil.getMethodDefs(cr).stream())
-					.anyMatch(method -> name.equals(method.getKey()) && desc.equals(method.getValue()));
+		// Check if classes that are considered "library" classes (not included in Input) have a matching method.
+		Map<String, byte[]> primary = getWorkspace().getPrimary().getClasses();
+		return index().anyInHierarchy(owner, vertex -> {
+			if (primary.containsKey(vertex))
+				return false;
+			ClassHeader header = getWorkspace().getClassHeader(vertex);
+			return header != null && header.hasMethod(name, desc);
+		});
 	}
 
 	/**
@@ -268,27 +341,101 @@ public class HierarchyGraph extends WorkspaceGraph<HierarchyVertex> {
 	 */
 	public boolean areLinked(String name1, String name2) {
 		// Check if name2 is in the same hierarchy as name1.
-		return getHierarchy(name1).stream()
-				.anyMatch(vertex -> name2.equals(vertex.getClassName()));
+		return index().anyInHierarchy(name1, name2::equals);
 	}
 
 	// ============================== UTILITY =================================== //
 
 	/**
-	 * Populate {@link #descendents} map.
+	 * @return Map of parent to direct children names.
+	 */
+	public Map<String, Set<String>> getDescendantEdges() {
+		return Collections.unmodifiableMap(index.getEdges());
+	}
+
+	/**
+	 * Populate the stored edges from scratch.
+	 * Not needed after class updates, since those are applied as they happen.
 	 */
 	public void refresh() {
-		// TODO: Call this when the inheritance tree is modified.
-		//  - Already called by mappings
-		//  - But later if user changes a class name WITHOUT remappping this needs to be called too
-		descendents.clear();
-		for (ClassReader reader : getWorkspace().getPrimaryClassReaders()) {
-			String superName = reader.getSuperName();
-			if (superName == null || !superName.equals("java/lang/Object"))
-				descendents.computeIfAbsent(superName, k -> new HashSet<>()).add(reader.getClassName());
-			for (String inter : reader.getInterfaces()) {
-				descendents.computeIfAbsent(inter, k -> new HashSet<>()).add(reader.getClassName());
-			}
+		index.clear();
+		families.reset();
+		JavaResource primary = getWorkspace().getPrimary();
+		for (String name : primary.getClasses().keySet())
+			index.link(primary.getClassHeader(name));
+		clearCommon();
+	}
+
+	/**
+	 * Stop following updates to the primary resource's classes.
+	 * Used when the graph is replaced.
+	 */
+	@Override
+	public void detach() {
+		super.detach();
+		JavaResource primary = getWorkspace().getPrimary();
+		primary.getClasses().getPutListeners().remove(putListener);
+		primary.getClasses().getRemoveListeners().remove(removeListener);
+		JavaResource phantoms = getWorkspace().getPhantoms();
+		phantoms.getClasses().getPutListeners().remove(phantomPutListener);
+		phantoms.getClasses().getRemoveListeners().remove(phantomRemoveListener);
+	}
+
+	private void attach() {
+		JavaResource primary = getWorkspace().getPrimary();
+		primary.getClasses().getPutListeners().add(putListener);
+		primary.getClasses().getRemoveListeners().add(removeListener);
+		// Phantoms take part in parent lookups, but not in the stored edges
+		JavaResource phantoms = getWorkspace().getPhantoms();
+		phantoms.getClasses().getPutListeners().add(phantomPutListener);
+		phantoms.getClasses().getRemoveListeners().add(phantomRemoveListener);
+	}
+
+	private void onPut(String name, byte[] code) {
+		// Called before the class is put, so the edges of the replaced class are still indexed
+		ClassHeader header = ClassUtil.getHeader(code);
+		index.unlink(name);
+		index.link(header);
+		index.invalidate(name);
+		families.update(name, header);
+		clearCommon();
+	}
+
+	private void onRemove(Object key) {
+		if (key instanceof String) {
+			index.unlink((String) key);
+			index.invalidate((String) key);
+			families.update((String) key, null);
+		}
+		clearCommon();
+	}
+
+	private void onPhantomUpdate(Object key) {
+		if (key instanceof String)
+			index.invalidate((String) key);
+		clearCommon();
+	}
+
+	/**
+	 * Drop cached common parents. Called after the index changes, so results computed during the
+	 * change are discarded as well.
+	 */
+	private void clearCommon() {
+		commonGeneration.incrementAndGet();
+		commonCache.clear();
+	}
+
+	/**
+	 * @return Index with parent lookups that are current with the workspace's libraries.
+	 */
+	private HierarchyIndex index() {
+		// Library changes are not followed by listeners, so check if the libraries were modified
+		int libraries = getWorkspace().getLibraryModifications();
+		if (libraries != libraryModifications) {
+			index.invalidateAll();
+			libraryModifications = libraries;
+			clearCommon();
 		}
+		return index;
 	}
 }
@@ -0,0 +1,564 @@
+package me.coley.recaf.graph.inheritance;
+
+import me.coley.recaf.graph.ClassIdTable;
+import me.coley.recaf.util.ClassHeader;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Primitive adjacency of a {@link HierarchyGraph}. Class names are interned into a {@link ClassIdTable}
+ * and edges are stored as arrays of ids, so traversals only need to track visited ids in a {@link BitSet}.
+ * <ul>
+ * <li>Child edges are only kept for classes {@link #link(ClassHeader) linked} by the graph,
+ * which are the classes of the primary resource.</li>
+ * <li>Parent edges are resolved lazily for any class, and kept until {@link #invalidate(String) invalidated}.</li>
+ * <li>The full sets of parents and children are computed lazily and reused until any edge changes.
+ * The set of a class is built from the sets of its direct parents or children, so a query only visits
+ * classes that have not been computed yet.</li>
+ * <li>The {@link #getHierarchy(String) hierarchy} of a class is likewise reused until any edge changes,
+ * since renaming a method asks for it with every member of the hierarchy.</li>
+ * <li>Queries only intern names of classes that can be resolved, so asking about missing classes does not
+ * grow the table of ids.</li>
+ * </ul>
+ *
+ * @author Matt
+ */
+public class HierarchyIndex {
+	/**
+	 * Number of words the cached parent and child sets may take up before they are dropped.
+	 */
+	public static final long CLOSURE_CACHE_WORDS = 1L << 22;
+	private static final int[] NONE = new int[0];
+	private static final BitSet EMPTY = new BitSet();
+	private static final String OBJECT = "java/lang/Object";
+	private final ClassIdTable ids = new ClassIdTable();
+	private final Function<String, ClassHeader> resolver;
+	private final BitSet resolved = new BitSet();
+	private final BitSet present = new BitSet();
+	private int[][] parents = new int[256][];
+	private int[][] linked = new int[256][];
+	private int[][] children = new int[256][];
+	private int[] childCounts = new int[256];
+	private BitSet[] ancestorClosures = new BitSet[256];
+	private BitSet[] descendantClosures = new BitSet[256];
+	private BitSet[] hierarchies = new BitSet[256];
+	private long closureWords;
+
+	/**
+	 * @param resolver
+	 * 		Lookup of class headers by name, used to resolve parent edges.
+	 */
+	public HierarchyIndex(Function<String, ClassHeader> resolver) {
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Record the class as a child of its parents.
+	 * The edge to {@code java/lang/Object} is not recorded, since every class would be its child.
+	 *
+	 * @param header
+	 * 		Header of the class to add.
+	 */
+	public synchronized void link(ClassHeader header) {
+		if (header == null)
+			return;
+		changed();
+		int child = intern(header.getName());
+		String superName = header.getSuperName();
+		if (superName != null && !superName.equals(OBJECT))
+			addChild(intern(superName), child);
+		for (String inter : header.getInterfaces())
+			addChild(intern(inter), child);
+	}
+
+	/**
+	 * Record a single parent to child edge.
+	 *
+	 * @param parent
+	 * 		Parent class name.
+	 * @param child
+	 * 		Child class name.
+	 */
+	public synchronized void link(String parent, String child) {
+		if (parent != null && child != null) {
+			changed();
+			addChild(intern(parent), intern(child));
+		}
+	}
+
+	/**
+	 * Remove the edges recorded for the class by {@link #link(ClassHeader)}.
+	 *
+	 * @param name
+	 * 		Class name.
+	 */
+	public synchronized void unlink(String name) {
+		int child = ids.getId(name);
+		if (child < 0 || linked[child] == null)
+			return;
+		changed();
+		for (int parent : linked[child])
+			removeChild(parent, child);
+		linked[child] = null;
+	}
+
+	/**
+	 * Drop the resolved parents of a class, so they are looked up again when next needed.
+	 *
+	 * @param name
+	 * 		Class name.
+	 */
+	public synchronized void invalidate(String name) {
+		int id = ids.getId(name);
+		if (id >= 0) {
+			changed();
+			resolved.clear(id);
+		}
+	}
+
+	/**
+	 * Drop the resolved parents of all classes.
+	 */
+	public synchronized void invalidateAll() {
+		changed();
+		resolved.clear();
+	}
+
+	/**
+	 * Remove all classes and edges.
+	 */
+	public synchronized void clear() {
+		changed();
+		ids.clear();
+		resolved.clear();
+		present.clear();
+		Arrays.fill(parents, null);
+		Arrays.fill(linked, null);
+		Arrays.fill(children, null);
+		Arrays.fill(childCounts, 0);
+	}
+
+	/**
+	 * @return Number of class names that have ids.
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Names of direct children of the class.
+	 */
+	public synchronized List<String> getChildren(String name) {
+		int id = ids.getId(name);
+		if (id < 0)
+			return Collections.emptyList();
+		List<String> list = new ArrayList<>(childCounts[id]);
+		for (int i = 0; i < childCounts[id]; i++)
+			list.add(ids.getName(children[id][i]));
+		return list;
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Names of all parents of the class.
+	 */
+	public synchronized List<String> getAllParents(String name) {
+		int id = lookup(name);
+		if (id < 0)
+			return Collections.emptyList();
+		return toNames(closure(id, true));
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 * @param breakCheck
+	 * 		Condition to stop scanning at a child, may be {@code null}.
+	 *
+	 * @return Names of all children of the class, excluding those matched by the check and their children.
+	 */
+	public synchronized List<String> getAllChildren(String name, Predicate<String> breakCheck) {
+		int id = ids.getId(name);
+		if (id < 0)
+			return Collections.emptyList();
+		if (breakCheck == null)
+			return toNames(closure(id, false));
+		return toNames(descendants(id, breakCheck));
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Names of all classes in the hierarchy of the class, including itself.
+	 * Empty if the class cannot be found.
+	 */
+	public synchronized List<String> getHierarchy(String name) {
+		int id = lookup(name);
+		if (id < 0)
+			return Collections.emptyList();
+		return toNames(hierarchy(id));
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 * @param check
+	 * 		Condition to match.
+	 *
+	 * @return {@code true} if any class in the hierarchy of the class matches the condition.
+	 */
+	public synchronized boolean anyInHierarchy(String name, Predicate<String> check) {
+		int root = lookup(name);
+		if (root < 0)
+			return false;
+		BitSet hierarchy = hierarchy(root);
+		for (int id = hierarchy.nextSetBit(0); id >= 0; id = hierarchy.nextSetBit(id + 1))
+			if (check.test(ids.getName(id)))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param first
+	 * 		First class name.
+	 * @param second
+	 * 		Second class name.
+	 *
+	 * @return Closest parent of the second class that is also a parent of the first,
+	 * or {@code java/lang/Object} if there is none.
+	 */
+	public synchronized String getCommon(String first, String second) {
+		int firstId = lookup(first);
+		int secondId = lookup(second);
+		// Missing classes have no parents, and are not the parent of any indexed class
+		if (firstId < 0 || secondId < 0)
+			return first.equals(second) ? second : OBJECT;
+		// Full upwards hierarchy for the first
+		BitSet firstParents = (BitSet) closure(firstId, true).clone();
+		firstParents.set(firstId);
+		if (firstParents.get(secondId))
+			return second;
+		// Iterate over second's parents via breadth-first-search
+		int object = intern(OBJECT);
+		BitSet visited = new BitSet();
+		Deque<Integer> queue = new ArrayDeque<>();
+		queue.add(secondId);
+		while (!queue.isEmpty()) {
+			int next = queue.poll();
+			if (next == object)
+				break;
+			for (int parent : parents(next)) {
+				if (firstParents.get(parent))
+					return ids.getName(parent);
+				if (parent != object && !visited.get(parent)) {
+					visited.set(parent);
+					queue.add(parent);
+				}
+			}
+		}
+		return OBJECT;
+	}
+
+	/**
+	 * @return Map of parent to direct children names.
+	 */
+	public synchronized Map<String, Set<String>> getEdges() {
+		Map<String, Set<String>> edges = new HashMap<>();
+		for (int id = 0; id < ids.size(); id++) {
+			if (childCounts[id] == 0)
+				continue;
+			Set<String> set = new HashSet<>();
+			for (int i = 0; i < childCounts[id]; i++)
+				set.add(ids.getName(children[id][i]));
+			edges.put(ids.getName(id), set);
+		}
+		return edges;
+	}
+
+	/**
+	 * @param root
+	 * 		Class id.
+	 * @param up
+	 * 		{@code true} for parents, {@code false} for children.
+	 *
+	 * @return All parents or children of the class. The set is shared, and must not be modified.
+	 */
+	private BitSet closure(int root, boolean up) {
+		BitSet cached = getClosure(root, up);
+		if (cached != null)
+			return cached;
+		if (closureWords > CLOSURE_CACHE_WORDS)
+			changed();
+		// Depth-first, so each set is computed after the sets of the classes it is made of
+		BitSet onPath = new BitSet();
+		IntStack path = new IntStack();
+		path.push(root);
+		onPath.set(root);
+		while (path.size > 0) {
+			int current = path.peek();
+			int[] edges = edges(current, up);
+			int next = -1;
+			for (int other : edges) {
+				if (getClosure(other, up) != null)
+					continue;
+				// Sets of classes in a cycle cannot be built from each other
+				if (onPath.get(other))
+					return traverse(root, up);
+				next = other;
+				break;
+			}
+			if (next >= 0) {
+				path.push(next);
+				onPath.set(next);
+				continue;
+			}
+			BitSet set = edges.length == 0 ? EMPTY : new BitSet();
+			for (int other : edges) {
+				set.set(other);
+				set.or(getClosure(other, up));
+			}
+			putClosure(current, up, set);
+			path.pop();
+			onPath.clear(current);
+		}
+		return getClosure(root, up);
+	}
+
+	private BitSet traverse(int root, boolean up) {
+		BitSet visited = new BitSet();
+		IntStack stack = new IntStack();
+		stack.push(root);
+		while (stack.size > 0) {
+			for (int other : edges(stack.pop(), up)) {
+				if (visited.get(other))
+					continue;
+				visited.set(other);
+				// Computed sets already hold everything past the class
+				BitSet cached = getClosure(other, up);
+				if (cached != null)
+					visited.or(cached);
+				else
+					stack.push(other);
+			}
+		}
+		putClosure(root, up, visited);
+		return visited;
+	}
+
+	private int[] edges(int id, boolean up) {
+		if (up)
+			return parents(id);
+		int count = childCounts[id];
+		return count == 0 ? NONE : Arrays.copyOf(children[id], count);
+	}
+
+	private BitSet getClosure(int id, boolean up) {
+		return up ? ancestorClosures[id] : descendantClosures[id];
+	}
+
+	private void putClosure(int id, boolean up, BitSet set) {
+		closureWords += set.size() / Long.SIZE;
+		if (up)
+			ancestorClosures[id] = set;
+		else
+			descendantClosures[id] = set;
+	}
+
+	/**
+	 * Called when edges change. Any computed parent and child sets are dropped,
+	 * so a batch of changes without queries in between only clears them once.
+	 */
+	private void changed() {
+		if (closureWords == 0)
+			return;
+		Arrays.fill(ancestorClosures, null);
+		Arrays.fill(descendantClosures, null);
+		Arrays.fill(hierarchies, null);
+		closureWords = 0;
+	}
+
+	private BitSet descendants(int id, Predicate<String> breakCheck) {
+		BitSet visited = new BitSet();
+		BitSet result = new BitSet();
+		IntStack stack = new IntStack();
+		stack.push(id);
+		while (stack.size > 0) {
+			int current = stack.pop();
+			for (int i = 0; i < childCounts[current]; i++) {
+				int child = children[current][i];
+				if (visited.get(child))
+					continue;
+				visited.set(child);
+				if (breakCheck != null && breakCheck.test(ids.getName(child)))
+					continue;
+				result.set(child);
+				stack.push(child);
+			}
+		}
+		return result;
+	}
+
+	private BitSet hierarchy(int id) {
+		BitSet cached = hierarchies[id];
+		if (cached != null)
+			return cached;
+		if (closureWords > CLOSURE_CACHE_WORDS)
+			changed();
+		BitSet visited = new BitSet();
+		if (!exists(id))
+			return visited;
+		// Object is included, but not expanded since every class would be reachable through it
+		int object = intern(OBJECT);
+		visited.set(id);
+		IntStack stack = new IntStack();
+		stack.push(id);
+		while (stack.size > 0) {
+			int current = stack.pop();
+			if (current == object)
+				continue;
+			for (int parent : parents(current)) {
+				if (!visited.get(parent) && exists(parent)) {
+					visited.set(parent);
+					stack.push(parent);
+				}
+			}
+			for (int i = 0; i < childCounts[current]; i++) {
+				int child = children[current][i];
+				if (!visited.get(child) && exists(child)) {
+					visited.set(child);
+					stack.push(child);
+				}
+			}
+		}
+		closureWords += visited.size() / Long.SIZE;
+		hierarchies[id] = visited;
+		return visited;
+	}
+
+	private int[] parents(int id) {
+		if (!resolved.get(id)) {
+			ClassHeader header = resolver.apply(ids.getName(id));
+			int[] array = NONE;
+			if (header != null) {
+				String superName = header.getSuperName();
+				List<String> interfaces = header.getInterfaces();
+				array = new int[interfaces.size() + (superName == null ? 0 : 1)];
+				int i = 0;
+				if (superName != null)
+					array[i++] = intern(superName);
+				for (String inter : interfaces)
+					array[i++] = intern(inter);
+			}
+			parents[id] = array;
+			present.set(id, header != null);
+			resolved.set(id);
+		}
+		return parents[id];
+	}
+
+	private boolean exists(int id) {
+		parents(id);
+		return present.get(id);
+	}
+
+	private void addChild(int parent, int child) {
+		int[] current = linked[child];
+		if (current == null) {
+			linked[child] = new int[] {parent};
+		} else {
+			for (int id : current)
+				if (id == parent)
+					return;
+			current = Arrays.copyOf(current, current.length + 1);
+			current[current.length - 1] = parent;
+			linked[child] = current;
+		}
+		int count = childCounts[parent];
+		int[] array = children[parent];
+		if (array == null)
+			array = children[parent] = new int[4];
+		else if (count == array.length)
+			array = children[parent] = Arrays.copyOf(array, count * 2);
+		array[count] = child;
+		childCounts[parent] = count + 1;
+	}
+
+	private void removeChild(int parent, int child) {
+		int count = childCounts[parent];
+		int[] array = children[parent];
+		for (int i = 0; i < count; i++) {
+			if (array[i] == child) {
+				// Order does not matter, so move the last child into the freed slot
+				array[i] = array[count - 1];
+				childCounts[parent] = count - 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Id of the class, or {@code -1} if it is not indexed and cannot be resolved.
+	 */
+	private int lookup(String name) {
+		int id = ids.getId(name);
+		if (id >= 0 || resolver.apply(name) == null)
+			return id;
+		return intern(name);
+	}
+
+	private int intern(String name) {
+		int id = ids.intern(name);
+		if (id >= parents.length) {
+			int capacity = parents.length * 2;
+			parents = Arrays.copyOf(parents, capacity);
+			linked = Arrays.copyOf(linked, capacity);
+			children = Arrays.copyOf(children, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+			ancestorClosures = Arrays.copyOf(ancestorClosures, capacity);
+			descendantClosures = Arrays.copyOf(descendantClosures, capacity);
+			hierarchies = Arrays.copyOf(hierarchies, capacity);
+		}
+		return id;
+	}
+
+	private List<String> toNames(BitSet set) {
+		List<String> list = new ArrayList<>(set.cardinality());
+		for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1))
+			list.add(ids.getName(id));
+		return list;
+	}
+
+	/**
+	 * Stack of ids for traversals. Each traversal has its own, as conditions given to a traversal
+	 * may start another.
+	 */
+	private static class IntStack {
+		private int[] values = new int[64];
+		private int size;
+
+		private void push(int id) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = id;
+		}
+
+		private int pop() {
+			return values[--size];
+		}
+
+		private int peek() {
+			return values[size - 1];
+		}
+	}
+}
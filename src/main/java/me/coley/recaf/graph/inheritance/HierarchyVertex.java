@@ -1,8 +1,10 @@
 package me.coley.recaf.graph.inheritance;
 
 import me.coley.recaf.graph.*;
+import me.coley.recaf.util.ClassUtil;
 import org.objectweb.asm.ClassReader;
 
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -30,22 +32,26 @@ public class HierarchyVertex extends ClassVertex<HierarchyGraph> {
 		// Get names of parents/children
 		Stream<String> parents = graph.getParents(getData().getClassName());
 		Stream<String> children = graph.getDescendants(getData().getClassName());
-		// Get values of parents/children
-		Stream<ClassReader> parentValues = getReadersFromNames(parents);
-		Stream<ClassReader> childrenValues = getReadersFromNames(children);
-		// Get edges of parents/children
-		Stream<Edge<ClassReader>> parentEdges = parentValues.map(node -> {
-			HierarchyVertex other = graph.getVertex(node.getClassName());
-			if(other == null) {
-				other = new HierarchyVertex(graph, node);
-			}
-			return new DirectedEdge<>(other, HierarchyVertex.this);
-		});
-		Stream<Edge<ClassReader>> childrenEdges = childrenValues.map(node -> {
-			HierarchyVertex other = graph.getVertex(node.getClassName());
-			return new DirectedEdge<>(HierarchyVertex.this, other);
-		});
+		// Get edges of parents/children, vertices are cached by the graph so classes are not read again
+		Stream<Edge<ClassReader>> parentEdges = parents.map(this::lookup)
+				.filter(Objects::nonNull)
+				.map(other -> new DirectedEdge<>(other, HierarchyVertex.this));
+		Stream<Edge<ClassReader>> childrenEdges = children.map(this::lookup)
+				.filter(Objects::nonNull)
+				.map(other -> new DirectedEdge<>(HierarchyVertex.this, other));
 		// Concat edges and return as set.
 		return Stream.concat(parentEdges, childrenEdges).collect(Collectors.toSet());
 	}
+
+	private HierarchyVertex lookup(String name) {
+		if(name == null)
+			return null;
+		// Try loading from workspace
+		HierarchyVertex vertex = graph.getVertex(name);
+		if(vertex != null)
+			return vertex;
+		// Try loading from runtime
+		ClassReader reader = ClassUtil.fromRuntime(name);
+		return reader == null ? null : new HierarchyVertex(graph, reader);
+	}
 }
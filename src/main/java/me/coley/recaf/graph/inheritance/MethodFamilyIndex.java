@@ -0,0 +1,115 @@
+package me.coley.recaf.graph.inheritance;
+
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.util.struct.Pair;
+import me.coley.recaf.workspace.JavaResource;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of which classes of the primary resource declare each method definition.
+ * Combined with the hierarchy of a class, this gives the family of declarations that must be renamed together.
+ * <br>
+ * The index is built in parallel when first needed, then kept current by {@link HierarchyGraph}
+ * as classes are updated.
+ *
+ * @author Matt
+ */
+public class MethodFamilyIndex {
+	private final Map<String, Set<String>> declarations = new ConcurrentHashMap<>();
+	private final Map<String, List<String>> classMethods = new ConcurrentHashMap<>();
+	private final JavaResource primary;
+	private volatile boolean built;
+
+	/**
+	 * @param primary
+	 * 		Resource to index the methods of.
+	 */
+	public MethodFamilyIndex(JavaResource primary) {
+		this.primary = primary;
+	}
+
+	/**
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return Names of primary classes that declare the method.
+	 */
+	public Set<String> getDeclaringClasses(String name, String desc) {
+		build();
+		Set<String> classes = declarations.get(key(name, desc));
+		return classes == null ? Collections.emptySet() : Collections.unmodifiableSet(classes);
+	}
+
+	/**
+	 * Update the methods recorded for a class.
+	 *
+	 * @param name
+	 * 		Class name.
+	 * @param header
+	 * 		New header of the class, or {@code null} if the class was removed.
+	 */
+	public synchronized void update(String name, ClassHeader header) {
+		// Not built yet, the update will be seen when it is
+		if (!built)
+			return;
+		remove(name);
+		if (header != null)
+			add(header);
+	}
+
+	/**
+	 * Drop the index, it will be built again when next needed.
+	 */
+	public synchronized void reset() {
+		built = false;
+		declarations.clear();
+		classMethods.clear();
+	}
+
+	private void build() {
+		if (built)
+			return;
+		synchronized(this) {
+			if (built)
+				return;
+			primary.getClasses().keySet().parallelStream()
+					.map(primary::getClassHeader)
+					.filter(Objects::nonNull)
+					.forEach(this::add);
+			built = true;
+		}
+	}
+
+	private void add(ClassHeader header) {
+		List<Pair<String, String>> defs = header.getMethodDefs();
+		List<String> keys = new ArrayList<>(defs.size());
+		for (Pair<String, String> def : defs) {
+			String key = key(def.getKey(), def.getValue());
+			keys.add(key);
+			declarations.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(header.getName());
+		}
+		classMethods.put(header.getName(), keys);
+	}
+
+	private void remove(String name) {
+		List<String> keys = classMethods.remove(name);
+		if (keys == null)
+			return;
+		for (String key : keys) {
+			Set<String> classes = declarations.get(key);
+			if (classes == null)
+				continue;
+			classes.remove(name);
+			if (classes.isEmpty())
+				declarations.remove(key);
+		}
+	}
+
+	private static String key(String name, String desc) {
+		return name + desc;
+	}
+}
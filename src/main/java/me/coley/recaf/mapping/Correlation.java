@@ -1,10 +1,10 @@
 package me.coley.recaf.mapping;
 
-import me.coley.recaf.Recaf;
 import me.coley.recaf.graph.flow.*;
+import me.coley.recaf.util.ClassHeader;
 import me.coley.recaf.workspace.JavaResource;
 import me.coley.recaf.workspace.Workspace;
-import org.objectweb.asm.*;
+import org.objectweb.asm.ClassReader;
 
 import java.util.*;
 import java.util.function.Function;
@@ -84,7 +84,7 @@ public class Correlation {
 		// Map CFG vertex to simplified vertex builder
 		Function<FlowVertex, FlowBuilder> mapper = vertex -> {
 			FlowBuilder builder = new FlowBuilder();
-			builder.build(vertex);
+			builder.buildParallel(vertex);
 			return builder;
 		};
 		// Collect simplified, non-generative graph layouts
@@ -115,27 +115,13 @@ public class Correlation {
 
 	private Set<FlowVertex> getEntryPoints(JavaResource resource) {
 		FlowGraph flow = workspace.getFlowGraph();
-		Function<ClassReader, FlowVertex> readerToVert =
-				reader -> flow.getVertex(reader, "main", "([Ljava/lang/String;)V");
-		return resource.getClasses().values().stream()
-				.map(ClassReader::new)
-				.filter(Correlation::containsEntry)
-				.map(readerToVert)
-				.collect(Collectors.toSet());
-	}
-
-	private static boolean containsEntry(ClassReader reader) {
-		boolean[] contains = {false};
-		ClassVisitor cv = new ClassVisitor(Recaf.ASM_VERSION) {
-			@Override
-			public MethodVisitor visitMethod(int access, String name, String descriptor,
-											 String signature, String[] exceptions) {
-				if(name.equals("main") && descriptor.equals("([Ljava/lang/String;)V"))
-					contains[0] = true;
-				return null;
-			}
-		};
-		reader.accept(cv, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE);
-		return contains[0];
+		Set<FlowVertex> entries = new HashSet<>();
+		// Headers tell which classes have an entry point, without reading the classes
+		resource.getClasses().forEach((name, code) -> {
+			ClassHeader header = resource.getClassHeader(name);
+			if (header != null && header.hasMethod("main", "([Ljava/lang/String;)V"))
+				entries.add(flow.getVertex(new ClassReader(code), "main", "([Ljava/lang/String;)V"));
+		});
+		return entries;
 	}
 }
@@ -3,11 +3,9 @@ package me.coley.recaf.mapping;
 import me.coley.recaf.graph.flow.FlowBuilder;
 import me.coley.recaf.graph.flow.FlowVertex;
 import me.coley.recaf.graph.inheritance.HierarchyGraph;
-import me.coley.recaf.graph.inheritance.HierarchyVertex;
-import me.coley.recaf.util.ClassUtil;
+import me.coley.recaf.util.ClassHeader;
 import me.coley.recaf.workspace.JavaResource;
 import me.coley.recaf.workspace.Workspace;
-import org.objectweb.asm.ClassReader;
 
 import java.util.*;
 
@@ -113,16 +111,16 @@ public class CorrelationResult {
 			String key = targetOwner + "." + targetName + targetDesc;
 			if(!map.containsKey(key)) {
 				HierarchyGraph hierarchyGraph = workspace.getHierarchyGraph();
-				// Creating the classloader from the resource instead of the workspace is INTENTIONAL
+				Set<String> family = new HashSet<>(hierarchyGraph.getMethodFamily(targetOwner, targetName, targetDesc));
+				// Checking the owner in the target resource instead of the workspace is INTENTIONAL
 				// For overlapping names the workspace will always defer to the primary resource.
-				HierarchyVertex targetVert = hierarchyGraph.getVertex(
-						new ClassReader(targetResource.getClasses().get(targetOwner)));
-				Set<HierarchyVertex> hierarchy = hierarchyGraph.getHierarchy(targetVert);
-				for(HierarchyVertex vertex : hierarchy) {
-					if(!ClassUtil.containsMethod(vertex.getData(), targetName, targetDesc))
-						continue;
-					map.put(vertex.getData().getClassName() + "." + targetName + targetDesc, baseName);
-				}
+				ClassHeader header = targetResource.getClassHeader(targetOwner);
+				if(header != null && header.hasMethod(targetName, targetDesc))
+					family.add(targetOwner);
+				else
+					family.remove(targetOwner);
+				for(String member : family)
+					map.put(member + "." + targetName + targetDesc, baseName);
 			}
 		}
 		// TODO: since we're sure the flows/classes are the same why not just map out all properties?
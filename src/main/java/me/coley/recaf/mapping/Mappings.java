@@ -166,8 +166,6 @@ public class Mappings {
 		}
 		// Tell the workspace we've finished renaming classes
 		workspace.onPrimaryDefinitionChanges(updated.keySet());
-		// Update hierarchy graph
-		workspace.getHierarchyGraph().refresh();
 		// Update saved mappings
 		workspace.updateAggregateMappings(getMappings(), updated.keySet());
 		return updated;
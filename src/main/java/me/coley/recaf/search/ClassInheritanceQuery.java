@@ -27,6 +27,16 @@ public class ClassInheritanceQuery extends Query {
 				.collect(Collectors.toSet());
 	}
 
+	private ClassInheritanceQuery(ClassInheritanceQuery other) {
+		super(other);
+		this.descendants = other.descendants;
+	}
+
+	@Override
+	public ClassInheritanceQuery copy() {
+		return new ClassInheritanceQuery(this);
+	}
+
 	/**
 	 * Adds a result if the given class is a descendant of the specified class.
 	 *
@@ -6,7 +6,7 @@ package me.coley.recaf.search;
  * @author Matt
  */
 public class ClassNameQuery extends Query {
-	private final String name;
+	private final StringMatcher matcher;
 
 	/**
 	 * Constructs a class name matching query.
@@ -18,7 +18,17 @@ public class ClassNameQuery extends Query {
 	 */
 	public ClassNameQuery(String name, StringMatchMode stringMode) {
 		super(QueryType.CLASS_NAME, stringMode);
-		this.name = name;
+		this.matcher = stringMode.compile(name);
+	}
+
+	private ClassNameQuery(ClassNameQuery other) {
+		super(other);
+		this.matcher = other.matcher;
+	}
+
+	@Override
+	public ClassNameQuery copy() {
+		return new ClassNameQuery(this);
 	}
 
 	/**
@@ -30,7 +40,7 @@ public class ClassNameQuery extends Query {
 	 * 		Name of class.
 	 */
 	public void match(int access, String name) {
-		if (stringMode.match(this.name, name)) {
+		if (matcher.match(name)) {
 			getMatched().add(new ClassResult(access, name));
 		}
 	}
@@ -8,7 +8,7 @@ import java.util.function.IntSupplier;
  * @author Matt
  */
 public class ClassReferenceQuery extends Query {
-	private final String name;
+	private final StringMatcher matcher;
 
 	/**
 	 * Constructs a class referencing query.
@@ -31,7 +31,17 @@ public class ClassReferenceQuery extends Query {
 	 */
 	public ClassReferenceQuery(String name, StringMatchMode stringMode) {
 		super(QueryType.CLASS_REFERENCE, stringMode);
-		this.name = name;
+		this.matcher = stringMode.compile(name);
+	}
+
+	private ClassReferenceQuery(ClassReferenceQuery other) {
+		super(other);
+		this.matcher = other.matcher;
+	}
+
+	@Override
+	public ClassReferenceQuery copy() {
+		return new ClassReferenceQuery(this);
 	}
 
 	/**
@@ -43,8 +53,18 @@ public class ClassReferenceQuery extends Query {
 	 * 		Name of class.
 	 */
 	public void match(IntSupplier access, String name) {
-		if (stringMode.match(this.name, name)) {
+		if (matches(name)) {
 			getMatched().add(new ClassResult(access.getAsInt(), name));
 		}
 	}
+
+	/**
+	 * @param name
+	 * 		Name of class.
+	 *
+	 * @return {@code true} if the given class matches the specified name pattern.
+	 */
+	public boolean matches(String name) {
+		return matcher.match(name);
+	}
 }
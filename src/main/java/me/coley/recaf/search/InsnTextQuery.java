@@ -4,6 +4,7 @@ import me.coley.recaf.util.StringUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Query to find instructions based off of their disassembled representation.
@@ -11,7 +12,7 @@ import java.util.List;
  * @author Matt
  */
 public class InsnTextQuery extends Query {
-	private final List<String> lines;
+	private final List<StringMatcher> lines;
 
 	/**
 	 * Constructs a instruction text query.
@@ -23,7 +24,17 @@ public class InsnTextQuery extends Query {
 	 */
 	public InsnTextQuery(List<String> lines, StringMatchMode stringMode) {
 		super(QueryType.INSTRUCTION_TEXT, stringMode);
-		this.lines = lines;
+		this.lines = lines.stream().map(stringMode::compile).collect(Collectors.toList());
+	}
+
+	private InsnTextQuery(InsnTextQuery other) {
+		super(other);
+		this.lines = other.lines;
+	}
+
+	@Override
+	public InsnTextQuery copy() {
+		return new InsnTextQuery(this);
 	}
 
 	/**
@@ -47,10 +58,9 @@ public class InsnTextQuery extends Query {
 			// - If matching for all lines, return the match
 			// - If a line doesn't match skip to the next method insn starting point
 			for (int j = 0; j < lines.size(); j++) {
-				String line = lines.get(j);
 				String lineDis = codeLines[i+j];
 				ret.add(lineDis);
-				if (!stringMode.match(line, lineDis)) {
+				if (!lines.get(j).match(lineDis)) {
 					match = false;
 					break;
 				}
@@ -6,9 +6,9 @@ package me.coley.recaf.search;
  * @author Matt
  */
 public class MemberDefinitionQuery extends Query {
-	private final String owner;
-	private final String name;
-	private final String desc;
+	private final StringMatcher ownerMatcher;
+	private final StringMatcher nameMatcher;
+	private final StringMatcher descMatcher;
 
 	/**
 	 * Constructs a member definition query.
@@ -28,9 +28,21 @@ public class MemberDefinitionQuery extends Query {
 		if(owner == null && name == null && desc == null) {
 			throw new IllegalArgumentException("At least one query parameter must be non-null!");
 		}
-		this.owner = owner;
-		this.name = name;
-		this.desc = desc;
+		this.ownerMatcher = compile(owner);
+		this.nameMatcher = compile(name);
+		this.descMatcher = compile(desc);
+	}
+
+	private MemberDefinitionQuery(MemberDefinitionQuery other) {
+		super(other);
+		this.ownerMatcher = other.ownerMatcher;
+		this.nameMatcher = other.nameMatcher;
+		this.descMatcher = other.descMatcher;
+	}
+
+	@Override
+	public MemberDefinitionQuery copy() {
+		return new MemberDefinitionQuery(this);
 	}
 
 	/**
@@ -46,9 +58,9 @@ public class MemberDefinitionQuery extends Query {
 	 * 		Member descriptor.
 	 */
 	public void match(int access, String owner, String name, String desc) {
-		boolean hasOwner = this.owner == null || stringMode.match(this.owner, owner);
-		boolean hasName = this.name == null || stringMode.match(this.name, name);
-		boolean hasDesc = this.desc == null || stringMode.match(this.desc, desc);
+		boolean hasOwner = ownerMatcher == null || ownerMatcher.match(owner);
+		boolean hasName = nameMatcher == null || nameMatcher.match(name);
+		boolean hasDesc = descMatcher == null || descMatcher.match(desc);
 		if(hasOwner && hasName && hasDesc) {
 			getMatched().add(new MemberResult(access, owner, name, desc));
 		}
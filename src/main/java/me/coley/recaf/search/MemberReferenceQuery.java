@@ -8,9 +8,9 @@ import java.util.function.IntSupplier;
  * @author Matt
  */
 public class MemberReferenceQuery extends Query {
-	private final String owner;
-	private final String name;
-	private final String desc;
+	private final StringMatcher ownerMatcher;
+	private final StringMatcher nameMatcher;
+	private final StringMatcher descMatcher;
 
 	/**
 	 * Constructs a member references query.
@@ -30,9 +30,21 @@ public class MemberReferenceQuery extends Query {
 		if(owner == null && name == null && desc == null) {
 			throw new IllegalArgumentException("At least one query parameter must be non-null!");
 		}
-		this.owner = owner;
-		this.name = name;
-		this.desc = desc;
+		this.ownerMatcher = compile(owner);
+		this.nameMatcher = compile(name);
+		this.descMatcher = compile(desc);
+	}
+
+	private MemberReferenceQuery(MemberReferenceQuery other) {
+		super(other);
+		this.ownerMatcher = other.ownerMatcher;
+		this.nameMatcher = other.nameMatcher;
+		this.descMatcher = other.descMatcher;
+	}
+
+	@Override
+	public MemberReferenceQuery copy() {
+		return new MemberReferenceQuery(this);
 	}
 
 	/**
@@ -48,11 +60,25 @@ public class MemberReferenceQuery extends Query {
 	 * 		Member descriptor.
 	 */
 	public void match(IntSupplier access, String owner, String name, String desc) {
-		boolean hasOwner = this.owner == null || stringMode.match(this.owner, owner);
-		boolean hasName = this.name == null || stringMode.match(this.name, name);
-		boolean hasDesc = this.desc == null || stringMode.match(this.desc, desc);
-		if(hasOwner && hasName && hasDesc) {
+		if(matches(owner, name, desc)) {
 			getMatched().add(new MemberResult(access.getAsInt(), owner, name, desc));
 		}
 	}
+
+	/**
+	 * @param owner
+	 * 		Name of class containing the member.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor.
+	 *
+	 * @return {@code true} if the given member matches the specified member.
+	 */
+	public boolean matches(String owner, String name, String desc) {
+		boolean hasOwner = ownerMatcher == null || ownerMatcher.match(owner);
+		boolean hasName = nameMatcher == null || nameMatcher.match(name);
+		boolean hasDesc = descMatcher == null || descMatcher.match(desc);
+		return hasOwner && hasName && hasDesc;
+	}
 }
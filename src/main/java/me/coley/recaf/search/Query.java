@@ -25,6 +25,16 @@ public abstract class Query {
 		this.stringMode = stringMode;
 	}
 
+	/**
+	 * Copies the settings of another query. The copy has its own {@link #getMatched() matched results}.
+	 *
+	 * @param other
+	 * 		Query to copy.
+	 */
+	protected Query(Query other) {
+		this(other.type, other.stringMode);
+	}
+
 	/**
 	 * @return Implementation type.
 	 */
@@ -42,6 +52,23 @@ public abstract class Query {
 		return this.type.equals(type);
 	}
 
+	/**
+	 * @return How to match strings.
+	 */
+	public StringMatchMode getStringMode() {
+		return stringMode;
+	}
+
+	/**
+	 * @param key
+	 * 		Key to match, may be {@code null}.
+	 *
+	 * @return Matcher of the key with the query's string mode, or {@code null} if there is no key.
+	 */
+	protected StringMatcher compile(String key) {
+		return key == null ? null : stringMode.compile(key);
+	}
+
 	/**
 	 * A temporary storage of results.
 	 *
@@ -50,4 +77,14 @@ public abstract class Query {
 	public List<SearchResult> getMatched() {
 		return matched;
 	}
+
+	/**
+	 * Used to search classes in parallel, where each task matches with its own copies of the queries.
+	 *
+	 * @return Copy of the query with its own {@link #getMatched() matched results}, or {@code null} if the
+	 * query does not support copying. Searches with queries that cannot be copied are not run in parallel.
+	 */
+	public Query copy() {
+		return null;
+	}
 }
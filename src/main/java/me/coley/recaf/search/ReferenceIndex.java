@@ -0,0 +1,360 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.graph.ClassIdTable;
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.ClassReader;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Index of the class and member references made by the classes of a workspace's primary resource.
+ * Referenced classes and members are interned into {@link ClassIdTable ClassIdTables}, and each is mapped
+ * to the classes that reference it along with the locations of the references.
+ * <br>
+ * {@link ClassReferenceQuery Class reference} and {@link MemberReferenceQuery member reference} queries are
+ * matched against the distinct referenced classes and members, which narrows a search down to the classes
+ * that contain a match. References are recorded in the same places the search checks them, so searching
+ * only those classes gives the same results as searching all classes.
+ * <br>
+ * The index is built in parallel when first needed. Afterwards updates to the primary resource are
+ * applied as they happen, so only updated classes are read again.
+ *
+ * @author Matt
+ */
+public class ReferenceIndex {
+	private final Workspace workspace;
+	private final ClassIdTable types = new ClassIdTable();
+	private final ClassIdTable members = new ClassIdTable();
+	private final List<String[]> memberParts = new ArrayList<>();
+	// Classes referencing each class or member, by id. Ids without any are no longer referenced.
+	private final List<Set<String>> typeUsers = new ArrayList<>();
+	private final List<Set<String>> memberUsers = new ArrayList<>();
+	private final Map<String, IndexedClass> classes = new HashMap<>();
+	// Classes that could not be read are always searched, so that results stay the same as without the index
+	private final Set<String> unreadable = new HashSet<>();
+	private final BiConsumer<String, byte[]> putListener = this::onPut;
+	private final Consumer<Object> removeListener = this::onRemove;
+	// Updates made while building, by class name. Removed classes map to null.
+	private final Map<String, byte[]> pending = new LinkedHashMap<>();
+	private boolean built;
+	private boolean building;
+
+	/**
+	 * @param workspace
+	 * 		Workspace to index.
+	 */
+	public ReferenceIndex(Workspace workspace) {
+		this.workspace = workspace;
+		workspace.getPrimary().getClasses().getPutListeners().add(putListener);
+		workspace.getPrimary().getClasses().getRemoveListeners().add(removeListener);
+	}
+
+	/**
+	 * Build the index if it has not been built yet. If another thread is building it, wait for it to finish.
+	 * <br>
+	 * Classes are read without holding the index's lock. Updates to the primary resource made in the meantime
+	 * are queued, and applied once the read classes are added.
+	 */
+	public void build() {
+		Map<String, byte[]> sources;
+		synchronized(this) {
+			if (!awaitBuild())
+				return;
+			building = true;
+			sources = new HashMap<>(workspace.getPrimary().getClasses());
+		}
+		long start = System.currentTimeMillis();
+		List<IndexedClass> parsed = null;
+		try {
+			parsed = sources.entrySet().parallelStream()
+					.map(e -> parse(e.getKey(), e.getValue()))
+					.collect(Collectors.toList());
+		} finally {
+			finishBuild(parsed);
+		}
+		debug("Indexed references of {} classes in {}ms", parsed.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * @param query
+	 * 		Class reference query.
+	 *
+	 * @return Names of classes that may contain matches of the query, in sorted order.
+	 */
+	public SortedSet<String> getCandidates(ClassReferenceQuery query) {
+		build();
+		synchronized(this) {
+			SortedSet<String> names = new TreeSet<>(unreadable);
+			for (int id = 0; id < typeUsers.size(); id++) {
+				Set<String> users = typeUsers.get(id);
+				if (!users.isEmpty() && query.matches(types.getName(id)))
+					names.addAll(users);
+			}
+			return names;
+		}
+	}
+
+	/**
+	 * @param query
+	 * 		Member reference query.
+	 *
+	 * @return Names of classes that may contain matches of the query, in sorted order.
+	 */
+	public SortedSet<String> getCandidates(MemberReferenceQuery query) {
+		build();
+		synchronized(this) {
+			SortedSet<String> names = new TreeSet<>(unreadable);
+			for (int id = 0; id < memberUsers.size(); id++) {
+				Set<String> users = memberUsers.get(id);
+				String[] parts = memberParts.get(id);
+				if (!users.isEmpty() && query.matches(parts[0], parts[1], parts[2]))
+					names.addAll(users);
+			}
+			return names;
+		}
+	}
+
+	/**
+	 * @param type
+	 * 		Name of referenced class.
+	 *
+	 * @return Locations of references to the class, ordered by class name and then by their order in the class.
+	 */
+	public List<Location> getReferences(String type) {
+		build();
+		synchronized(this) {
+			int id = types.getId(type);
+			if (id < 0)
+				return Collections.emptyList();
+			List<Location> locations = new ArrayList<>();
+			for (String name : new TreeSet<>(typeUsers.get(id))) {
+				IndexedClass indexed = classes.get(name);
+				for (int i = 0; i < indexed.typeIds.length; i++)
+					if (indexed.typeIds[i] == id)
+						locations.add(indexed.visitor.getTypeLocations().get(i));
+			}
+			return locations;
+		}
+	}
+
+	/**
+	 * @param owner
+	 * 		Class defining the member.
+	 * @param name
+	 * 		Member name.
+	 * @param desc
+	 * 		Member descriptor.
+	 *
+	 * @return Locations of references to the member, ordered by class name and then by their order in the class.
+	 */
+	public List<Location> getReferences(String owner, String name, String desc) {
+		build();
+		synchronized(this) {
+			int id = members.getId(key(owner, name, desc));
+			if (id < 0)
+				return Collections.emptyList();
+			List<Location> locations = new ArrayList<>();
+			for (String user : new TreeSet<>(memberUsers.get(id))) {
+				IndexedClass indexed = classes.get(user);
+				for (int i = 0; i < indexed.memberIds.length; i++)
+					if (indexed.memberIds[i] == id)
+						locations.add(indexed.visitor.getMemberLocations().get(i));
+			}
+			return locations;
+		}
+	}
+
+	/**
+	 * Stop following updates to the primary resource's classes.
+	 */
+	public void detach() {
+		workspace.getPrimary().getClasses().getPutListeners().remove(putListener);
+		workspace.getPrimary().getClasses().getRemoveListeners().remove(removeListener);
+	}
+
+	/**
+	 * @return {@code true} if the index should be built by the calling thread.
+	 * {@code false} if it has been built, possibly by another thread that was waited on.
+	 */
+	private boolean awaitBuild() {
+		while (building) {
+			try {
+				wait();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return !built;
+	}
+
+	private synchronized void finishBuild(List<IndexedClass> parsed) {
+		if (parsed != null) {
+			parsed.forEach(this::add);
+			// Apply the updates made while the classes were read
+			pending.forEach(this::update);
+			built = true;
+		}
+		pending.clear();
+		building = false;
+		notifyAll();
+	}
+
+	private synchronized void onPut(String name, byte[] code) {
+		if (building)
+			pending.put(name, code);
+		else if (built)
+			update(name, code);
+	}
+
+	private synchronized void onRemove(Object key) {
+		if (!(key instanceof String))
+			return;
+		if (building)
+			pending.put((String) key, null);
+		else if (built)
+			update((String) key, null);
+	}
+
+	private void update(String name, byte[] code) {
+		remove(name);
+		if (code != null)
+			add(parse(name, code));
+	}
+
+	private void add(IndexedClass indexed) {
+		if (indexed.visitor == null) {
+			unreadable.add(indexed.name);
+			return;
+		}
+		List<String> referencedTypes = indexed.visitor.getTypes();
+		int[] typeIds = indexed.typeIds = new int[referencedTypes.size()];
+		for (int i = 0; i < typeIds.length; i++) {
+			int id = typeIds[i] = types.intern(referencedTypes.get(i));
+			while (typeUsers.size() <= id)
+				typeUsers.add(new HashSet<>());
+			typeUsers.get(id).add(indexed.name);
+		}
+		List<String[]> referencedMembers = indexed.visitor.getMembers();
+		int[] memberIds = indexed.memberIds = new int[referencedMembers.size()];
+		for (int i = 0; i < memberIds.length; i++) {
+			String[] parts = referencedMembers.get(i);
+			int id = memberIds[i] = members.intern(key(parts[0], parts[1], parts[2]));
+			while (memberUsers.size() <= id) {
+				memberUsers.add(new HashSet<>());
+				memberParts.add(parts);
+			}
+			memberUsers.get(id).add(indexed.name);
+		}
+		classes.put(indexed.name, indexed);
+	}
+
+	private void remove(String name) {
+		unreadable.remove(name);
+		IndexedClass indexed = classes.remove(name);
+		if (indexed == null)
+			return;
+		for (int id : indexed.typeIds)
+			typeUsers.get(id).remove(name);
+		for (int id : indexed.memberIds)
+			memberUsers.get(id).remove(name);
+	}
+
+	private static IndexedClass parse(String name, byte[] code) {
+		ReferenceVisitor visitor = new ReferenceVisitor();
+		try {
+			new ClassReader(code).accept(visitor, ClassReader.SKIP_FRAMES);
+		} catch (Exception ex) {
+			debug("Searching unreadable class '{}' without reference index", name);
+			return new IndexedClass(name, null);
+		}
+		return new IndexedClass(name, visitor);
+	}
+
+	private static String key(String owner, String name, String desc) {
+		return owner + "." + name + " " + desc;
+	}
+
+	/**
+	 * Location of a reference.
+	 */
+	public static class Location {
+		private final String owner;
+		private final String memberName;
+		private final String memberDesc;
+		private final int insn;
+
+		/**
+		 * @param owner
+		 * 		Name of class containing the reference.
+		 * @param memberName
+		 * 		Name of the member containing the reference, or {@code null} for references in class annotations.
+		 * @param memberDesc
+		 * 		Descriptor of the member containing the reference, or {@code null} for references in
+		 * 		class annotations.
+		 * @param insn
+		 * 		Index of the instruction in the method, or {@code -1} for references outside of instructions.
+		 */
+		public Location(String owner, String memberName, String memberDesc, int insn) {
+			this.owner = owner;
+			this.memberName = memberName;
+			this.memberDesc = memberDesc;
+			this.insn = insn;
+		}
+
+		/**
+		 * @return Name of class containing the reference.
+		 */
+		public String getOwner() {
+			return owner;
+		}
+
+		/**
+		 * @return Name of the member containing the reference, or {@code null} for references in class annotations.
+		 */
+		public String getMemberName() {
+			return memberName;
+		}
+
+		/**
+		 * @return Descriptor of the member containing the reference, or {@code null} for references in
+		 * class annotations.
+		 */
+		public String getMemberDesc() {
+			return memberDesc;
+		}
+
+		/**
+		 * @return Index of the instruction in the method, or {@code -1} for references outside of instructions.
+		 */
+		public int getInsn() {
+			return insn;
+		}
+
+		@Override
+		public String toString() {
+			String text = memberName == null ? owner : owner + "." + memberName + memberDesc;
+			return insn < 0 ? text : text + " @" + insn;
+		}
+	}
+
+	/**
+	 * References of an indexed class, and the ids of the referenced classes and members.
+	 */
+	private static class IndexedClass {
+		private final String name;
+		private final ReferenceVisitor visitor;
+		private int[] typeIds;
+		private int[] memberIds;
+
+		private IndexedClass(String name, ReferenceVisitor visitor) {
+			this.name = name;
+			this.visitor = visitor;
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.Recaf;
+import org.objectweb.asm.*;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Visitor that records the class and member references of a class for the {@link ReferenceIndex}.
+ * References are recorded in the same places that {@link SearchClassVisitor} checks them for
+ * {@link ClassReferenceQuery class reference} and {@link MemberReferenceQuery member reference} queries.
+ *
+ * @author Matt
+ */
+class ReferenceVisitor extends ClassVisitor {
+	private final List<String> types = new ArrayList<>();
+	private final List<ReferenceIndex.Location> typeLocations = new ArrayList<>();
+	private final List<String[]> members = new ArrayList<>();
+	private final List<ReferenceIndex.Location> memberLocations = new ArrayList<>();
+	private String name;
+
+	/**
+	 * Constructs a reference visitor.
+	 */
+	ReferenceVisitor() {
+		super(Recaf.ASM_VERSION);
+	}
+
+	/**
+	 * @return Referenced class names, in visit order.
+	 */
+	List<String> getTypes() {
+		return types;
+	}
+
+	/**
+	 * @return Locations of the class references.
+	 */
+	List<ReferenceIndex.Location> getTypeLocations() {
+		return typeLocations;
+	}
+
+	/**
+	 * @return Referenced members as arrays of the owner, name and descriptor, in visit order.
+	 */
+	List<String[]> getMembers() {
+		return members;
+	}
+
+	/**
+	 * @return Locations of the member references.
+	 */
+	List<ReferenceIndex.Location> getMemberLocations() {
+		return memberLocations;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String sig, String superName, String[] interfaces) {
+		this.name = name;
+	}
+
+	@Override
+	public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+		return new Annotations(null, null, descriptor);
+	}
+
+	@Override
+	public AnnotationVisitor visitTypeAnnotation(int ref, TypePath typePath, String descriptor, boolean visible) {
+		return new Annotations(null, null, descriptor);
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String fname, String fdesc, String signature, Object value) {
+		return new FieldVisitor(api) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+				return new Annotations(fname, fdesc, descriptor);
+			}
+
+			@Override
+			public AnnotationVisitor visitTypeAnnotation(int ref, TypePath path, String descriptor, boolean visible) {
+				return new Annotations(fname, fdesc, descriptor);
+			}
+		};
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String mname, String mdesc, String sig, String[] ex) {
+		return new Method(access, mname, mdesc);
+	}
+
+	private void addType(String type, String memberName, String memberDesc, int insn) {
+		types.add(type);
+		typeLocations.add(new ReferenceIndex.Location(name, memberName, memberDesc, insn));
+	}
+
+	private void addMember(Handle handle, String memberName, String memberDesc, int insn) {
+		addMember(handle.getOwner(), handle.getName(), handle.getDesc(), memberName, memberDesc, insn);
+	}
+
+	private void addMember(String owner, String name, String desc, String memberName, String memberDesc,
+						   int insn) {
+		members.add(new String[] {owner, name, desc});
+		memberLocations.add(new ReferenceIndex.Location(this.name, memberName, memberDesc, insn));
+	}
+
+	private static String elementName(Type type) {
+		return type.getSort() == Type.ARRAY ? type.getElementType().getInternalName() : type.getInternalName();
+	}
+
+	/**
+	 * Records annotation types, including those of nested annotations and enum values.
+	 */
+	private class Annotations extends AnnotationVisitor {
+		private final String memberName;
+		private final String memberDesc;
+
+		private Annotations(String memberName, String memberDesc, String descriptor) {
+			super(Recaf.ASM_VERSION);
+			this.memberName = memberName;
+			this.memberDesc = memberDesc;
+			addType(Type.getType(descriptor).getInternalName(), memberName, memberDesc, -1);
+		}
+
+		@Override
+		public void visitEnum(String name, String descriptor, String value) {
+			addType(Type.getType(descriptor).getInternalName(), memberName, memberDesc, -1);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+			return new Annotations(memberName, memberDesc, descriptor);
+		}
+
+		@Override
+		public AnnotationVisitor visitArray(String name) {
+			return this;
+		}
+	}
+
+	/**
+	 * Records references in method code. Instructions are collected like in {@link SearchMethodVisitor},
+	 * so that the recorded instruction indices match.
+	 */
+	private class Method extends MethodNode {
+		private Method(int access, String name, String desc) {
+			super(Recaf.ASM_VERSION);
+			this.access = access;
+			this.name = name;
+			this.desc = desc;
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+			return new Annotations(name, desc, descriptor);
+		}
+
+		@Override
+		public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor,
+													 boolean visible) {
+			return new Annotations(name, desc, descriptor);
+		}
+
+		@Override
+		public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+			return new Annotations(name, desc, descriptor);
+		}
+
+		@Override
+		public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String descriptor,
+													 boolean visible) {
+			return new Annotations(name, desc, descriptor);
+		}
+
+		@Override
+		public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String descriptor,
+														 boolean visible) {
+			return new Annotations(name, desc, descriptor);
+		}
+
+		@Override
+		public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start,
+															  Label[] end, int[] index, String descriptor,
+															  boolean visible) {
+			return new Annotations(name, desc, descriptor);
+		}
+
+		@Override
+		public void visitLocalVariable(String lname, String descriptor, String signature, Label start,
+									   Label end, int index) {
+			super.visitLocalVariable(lname, descriptor, signature, start, end, index);
+			addType(elementName(Type.getType(descriptor)), name, desc, -1);
+		}
+
+		@Override
+		public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+			super.visitMultiANewArrayInsn(descriptor, numDimensions);
+			addType(Type.getType(descriptor).getInternalName(), name, desc, lastPos());
+		}
+
+		@Override
+		public void visitTypeInsn(int opcode, String type) {
+			super.visitTypeInsn(opcode, type);
+			addType(elementName(type.contains(";") ? Type.getType(type) : Type.getObjectType(type)),
+					name, desc, lastPos());
+		}
+
+		@Override
+		public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+			super.visitTryCatchBlock(start, end, handler, type);
+			if (type != null)
+				addType(type, name, desc, -1);
+		}
+
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String fname, String descriptor) {
+			super.visitFieldInsn(opcode, owner, fname, descriptor);
+			addMember(owner, fname, descriptor, name, desc, lastPos());
+		}
+
+		@Override
+		public void visitMethodInsn(int opcode, String owner, String mname, String descriptor, boolean itf) {
+			super.visitMethodInsn(opcode, owner, mname, descriptor, itf);
+			addMember(owner, mname, descriptor, name, desc, lastPos());
+		}
+
+		@Override
+		public void visitInvokeDynamicInsn(String iname, String descriptor, Handle handle, Object... args) {
+			super.visitInvokeDynamicInsn(iname, descriptor, handle, args);
+			addMember(handle, name, desc, lastPos());
+			for (Object arg : args)
+				if (arg instanceof Handle)
+					addMember((Handle) arg, name, desc, lastPos());
+		}
+
+		@Override
+		public void visitLdcInsn(Object value) {
+			super.visitLdcInsn(value);
+			if (value instanceof Type) {
+				addType(elementName((Type) value), name, desc, lastPos());
+			} else if (value instanceof Handle) {
+				addMember((Handle) value, name, desc, lastPos());
+			} else if (value instanceof ConstantDynamic) {
+				ConstantDynamic dynamic = (ConstantDynamic) value;
+				addMember(dynamic.getBootstrapMethod(), name, desc, lastPos());
+				for (int i = 0; i < dynamic.getBootstrapMethodArgumentCount(); i++)
+					if (dynamic.getBootstrapMethodArgument(i) instanceof Handle)
+						addMember((Handle) dynamic.getBootstrapMethodArgument(i), name, desc, lastPos());
+			}
+		}
+
+		private int lastPos() {
+			return instructions.size() - 1;
+		}
+	}
+}
@@ -29,12 +29,11 @@ public class SearchAnnotationVisitor extends AnnotationVisitor {
 		super(Recaf.ASM_VERSION);
 		this.collector = collector;
 		this.context = context.withAnno(descriptor);
-		collector.queries(ClassReferenceQuery.class)
-				.forEach(q -> {
-					String type = Type.getType(descriptor).getInternalName();
-					q.match(collector.getAccess(type, Opcodes.ACC_ANNOTATION), type);
-					collector.addMatched(this.context, q);
-				});
+		for (ClassReferenceQuery q : collector.queries(ClassReferenceQuery.class)) {
+			String type = Type.getType(descriptor).getInternalName();
+			q.match(collector.getAccess(type, Opcodes.ACC_ANNOTATION), type);
+			collector.addMatched(this.context, q);
+		}
 	}
 
 	@Override
@@ -44,51 +43,45 @@ public class SearchAnnotationVisitor extends AnnotationVisitor {
 			return;
 		}
 		if (value instanceof String) {
-			collector.queries(StringQuery.class)
-					.forEach(q -> {
-						q.match((String) value);
-						collector.addMatched(context, q);
-					});
+			for (StringQuery q : collector.queries(StringQuery.class)) {
+				q.match((String) value);
+				collector.addMatched(context, q);
+			}
 		} else if (value instanceof Number) {
-			collector.queries(ValueQuery.class)
-					.forEach(q -> {
-						q.match(value);
-						collector.addMatched(context, q);
-					});
+			for (ValueQuery q : collector.queries(ValueQuery.class)) {
+				q.match(value);
+				collector.addMatched(context, q);
+			}
 		} else if (value instanceof Character){
 			int cval = (Character) value;
-			collector.queries(ValueQuery.class)
-					.forEach(q -> {
-						q.match(cval);
-						collector.addMatched(context, q);
-					});
+			for (ValueQuery q : collector.queries(ValueQuery.class)) {
+				q.match(cval);
+				collector.addMatched(context, q);
+			}
 		} else if (value.getClass().isArray()) {
 			int length = Array.getLength(value);
 			Object[] array = new Object[length];
 			for(int i = 0; i < length; i++)
 				array[i] = Array.get(value, i);
-			collector.queries(ValueQuery.class)
-					.forEach(q -> {
-						for (Object i : array)
-							q.match(i);
-						collector.addMatched(context, q);
-					});
+			for (ValueQuery q : collector.queries(ValueQuery.class)) {
+				for (Object i : array)
+					q.match(i);
+				collector.addMatched(context, q);
+			}
 		}
 	}
 
 	@Override
 	public void visitEnum(String name, String descriptor, String value) {
-		collector.queries(ClassReferenceQuery.class)
-				.forEach(q -> {
-					String type = Type.getType(descriptor).getInternalName();
-					q.match(collector.getAccess(type, Opcodes.ACC_ANNOTATION), type);
-					collector.addMatched(context, q);
-				});
-		collector.queries(StringQuery.class)
-				.forEach(q -> {
-					q.match(value);
-					collector.addMatched(context, q);
-				});
+		for (ClassReferenceQuery q : collector.queries(ClassReferenceQuery.class)) {
+			String type = Type.getType(descriptor).getInternalName();
+			q.match(collector.getAccess(type, Opcodes.ACC_ANNOTATION), type);
+			collector.addMatched(context, q);
+		}
+		for (StringQuery q : collector.queries(StringQuery.class)) {
+			q.match(value);
+			collector.addMatched(context, q);
+		}
 	}
 
 	@Override
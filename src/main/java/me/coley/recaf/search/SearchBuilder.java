@@ -4,6 +4,8 @@ import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Builder for {@link SearchCollector}.
@@ -11,10 +13,13 @@ import java.util.*;
  * @author Matt
  */
 public class SearchBuilder {
+	private static final int TASK_SIZE = 64;
 	private final Workspace workspace;
 	private final List<Query> queries = new ArrayList<>();
 	private int readFlags = ClassReader.SKIP_FRAMES;
 	private Collection<String> skipped = Collections.emptyList();
+	private boolean parallel;
+	private boolean indexed;
 
 	private SearchBuilder(Workspace workspace) {
 		this.workspace = workspace;
@@ -71,10 +76,47 @@ public class SearchBuilder {
 		return this;
 	}
 
+	/**
+	 * @return Builder that searches classes in parallel. Results are ordered by the name of the class
+	 * they are found in, so they are the same on every run. Each task matches with its own
+	 * {@link Query#copy() copies} of the queries. If any query cannot be copied, classes are searched
+	 * one after another instead.
+	 */
+	public SearchBuilder parallel() {
+		this.parallel = true;
+		return this;
+	}
+
+	/**
+	 * @return Builder that uses the workspace's indexes. Searches of only {@link StringQuery string queries}
+	 * are answered from the {@link StringIndex}, and only the classes with strings the index does not cover,
+	 * in annotations and bootstrap method arguments, are read. These searches always give instruction
+	 * positions as if {@link #skipDebug() debug information is skipped}, and are not run in
+	 * {@link #parallel() parallel}. Searches of only {@link ClassReferenceQuery class} and
+	 * {@link MemberReferenceQuery member reference} queries only read the classes the {@link ReferenceIndex}
+	 * lists as referencing a match.
+	 */
+	public SearchBuilder indexed() {
+		this.indexed = true;
+		return this;
+	}
+
 	/**
 	 * @return SearchCollector from the builder. The search is started by calling this method.
 	 */
 	public SearchCollector build() {
+		Collection<String> candidates = null;
+		if (indexed && !queries.isEmpty()) {
+			if (queries.stream().allMatch(q -> q instanceof StringQuery))
+				return buildIndexed();
+			candidates = getReferencingClasses();
+		}
+		if (parallel || candidates != null) {
+			List<byte[]> classes = getClasses(candidates);
+			if (parallel && queries.stream().allMatch(SearchBuilder::isCopyable))
+				return ForkJoinPool.commonPool().invoke(new SearchTask(classes, 0, classes.size()));
+			return new SearchTask(classes, 0, classes.size()).search(false);
+		}
 		SearchCollector collector = new SearchCollector(workspace, queries);
 		SearchClassVisitor sv = new SearchClassVisitor(collector);
 		workspace.getPrimaryClassReaders().forEach(cr -> {
@@ -86,6 +128,91 @@ public class SearchBuilder {
 		return collector;
 	}
 
+	/**
+	 * @param names
+	 * 		Names of classes to search, or {@code null} for all classes.
+	 *
+	 * @return Primary classes to search, ordered by name.
+	 */
+	private List<byte[]> getClasses(Collection<String> names) {
+		SortedMap<String, byte[]> classes = new TreeMap<>(workspace.getPrimary().getClasses());
+		if (names != null)
+			classes.keySet().retainAll(names);
+		return new ArrayList<>(classes.values());
+	}
+
+	/**
+	 * @return Names of classes referencing matches of the queries,
+	 * or {@code null} if there are queries other than reference queries.
+	 */
+	private Collection<String> getReferencingClasses() {
+		ReferenceIndex index = workspace.getReferenceIndex();
+		Set<String> names = new HashSet<>();
+		for (Query query : queries) {
+			if (query instanceof ClassReferenceQuery)
+				names.addAll(index.getCandidates((ClassReferenceQuery) query));
+			else if (query instanceof MemberReferenceQuery)
+				names.addAll(index.getCandidates((MemberReferenceQuery) query));
+			else
+				return null;
+		}
+		return names;
+	}
+
+	/**
+	 * @return Collector of string query results, with results in the order of the classes they are found in.
+	 */
+	private SearchCollector buildIndexed() {
+		SearchCollector collector = new SearchCollector(workspace, queries);
+		StringIndex index = workspace.getStringIndex();
+		SortedSet<String> unindexed = index.getUnindexed();
+		SortedSet<String> names = new TreeSet<>(unindexed);
+		Map<StringQuery, Map<String, List<StringIndex.Location>>> found = new LinkedHashMap<>();
+		boolean skipCode = (readFlags & ClassReader.SKIP_CODE) != 0;
+		for (Query query : queries) {
+			StringQuery q = (StringQuery) query;
+			Map<String, List<StringIndex.Location>> byOwner = new HashMap<>();
+			for (StringIndex.Location location : index.find(q.getPattern(), q.getStringMode())) {
+				if (skipCode && location.getInsn() >= 0)
+					continue;
+				byOwner.computeIfAbsent(location.getOwner(), n -> new ArrayList<>()).add(location);
+				names.add(location.getOwner());
+			}
+			found.put(q, byOwner);
+		}
+		SearchClassVisitor sv = new SearchClassVisitor(collector);
+		for (String name : names) {
+			if (skip(name))
+				continue;
+			// Read classes with unindexed strings instead, which finds their indexed strings as well
+			if (unindexed.contains(name)) {
+				byte[] code = workspace.getPrimary().getClasses().get(name);
+				if (code != null)
+					new ClassReader(code).accept(sv, readFlags | ClassReader.SKIP_DEBUG);
+				continue;
+			}
+			found.forEach((q, byOwner) -> {
+				for (StringIndex.Location location : byOwner.getOrDefault(name, Collections.emptyList())) {
+					q.getMatched().add(new StringResult(location.getText()));
+					collector.addMatched(location.toContext(), q);
+				}
+			});
+		}
+		return collector;
+	}
+
+	/**
+	 * @param query
+	 * 		Query to check.
+	 *
+	 * @return {@code true} if the query can be copied. Copies of another class, like those a subclass
+	 * inherits from a built-in query, would not match the same way and are not used.
+	 */
+	private static boolean isCopyable(Query query) {
+		Query copy = query.copy();
+		return copy != null && copy.getClass() == query.getClass();
+	}
+
 	/**
 	 * @param name
 	 * 		Class name.
@@ -95,4 +222,53 @@ public class SearchBuilder {
 	private boolean skip(String name) {
 		return skipped.stream().anyMatch(name::startsWith);
 	}
+
+	/**
+	 * Task searching a range of classes with its own collector.
+	 * Larger ranges are split in half, and the collector of the lower half takes the results of the upper half.
+	 */
+	private class SearchTask extends RecursiveTask<SearchCollector> {
+		private final List<byte[]> classes;
+		private final int start;
+		private final int end;
+
+		private SearchTask(List<byte[]> classes, int start, int end) {
+			this.classes = classes;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected SearchCollector compute() {
+			if (end - start > TASK_SIZE) {
+				int middle = (start + end) >>> 1;
+				SearchTask lower = new SearchTask(classes, start, middle);
+				lower.fork();
+				SearchCollector upper = new SearchTask(classes, middle, end).compute();
+				SearchCollector collector = lower.join();
+				collector.merge(upper);
+				return collector;
+			}
+			return search(true);
+		}
+
+		/**
+		 * @param copies
+		 * 		Whether to match with copies of the queries, so that tasks running at the same time
+		 * 		do not share the queries' matched results.
+		 *
+		 * @return Collector of the results in the whole range.
+		 */
+		private SearchCollector search(boolean copies) {
+			SearchCollector collector = copies ? SearchCollector.withCopies(workspace, queries) :
+					new SearchCollector(workspace, queries);
+			SearchClassVisitor sv = new SearchClassVisitor(collector);
+			for (int i = start; i < end; i++) {
+				ClassReader cr = new ClassReader(classes.get(i));
+				if (!skip(cr.getClassName()))
+					cr.accept(sv, readFlags);
+			}
+			return collector;
+		}
+	}
 }
@@ -31,25 +31,27 @@ public class SearchClassVisitor extends ClassVisitor {
 	@Override
 	public void visit(int version, int access, String name, String sig, String superName, String[] interfaces) {
 		context = Context.withClass(access, name);
-		collector.queries(ClassNameQuery.class)
-				.forEach(q -> {
-					q.match(access, name);
-					collector.addMatched(context, q);
-				});
-		collector.queries(ClassInheritanceQuery.class)
-				.forEach(q -> {
-					q.match(access, name);
-					collector.addMatched(context, q);
-				});
+		for (ClassNameQuery q : collector.queries(ClassNameQuery.class)) {
+			q.match(access, name);
+			collector.addMatched(context, q);
+		}
+		for (ClassInheritanceQuery q : collector.queries(ClassInheritanceQuery.class)) {
+			q.match(access, name);
+			collector.addMatched(context, q);
+		}
 	}
 
 	@Override
 	public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+		if (!collector.hasAnnotationQueries())
+			return null;
 		return new SearchAnnotationVisitor(collector, context, descriptor);
 	}
 
 	@Override
 	public AnnotationVisitor visitTypeAnnotation(int ref, TypePath typePath, String descriptor, boolean visible) {
+		if (!collector.hasAnnotationQueries())
+			return null;
 		return new SearchAnnotationVisitor(collector, context, descriptor);
 	}
 
@@ -58,34 +60,36 @@ public class SearchClassVisitor extends ClassVisitor {
 								   Object value) {
 		Context.MemberContext fieldContext = context.withMember(access, name, descriptor);
 		if (value instanceof String) {
-			collector.queries(StringQuery.class)
-					.forEach(q -> {
-						q.match((String) value);
-						collector.addMatched(fieldContext, q);
-					});
+			for (StringQuery q : collector.queries(StringQuery.class)) {
+				q.match((String) value);
+				collector.addMatched(fieldContext, q);
+			}
 		} else {
-			collector.queries(ValueQuery.class)
-					.forEach(q -> {
-						q.match(value);
-						collector.addMatched(fieldContext, q);
-					});
+			for (ValueQuery q : collector.queries(ValueQuery.class)) {
+				q.match(value);
+				collector.addMatched(fieldContext, q);
+			}
 		}
-		collector.queries(MemberDefinitionQuery.class)
-				.forEach(q -> {
-					q.match(access, context.getName(), name, descriptor);
-					collector.addMatched(fieldContext, q);
-				});
+		for (MemberDefinitionQuery q : collector.queries(MemberDefinitionQuery.class)) {
+			q.match(access, context.getName(), name, descriptor);
+			collector.addMatched(fieldContext, q);
+		}
+		// Fields only contain annotations
+		if (!collector.hasAnnotationQueries())
+			return null;
 		return new SearchFieldVisitor(collector, fieldContext);
 	}
 
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String descriptor, String sig, String[] ex) {
 		Context.MemberContext methodContext = context.withMember(access, name, descriptor);
-		collector.queries(MemberDefinitionQuery.class)
-				.forEach(q -> {
-					q.match(access, context.getName(), name, descriptor);
-					collector.addMatched(methodContext, q);
-				});
+		for (MemberDefinitionQuery q : collector.queries(MemberDefinitionQuery.class)) {
+			q.match(access, context.getName(), name, descriptor);
+			collector.addMatched(methodContext, q);
+		}
+		// Skip the method body, and with it the instruction list of the method visitor
+		if (!collector.hasCodeQueries())
+			return null;
 		return new SearchMethodVisitor(collector, methodContext);
 	}
 }
@@ -8,10 +8,10 @@ import me.coley.recaf.workspace.Workspace;
 import org.objectweb.asm.*;
 import org.objectweb.asm.tree.*;
 
+import java.lang.reflect.Array;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.IntSupplier;
-import java.util.stream.Stream;
 
 import static org.objectweb.asm.ClassReader.*;
 
@@ -29,11 +29,21 @@ import static org.objectweb.asm.ClassReader.*;
  */
 public class SearchCollector {
 	public static final int ACC_NOT_FOUND = 0;
+	private static final List<Class<? extends Query>> QUERY_TYPES = Arrays.asList(
+			ClassNameQuery.class, ClassInheritanceQuery.class, MemberDefinitionQuery.class,
+			ClassReferenceQuery.class, MemberReferenceQuery.class, StringQuery.class,
+			ValueQuery.class, InsnTextQuery.class);
 	private final ListMultimap<Query, SearchResult> results = MultimapBuilder
 			.linkedHashKeys(2).arrayListValues().build();
 	private final Map<Query, List<SearchResult>> resultMapView = Multimaps.asMap(results);
 	private final Workspace workspace;
 	private final Collection<Query> queries;
+	// Queries that results are filed under, by the copies that matched them
+	private final Map<Query, Query> originals;
+	// Queries of each type, so visitors do not need to filter the queries for each visited element
+	private final Map<Class<?>, Query[]> queriesByType = new IdentityHashMap<>();
+	private final boolean annotationQueries;
+	private final boolean codeQueries;
 
 	/**
 	 * Constructs a class search visitor.
@@ -44,8 +54,38 @@ public class SearchCollector {
 	 * 		Queries to check for collecting results.
 	 */
 	public SearchCollector(Workspace workspace, Collection<Query> queries) {
+		this(workspace, queries, Collections.emptyMap());
+	}
+
+	private SearchCollector(Workspace workspace, Collection<Query> queries, Map<Query, Query> originals) {
 		this.workspace = workspace;
 		this.queries = queries;
+		this.originals = originals;
+		for (Class<? extends Query> type : QUERY_TYPES)
+			queriesByType.put(type, filter(type));
+		annotationQueries = has(ClassReferenceQuery.class) || has(StringQuery.class) || has(ValueQuery.class);
+		codeQueries = annotationQueries || has(MemberReferenceQuery.class) || has(InsnTextQuery.class);
+	}
+
+	/**
+	 * Used to search classes in parallel, so that each task has its own matched results.
+	 *
+	 * @param workspace
+	 * 		Workspace to pull additional references from.
+	 * @param queries
+	 * 		Queries that support {@link Query#copy() copying}.
+	 *
+	 * @return Collector that matches with copies of the queries, and files results under the given queries.
+	 */
+	static SearchCollector withCopies(Workspace workspace, Collection<Query> queries) {
+		List<Query> copies = new ArrayList<>(queries.size());
+		Map<Query, Query> originals = new IdentityHashMap<>();
+		for (Query query : queries) {
+			Query copy = query.copy();
+			copies.add(copy);
+			originals.put(copy, query);
+		}
+		return new SearchCollector(workspace, copies, originals);
 	}
 
 	/**
@@ -97,12 +137,39 @@ public class SearchCollector {
 	 * @param <T>
 	 * 		Kind of query class.
 	 *
-	 * @return Stream of queries matching the given class.
+	 * @return Array of queries matching the given class. Must not be modified.
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends Query> T[] queries(Class<T> clazz) {
+		Query[] array = queriesByType.get(clazz);
+		return array != null ? (T[]) array : filter(clazz);
+	}
+
+	/**
+	 * @return {@code true} if any query checks annotations.
+	 * When there are none, annotations do not need to be visited.
 	 */
-	<T extends Query> Stream<T> queries(Class<T> clazz) {
+	boolean hasAnnotationQueries() {
+		return annotationQueries;
+	}
+
+	/**
+	 * @return {@code true} if any query checks the content of methods.
+	 * When there are none, methods do not need to be visited.
+	 */
+	boolean hasCodeQueries() {
+		return codeQueries;
+	}
+
+	private boolean has(Class<? extends Query> clazz) {
+		return queries(clazz).length > 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Query> T[] filter(Class<T> clazz) {
 		return queries.stream()
 				.filter(clazz::isInstance)
-				.map(clazz::cast);
+				.toArray(size -> (T[]) Array.newInstance(clazz, size));
 	}
 
 	/**
@@ -118,10 +185,20 @@ public class SearchCollector {
 		if(context == null)
 			throw new IllegalStateException("Must have context");
 		matched.forEach(res -> res.setContext(context));
-		results.putAll(query, matched);
+		results.putAll(originals.getOrDefault(query, query), matched);
 		matched.clear();
 	}
 
+	/**
+	 * Adds all results of another collector, after the results already in this collector.
+	 *
+	 * @param other
+	 * 		Collector of the same queries.
+	 */
+	void merge(SearchCollector other) {
+		results.putAll(other.results);
+	}
+
 	// We use suppliers so that we don't have to lookup this information unless
 	// we are sure that there is a match and this information is needed.
 	// Looking this up in hundreds of cases where we don't need it would just waste time.
@@ -0,0 +1,646 @@
+package me.coley.recaf.search;
+
+import me.coley.recaf.Recaf;
+import me.coley.recaf.graph.ClassIdTable;
+import me.coley.recaf.util.struct.ContentStamp;
+import me.coley.recaf.workspace.Workspace;
+import org.objectweb.asm.*;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Index of the string constants in the classes of a workspace's primary resource. Strings of {@code LDC}
+ * instructions and field constant values are mapped to their locations, so string searches can be
+ * answered without reading the classes again. Strings in annotations and bootstrap method arguments are not
+ * indexed, the classes containing any are listed by {@link #getUnindexed()} so that they can be read instead.
+ * <br>
+ * Distinct strings are interned into a {@link ClassIdTable}. Equal strings are looked up by id,
+ * prefixes in a sorted set of the strings, and substrings through an index of the three character
+ * sequences <i>(trigrams)</i> each string contains.
+ * <br>
+ * The index is built in parallel when first needed. Afterwards updates to the primary resource are
+ * applied as they happen, so only updated classes are read again. Strings that are no longer in any class
+ * keep their ids and trigrams, which are reused if they are added again. Once these make up most of the index
+ * it is compacted, so that it does not keep growing as classes are updated.
+ *
+ * @author Matt
+ */
+public class StringIndex {
+	private static final int GRAM = 3;
+	// Number of removed strings kept before the index is compacted
+	private static final int COMPACT_MIN = 1024;
+	private final Workspace workspace;
+	private final ClassIdTable strings = new ClassIdTable();
+	private final Map<String, IndexedClass> classes = new HashMap<>();
+	// Classes containing each string, by string id. Strings without any are no longer in the workspace.
+	private final List<Set<String>> owners = new ArrayList<>();
+	private final NavigableSet<String> sorted = new TreeSet<>();
+	private final Map<Long, Postings> grams = new HashMap<>();
+	// Trigrams of a string are kept when it is removed, since it gets the same id if it is added again
+	private final BitSet gramsIndexed = new BitSet();
+	private final SortedSet<String> unindexed = new TreeSet<>();
+	private final BiConsumer<String, byte[]> putListener = this::onPut;
+	private final Consumer<Object> removeListener = this::onRemove;
+	// Updates made while building, by class name. Removed classes map to null.
+	private final Map<String, byte[]> pending = new LinkedHashMap<>();
+	private boolean built;
+	private boolean building;
+
+	/**
+	 * @param workspace
+	 * 		Workspace to index.
+	 */
+	public StringIndex(Workspace workspace) {
+		this.workspace = workspace;
+		workspace.getPrimary().getClasses().getPutListeners().add(putListener);
+		workspace.getPrimary().getClasses().getRemoveListeners().add(removeListener);
+	}
+
+	/**
+	 * Build the index if it has not been built yet. If another thread is building it, wait for it to finish.
+	 * <br>
+	 * Classes are read without holding the index's lock. Updates to the primary resource made in the meantime
+	 * are queued, and applied once the read classes are added.
+	 */
+	public void build() {
+		Map<String, byte[]> sources;
+		synchronized(this) {
+			if (!awaitBuild())
+				return;
+			building = true;
+			sources = new HashMap<>(workspace.getPrimary().getClasses());
+			// Skip classes that have been restored, unless they have changed since
+			for (String name : new ArrayList<>(classes.keySet()))
+				if (!sources.containsKey(name))
+					remove(name);
+			sources.entrySet().removeIf(e -> {
+				IndexedClass indexed = classes.get(e.getKey());
+				if (indexed == null)
+					return false;
+				if (indexed.matches(e.getValue()))
+					return true;
+				remove(e.getKey());
+				return false;
+			});
+		}
+		long start = System.currentTimeMillis();
+		List<IndexedClass> parsed = null;
+		try {
+			parsed = sources.entrySet().parallelStream()
+					.map(e -> parse(e.getKey(), e.getValue()))
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList());
+		} finally {
+			finishBuild(parsed);
+		}
+		debug("Indexed strings of {} classes in {}ms", parsed.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * @param key
+	 * 		Expected pattern.
+	 * @param mode
+	 * 		How to match strings.
+	 *
+	 * @return Locations of matching strings, ordered by class name and then by their order in the class.
+	 */
+	public List<Location> find(String key, StringMatchMode mode) {
+		build();
+		synchronized(this) {
+			BitSet matched = new BitSet();
+			switch (mode) {
+				case EQUALS:
+					int id = strings.getId(key);
+					if (id >= 0 && isPresent(id))
+						matched.set(id);
+					break;
+				case STARTS_WITH:
+					for (String text : sorted.tailSet(key, true)) {
+						if (!text.startsWith(key))
+							break;
+						matched.set(strings.getId(text));
+					}
+					break;
+				case CONTAINS:
+					if (key.length() >= GRAM) {
+						findSubstrings(key, matched);
+						break;
+					}
+					// Too short for trigrams, check each distinct string instead
+				default:
+					StringMatcher matcher = mode.compile(key);
+					for (String text : sorted)
+						if (matcher.match(text))
+							matched.set(strings.getId(text));
+			}
+			// Collect the classes containing any match, then the matching locations in each class
+			Set<String> names = new TreeSet<>();
+			for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1))
+				names.addAll(owners.get(i));
+			List<Location> locations = new ArrayList<>();
+			for (String name : names) {
+				IndexedClass indexed = classes.get(name);
+				for (int i = 0; i < indexed.locations.size(); i++)
+					if (matched.get(indexed.ids[i]))
+						locations.add(indexed.locations.get(i));
+			}
+			return locations;
+		}
+	}
+
+	/**
+	 * @return Names of classes with strings in annotations or bootstrap method arguments, which are not in the
+	 * index. Their indexed strings are still {@link #find(String, StringMatchMode) found}.
+	 */
+	public SortedSet<String> getUnindexed() {
+		build();
+		synchronized(this) {
+			return new TreeSet<>(unindexed);
+		}
+	}
+
+	/**
+	 * @return Locations of the strings of the indexed primary classes, as a map of class names to the
+	 * locations in each class. Classes with {@link #getUnindexed() unindexed strings} are left out, so they are
+	 * read again when a restored index is built. Empty if the index has not been built.
+	 */
+	public synchronized Map<String, List<Location>> export() {
+		Map<String, List<Location>> map = new HashMap<>();
+		if (!built)
+			return map;
+		Map<String, byte[]> primary = workspace.getPrimary().getClasses();
+		classes.forEach((name, indexed) -> {
+			if (!indexed.partial && indexed.matches(primary.get(name)))
+				map.put(name, indexed.locations);
+		});
+		return map;
+	}
+
+	/**
+	 * Add previously {@link #export() exported} locations of primary classes, so they do not need to be read
+	 * again when the index is built.
+	 *
+	 * @param locations
+	 * 		Map of class names to the locations of the strings in each class.
+	 */
+	public synchronized void restore(Map<String, List<Location>> locations) {
+		Map<String, byte[]> primary = workspace.getPrimary().getClasses();
+		locations.forEach((name, list) -> {
+			byte[] code = primary.get(name);
+			if (code != null) {
+				remove(name);
+				add(new IndexedClass(name, code, list, false));
+			}
+		});
+	}
+
+	/**
+	 * Stop following updates to the primary resource's classes.
+	 */
+	public void detach() {
+		workspace.getPrimary().getClasses().getPutListeners().remove(putListener);
+		workspace.getPrimary().getClasses().getRemoveListeners().remove(removeListener);
+	}
+
+	private void findSubstrings(String key, BitSet matched) {
+		// Only strings containing every trigram of the key can contain the key,
+		// so check the strings of the least common trigram
+		Postings candidates = null;
+		for (int i = 0; i + GRAM <= key.length(); i++) {
+			Postings postings = grams.get(gram(key, i));
+			if (postings == null)
+				return;
+			if (candidates == null || postings.size < candidates.size)
+				candidates = postings;
+		}
+		for (int i = 0; i < candidates.size; i++) {
+			int id = candidates.ids[i];
+			if (isPresent(id) && strings.getName(id).contains(key))
+				matched.set(id);
+		}
+	}
+
+	private boolean isPresent(int id) {
+		return id < owners.size() && !owners.get(id).isEmpty();
+	}
+
+	/**
+	 * @return {@code true} if the index should be built by the calling thread.
+	 * {@code false} if it has been built, possibly by another thread that was waited on.
+	 */
+	private boolean awaitBuild() {
+		while (building) {
+			try {
+				wait();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return !built;
+	}
+
+	private synchronized void finishBuild(List<IndexedClass> parsed) {
+		if (parsed != null) {
+			parsed.forEach(this::add);
+			// Apply the updates made while the classes were read
+			pending.forEach(this::update);
+			built = true;
+		}
+		pending.clear();
+		building = false;
+		notifyAll();
+	}
+
+	private synchronized void onPut(String name, byte[] code) {
+		if (building)
+			pending.put(name, code);
+		else if (built)
+			update(name, code);
+	}
+
+	private synchronized void onRemove(Object key) {
+		if (!(key instanceof String))
+			return;
+		if (building)
+			pending.put((String) key, null);
+		else if (built)
+			update((String) key, null);
+	}
+
+	private void update(String name, byte[] code) {
+		remove(name);
+		if (code != null) {
+			IndexedClass indexed = parse(name, code);
+			if (indexed != null)
+				add(indexed);
+		}
+		compactIfSparse();
+	}
+
+	private void compactIfSparse() {
+		int removed = strings.size() - sorted.size();
+		if (removed < COMPACT_MIN || removed < sorted.size())
+			return;
+		// Intern the strings of the indexed classes again, dropping those that are no longer in any class
+		List<IndexedClass> indexed = new ArrayList<>(classes.values());
+		classes.clear();
+		strings.clear();
+		owners.clear();
+		sorted.clear();
+		grams.clear();
+		gramsIndexed.clear();
+		unindexed.clear();
+		indexed.forEach(this::add);
+		debug("Compacted string index, dropped {} removed strings", removed);
+	}
+
+	private void add(IndexedClass indexed) {
+		int[] ids = indexed.ids = new int[indexed.locations.size()];
+		for (int i = 0; i < ids.length; i++) {
+			Location location = indexed.locations.get(i);
+			String text = location.getText();
+			int id = ids[i] = strings.intern(text);
+			while (owners.size() <= id)
+				owners.add(new HashSet<>());
+			Set<String> set = owners.get(id);
+			if (set.isEmpty())
+				sorted.add(text);
+			set.add(location.getOwner());
+			if (!gramsIndexed.get(id)) {
+				gramsIndexed.set(id);
+				Set<Long> seen = new HashSet<>();
+				for (int j = 0; j + GRAM <= text.length(); j++) {
+					long gram = gram(text, j);
+					if (seen.add(gram))
+						grams.computeIfAbsent(gram, g -> new Postings()).add(id);
+				}
+			}
+		}
+		if (indexed.partial)
+			unindexed.add(indexed.name);
+		classes.put(indexed.name, indexed);
+	}
+
+	private void remove(String name) {
+		IndexedClass indexed = classes.remove(name);
+		if (indexed == null)
+			return;
+		unindexed.remove(name);
+		for (int id : indexed.ids) {
+			Set<String> set = owners.get(id);
+			if (set.remove(name) && set.isEmpty())
+				sorted.remove(strings.getName(id));
+		}
+	}
+
+	private static long gram(String text, int offset) {
+		return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) |
+				text.charAt(offset + 2);
+	}
+
+	private static IndexedClass parse(String name, byte[] code) {
+		StringVisitor visitor = new StringVisitor(name);
+		try {
+			// Instruction positions are those of the class read without debug information,
+			// matching a search that skips debug information.
+			new ClassReader(code).accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		} catch (Exception ex) {
+			debug("Skipping strings of unreadable class '{}'", name);
+			return null;
+		}
+		return new IndexedClass(name, code, visitor.locations, visitor.partial);
+	}
+
+	/**
+	 * Location of a string constant.
+	 */
+	public static class Location {
+		private final String text;
+		private final String owner;
+		private final int ownerAccess;
+		private final int memberAccess;
+		private final String memberName;
+		private final String memberDesc;
+		private final int insn;
+
+		/**
+		 * @param text
+		 * 		String constant.
+		 * @param owner
+		 * 		Name of class containing the string.
+		 * @param ownerAccess
+		 * 		Class modifiers.
+		 * @param memberAccess
+		 * 		Modifiers of the member containing the string.
+		 * @param memberName
+		 * 		Name of the member containing the string.
+		 * @param memberDesc
+		 * 		Descriptor of the member containing the string.
+		 * @param insn
+		 * 		Index of the instruction in the method, or {@code -1} for field constant values.
+		 */
+		public Location(String text, String owner, int ownerAccess, int memberAccess, String memberName,
+						String memberDesc, int insn) {
+			this.text = text;
+			this.owner = owner;
+			this.ownerAccess = ownerAccess;
+			this.memberAccess = memberAccess;
+			this.memberName = memberName;
+			this.memberDesc = memberDesc;
+			this.insn = insn;
+		}
+
+		/**
+		 * @return String constant.
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * @return Name of class containing the string.
+		 */
+		public String getOwner() {
+			return owner;
+		}
+
+		/**
+		 * @return Class modifiers.
+		 */
+		public int getOwnerAccess() {
+			return ownerAccess;
+		}
+
+		/**
+		 * @return Modifiers of the member containing the string.
+		 */
+		public int getMemberAccess() {
+			return memberAccess;
+		}
+
+		/**
+		 * @return Name of the member containing the string.
+		 */
+		public String getMemberName() {
+			return memberName;
+		}
+
+		/**
+		 * @return Descriptor of the member containing the string.
+		 */
+		public String getMemberDesc() {
+			return memberDesc;
+		}
+
+		/**
+		 * @return Index of the instruction in the method, or {@code -1} for field constant values.
+		 */
+		public int getInsn() {
+			return insn;
+		}
+
+		/**
+		 * @return Search context of the location.
+		 */
+		public Context<?> toContext() {
+			Context.MemberContext member = Context.withClass(ownerAccess, owner)
+					.withMember(memberAccess, memberName, memberDesc);
+			return insn < 0 ? member : member.withInsn(new LdcInsnNode(text), insn);
+		}
+	}
+
+	/**
+	 * Indexed version of a class and the ids of its strings.
+	 */
+	private static class IndexedClass {
+		private final String name;
+		private final ContentStamp stamp;
+		private final List<Location> locations;
+		// Whether the class has strings that are not indexed
+		private final boolean partial;
+		private int[] ids;
+
+		private IndexedClass(String name, byte[] code, List<Location> locations, boolean partial) {
+			this.stamp = ContentStamp.of(code);
+			this.name = name;
+			this.locations = locations;
+			this.partial = partial;
+		}
+
+		private boolean matches(byte[] other) {
+			return stamp.matches(other);
+		}
+	}
+
+	/**
+	 * Visitor that records the locations of the strings of a class, and whether it has strings in annotations
+	 * or bootstrap method arguments. Those are found by {@link SearchAnnotationVisitor} and
+	 * {@link SearchMethodVisitor} in the same places visited here.
+	 */
+	private static class StringVisitor extends ClassVisitor {
+		private final List<Location> locations = new ArrayList<>();
+		private final String name;
+		private int classAccess;
+		private boolean partial;
+
+		private StringVisitor(String name) {
+			super(Recaf.ASM_VERSION);
+			this.name = name;
+		}
+
+		@Override
+		public void visit(int version, int acc, String cname, String sig, String sup, String[] itfs) {
+			classAccess = acc;
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+			return annotations();
+		}
+
+		@Override
+		public AnnotationVisitor visitTypeAnnotation(int ref, TypePath typePath, String descriptor, boolean visible) {
+			return annotations();
+		}
+
+		@Override
+		public FieldVisitor visitField(int acc, String fname, String fdesc, String sig, Object value) {
+			if (value instanceof String)
+				locations.add(new Location((String) value, name, classAccess, acc, fname, fdesc, -1));
+			return new FieldVisitor(api) {
+				@Override
+				public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+					return annotations();
+				}
+
+				@Override
+				public AnnotationVisitor visitTypeAnnotation(int ref, TypePath path, String descriptor,
+															 boolean visible) {
+					return annotations();
+				}
+			};
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int acc, String mname, String mdesc, String sig, String[] exc) {
+			return new Method(acc, mname, mdesc);
+		}
+
+		/**
+		 * @return Visitor flagging the class if an annotation has strings, or {@code null} if it is
+		 * already flagged.
+		 */
+		private AnnotationVisitor annotations() {
+			if (partial)
+				return null;
+			return new AnnotationVisitor(api) {
+				@Override
+				public void visit(String aname, Object value) {
+					if (value instanceof String)
+						partial = true;
+				}
+
+				@Override
+				public void visitEnum(String aname, String descriptor, String value) {
+					partial = true;
+				}
+
+				@Override
+				public AnnotationVisitor visitAnnotation(String aname, String descriptor) {
+					return this;
+				}
+
+				@Override
+				public AnnotationVisitor visitArray(String aname) {
+					return this;
+				}
+			};
+		}
+
+		/**
+		 * Records strings in method code. Instructions are collected like in {@link SearchMethodVisitor},
+		 * so that the recorded instruction indices match.
+		 */
+		private class Method extends MethodNode {
+			private Method(int access, String name, String desc) {
+				super(Recaf.ASM_VERSION);
+				this.access = access;
+				this.name = name;
+				this.desc = desc;
+			}
+
+			@Override
+			public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+				return annotations();
+			}
+
+			@Override
+			public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor,
+														 boolean visible) {
+				return annotations();
+			}
+
+			@Override
+			public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+				return annotations();
+			}
+
+			@Override
+			public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String descriptor,
+														 boolean visible) {
+				return annotations();
+			}
+
+			@Override
+			public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String descriptor,
+															 boolean visible) {
+				return annotations();
+			}
+
+			@Override
+			public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start,
+																  Label[] end, int[] index, String descriptor,
+																  boolean visible) {
+				return annotations();
+			}
+
+			@Override
+			public void visitInvokeDynamicInsn(String iname, String descriptor, Handle handle, Object... args) {
+				super.visitInvokeDynamicInsn(iname, descriptor, handle, args);
+				for (Object arg : args)
+					if (arg instanceof String)
+						partial = true;
+			}
+
+			@Override
+			public void visitLdcInsn(Object value) {
+				super.visitLdcInsn(value);
+				if (value instanceof String)
+					locations.add(new Location((String) value, StringVisitor.this.name, classAccess, access,
+							name, desc, instructions.size() - 1));
+			}
+		}
+	}
+
+	/**
+	 * Growable list of the ids of strings containing a trigram.
+	 */
+	private static class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		private void add(int id) {
+			if (size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+	}
+}
@@ -3,7 +3,7 @@ package me.coley.recaf.search;
 import jregex.Pattern;
 import me.coley.recaf.util.Log;
 
-import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 /**
  * String match implementations.
@@ -14,37 +14,54 @@ public enum StringMatchMode {
 	/**
 	 * String match via equality.
 	 */
-	EQUALS((key, text) -> text.equals(key)),
+	EQUALS(key -> key::equals),
 	/**
 	 * String match via containment.
 	 */
-	CONTAINS((key, text) -> text.contains(key)),
+	CONTAINS(key -> text -> text.contains(key)),
 	/**
 	 * String match via same prefix.
 	 */
-	STARTS_WITH((key, text) -> text.startsWith(key)),
+	STARTS_WITH(key -> text -> text.startsWith(key)),
 	/**
 	 * String match via same suffix.
 	 */
-	ENDS_WITH((key, text) -> text.endsWith(key)),
+	ENDS_WITH(key -> text -> text.endsWith(key)),
 	/**
 	 * String match via regular expression matching.
 	 */
-	REGEX((key, text) -> regmatch(text, key));
+	REGEX(StringMatchMode::regex);
 
-	private static boolean regmatch(String text, String key) {
+	private static final String REGEX_META = "\\^$.|?*+()[]{}";
+
+	private static StringMatcher regex(String key) {
+		// Patterns without special characters only match themselves, which String.contains finds faster
+		if (key.chars().noneMatch(c -> REGEX_META.indexOf(c) >= 0))
+			return text -> text.contains(key);
 		try {
-			return new Pattern(key).matcher(text).find();
+			Pattern pattern = new Pattern(key);
+			return text -> pattern.matcher(text).find();
 		} catch(Exception ex) {
 			Log.error(ex, "Invalid pattern: '{}'", key);
-			return false;
+			return text -> false;
 		}
 	}
 
-	private final BiPredicate<String, String> matcher;
+	private final Function<String, StringMatcher> compiler;
+
+	StringMatchMode(Function<String, StringMatcher> compiler)  {
+		this.compiler = compiler;
+	}
 
-	StringMatchMode(BiPredicate<String, String> matcher)  {
-		this.matcher = matcher;
+	/**
+	 * @param key
+	 * 		Expected pattern.
+	 *
+	 * @return Matcher of texts against the given key. Queries should compile their keys once
+	 * instead of using {@link #match(String, String)} for each text.
+	 */
+	public StringMatcher compile(String key) {
+		return compiler.apply(key);
 	}
 
 	/**
@@ -56,6 +73,6 @@ public enum StringMatchMode {
 	 * @return {@code true} if the given text matches with the given key.
 	 */
 	public boolean match(String key, String text) {
-		return matcher.test(key, text);
+		return compile(key).match(text);
 	}
 }
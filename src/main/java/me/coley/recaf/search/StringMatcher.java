@@ -0,0 +1,18 @@
+package me.coley.recaf.search;
+
+/**
+ * Matcher of a single key, compiled once by {@link StringMatchMode#compile(String)} so that
+ * the key is not parsed again for each text that is checked.
+ *
+ * @author Matt
+ */
+@FunctionalInterface
+public interface StringMatcher {
+	/**
+	 * @param text
+	 * 		Text to test for a match.
+	 *
+	 * @return {@code true} if the given text matches with the compiled key.
+	 */
+	boolean match(String text);
+}
@@ -7,6 +7,7 @@ package me.coley.recaf.search;
  */
 public class StringQuery extends Query {
 	private final String pattern;
+	private final StringMatcher matcher;
 
 	/**
 	 * Constructs a string matching query.
@@ -19,6 +20,25 @@ public class StringQuery extends Query {
 	public StringQuery(String pattern, StringMatchMode stringMode) {
 		super(QueryType.CLASS_NAME, stringMode);
 		this.pattern = pattern;
+		this.matcher = stringMode.compile(pattern);
+	}
+
+	private StringQuery(StringQuery other) {
+		super(other);
+		this.pattern = other.pattern;
+		this.matcher = other.matcher;
+	}
+
+	@Override
+	public StringQuery copy() {
+		return new StringQuery(this);
+	}
+
+	/**
+	 * @return String pattern.
+	 */
+	public String getPattern() {
+		return pattern;
 	}
 
 	/**
@@ -28,7 +48,7 @@ public class StringQuery extends Query {
 	 * 		Text to match.
 	 */
 	public void match(String text) {
-		if(stringMode.match(pattern, text)) {
+		if(matcher.match(text)) {
 			getMatched().add(new StringResult(text));
 		}
 	}
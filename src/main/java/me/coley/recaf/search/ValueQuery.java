@@ -19,6 +19,16 @@ public class ValueQuery extends Query {
 		this.value = value;
 	}
 
+	private ValueQuery(ValueQuery other) {
+		super(other);
+		this.value = other.value;
+	}
+
+	@Override
+	public ValueQuery copy() {
+		return new ValueQuery(this);
+	}
+
 	/**
 	 * Adds a result if the given value matches the specified value.
 	 *
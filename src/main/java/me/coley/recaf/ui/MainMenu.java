@@ -307,7 +307,7 @@ public class MainMenu extends MenuBar {
 			for (File file : files) {
 				try {
 					JavaResource resource = FileSystemResource.of(file.toPath());
-
+					resource.setOffHeap(workspace.isOffHeapStorage());
 					workspace.getLibraries().add(resource);
 					controller.windows().getMainWindow().getNavigator().refresh();
 				} catch(Exception ex) {
@@ -76,7 +76,7 @@ public class ViewportTabs extends SplitableTabPane {
 		ClassViewport view = new ClassViewport(controller, resource, name);
 		view.updateView();
 		Tab tab = createTab(name, view);
-		int access = ClassUtil.getAccess(resource.getClasses().get(name));
+		int access = ClassUtil.getAccess(resource.getClassHeader(name));
 		tab.setGraphic(UiUtil.createClassGraphic(access));
 		// Setup context menu
 		tab.setContextMenu(ContextBuilder.menu().view(view).ofClassTab(name));
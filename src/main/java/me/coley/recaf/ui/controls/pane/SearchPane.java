@@ -180,7 +180,7 @@ public class SearchPane extends SplitPane {
 	}
 
 	private SearchCollector buildDefinitionSearch(Workspace workspace) {
-		return SearchBuilder.in(workspace)
+		return SearchBuilder.in(workspace).parallel()
 				.skipDebug()
 				.skipCode()
 				.query(new MemberDefinitionQuery(
@@ -191,7 +191,7 @@ public class SearchPane extends SplitPane {
 	}
 
 	private SearchCollector buildClassReferenceSearch(Workspace workspace) {
-		return SearchBuilder.in(workspace)
+		return SearchBuilder.in(workspace).parallel().indexed()
 				.query(new ClassReferenceQuery(
 						input("ui.search.cls_reference.name"), input("ui.search.matchmode")))
 				.skipPackages(input("ui.search.skippackages"))
@@ -199,7 +199,7 @@ public class SearchPane extends SplitPane {
 	}
 
 	private SearchCollector buildMemberReferenceSearch(Workspace workspace) {
-		return SearchBuilder.in(workspace)
+		return SearchBuilder.in(workspace).parallel().indexed()
 				.query(new MemberReferenceQuery(
 						input("ui.search.mem_reference.owner"), input("ui.search.mem_reference.name"),
 						input("ui.search.mem_reference.desc"), input("ui.search.matchmode")))
@@ -208,7 +208,7 @@ public class SearchPane extends SplitPane {
 	}
 
 	private SearchCollector buildStringSearch(Workspace workspace) {
-		return SearchBuilder.in(workspace)
+		return SearchBuilder.in(workspace).parallel().indexed()
 				.skipDebug()
 				.query(new StringQuery(input("ui.search.string"), input("ui.search.matchmode")))
 				.skipPackages(input("ui.search.skippackages"))
@@ -216,14 +216,14 @@ public class SearchPane extends SplitPane {
 	}
 
 	private SearchCollector buildValueSearch(Workspace workspace) {
-		return SearchBuilder.in(workspace)
+		return SearchBuilder.in(workspace).parallel()
 				.skipDebug()
 				.skipPackages(input("ui.search.skippackages"))
 				.query(new ValueQuery(input("ui.search.value"))).build();
 	}
 
 	private SearchCollector buildInsnSearch(Workspace workspace) {
-		return SearchBuilder.in(workspace)
+		return SearchBuilder.in(workspace).parallel()
 				.skipPackages(input("ui.search.skippackages"))
 				.query(new InsnTextQuery(input("ui.search.insn.lines"), input("ui.search.matchmode"))).build();
 	}
@@ -102,7 +102,7 @@ public class JavaEditorPane extends EditorPane<JavaErrorHandling, JavaContextHan
 	public Map<String, byte[]> save(String name) {
 		if (!canCompile())
 			throw new UnsupportedOperationException("Recompilation not supported in read-only mode");
-		int version = ClassUtil.getVersion(resource.getClasses().get(name));
+		int version = ClassUtil.getVersion(resource.getClassHeader(name));
 		JavacCompiler javac = new JavacCompiler();
 		javac.addToClassPath(resource);
 		javac.addToClassPath(controller.getWorkspace().getLibraries());
@@ -89,7 +89,7 @@ public class JavaResourceCell extends TreeCell {
 		// Draw classes
 		CLASS_TO_THING.put(ClassItem.class, cell -> {
 			ClassItem ci = (ClassItem) cell.getTreeItem();
-			int access = ClassUtil.getAccess(ci.resource().getClasses().get(ci.getClassName()));
+			int access = ClassUtil.getAccess(ci.resource().getClassHeader(ci.getClassName()));
 			String text = ci.getLocalName();
 			Node g = UiUtil.createClassGraphic(access);
 			cell.getStyleClass().add("tree-cell-class");
@@ -150,7 +150,7 @@ public class JavaResourceCell extends TreeCell {
 			String desc = li.getLocal().getDescriptor();
 			Type type = Type.getType(desc);
 			String className = type.getInternalName();
-			int access = ClassUtil.getAccess(li.resource().getClasses().get(className));
+			int access = ClassUtil.getAccess(li.resource().getClassHeader(className));
 			String text = "LOCAL[" + li.getLocal().getIndex() + "] " + li.getLocalName() + " - " +
 					li.getLocal().getDescriptor();
 			Node g = UiUtil.createClassGraphic(access);
@@ -164,7 +164,7 @@ public class JavaResourceCell extends TreeCell {
 		CLASS_TO_THING.put(CatchItem.class, cell -> {
 			CatchItem ci = (CatchItem) cell.getTreeItem();
 			String className = ci.getCatchType();
-			int access = ClassUtil.getAccess(ci.resource().getClasses().get(className));
+			int access = ClassUtil.getAccess(ci.resource().getClassHeader(className));
 			String text = "CATCH " + className;
 			Node g = UiUtil.createClassGraphic(access);
 			cell.getStyleClass().add("tree-cell-catch");
@@ -121,8 +121,8 @@ public class ClassViewport extends EditorViewport {
 					// SUPPLIER: Fetch decompiled code
 					String decompilerPrefix = (controller.config().decompile().showName ?
 							"// Decompiled with: " + decompiler.getNameAndVersion() + "\n" : "");
-					byte[] clazz = controller.getWorkspace().getRawClass(path);
-					int version = ClassUtil.getVersion(clazz) - ClassUtil.VERSION_OFFSET;
+					int version = ClassUtil.getVersion(controller.getWorkspace().getClassHeader(path)) -
+							ClassUtil.VERSION_OFFSET;
 					String classVersionPrefix = "// Class Version: " + version + "\n";
 					String decompile = decompilerPrefix + classVersionPrefix +
 							decompiler.create(controller).decompile(path);
@@ -0,0 +1,175 @@
+package me.coley.recaf.util;
+
+import me.coley.recaf.util.struct.Pair;
+
+import java.util.*;
+
+/**
+ * Summary of a class's declaration, so that common lookups do not need to parse the class again.
+ * <br>
+ * Headers are created once while classes are loaded, see {@link me.coley.recaf.workspace.EntryLoader}.
+ *
+ * @author Matt
+ * @see ClassUtil#getHeader(byte[])
+ */
+public class ClassHeader {
+	private final String name;
+	private final String superName;
+	private final List<String> interfaces;
+	private final int access;
+	private final int version;
+	private final String sourceFile;
+	private final String[] fieldDefs;
+	private final String[] methodDefs;
+
+	/**
+	 * @param name
+	 * 		Internal class name.
+	 * @param superName
+	 * 		Internal name of the parent class. May be {@code null} for {@code java/lang/Object}.
+	 * @param interfaces
+	 * 		Internal names of implemented interfaces.
+	 * @param access
+	 * 		Class access flags.
+	 * @param version
+	 * 		Class major version.
+	 * @param sourceFile
+	 * 		Name of the source file. May be {@code null}.
+	 * @param fieldDefs
+	 * 		Declared fields, as alternating names and descriptors.
+	 * @param methodDefs
+	 * 		Declared methods, as alternating names and descriptors.
+	 */
+	public ClassHeader(String name, String superName, String[] interfaces, int access, int version,
+					   String sourceFile, String[] fieldDefs, String[] methodDefs) {
+		this.name = name;
+		this.superName = superName;
+		this.interfaces = interfaces == null || interfaces.length == 0 ? Collections.emptyList() :
+				Collections.unmodifiableList(Arrays.asList(interfaces.clone()));
+		this.access = access;
+		this.version = version;
+		this.sourceFile = sourceFile;
+		this.fieldDefs = fieldDefs;
+		this.methodDefs = methodDefs;
+	}
+
+	/**
+	 * @return Internal class name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Internal name of the parent class. May be {@code null} for {@code java/lang/Object}.
+	 */
+	public String getSuperName() {
+		return superName;
+	}
+
+	/**
+	 * @return Internal names of implemented interfaces.
+	 */
+	public List<String> getInterfaces() {
+		return interfaces;
+	}
+
+	/**
+	 * @return Class access flags.
+	 */
+	public int getAccess() {
+		return access;
+	}
+
+	/**
+	 * @return Class major version.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return Name of the source file. May be {@code null}.
+	 */
+	public String getSourceFile() {
+		return sourceFile;
+	}
+
+	/**
+	 * @return Number of declared fields.
+	 */
+	public int getFieldCount() {
+		return fieldDefs.length / 2;
+	}
+
+	/**
+	 * @return Number of declared methods.
+	 */
+	public int getMethodCount() {
+		return methodDefs.length / 2;
+	}
+
+	/**
+	 * @return Declared fields as pairs of names and descriptors.
+	 */
+	public List<Pair<String, String>> getFieldDefs() {
+		return toPairs(fieldDefs);
+	}
+
+	/**
+	 * @return Declared methods as pairs of names and descriptors.
+	 */
+	public List<Pair<String, String>> getMethodDefs() {
+		return toPairs(methodDefs);
+	}
+
+	/**
+	 * @param name
+	 * 		Method name.
+	 * @param desc
+	 * 		Method descriptor.
+	 *
+	 * @return {@code true} if the class declares the method.
+	 */
+	public boolean hasMethod(String name, String desc) {
+		return contains(methodDefs, name, desc);
+	}
+
+	/**
+	 * @param name
+	 * 		Field name.
+	 * @param desc
+	 * 		Field descriptor.
+	 *
+	 * @return {@code true} if the class declares the field.
+	 */
+	public boolean hasField(String name, String desc) {
+		return contains(fieldDefs, name, desc);
+	}
+
+	/**
+	 * @return {@code true} if the class is an interface.
+	 */
+	public boolean isInterface() {
+		return AccessFlag.isInterface(access);
+	}
+
+	private static List<Pair<String, String>> toPairs(String[] defs) {
+		List<Pair<String, String>> list = new ArrayList<>(defs.length / 2);
+		for (int i = 0; i < defs.length; i += 2)
+			list.add(new Pair<>(defs[i], defs[i + 1]));
+		return list;
+	}
+
+	private static boolean contains(String[] defs, String name, String desc) {
+		for (int i = 0; i < defs.length; i += 2)
+			if (defs[i].equals(name) && defs[i + 1].equals(desc))
+				return true;
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -279,6 +279,16 @@ public class ClassUtil {
 		} catch(Exception ex) { /* Bad class file? */ return 0;}
 	}
 
+	/**
+	 * @param header
+	 * 		Class header, see {@link me.coley.recaf.workspace.JavaResource#getClassHeader(String)}.
+	 *
+	 * @return Class access. If the header is {@code null} then return is {@code 0}.
+	 */
+	public static int getAccess(ClassHeader header) {
+		return header == null ? 0 : header.getAccess();
+	}
+
 	/**
 	 * @param code
 	 * 		Class bytecode.
@@ -291,6 +301,65 @@ public class ClassUtil {
 		} catch(Exception ex) { /* Bad class file? */ return Opcodes.V1_8;}
 	}
 
+	/**
+	 * @param header
+	 * 		Class header, see {@link me.coley.recaf.workspace.JavaResource#getClassHeader(String)}.
+	 *
+	 * @return Class major version. If the header is {@code null} then return is {@link Opcodes#V1_8}.
+	 */
+	public static int getVersion(ClassHeader header) {
+		return header == null ? Opcodes.V1_8 : header.getVersion();
+	}
+
+	/**
+	 * @param code
+	 * 		Class bytecode.
+	 *
+	 * @return Summary of the class declaration. {@code null} if a parse error occurred.
+	 */
+	public static ClassHeader getHeader(byte[] code) {
+		try {
+			ClassReader reader = new ClassReader(code);
+			return toHeader(reader, getNode(reader, SKIP_CODE | SKIP_FRAMES));
+		} catch(Exception ex) { /* Bad class file? */ return null;}
+	}
+
+	/**
+	 * Parses the entire class, as done by {@link #isValidClass(byte[])}, and summarizes it in the same pass.
+	 *
+	 * @param code
+	 * 		Potential class bytecode.
+	 *
+	 * @return Summary of the class declaration. {@code null} if the class cannot be parsed by ASM.
+	 */
+	public static ClassHeader getValidatedHeader(byte[] code) {
+		if (!isClass(code))
+			return null;
+		try {
+			ClassReader reader = new ClassReader(code);
+			return toHeader(reader, getNode(reader, SKIP_FRAMES));
+		} catch(Throwable t) {
+			return null;
+		}
+	}
+
+	private static ClassHeader toHeader(ClassReader reader, ClassNode node) {
+		String[] fieldDefs = new String[node.fields.size() * 2];
+		for (int i = 0; i < node.fields.size(); i++) {
+			FieldNode field = node.fields.get(i);
+			fieldDefs[i * 2] = field.name;
+			fieldDefs[i * 2 + 1] = field.desc;
+		}
+		String[] methodDefs = new String[node.methods.size() * 2];
+		for (int i = 0; i < node.methods.size(); i++) {
+			MethodNode method = node.methods.get(i);
+			methodDefs[i * 2] = method.name;
+			methodDefs[i * 2 + 1] = method.desc;
+		}
+		return new ClassHeader(node.name, node.superName, node.interfaces.toArray(new String[0]),
+				reader.getAccess(), node.version & 0xFFFF, node.sourceFile, fieldDefs, methodDefs);
+	}
+
 	/**
 	 * @param data
 	 * 		Potential class bytecode.
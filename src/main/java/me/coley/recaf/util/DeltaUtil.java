@@ -0,0 +1,164 @@
+package me.coley.recaf.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Binary delta utilities. A delta describes how to build some target content out of a source,
+ * as a sequence of copies from the source and literal inserts.
+ * <br>
+ * Matches are found by indexing fixed-size blocks of the source, which works well for content that
+ * shares long runs with its source, such as two revisions of the same class.
+ *
+ * @author Matt
+ */
+public final class DeltaUtil {
+	private static final int BLOCK = 16;
+	private static final int OP_COPY = 0;
+	private static final int OP_INSERT = 1;
+
+	private DeltaUtil() {
+	}
+
+	/**
+	 * @param source
+	 * 		Content to build the target from.
+	 * @param target
+	 * 		Content to describe.
+	 *
+	 * @return Delta that transforms the source into the target.
+	 */
+	public static byte[] diff(byte[] source, byte[] target) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(16, target.length / 8));
+		writeVarInt(out, target.length);
+		int[] table = index(source);
+		int mask = table.length - 1;
+		int insertStart = 0;
+		int i = 0;
+		while (table.length > 0 && i + BLOCK <= target.length) {
+			int candidate = table[hash(target, i) & mask] - 1;
+			if (candidate < 0 || !matches(source, candidate, target, i)) {
+				i++;
+				continue;
+			}
+			// Extend the match backwards over pending literals, then forwards as far as possible
+			int start = i;
+			int from = candidate;
+			while (start > insertStart && from > 0 && source[from - 1] == target[start - 1]) {
+				start--;
+				from--;
+			}
+			int end = i + BLOCK;
+			int sourceEnd = candidate + BLOCK;
+			while (end < target.length && sourceEnd < source.length && source[sourceEnd] == target[end]) {
+				end++;
+				sourceEnd++;
+			}
+			writeInsert(out, target, insertStart, start);
+			out.write(OP_COPY);
+			writeVarInt(out, from);
+			writeVarInt(out, end - start);
+			insertStart = end;
+			i = end;
+		}
+		writeInsert(out, target, insertStart, target.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * @param source
+	 * 		Content the delta was created from.
+	 * @param delta
+	 * 		Delta created by {@link #diff(byte[], byte[])}.
+	 *
+	 * @return Target content described by the delta.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the delta is malformed, or does not belong to the source.
+	 */
+	public static byte[] patch(byte[] source, byte[] delta) {
+		int[] pos = new int[1];
+		int size = readVarInt(delta, pos);
+		if (size < 0)
+			throw new IllegalArgumentException("Malformed delta length");
+		byte[] target = new byte[size];
+		int offset = 0;
+		try {
+			while (pos[0] < delta.length) {
+				int op = delta[pos[0]++];
+				if (op == OP_COPY) {
+					int from = readVarInt(delta, pos);
+					int length = readVarInt(delta, pos);
+					System.arraycopy(source, from, target, offset, length);
+					offset += length;
+				} else if (op == OP_INSERT) {
+					int length = readVarInt(delta, pos);
+					System.arraycopy(delta, pos[0], target, offset, length);
+					pos[0] += length;
+					offset += length;
+				} else {
+					throw new IllegalArgumentException("Unknown delta operation: " + op);
+				}
+			}
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IllegalArgumentException("Delta does not match the source", ex);
+		}
+		if (offset != target.length)
+			throw new IllegalArgumentException("Delta is truncated");
+		return target;
+	}
+
+	private static int[] index(byte[] source) {
+		int blocks = source.length / BLOCK;
+		if (blocks == 0)
+			return new int[0];
+		int[] table = new int[Integer.highestOneBit(blocks) << 2];
+		int mask = table.length - 1;
+		// Offsets are stored plus one so that zero marks an empty slot
+		for (int p = 0; p + BLOCK <= source.length; p += BLOCK)
+			table[hash(source, p) & mask] = p + 1;
+		return table;
+	}
+
+	private static int hash(byte[] data, int offset) {
+		int h = 0;
+		for (int k = 0; k < BLOCK; k++)
+			h = 31 * h + (data[offset + k] & 0xFF);
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(byte[] source, int sourceOffset, byte[] target, int targetOffset) {
+		for (int k = 0; k < BLOCK; k++)
+			if (source[sourceOffset + k] != target[targetOffset + k])
+				return false;
+		return true;
+	}
+
+	private static void writeInsert(ByteArrayOutputStream out, byte[] target, int start, int end) {
+		if (end <= start)
+			return;
+		out.write(OP_INSERT);
+		writeVarInt(out, end - start);
+		out.write(target, start, end - start);
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(byte[] data, int[] pos) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (pos[0] >= data.length)
+				throw new IllegalArgumentException("Delta is truncated");
+			int b = data[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IllegalArgumentException("Malformed delta length");
+	}
+}
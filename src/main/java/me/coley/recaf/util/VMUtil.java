@@ -13,6 +13,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
@@ -336,6 +338,37 @@ public final class VMUtil {
         }
     }
 
+    /**
+     * Releases the memory mapping of a buffer right away, instead of once it is garbage collected.
+     * Until then the mapped file stays locked on some platforms, such as Windows.
+     * The buffer, and any views of it, must not be used afterwards.
+     *
+     * @param buffer
+     *      Mapped buffer to release.
+     *
+     * @return {@code true} if the mapping was released.
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            if (getVmVersion() >= 9) {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+            } else {
+                Method method = buffer.getClass().getMethod("cleaner");
+                method.setAccessible(true);
+                Object cleaner = method.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            Log.debug("Could not release mapped buffer: {}", ex.toString());
+            return false;
+        }
+    }
+
     /**
      * A set that discards it's elements upon adding.
      * This class is used to prevent "Duplicate zip entry: "
@@ -0,0 +1,251 @@
+package me.coley.recaf.util.struct;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe {@link ListeningMap}.
+ * <ul>
+ * <li>Updates are serialized. Each update and the delivery of its listener calls finish before the next
+ * update starts, so listeners see updates in the same order they are applied to the map.</li>
+ * <li>As with {@link ListeningMap}, listeners are called before the map is updated. They are not called
+ * while holding the lock used by lookups, so reads from other threads never wait on listeners.</li>
+ * <li>Conditional updates such as {@link #putIfAbsent(Object, Object)} and
+ * {@link #replace(Object, Object, Object)} are atomic, and only call listeners when the map changes.
+ * {@link #compute(Object, BiFunction)}, {@link #computeIfPresent(Object, BiFunction)},
+ * {@link #merge(Object, Object, BiFunction)}, and {@link #replaceAll(BiFunction)} are atomic as well.</li>
+ * <li>Listeners may be registered and removed while updates are in progress.</li>
+ * <li>Views returned by {@link #keySet()}, {@link #values()}, and {@link #entrySet()} are weakly consistent
+ * when the backing map is a {@link ConcurrentMap}. Otherwise they are snapshots.</li>
+ * </ul>
+ * Lookups of {@code null} keys are treated as misses, even when backed by a {@link ConcurrentMap}.
+ * <br>
+ * Listeners may read the map, and update it from the same thread. They should not block on other threads
+ * that are waiting to update it, since those wait for the listeners to finish.
+ *
+ * @param <K> Key type of map.
+ * @param <V> Value type of map.
+ *
+ * @author Matt
+ */
+public class ConcurrentListeningMap<K, V> extends ListeningMap<K, V> {
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ReentrantLock updates = new ReentrantLock();
+
+	/**
+	 * Constructs a concurrent listening map without backing.
+	 */
+	public ConcurrentListeningMap() {
+		super(new CopyOnWriteArraySet<>(), new CopyOnWriteArraySet<>(), new CopyOnWriteArraySet<>());
+	}
+
+	@Override
+	public void setBacking(Map<K, V> backing) {
+		update(() -> write(() -> {
+			super.setBacking(backing);
+			return null;
+		}));
+	}
+
+	@Override
+	public Map<K, V> getBacking() {
+		return read(map -> map);
+	}
+
+	@Override
+	public boolean isBacked() {
+		return read(Objects::nonNull);
+	}
+
+	@Override
+	public V put(K key, V value) {
+		return update(() -> {
+			getPutListeners().forEach(listener -> listener.accept(key, value));
+			return write(() -> super.getBacking().put(key, value));
+		});
+	}
+
+	@Override
+	public V remove(Object key) {
+		return update(() -> {
+			getRemoveListeners().forEach(listener -> listener.accept(key));
+			return write(() -> super.getBacking().remove(key));
+		});
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		return update(() -> {
+			if (!containsKey(key) || !Objects.equals(get(key), value))
+				return false;
+			remove(key);
+			return true;
+		});
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		update(() -> {
+			super.putAll(m);
+			return null;
+		});
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		return update(() -> {
+			V current = get(key);
+			return current == null ? put(key, value) : current;
+		});
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		return update(() -> {
+			if (!containsKey(key) || !Objects.equals(get(key), oldValue))
+				return false;
+			put(key, newValue);
+			return true;
+		});
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		return update(() -> containsKey(key) ? put(key, value) : null);
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		return update(() -> {
+			V current = get(key);
+			if (current != null)
+				return current;
+			V value = mappingFunction.apply(key);
+			if (value != null)
+				put(key, value);
+			return value;
+		});
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		return update(() -> super.computeIfPresent(key, remappingFunction));
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		return update(() -> super.compute(key, remappingFunction));
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		return update(() -> super.merge(key, value, remappingFunction));
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		update(() -> {
+			super.replaceAll(function);
+			return null;
+		});
+	}
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		return read(map -> isAbsentKey(map, key) ? defaultValue : map.getOrDefault(key, defaultValue));
+	}
+
+	@Override
+	public V get(Object key) {
+		return read(map -> isAbsentKey(map, key) ? null : map.get(key));
+	}
+
+	@Override
+	public int size() {
+		return read(Map::size);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return read(Map::isEmpty);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return read(map -> !isAbsentKey(map, key) && map.containsKey(key));
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return read(map -> map.containsValue(value));
+	}
+
+	@Override
+	public void clear() {
+		update(() -> {
+			getClearListeners().forEach(Runnable::run);
+			return write(() -> {
+				Map<K, V> backing = super.getBacking();
+				if (backing != null)
+					backing.clear();
+				return null;
+			});
+		});
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return read(map -> map instanceof ConcurrentMap ? map.keySet() :
+				Collections.unmodifiableSet(new HashSet<>(map.keySet())));
+	}
+
+	@Override
+	public Collection<V> values() {
+		return read(map -> map instanceof ConcurrentMap ? map.values() :
+				Collections.unmodifiableList(new ArrayList<>(map.values())));
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return read(map -> map instanceof ConcurrentMap ? map.entrySet() :
+				Collections.unmodifiableSet(new HashMap<>(map).entrySet()));
+	}
+
+	private <R> R read(Function<Map<K, V>, R> action) {
+		lock.readLock().lock();
+		try {
+			return action.apply(super.getBacking());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Serializes updates, including the listener calls made for them. The lock used by lookups is only
+	 * taken while the backing map is changed.
+	 */
+	private <R> R update(Supplier<R> action) {
+		updates.lock();
+		try {
+			return action.get();
+		} finally {
+			updates.unlock();
+		}
+	}
+
+	private <R> R write(Supplier<R> action) {
+		lock.writeLock().lock();
+		try {
+			return action.get();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package me.coley.recaf.util.struct;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Stamp of a byte array's content, used by indexes to check if a class is still the version they indexed
+ * without keeping a copy of it.
+ * <br>
+ * The array itself is only weakly referenced. While it is still in use, such as when a heap resource hands out
+ * the same array again, a match is an identity check. Otherwise the content is compared by length and a 64-bit
+ * hash, which covers the copies handed out by off-heap resources.
+ *
+ * @author Matt
+ */
+public final class ContentStamp {
+	private final WeakReference<byte[]> content;
+	private final int length;
+	private final long hash;
+
+	private ContentStamp(byte[] content) {
+		this.content = new WeakReference<>(content);
+		this.length = content.length;
+		this.hash = hash(content);
+	}
+
+	/**
+	 * @param content
+	 * 		Content to stamp.
+	 *
+	 * @return Stamp of the content.
+	 */
+	public static ContentStamp of(byte[] content) {
+		return new ContentStamp(content);
+	}
+
+	/**
+	 * @param other
+	 * 		Content to check.
+	 *
+	 * @return {@code true} if the content is the stamped content.
+	 */
+	public boolean matches(byte[] other) {
+		if (other == null)
+			return false;
+		return other == content.get() || (other.length == length && hash(other) == hash);
+	}
+
+	private static long hash(byte[] content) {
+		// Two independent 32-bit hashes, so that a match is not left to one of them alone
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		return crc.getValue() << 32 | (Arrays.hashCode(content) & 0xFFFFFFFFL);
+	}
+}
@@ -1,6 +1,7 @@
 package me.coley.recaf.util.struct;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -9,16 +10,40 @@ import java.util.function.Consumer;
  * See:<ul>
  * <li>{@link #getPutListeners()}</li>
  * <li>{@link #getRemoveListeners()}</li>
+ * <li>{@link #getClearListeners()}</li>
  * </ul>
  *
  * @param <K> Key type of map.
  * @param <V> Value type of map.
  */
 public class ListeningMap<K, V> implements Map<K, V> {
-	private final Set<BiConsumer<K, V>> putListeners = new HashSet<>();
-	private final Set<Consumer<Object>> removeListeners = new HashSet<>();
+	private final Set<BiConsumer<K, V>> putListeners;
+	private final Set<Consumer<Object>> removeListeners;
+	private final Set<Runnable> clearListeners;
 	private Map<K, V> backing;
 
+	/**
+	 * Constructs a listening map without backing.
+	 */
+	public ListeningMap() {
+		this(new HashSet<>(), new HashSet<>(), new HashSet<>());
+	}
+
+	/**
+	 * @param putListeners
+	 * 		Set to hold put listeners in.
+	 * @param removeListeners
+	 * 		Set to hold remove listeners in.
+	 * @param clearListeners
+	 * 		Set to hold clear listeners in.
+	 */
+	protected ListeningMap(Set<BiConsumer<K, V>> putListeners, Set<Consumer<Object>> removeListeners,
+			Set<Runnable> clearListeners) {
+		this.putListeners = putListeners;
+		this.removeListeners = removeListeners;
+		this.clearListeners = clearListeners;
+	}
+
 	/**
 	 * @param backing
 	 * 		The map to contain the actual data.
@@ -27,6 +52,13 @@ public class ListeningMap<K, V> implements Map<K, V> {
 		this.backing = backing;
 	}
 
+	/**
+	 * @return The map containing the actual data. May be {@code null}.
+	 */
+	public Map<K, V> getBacking() {
+		return backing;
+	}
+
 	/**
 	 * @return {@code true} when the backing map is not null.
 	 */
@@ -48,6 +80,14 @@ public class ListeningMap<K, V> implements Map<K, V> {
 		return removeListeners;
 	}
 
+	/**
+	 * @return Set of listeners that are called when the map is cleared. Clearing does not call the
+	 * remove listeners.
+	 */
+	public Set<Runnable> getClearListeners() {
+		return clearListeners;
+	}
+
 	@Override
 	public V put(K key, V value) {
 		putListeners.forEach(listener -> listener.accept(key, value));
@@ -57,7 +97,7 @@ public class ListeningMap<K, V> implements Map<K, V> {
 	@Override
 	public V remove(Object key) {
 		removeListeners.forEach(listener -> listener.accept(key));
-		return backing.remove(key);
+		return isAbsentKey(backing, key) ? null : backing.remove(key);
 	}
 
 	@Override
@@ -68,7 +108,7 @@ public class ListeningMap<K, V> implements Map<K, V> {
 
 	@Override
 	public V get(Object key) {
-		return backing.get(key);
+		return isAbsentKey(backing, key) ? null : backing.get(key);
 	}
 
 	@Override
@@ -83,7 +123,7 @@ public class ListeningMap<K, V> implements Map<K, V> {
 
 	@Override
 	public boolean containsKey(Object key) {
-		return backing.containsKey(key);
+		return !isAbsentKey(backing, key) && backing.containsKey(key);
 	}
 
 	@Override
@@ -93,7 +133,10 @@ public class ListeningMap<K, V> implements Map<K, V> {
 
 	@Override
 	public void clear() {
-		backing.clear();
+		clearListeners.forEach(Runnable::run);
+		// Nothing to clear when the content was never loaded
+		if (backing != null)
+			backing.clear();
 	}
 
 	@Override
@@ -110,4 +153,19 @@ public class ListeningMap<K, V> implements Map<K, V> {
 	public Set<Entry<K, V>> entrySet() {
 		return backing.entrySet();
 	}
+
+	/**
+	 * Concurrent maps do not hold {@code null} keys and throw when asked for one. Lookups on a plain
+	 * map tolerate them, so they are answered here instead.
+	 *
+	 * @param map
+	 * 		Backing map.
+	 * @param key
+	 * 		Key to look up.
+	 *
+	 * @return {@code true} if the key cannot be in the map.
+	 */
+	protected static boolean isAbsentKey(Map<?, ?> map, Object key) {
+		return key == null && map instanceof ConcurrentMap;
+	}
 }
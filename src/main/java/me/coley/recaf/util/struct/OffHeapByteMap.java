@@ -0,0 +1,253 @@
+package me.coley.recaf.util.struct;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Map of keys to byte arrays where the array contents are packed into large off-heap segments.
+ * <br>
+ * Holding many small arrays on the heap costs an object header per array and gives the garbage collector
+ * a large number of objects to trace. Here the only per-entry heap objects are the key and its entry in the
+ * index, a hash map of keys to slot numbers. The segment, offset and length of each slot are held in primitive
+ * arrays, as are the numbers of freed slots.
+ * Values are copied into a segment on {@link #put(Object, byte[]) put} and a new array is materialized on
+ * every {@link #get(Object) get}, so changes to a returned array are not reflected in the map.
+ * <br>
+ * Space of replaced and removed values is reclaimed by compacting the segments once more than half of
+ * the stored bytes are unused. Live values are copied from the old segments into new ones one at a time,
+ * so compacting does not copy the content onto the heap.
+ * <br>
+ * Map operations are synchronized. The {@link #keySet() key} view is a snapshot, and iterators of the
+ * {@link #entrySet() entry} view iterate over a snapshot of the keys, reading each value as it is visited
+ * and skipping keys removed in the meantime. So the views may be iterated while the map is updated.
+ *
+ * @param <K>
+ * 		Key type of map.
+ *
+ * @author Matt
+ */
+public class OffHeapByteMap<K> extends AbstractMap<K, byte[]> {
+	private static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+	private final Map<K, Integer> index = new HashMap<>();
+	private final List<ByteBuffer> segments = new ArrayList<>();
+	private int[] freeSlots = new int[64];
+	private int freeCount;
+	private int[] slotSegment = new int[64];
+	private int[] slotOffset = new int[64];
+	private int[] slotLength = new int[64];
+	private int slotCount;
+	private long storedBytes;
+	private long unusedBytes;
+	private Set<Entry<K, byte[]>> entrySet;
+
+	/**
+	 * Constructs an empty map.
+	 */
+	public OffHeapByteMap() {
+	}
+
+	/**
+	 * @param map
+	 * 		Map to copy entries from.
+	 */
+	public OffHeapByteMap(Map<? extends K, byte[]> map) {
+		putAll(map);
+	}
+
+	/**
+	 * @return Number of bytes held in off-heap segments, including unused space.
+	 */
+	public synchronized long getOffHeapBytes() {
+		long total = 0;
+		for (ByteBuffer segment : segments)
+			total += segment.capacity();
+		return total;
+	}
+
+	/**
+	 * @return Number of bytes of values currently in the map.
+	 */
+	public synchronized long getStoredBytes() {
+		return storedBytes - unusedBytes;
+	}
+
+	@Override
+	public synchronized int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return index.containsKey(key);
+	}
+
+	@Override
+	public synchronized byte[] get(Object key) {
+		Integer slot = index.get(key);
+		return slot == null ? null : read(slot);
+	}
+
+	@Override
+	public synchronized byte[] put(K key, byte[] value) {
+		if (value == null)
+			throw new NullPointerException("Off-heap maps do not support null values");
+		Integer old = index.get(key);
+		byte[] previous = old == null ? null : read(old);
+		if (old != null)
+			release(old);
+		index.put(key, write(value));
+		compactIfSparse();
+		return previous;
+	}
+
+	@Override
+	public synchronized byte[] remove(Object key) {
+		Integer slot = index.remove(key);
+		if (slot == null)
+			return null;
+		byte[] previous = read(slot);
+		release(slot);
+		compactIfSparse();
+		return previous;
+	}
+
+	@Override
+	public synchronized void clear() {
+		index.clear();
+		segments.clear();
+		freeCount = 0;
+		slotCount = 0;
+		storedBytes = 0;
+		unusedBytes = 0;
+	}
+
+	@Override
+	public synchronized Set<K> keySet() {
+		return Collections.unmodifiableSet(new HashSet<>(index.keySet()));
+	}
+
+	@Override
+	public synchronized Set<Entry<K, byte[]>> entrySet() {
+		if (entrySet == null)
+			entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	private byte[] read(int slot) {
+		byte[] value = new byte[slotLength[slot]];
+		ByteBuffer view = segments.get(slotSegment[slot]).duplicate();
+		view.position(slotOffset[slot]);
+		view.get(value);
+		return value;
+	}
+
+	private int write(byte[] value) {
+		return write(ByteBuffer.wrap(value));
+	}
+
+	private int write(ByteBuffer value) {
+		int length = value.remaining();
+		ByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		if (segment == null || segment.remaining() < length) {
+			// Values larger than a segment get a segment of their own
+			segment = ByteBuffer.allocateDirect(Math.max(SEGMENT_SIZE, length));
+			segments.add(segment);
+		}
+		int slot = allocateSlot();
+		slotSegment[slot] = segments.size() - 1;
+		slotOffset[slot] = segment.position();
+		slotLength[slot] = length;
+		segment.put(value);
+		storedBytes += length;
+		return slot;
+	}
+
+	private int allocateSlot() {
+		if (freeCount > 0)
+			return freeSlots[--freeCount];
+		if (slotCount == slotLength.length) {
+			int size = slotCount * 2;
+			slotSegment = Arrays.copyOf(slotSegment, size);
+			slotOffset = Arrays.copyOf(slotOffset, size);
+			slotLength = Arrays.copyOf(slotLength, size);
+		}
+		return slotCount++;
+	}
+
+	private void release(int slot) {
+		unusedBytes += slotLength[slot];
+		if (freeCount == freeSlots.length)
+			freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		freeSlots[freeCount++] = slot;
+	}
+
+	private void compactIfSparse() {
+		if (unusedBytes < SEGMENT_SIZE || unusedBytes * 2 < storedBytes)
+			return;
+		List<ByteBuffer> oldSegments = new ArrayList<>(segments);
+		int[] oldSegment = slotSegment;
+		int[] oldOffset = slotOffset;
+		int[] oldLength = slotLength;
+		int capacity = Math.max(64, index.size());
+		slotSegment = new int[capacity];
+		slotOffset = new int[capacity];
+		slotLength = new int[capacity];
+		segments.clear();
+		freeCount = 0;
+		slotCount = 0;
+		storedBytes = 0;
+		unusedBytes = 0;
+		for (Entry<K, Integer> e : index.entrySet()) {
+			int slot = e.getValue();
+			ByteBuffer view = oldSegments.get(oldSegment[slot]).duplicate();
+			view.limit(oldOffset[slot] + oldLength[slot]);
+			view.position(oldOffset[slot]);
+			e.setValue(write(view));
+		}
+	}
+
+	/**
+	 * Entry view that materializes values as entries are visited.
+	 */
+	private class EntrySet extends AbstractSet<Entry<K, byte[]>> {
+		@Override
+		public int size() {
+			return OffHeapByteMap.this.size();
+		}
+
+		@Override
+		public Iterator<Entry<K, byte[]>> iterator() {
+			Iterator<K> keys;
+			synchronized(OffHeapByteMap.this) {
+				keys = new ArrayList<>(index.keySet()).iterator();
+			}
+			return new Iterator<Entry<K, byte[]>>() {
+				private Entry<K, byte[]> next = advance();
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public Entry<K, byte[]> next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					Entry<K, byte[]> current = next;
+					next = advance();
+					return current;
+				}
+
+				private Entry<K, byte[]> advance() {
+					while (keys.hasNext()) {
+						K key = keys.next();
+						byte[] value = get(key);
+						if (value != null)
+							return new SimpleImmutableEntry<>(key, value);
+					}
+					return null;
+				}
+			};
+		}
+	}
+}
@@ -1,14 +1,28 @@
 package me.coley.recaf.workspace;
 
+import me.coley.recaf.util.struct.Pair;
+
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
 
 /**
  * Importable archive base.
+ * <br>
+ * Classes and files are read from the archive in a single pass. Whichever of the two is requested first is
+ * passed to the {@link EntryLoader} as it is read. For the primary resource, which has both requested when it
+ * is loaded, the other is held until it is requested. Other resources, such as libraries, usually only have
+ * their classes requested, so they do not hold the other and read the archive again if it is requested.
  *
  * @author Matt
  */
 public abstract class ArchiveResource extends FileSystemResource {
+	private List<Pair<String, byte[]>> pendingClasses;
+	private List<Pair<String, byte[]>> pendingFiles;
+
 	/**
 	 * Constructs an archive file resource.
 	 *
@@ -23,4 +37,107 @@ public abstract class ArchiveResource extends FileSystemResource {
 	public ArchiveResource(ResourceKind kind, Path path) throws IOException {
 		super(kind, path);
 	}
+
+	@Override
+	protected Map<String, byte[]> loadClasses() throws IOException {
+		EntryLoader loader = getEntryLoader();
+		List<Pair<String, byte[]>> classes = pendingClasses;
+		pendingClasses = null;
+		if (classes != null) {
+			// Archive was already read when loading files
+			for (Pair<String, byte[]> pair : classes)
+				loader.onClass(pair.getKey(), pair.getValue());
+		} else {
+			List<Pair<String, byte[]>> files = isPrimary() ? new ArrayList<>() : null;
+			readArchive(loader::onClass, files == null ? ArchiveResource::ignore :
+					(name, value) -> files.add(new Pair<>(name, value)));
+			pendingFiles = files;
+		}
+		loader.finishClasses();
+		return loader.getClasses();
+	}
+
+	@Override
+	protected Map<String, byte[]> loadFiles() throws IOException {
+		EntryLoader loader = getEntryLoader();
+		List<Pair<String, byte[]>> files = pendingFiles;
+		pendingFiles = null;
+		if (files != null) {
+			// Archive was already read when loading classes
+			for (Pair<String, byte[]> pair : files)
+				loader.onFile(pair.getKey(), pair.getValue());
+		} else {
+			List<Pair<String, byte[]>> classes = isPrimary() ? new ArrayList<>() : null;
+			readArchive(classes == null ? ArchiveResource::ignore :
+					(name, value) -> classes.add(new Pair<>(name, value)), loader::onFile);
+			pendingClasses = classes;
+		}
+		loader.finishFiles();
+		return loader.getFiles();
+	}
+
+	@Override
+	public void setSkippedPrefixes(List<String> skippedPrefixes) {
+		super.setSkippedPrefixes(skippedPrefixes);
+		pendingClasses = null;
+		pendingFiles = null;
+	}
+
+	@Override
+	public void invalidate() {
+		super.invalidate();
+		// Held content was read with the previous settings, such as skipped prefixes
+		pendingClasses = null;
+		pendingFiles = null;
+	}
+
+	private static void ignore(String name, byte[] value) {
+		// Content that is not requested
+	}
+
+	/**
+	 * @return {@code true} when reading the central directory gives the same entries as reading the local
+	 * headers, so entries can be read from the central directory in parallel.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be opened.
+	 */
+	protected boolean hasConsistentHeaders() throws IOException {
+		try (MappedZipFile zf = new MappedZipFile(getPath())) {
+			return zf.hasConsistentHeaders();
+		} catch (ZipException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads both classes and files from the archive in a single pass.
+	 * Content must be passed to the consumers in archive order.
+	 *
+	 * @param classes
+	 * 		Consumer of class entry names and their content.
+	 * @param files
+	 * 		Consumer of file entry names and their content.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be read.
+	 */
+	protected abstract void readArchive(ArchiveConsumer classes, ArchiveConsumer files) throws IOException;
+
+	/**
+	 * Consumer of archive content.
+	 */
+	@FunctionalInterface
+	protected interface ArchiveConsumer {
+		/**
+		 * @param name
+		 * 		Entry name.
+		 * @param value
+		 * 		Entry content.
+		 *
+		 * @throws IOException
+		 * 		When the content cannot be handled.
+		 */
+		void accept(String name, byte[] value) throws IOException;
+	}
 }
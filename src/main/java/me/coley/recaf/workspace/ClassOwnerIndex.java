@@ -0,0 +1,133 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.util.struct.InternalBiConsumer;
+import me.coley.recaf.util.struct.InternalConsumer;
+import me.coley.recaf.util.struct.ListeningMap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Index of class names to the resource that provides them in a {@link Workspace}.
+ * <br>
+ * When multiple resources contain a class, the one that shadows the others is indexed: the primary
+ * resource first, then the libraries in order. The index is kept current through the put and remove
+ * listeners of each resource's {@link JavaResource#getClasses() class map}. It is rebuilt on the next
+ * lookup after the {@link LibraryList libraries} are modified, or after an indexed class map is cleared,
+ * which includes {@link JavaResource#invalidate() invalidating} its resource. Both are recorded as they
+ * happen, so lookups are a single map access.
+ *
+ * @author Matt
+ */
+public class ClassOwnerIndex {
+	private final Map<JavaResource, Integer> ranks = new IdentityHashMap<>();
+	private final Map<JavaResource, BiConsumer<String, byte[]>> putListeners = new IdentityHashMap<>();
+	private final Map<JavaResource, Consumer<Object>> removeListeners = new IdentityHashMap<>();
+	private final Map<JavaResource, Runnable> clearListeners = new IdentityHashMap<>();
+	private final JavaResource primary;
+	private final LibraryList libraries;
+	private List<JavaResource> order = Collections.emptyList();
+	private volatile Map<String, JavaResource> owners;
+	private volatile int indexedModifications;
+	private volatile boolean cleared;
+
+	/**
+	 * @param primary
+	 * 		Primary resource of a workspace.
+	 * @param libraries
+	 * 		Library resources of a workspace.
+	 */
+	public ClassOwnerIndex(JavaResource primary, LibraryList libraries) {
+		this.primary = primary;
+		this.libraries = libraries;
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return The resource that provides the class, or {@code null} if neither the primary resource
+	 * nor any library contains it.
+	 */
+	public JavaResource getOwner(String name) {
+		if (name == null)
+			return null;
+		Map<String, JavaResource> owners = this.owners;
+		if (owners == null || cleared || indexedModifications != libraries.getModifications())
+			owners = rebuild();
+		return owners.get(name);
+	}
+
+	/**
+	 * Rebuild the index from the current content of the resources.
+	 *
+	 * @return Updated index.
+	 */
+	public synchronized Map<String, JavaResource> rebuild() {
+		// Detach from the previously indexed resources
+		putListeners.forEach((resource, listener) -> resource.getClasses().getPutListeners().remove(listener));
+		removeListeners.forEach((resource, listener) -> resource.getClasses().getRemoveListeners().remove(listener));
+		clearListeners.forEach((resource, listener) -> resource.getClasses().getClearListeners().remove(listener));
+		putListeners.clear();
+		removeListeners.clear();
+		clearListeners.clear();
+		ranks.clear();
+		// Reset before reading, so that modifications made while rebuilding are not missed
+		cleared = false;
+		int modifications = libraries.getModifications();
+		// Index in shadowing order, so the first resource to contain a class owns it
+		List<JavaResource> order = new ArrayList<>(libraries.size() + 1);
+		order.add(primary);
+		order.addAll(libraries);
+		Map<String, JavaResource> owners = new ConcurrentHashMap<>();
+		for (JavaResource resource : order) {
+			if (ranks.containsKey(resource))
+				continue;
+			ranks.put(resource, ranks.size());
+			ListeningMap<String, byte[]> classes = resource.getClasses();
+			for (String name : classes.keySet())
+				if (name != null)
+					owners.putIfAbsent(name, resource);
+			BiConsumer<String, byte[]> put = InternalBiConsumer.internal((name, value) -> onPut(resource, name));
+			Consumer<Object> remove = InternalConsumer.internal(key -> onRemove(resource, key));
+			// Invalidating a resource drops the other listeners, then clears its classes
+			Runnable clear = () -> cleared = true;
+			classes.getPutListeners().add(put);
+			classes.getRemoveListeners().add(remove);
+			classes.getClearListeners().add(clear);
+			putListeners.put(resource, put);
+			removeListeners.put(resource, remove);
+			clearListeners.put(resource, clear);
+		}
+		this.order = order;
+		this.owners = owners;
+		this.indexedModifications = modifications;
+		return owners;
+	}
+
+	private synchronized void onPut(JavaResource resource, String name) {
+		Map<String, JavaResource> owners = this.owners;
+		if (owners == null || name == null)
+			return;
+		JavaResource current = owners.get(name);
+		if (current == null || ranks.get(resource) < ranks.get(current))
+			owners.put(name, resource);
+	}
+
+	private synchronized void onRemove(JavaResource resource, Object key) {
+		Map<String, JavaResource> owners = this.owners;
+		if (owners == null || key == null || owners.get(key) != resource)
+			return;
+		// Removal listeners are called before the item is removed, so the removing resource
+		// must be skipped when looking for the next resource to provide the class.
+		for (JavaResource other : order) {
+			if (other != resource && other.getClasses().containsKey(key)) {
+				owners.put((String) key, other);
+				return;
+			}
+		}
+		owners.remove(key);
+	}
+}
@@ -32,8 +32,9 @@ public class ClassResource extends FileSystemResource {
 	@Override
 	protected Map<String, byte[]> loadClasses() throws IOException {
 		EntryLoader loader = getEntryLoader();
-		try (InputStream stream = Files.newInputStream(getPath())) {
-			byte[] value = IOUtil.toByteArray(stream);
+		try {
+			// A single class is read in one call, mapping it would only add a copy
+			byte[] value = Files.readAllBytes(getPath());
 			loader.onClass(getPath().getFileName().toString(), value);
 			loader.finishClasses();
 			return loader.getClasses();
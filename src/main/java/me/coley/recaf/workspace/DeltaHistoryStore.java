@@ -0,0 +1,101 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.util.DeltaUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History store that only keeps the newest save-state in full.
+ * <ul>
+ * <li>The initial save-state is the content as it was loaded, so no copy of it is made. It is only
+ * handed to the {@link HistorySpillPool} once a newer save-state is pushed.</li>
+ * <li>Save-states between the initial and newest are stored as binary deltas that rebuild them from
+ * the next newer save-state, so a pop only needs to apply a single delta.</li>
+ * <li>Cold save-states are moved to disk once the pool's memory budget is exceeded.</li>
+ * </ul>
+ *
+ * @author Matt
+ */
+public class DeltaHistoryStore implements HistoryStore {
+	private final List<HistorySpillPool.Revision> deltas = new ArrayList<>();
+	private final HistorySpillPool pool;
+	private HistorySpillPool.Revision baseline;
+	private byte[] initial;
+	private byte[] top;
+
+	/**
+	 * Constructs a store using the {@link HistorySpillPool#get() shared pool}.
+	 */
+	public DeltaHistoryStore() {
+		this(HistorySpillPool.get());
+	}
+
+	/**
+	 * @param pool
+	 * 		Pool to hold cold save-states in.
+	 */
+	public DeltaHistoryStore(HistorySpillPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void push(byte[] content) {
+		if (size() == 0) {
+			initial = content;
+		} else if (initial != null) {
+			// The initial state is no longer the newest, so it is now cold
+			baseline = pool.add(initial);
+			initial = null;
+			top = content;
+		} else {
+			deltas.add(pool.add(DeltaUtil.diff(content, top)));
+			top = content;
+		}
+	}
+
+	@Override
+	public byte[] pop() {
+		if (top == null) {
+			byte[] content = initial;
+			initial = null;
+			return content;
+		}
+		byte[] content = top;
+		if (deltas.isEmpty()) {
+			initial = pool.read(baseline);
+			pool.release(baseline);
+			baseline = null;
+			top = null;
+		} else {
+			HistorySpillPool.Revision delta = deltas.remove(deltas.size() - 1);
+			top = DeltaUtil.patch(content, pool.read(delta));
+			pool.release(delta);
+		}
+		return content;
+	}
+
+	@Override
+	public byte[] peek() {
+		return top != null ? top : initial;
+	}
+
+	@Override
+	public int size() {
+		if (top == null)
+			return initial == null ? 0 : 1;
+		return deltas.size() + 2;
+	}
+
+	@Override
+	public void clear() {
+		for (HistorySpillPool.Revision delta : deltas)
+			pool.release(delta);
+		deltas.clear();
+		if (baseline != null)
+			pool.release(baseline);
+		baseline = null;
+		initial = null;
+		top = null;
+	}
+}
@@ -1,16 +1,15 @@
 package me.coley.recaf.workspace;
 
 import me.coley.recaf.util.IOUtil;
+import me.coley.recaf.util.struct.Pair;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Importable directory resource.
@@ -20,7 +19,6 @@ import java.util.stream.Collectors;
 public class DirectoryResource extends ArchiveResource {
 	private static final String SEPARATOR = System.getProperty("file.separator");
 
-
 	/**
 	 * Constructs a directory resource.
 	 *
@@ -35,57 +33,30 @@ public class DirectoryResource extends ArchiveResource {
 	}
 
 	@Override
-	protected Map<String, byte[]> loadClasses() throws IOException {
-		// iterate jar entries
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		byte[] buffer = new byte[8192];
+	protected void readArchive(ArchiveConsumer classes, ArchiveConsumer files) throws IOException {
 		EntryLoader loader = getEntryLoader();
 		Path root = getPath();
-		List<Path> classFilePaths = Files.walk(root)
-				.filter(Files::isRegularFile)
-				.collect(Collectors.toList());
 		String absolutePath = IOUtil.toString(root);
-		for (Path path : classFilePaths) {
-			File file = path.toFile();
-			String relative = file.getAbsolutePath().substring(absolutePath.length() + 1)
-					.replace(SEPARATOR, "/");
-			if (shouldSkip(relative))
-				continue;
-			if(!loader.isFileValidClassName(relative))
-				continue;
-			out.reset();
-			byte[] in = IOUtil.toByteArray(new FileInputStream(file), out, buffer);
-			loader.onClass(relative, in);
+		// Walk the directory once, classifying each file by its relative name
+		List<Pair<Path, String>> paths = new ArrayList<>();
+		try (Stream<Path> stream = Files.walk(root)) {
+			stream.filter(Files::isRegularFile).forEach(path -> {
+				String relative = path.toFile().getAbsolutePath().substring(absolutePath.length() + 1)
+						.replace(SEPARATOR, "/");
+				if (!shouldSkip(relative))
+					paths.add(new Pair<>(path, relative));
+			});
 		}
-		loader.finishClasses();
-		return loader.getClasses();
+		// Read file content on the pool, but pass it along in walk order
+		ParallelArchiveReader.readOrdered(paths, ParallelArchiveReader.DEFAULT_THREADS, pair -> read(pair.getKey()),
+				(pair, in) -> (loader.isFileValidClassName(pair.getValue()) ? classes : files)
+						.accept(pair.getValue(), in));
 	}
 
-	@Override
-	protected Map<String, byte[]> loadFiles() throws IOException {
-		// iterate jar entries
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		byte[] buffer = new byte[8192];
-		EntryLoader loader = getEntryLoader();
-		Path root = getPath();
-		List<Path> classFilePaths = Files.walk(root)
-				.filter(Files::isRegularFile)
-				.collect(Collectors.toList());
-		String absolutePath = IOUtil.toString(root);
-		for (Path path : classFilePaths) {
-			File file = path.toFile();
-			String relative = file.getAbsolutePath().substring(absolutePath.length() + 1)
-					.replace(SEPARATOR, "/");
-			if (shouldSkip(relative))
-				continue;
-			if(loader.isFileValidClassName(relative))
-				continue;
-			out.reset();
-			byte[] in = IOUtil.toByteArray(new FileInputStream(file), out, buffer);
-			loader.onFile(relative, in);
+	private static byte[] read(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return IOUtil.toByteArray(in);
 		}
-		loader.finishFiles();
-		return loader.getFiles();
 	}
 
 	@Override
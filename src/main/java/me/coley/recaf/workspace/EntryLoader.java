@@ -4,11 +4,11 @@ import me.coley.cafedude.InvalidClassException;
 import me.coley.cafedude.io.ClassFileReader;
 import me.coley.recaf.plugin.PluginsManager;
 import me.coley.recaf.plugin.api.LoadInterceptorPlugin;
+import me.coley.recaf.util.ClassHeader;
 import me.coley.recaf.util.ClassUtil;
 import me.coley.recaf.util.IOUtil;
 import me.coley.recaf.util.IllegalBytecodePatcherUtil;
 import me.coley.recaf.util.Log;
-import org.objectweb.asm.ClassReader;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +30,7 @@ public class EntryLoader {
 	private final Map<String, byte[]> files = new HashMap<>();
 	private final Map<String, byte[]> invalidClasses = new HashMap<>();
 	private final Map<String, byte[]> invalidJunkClasses = new HashMap<>();
+	private final Map<String, ClassHeader> headers = new HashMap<>();
 
 	/**
 	 * @return New archive entry loader instance.
@@ -57,7 +58,9 @@ public class EntryLoader {
 	 */
 	public boolean onClass(String entryName, byte[] value) {
 		// Check if class is valid. If it is not it will be stored for later.
-		if (!ClassUtil.isValidClass(value)) {
+		// The header is created in the same parse, so later stages do not need to parse the class again.
+		ClassHeader header = ClassUtil.getValidatedHeader(value);
+		if (header == null) {
 			try {
 				// If the data can be read, overwrite whatever entry we have previously seen
 				new ClassFileReader().read(value);
@@ -86,13 +89,13 @@ public class EntryLoader {
 			}
 		}
 		// Check if we've already seen this class
-		String clsName = new ClassReader(value).getClassName();
+		String clsName = header.getName();
 		if (classes.containsKey(clsName)) {
 			debug("Skipping duplicate class '{}'", clsName);
 			return false;
 		}
 		// Load the class
-		handleAddClass(entryName, value);
+		handleAddClass(entryName, value, header);
 		return true;
 	}
 
@@ -103,29 +106,38 @@ public class EntryLoader {
 	 * 		Class's archive entry name.
 	 * @param value
 	 * 		Class's bytecode.
+	 * @param header
+	 * 		Class's header, parsed from the bytecode.
 	 *
 	 * @return Addition was a success.
 	 */
-	private boolean handleAddClass(String entryName, byte[] value) {
-		String name = new ClassReader(value).getClassName();
+	private boolean handleAddClass(String entryName, byte[] value, ClassHeader header) {
+		String name = header.getName();
 		for(LoadInterceptorPlugin interceptor :
 				PluginsManager.getInstance().ofType(LoadInterceptorPlugin.class)) {
 			// Intercept class
+			byte[] intercepted = value;
 			try {
-				value = interceptor.interceptClass(name, value);
+				intercepted = interceptor.interceptClass(name, value);
 			} catch(Throwable t) {
 				Log.error(t, "Plugin '{}' threw exception when reading the class '{}'", interceptor.getName(), name);
 			}
+			// Unchanged classes do not need to be checked again
+			if (intercepted == value)
+				continue;
+			value = intercepted;
 			// Make sure the class interception doesn't break the class
-			if (!ClassUtil.isValidClass(value)) {
+			header = ClassUtil.getValidatedHeader(value);
+			if (header == null) {
 				warn("Invalid class '{}' due to modifications by plugin '{}'\nAdding as a file instead.", entryName);
 				onFile(entryName, value);
 				return false;
 			}
 			// Update name
-			name = new ClassReader(value).getClassName();
+			name = header.getName();
 		}
 		classes.put(name, value);
+		headers.put(name, header);
 		return true;
 	}
 
@@ -217,26 +229,22 @@ public class EntryLoader {
 			try {
 				// Attempt to patch invalid classes.
 				// If the internal measure fails, allow plugins to patch invalid classes
-				if (!ClassUtil.isValidClass(value)) {
+				ClassHeader header = ClassUtil.getValidatedHeader(value);
+				if (header == null) {
 					debug("Attempting to patch invalid class '{}'", entryName);
 					byte[] patched = IllegalBytecodePatcherUtil.fix(classes, invalidClasses, value);
-					if (ClassUtil.isValidClass(patched)) {
+					header = ClassUtil.getValidatedHeader(patched);
+					if (header != null) {
 						value = patched;
 					} else if (!interceptors.isEmpty()) {
-						for (LoadInterceptorPlugin interceptor : interceptors) {
-							try {
-								value = interceptor.interceptInvalidClass(entryName, value);
-							} catch (Throwable t) {
-								Log.error(t, "Plugin '{}' threw an exception when reading the invalid class '{}'",
-										interceptor.getName(), entryName);
-							}
-						}
+						value = interceptInvalidClass(interceptors, entryName, value);
+						header = ClassUtil.getValidatedHeader(value);
 					}
 				}
 				// Check if class is valid
-				if (ClassUtil.isValidClass(value)) {
+				if (header != null) {
 					debug("Illegal class patching success!");
-					handleAddClass(entryName, value);
+					handleAddClass(entryName, value, header);
 				} else {
 					warn("Invalid class \"{}\" - Cannot be parsed with ASM reader\n" +
 							"Adding as a file instead.", entryName);
@@ -253,6 +261,19 @@ public class EntryLoader {
 		}
 	}
 
+	private static byte[] interceptInvalidClass(Collection<LoadInterceptorPlugin> interceptors, String entryName,
+												byte[] value) {
+		for (LoadInterceptorPlugin interceptor : interceptors) {
+			try {
+				value = interceptor.interceptInvalidClass(entryName, value);
+			} catch (Throwable t) {
+				Log.error(t, "Plugin '{}' threw an exception when reading the invalid class '{}'",
+						interceptor.getName(), entryName);
+			}
+		}
+		return value;
+	}
+
 	/**
 	 * Called when all files in the archive have been read.
 	 */
@@ -265,6 +286,13 @@ public class EntryLoader {
 		return classes;
 	}
 
+	/**
+	 * @return Headers of loaded classes, created in the same parse that validates each class.
+	 */
+	public Map<String, ClassHeader> getClassHeaders() {
+		return headers;
+	}
+
 	/**
 	 * @return Loaded files.
 	 */
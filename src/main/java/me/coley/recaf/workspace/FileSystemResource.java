@@ -13,6 +13,7 @@ import java.nio.file.Path;
  */
 public abstract class FileSystemResource extends JavaResource {
 	private final Path path;
+	private boolean memoryMapped;
 
 	/**
 	 * Constructs a file system resource.
@@ -68,6 +69,26 @@ public abstract class FileSystemResource extends JavaResource {
 		return path;
 	}
 
+	/**
+	 * @return {@code true} when content is read through a memory mapping of the file
+	 * rather than through input streams.
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * Memory mapped reading avoids copying content through intermediate stream buffers,
+	 * which lowers the peak memory usage when loading large archives. Single class files are always
+	 * read directly, since they are copied into one array either way.
+	 *
+	 * @param memoryMapped
+	 * 		{@code true} to read content through a memory mapping of the file.
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
 	/**
 	 * Verify the file exists.
 	 *
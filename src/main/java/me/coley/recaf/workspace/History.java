@@ -4,6 +4,7 @@ import me.coley.recaf.util.struct.ListeningMap;
 
 import java.time.Instant;
 import java.util.Stack;
+import java.util.function.Supplier;
 
 import static me.coley.recaf.util.Log.*;
 
@@ -13,12 +14,11 @@ import static me.coley.recaf.util.Log.*;
  * @author Matt
  */
 public class History {
-	// TODO: For large inputs it would make sense to offload this to the file system.
-	//  - But only for large inputs. In-memory is much faster and should be the default.
+	private static Supplier<HistoryStore> storeFactory = DeltaHistoryStore::new;
 	/**
-	 * Stack of changed content.
+	 * Storage of changed content.
 	 */
-	private final Stack<byte[]> stack = new Stack<>();
+	private final HistoryStore store;
 	/**
 	 * Stack of when the content was changed.
 	 */
@@ -45,29 +45,52 @@ public class History {
 	 * 		Item's key.
 	 */
 	public History(ListeningMap<String, byte[]> map, String name) {
+		this(map, name, storeFactory.get());
+	}
+
+	/**
+	 * Constructs a history for an item of the given name in the given map.
+	 *
+	 * @param map
+	 * 		Map containing the item.
+	 * @param name
+	 * 		Item's key.
+	 * @param store
+	 * 		Storage for the item's save-states.
+	 */
+	public History(ListeningMap<String, byte[]> map, String name, HistoryStore store) {
 		this.map = map;
 		this.name = name;
+		this.store = store;
+	}
+
+	/**
+	 * @param factory
+	 * 		Supplier of storage for histories created without an explicit store.
+	 */
+	public static void setStoreFactory(Supplier<HistoryStore> factory) {
+		storeFactory = factory;
 	}
 
 	/**
 	 * @return Size of history for the current file.
 	 */
-	public int size() {
-		return stack.size();
+	public synchronized int size() {
+		return store.size();
 	}
 
 	/**
 	 * @return {@code true} if the top of the stack is the initial state of the item.
 	 */
-	public boolean isAtInitial() {
+	public synchronized boolean isAtInitial() {
 		return atInitial;
 	}
 
 	/**
 	 * Wipe all items from the history.
 	 */
-	public void clear() {
-		stack.clear();
+	public synchronized void clear() {
+		store.clear();
 		times.clear();
 	}
 
@@ -76,14 +99,14 @@ public class History {
 	 *
 	 * @return Array of timestamps of each tracked change.
 	 */
-	public Instant[] getFileTimes() {
+	public synchronized Instant[] getFileTimes() {
 		return times.toArray(new Instant[0]);
 	}
 
 	/**
 	 * @return Instant of most recent change.
 	 */
-	public Instant getMostRecentUpdate() {
+	public synchronized Instant getMostRecentUpdate() {
 		return times.peek();
 	}
 
@@ -92,20 +115,20 @@ public class History {
 	 *
 	 * @return Most recent version of the tracked file.
 	 */
-	public byte[] pop() {
+	public synchronized byte[] pop() {
 		Instant time = times.pop();
-		byte[] content = stack.pop();
+		byte[] content = store.pop();
 		if (content != null) {
 			map.put(name, content);
 			// If the size is now 0, we just pop'd the initial state.
 			// Since we ALWAYS want to keep the initial state we will push it back.
 			if (size() == 0) {
 				times.push(time);
-				stack.push(content);
+				store.push(content);
 				atInitial = true;
 				info("Reverted '{}' - initial state", name);
 			} else {
-				info("Reverted '{}' - {} total", name, stack.size());
+				info("Reverted '{}' - {} total", name, store.size());
 			}
 		} else {
 			throw new IllegalStateException("No history to revert to!");
@@ -116,8 +139,8 @@ public class History {
 	/**
 	 * @return Most recent version of the tracked file.
 	 */
-	public byte[] peek() {
-		return stack.peek();
+	public synchronized byte[] peek() {
+		return store.peek();
 	}
 
 	/**
@@ -127,12 +150,12 @@ public class History {
 	 * @param modified
 	 * 		Changed value.
 	 */
-	public void push(byte[] modified) {
-		stack.push(modified);
+	public synchronized void push(byte[] modified) {
+		store.push(modified);
 		times.push(Instant.now());
 		// Don't log the initial push
-		if(stack.size() > 1) {
-			info("Saved '{}' - {} total", name, stack.size());
+		if(store.size() > 1) {
+			info("Saved '{}' - {} total", name, store.size());
 			atInitial = false;
 		}
 	}
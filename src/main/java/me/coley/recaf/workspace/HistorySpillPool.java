@@ -0,0 +1,163 @@
+package me.coley.recaf.workspace;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * Memory budget shared by {@link DeltaHistoryStore} instances. Once the save-states held in memory
+ * exceed the budget, the least recently used are moved to a temporary directory.
+ *
+ * @author Matt
+ */
+public class HistorySpillPool {
+	/**
+	 * Default memory budget, in bytes.
+	 */
+	public static final long DEFAULT_BUDGET = 64L * 1024L * 1024L;
+	private static final HistorySpillPool INSTANCE = new HistorySpillPool(DEFAULT_BUDGET);
+	private final Map<Revision, Boolean> resident = new LinkedHashMap<>(64, 0.75F, true);
+	private Path directory;
+	private long budget;
+	private long used;
+
+	/**
+	 * @param budget
+	 * 		Number of bytes of save-states to keep in memory.
+	 */
+	public HistorySpillPool(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * @return Pool shared by default history stores.
+	 */
+	public static HistorySpillPool get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @return Number of bytes of save-states to keep in memory.
+	 */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @param budget
+	 * 		Number of bytes of save-states to keep in memory.
+	 */
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+		trim();
+	}
+
+	/**
+	 * @return Number of bytes of save-states currently held in memory.
+	 */
+	public synchronized long getResidentBytes() {
+		return used;
+	}
+
+	/**
+	 * @param data
+	 * 		Content to store.
+	 *
+	 * @return Handle to the stored content.
+	 */
+	synchronized Revision add(byte[] data) {
+		Revision revision = new Revision(data);
+		resident.put(revision, Boolean.TRUE);
+		used += data.length;
+		trim();
+		return revision;
+	}
+
+	/**
+	 * @param revision
+	 * 		Handle to stored content.
+	 *
+	 * @return The stored content.
+	 */
+	synchronized byte[] read(Revision revision) {
+		if (revision.data != null) {
+			// Mark as recently used
+			resident.get(revision);
+			return revision.data;
+		}
+		try {
+			return Files.readAllBytes(revision.file);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to read spilled history from " + revision.file, ex);
+		}
+	}
+
+	/**
+	 * @param revision
+	 * 		Handle to stored content that is no longer needed.
+	 */
+	synchronized void release(Revision revision) {
+		if (resident.remove(revision) != null)
+			used -= revision.length;
+		if (revision.file != null) {
+			try {
+				Files.deleteIfExists(revision.file);
+			} catch (IOException ex) {
+				debug("Failed to delete spilled history: {}", revision.file);
+			}
+			revision.file = null;
+		}
+		revision.data = null;
+	}
+
+	private void trim() {
+		Iterator<Revision> it = resident.keySet().iterator();
+		while (used > budget && it.hasNext()) {
+			Revision revision = it.next();
+			if (!spill(revision))
+				return;
+			it.remove();
+			used -= revision.length;
+		}
+	}
+
+	private boolean spill(Revision revision) {
+		try {
+			if (directory == null) {
+				Path dir = Files.createTempDirectory("recaf-history");
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> FileUtils.deleteQuietly(dir.toFile())));
+				directory = dir;
+			}
+			Path file = Files.createTempFile(directory, "revision", ".bin");
+			Files.write(file, revision.data);
+			revision.file = file;
+			revision.data = null;
+			return true;
+		} catch (IOException ex) {
+			error(ex, "Failed to move history to disk, keeping it in memory");
+			return false;
+		}
+	}
+
+	/**
+	 * Handle to content held by the pool, either in memory or on disk.
+	 */
+	static final class Revision {
+		private final int length;
+		private byte[] data;
+		private Path file;
+
+		private Revision(byte[] data) {
+			this.data = data;
+			this.length = data.length;
+		}
+	}
+}
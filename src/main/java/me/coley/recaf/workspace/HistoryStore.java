@@ -0,0 +1,35 @@
+package me.coley.recaf.workspace;
+
+/**
+ * Storage for the save-states of a {@link History}, ordered from oldest to newest.
+ *
+ * @author Matt
+ */
+public interface HistoryStore {
+	/**
+	 * @param content
+	 * 		Content to store as the newest save-state.
+	 */
+	void push(byte[] content);
+
+	/**
+	 * @return Content of the newest save-state, which is removed from the store.
+	 * {@code null} if the store is empty.
+	 */
+	byte[] pop();
+
+	/**
+	 * @return Content of the newest save-state. {@code null} if the store is empty.
+	 */
+	byte[] peek();
+
+	/**
+	 * @return Number of stored save-states.
+	 */
+	int size();
+
+	/**
+	 * Remove all save-states.
+	 */
+	void clear();
+}
@@ -44,7 +44,7 @@ public class InstrumentationResource extends JavaResource {
 	 * 		When querying for runtime classes fails.
 	 */
 	private InstrumentationResource() throws IllegalStateException, IOException {
-		super(ResourceKind.INSTRUMENTATION);
+		super(ResourceKind.INSTRUMENTATION, true);
 		// Instrumentation is ALWAYS primary
 		setPrimary(true);
 		if(instrumentation == null)
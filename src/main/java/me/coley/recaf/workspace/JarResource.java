@@ -4,12 +4,12 @@ import me.coley.recaf.util.IOUtil;
 
 import java.io.*;
 import java.nio.file.Path;
-import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import static me.coley.recaf.util.Log.*;
+
 /**
  * Importable jar resource.
  *
@@ -30,21 +30,59 @@ public class JarResource extends ArchiveResource {
 	}
 
 	@Override
-	protected Map<String, byte[]> loadClasses() throws IOException {
-		// iterate jar entries
+	protected void readArchive(ArchiveConsumer classes, ArchiveConsumer files) throws IOException {
+		EntryLoader loader = getEntryLoader();
+		ParallelArchiveReader reader = new ParallelArchiveReader(getPath(), isMemoryMapped());
+		if (!hasConsistentHeaders()) {
+			// Classes are read from the local headers, which obfuscators may make differ from the central directory.
+			// Files are read from the central directory either way.
+			debug("Local headers of '{}' differ from its central directory, reading classes sequentially",
+					getPath());
+			readClassStream(classes);
+			try {
+				reader.read(entry -> !shouldSkip(entry.getName()) && !loader.isValidClassEntry(entry) &&
+						loader.isValidFileEntry(entry), (entry, in) -> files.accept(entry.getName(), in));
+			} catch (ZipException ex) {
+				debug("Failed to read central directory of '{}', skipping files", getPath());
+			}
+			return;
+		}
+		reader.read(entry -> !shouldSkip(entry.getName()), (entry, in) -> {
+			String name = entry.getName();
+			// The class file might not end with .class or .class/
+			// so we also check it's header.
+			boolean classEntry = loader.isValidClassEntry(entry);
+			boolean isClass = classEntry || loader.isValidClassFile(new ByteArrayInputStream(in));
+			// There is no possible way a "class" under 30 bytes is valid
+			if (isClass && in.length >= 30)
+				classes.accept(name, in);
+			if (!classEntry && loader.isValidFileEntry(entry))
+				files.accept(name, in);
+		});
+	}
+
+	/**
+	 * Reads classes from the local entry headers of the archive.
+	 * If an entry has an invalid CRC value, classes are read from the central directory instead,
+	 * which does not verify CRC values.
+	 *
+	 * @param classes
+	 * 		Consumer of class entry names and their content.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be read.
+	 */
+	private void readClassStream(ArchiveConsumer classes) throws IOException {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		byte[] buffer = new byte[8192];
 		EntryLoader loader = getEntryLoader();
-
 		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(getPath().toFile()))) {
 			ZipEntry entry;
-
 			while ((entry = zis.getNextEntry()) != null) {
 				// verify entries are classes and valid files
 				// - skip intentional garbage / zip file abnormalities
 				if (shouldSkip(entry.getName()))
 					continue;
-
 				out.reset();
 				byte[] in;
 				if (!loader.isValidClassEntry(entry)) {
@@ -55,83 +93,23 @@ public class JarResource extends ArchiveResource {
 						continue;
 					}
 				}
-
 				in = IOUtil.toByteArray(zis, out, buffer);
-
 				// There is no possible way a "class" under 30 bytes is valid
 				if (in.length < 30)
 					continue;
-
-				loader.onClass(entry.getName(), in);
-			}
-		} catch (ZipException e) {
-			if (e.getMessage().contains("invalid entry CRC")) {
-				// "ZipFile"/"JarFile" reads the entire ZIP file structure before letting us do any entry parsing.
-				// This may not always be ideal, but this way has one major bonus. It totally ignores CRC validity.
-				// It also ignores a few other zip entry values.
-				// Since somebody can intentionally write bogus data there to crash "ZipInputStream" this way works.
-				try (ZipFile zf = new ZipFile(getPath().toString())) {
-					Enumeration<? extends ZipEntry> entries = zf.entries();
-					while (entries.hasMoreElements()) {
-						ZipEntry entry = entries.nextElement();
-
-						if (shouldSkip(entry.getName()))
-							continue;
-
-						out.reset();
-						byte[] in;
-
-						if (!loader.isValidClassEntry(entry)) {
-							// The class file might not end with .class or .class/
-							// so we also check it's header.
-							out.reset();
-							try (InputStream zis = zf.getInputStream(entry)) {
-								in = IOUtil.toByteArray(zis, out, buffer, 4);
-							}
-							if (!loader.isValidClassFile(new ByteArrayInputStream(in))) {
-								continue;
-							}
-						}
-
-						out.reset();
-						try (InputStream zis = zf.getInputStream(entry)) {
-							in = IOUtil.toByteArray(zis, out, buffer);
-						}
-
-						loader.onClass(entry.getName(), in);
-					}
-				}
+				classes.accept(entry.getName(), in);
 			}
-		}
-		loader.finishClasses();
-		return loader.getClasses();
-	}
-
-	@Override
-	protected Map<String, byte[]> loadFiles() throws IOException {
-		// iterate jar entries
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		byte[] buffer = new byte[8192];
-		EntryLoader loader = getEntryLoader();
-		try (ZipFile zipFile = new ZipFile(getPath().toFile())) {
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while(entries.hasMoreElements()) {
-				// verify entries are not classes and are valid files
-				// - skip intentional garbage / zip file abnormalities
-				ZipEntry entry = entries.nextElement();
-				if (shouldSkip(entry.getName()))
-					continue;
-				if(loader.isValidClassEntry(entry))
-					continue;
-				if(!loader.isValidFileEntry(entry))
-					continue;
-				out.reset();
-				InputStream stream = zipFile.getInputStream(entry);
-				byte[] in = IOUtil.toByteArray(stream, out, buffer);
-				loader.onFile(entry.getName(), in);
+		} catch (ZipException ex) {
+			if (ex.getMessage() == null || !ex.getMessage().contains("invalid entry CRC")) {
+				debug("Stopped reading classes of '{}': {}", getPath(), ex.getMessage());
+				return;
 			}
+			// Somebody can intentionally write bogus CRC values to crash "ZipInputStream",
+			// but reading the central directory ignores them.
+			new ParallelArchiveReader(getPath(), isMemoryMapped()).read(e -> !shouldSkip(e.getName()), (e, in) -> {
+				if (loader.isValidClassEntry(e) || loader.isValidClassFile(new ByteArrayInputStream(in)))
+					classes.accept(e.getName(), in);
+			});
 		}
-		loader.finishFiles();
-		return loader.getFiles();
 	}
 }
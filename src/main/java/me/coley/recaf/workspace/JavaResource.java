@@ -6,16 +6,21 @@ import me.coley.recaf.parse.javadoc.DocumentationParseException;
 import me.coley.recaf.parse.javadoc.Javadocs;
 import me.coley.recaf.parse.source.SourceCode;
 import me.coley.recaf.parse.source.SourceCodeException;
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.util.ClassUtil;
 import me.coley.recaf.util.InternalElement;
+import me.coley.recaf.util.struct.ConcurrentListeningMap;
 import me.coley.recaf.util.struct.InternalBiConsumer;
 import me.coley.recaf.util.struct.InternalConsumer;
 import me.coley.recaf.util.struct.ListeningMap;
+import me.coley.recaf.util.struct.OffHeapByteMap;
 import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.*;
 
 import static me.coley.recaf.util.Log.*;
@@ -29,17 +34,22 @@ public abstract class JavaResource {
 	private final ResourceKind kind;
 	private EntryLoader entryLoader = EntryLoader.create();
 	private List<String> skippedPrefixes = Collections.emptyList();
-	private final ListeningMap<String, byte[]> cachedClasses = new ListeningMap<>();
-	private final ListeningMap<String, byte[]> cachedFiles = new ListeningMap<>();
-	private final Map<String, History> classHistory = new HashMap<>();
-	private final Map<String, History> fileHistory = new HashMap<>();
-	private final Set<String> dirtyClasses = new HashSet<>();
-	private final Set<String> dirtyFiles = new HashSet<>();
+	private final ListeningMap<String, byte[]> cachedClasses;
+	private final ListeningMap<String, byte[]> cachedFiles;
+	private final Map<String, History> classHistory;
+	private final Map<String, History> fileHistory;
+	private final Set<String> dirtyClasses;
+	private final Set<String> dirtyFiles;
+	private final boolean concurrent;
+	private final Map<String, ClassHeader> classHeaders = new ConcurrentHashMap<>();
 	private final Map<String, SourceCode> classSource = new HashMap<>();
 	private final Map<String, Javadocs> classDocs = new HashMap<>();
 	private Path classSourceFile;
 	private Path classDocsFile;
+	private Map<String, byte[]> restoredClasses;
+	private Map<String, byte[]> restoredFiles;
 	private boolean isPrimary;
+	private boolean offHeap;
 
 	/**
 	 * Constructs a java resource.
@@ -48,7 +58,43 @@ public abstract class JavaResource {
 	 * 		The kind of resource implementation.
 	 */
 	public JavaResource(ResourceKind kind) {
+		this(kind, false);
+	}
+
+	/**
+	 * Constructs a java resource.
+	 *
+	 * @param kind
+	 * 		The kind of resource implementation.
+	 * @param concurrent
+	 * 		{@code true} if the resource content may be updated from multiple threads.
+	 * 		The class and file maps will then be {@link ConcurrentListeningMap concurrent}.
+	 */
+	protected JavaResource(ResourceKind kind, boolean concurrent) {
 		this.kind = kind;
+		this.concurrent = concurrent;
+		if (concurrent) {
+			cachedClasses = new ConcurrentListeningMap<>();
+			cachedFiles = new ConcurrentListeningMap<>();
+			classHistory = new ConcurrentHashMap<>();
+			fileHistory = new ConcurrentHashMap<>();
+			dirtyClasses = ConcurrentHashMap.newKeySet();
+			dirtyFiles = ConcurrentHashMap.newKeySet();
+		} else {
+			cachedClasses = new ListeningMap<>();
+			cachedFiles = new ListeningMap<>();
+			classHistory = new HashMap<>();
+			fileHistory = new HashMap<>();
+			dirtyClasses = new HashSet<>();
+			dirtyFiles = new HashSet<>();
+		}
+	}
+
+	/**
+	 * @return {@code true} if the resource content may be updated from multiple threads.
+	 */
+	public boolean isConcurrent() {
+		return concurrent;
 	}
 
 	/**
@@ -227,7 +273,16 @@ public abstract class JavaResource {
 		synchronized(cachedClasses) {
 			if (!cachedClasses.isBacked()) {
 				try {
-					cachedClasses.setBacking(copyMap(loadClasses()));
+					Map<String, byte[]> loaded = restoredClasses != null ? restoredClasses : loadClasses();
+					cachedClasses.setBacking(copyMap(loaded));
+					restoredClasses = null;
+					seedClassHeaders(loaded);
+					// Keep headers in sync with class updates
+					cachedClasses.getPutListeners().add(InternalBiConsumer.internal(this::updateClassHeader));
+					cachedClasses.getRemoveListeners().add(InternalConsumer.internal(name -> {
+						if (name != null)
+							classHeaders.remove(name);
+					}));
 					// If this resource is not the primary resource, we are done
 					if (!isPrimary())
 						return cachedClasses;
@@ -254,6 +309,52 @@ public abstract class JavaResource {
 		return cachedClasses;
 	}
 
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Summary of the class declaration. {@code null} if the class is not in the resource,
+	 * or cannot be parsed.
+	 */
+	public ClassHeader getClassHeader(String name) {
+		if (name == null)
+			return null;
+		Map<String, byte[]> classes = getClasses();
+		ClassHeader header = classHeaders.get(name);
+		if (header != null) {
+			// Clearing the class map does not notify listeners, so the header may be outdated
+			if (classes.containsKey(name))
+				return header;
+			classHeaders.remove(name);
+			return null;
+		}
+		byte[] code = classes.get(name);
+		if (code == null)
+			return null;
+		header = ClassUtil.getHeader(code);
+		if (header != null)
+			classHeaders.put(name, header);
+		return header;
+	}
+
+	private void seedClassHeaders(Map<String, byte[]> loaded) {
+		// Headers computed by the loader only apply if the loader produced the content we were given
+		Map<String, byte[]> loaderClasses = entryLoader.getClasses();
+		entryLoader.getClassHeaders().forEach((name, header) -> {
+			byte[] code = loaded.get(name);
+			if (code != null && code == loaderClasses.get(name))
+				classHeaders.put(name, header);
+		});
+	}
+
+	private void updateClassHeader(String name, byte[] code) {
+		ClassHeader header = ClassUtil.getHeader(code);
+		if (header == null)
+			classHeaders.remove(name);
+		else
+			classHeaders.put(name, header);
+	}
+
 	/**
 	 * @return Map of file names to their raw data.
 	 */
@@ -261,7 +362,8 @@ public abstract class JavaResource {
 		synchronized(cachedFiles) {
 			try {
 				if (!cachedFiles.isBacked()) {
-					cachedFiles.setBacking(copyMap(loadFiles()));
+					cachedFiles.setBacking(copyMap(restoredFiles != null ? restoredFiles : loadFiles()));
+					restoredFiles = null;
 					// If this resource is not the primary resource, we are done
 					if (!isPrimary())
 						return cachedFiles;
@@ -288,6 +390,30 @@ public abstract class JavaResource {
 		return cachedFiles;
 	}
 
+	/**
+	 * Supply previously loaded content so that the next {@link #getClasses()} and {@link #getFiles()} calls
+	 * do not need to run the {@link #loadClasses() load} pipeline.
+	 *
+	 * @param classes
+	 * 		Map of class names to their bytecode.
+	 * @param files
+	 * 		Map of file names to their raw data.
+	 *
+	 * @return {@code true} if the content was accepted. {@code false} if the resource content
+	 * has already been loaded.
+	 */
+	boolean restore(Map<String, byte[]> classes, Map<String, byte[]> files) {
+		synchronized(cachedClasses) {
+			synchronized(cachedFiles) {
+				if (cachedClasses.isBacked() || cachedFiles.isBacked())
+					return false;
+				restoredClasses = classes;
+				restoredFiles = files;
+				return true;
+			}
+		}
+	}
+
 	/**
 	 * Refresh this resource.
 	 */
@@ -300,8 +426,12 @@ public abstract class JavaResource {
 		cachedClasses.getRemoveListeners().removeIf(InternalElement.INTERNAL_PREDICATE);
 		cachedClasses.clear();
 		cachedClasses.setBacking(null);
+		restoredClasses = null;
+		restoredFiles = null;
+		classHeaders.clear();
 		classDocs.clear();
 		classSource.clear();
+		classHistory.values().forEach(History::clear);
 		classHistory.clear();
 	}
 
@@ -314,6 +444,11 @@ public abstract class JavaResource {
 	 * @return Copied map.
 	 */
 	protected Map<String, byte[]> copyMap(Map<String, byte[]> map) {
+		if (isOffHeap())
+			return new OffHeapByteMap<>(map);
+		// Indexes of the primary resource read its content from background threads
+		if (isConcurrent() || isPrimary())
+			return new ConcurrentHashMap<>(map);
 		return new HashMap<>(map);
 	}
 
@@ -501,11 +636,52 @@ public abstract class JavaResource {
 	}
 
 	/**
+	 * Content of the primary resource is held in concurrent maps, since indexes of a workspace read it from
+	 * background threads. Content that is already loaded is moved over.
+	 *
 	 * @param primary
 	 *        {@code true} if the resource is a workspace's primary resource.
 	 */
 	public void setPrimary(boolean primary) {
+		if (isPrimary == primary)
+			return;
 		isPrimary = primary;
+		moveBacking(cachedClasses);
+		moveBacking(cachedFiles);
+	}
+
+	/**
+	 * @return {@code true} if class and file content is stored in off-heap segments.
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Set where class and file content is stored. Content that is already loaded is moved over.
+	 *
+	 * @param offHeap
+	 * 		{@code true} to store content in off-heap segments, which reduces heap usage of large
+	 * 		resources at the cost of copying content on each lookup. Meant for libraries, since the
+	 * 		save-states of the primary resource are copies of its content on the heap.
+	 * 		{@code false} to store content as regular arrays.
+	 *
+	 * @see OffHeapByteMap
+	 */
+	public void setOffHeap(boolean offHeap) {
+		if (this.offHeap == offHeap)
+			return;
+		this.offHeap = offHeap;
+		moveBacking(cachedClasses);
+		moveBacking(cachedFiles);
+	}
+
+	private void moveBacking(ListeningMap<String, byte[]> map) {
+		synchronized(map) {
+			Map<String, byte[]> backing = map.getBacking();
+			if (backing != null)
+				map.setBacking(copyMap(backing));
+		}
 	}
 
 	/**
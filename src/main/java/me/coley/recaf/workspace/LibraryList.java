@@ -0,0 +1,64 @@
+package me.coley.recaf.workspace;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * List of a {@link Workspace}'s libraries that counts its modifications, so that indexes can check
+ * if the libraries changed without comparing them one by one.
+ * <br>
+ * All updates, including those made through iterators and sub-lists, go through
+ * {@link #set(int, JavaResource)}, {@link #add(int, JavaResource)} and {@link #remove(int)}.
+ *
+ * @author Matt
+ */
+public class LibraryList extends AbstractList<JavaResource> {
+	private final List<JavaResource> backing;
+	private volatile int modifications;
+
+	/**
+	 * @param backing
+	 * 		The list to contain the actual libraries.
+	 */
+	public LibraryList(List<JavaResource> backing) {
+		this.backing = backing;
+	}
+
+	/**
+	 * @return Number of modifications made to the list. Changes whenever a library is added, removed,
+	 * or replaced.
+	 */
+	public int getModifications() {
+		return modifications;
+	}
+
+	@Override
+	public JavaResource get(int index) {
+		return backing.get(index);
+	}
+
+	@Override
+	public int size() {
+		return backing.size();
+	}
+
+	@Override
+	public synchronized JavaResource set(int index, JavaResource element) {
+		JavaResource previous = backing.set(index, element);
+		modifications++;
+		return previous;
+	}
+
+	@Override
+	public synchronized void add(int index, JavaResource element) {
+		backing.add(index, element);
+		modifications++;
+	}
+
+	@Override
+	public synchronized JavaResource remove(int index) {
+		JavaResource removed = backing.remove(index);
+		modifications++;
+		return removed;
+	}
+}
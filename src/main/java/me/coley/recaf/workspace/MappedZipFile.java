@@ -0,0 +1,450 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.util.VMUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Zip reader backed by memory mapped segments of the archive.
+ * <br>
+ * The central directory and local headers are read directly from the mapping. Stored entries are served as
+ * slices of the mapping without any copying, and deflated entries are inflated on demand straight into an
+ * array of their declared size. Entry content can be read from multiple threads at once.
+ * <br>
+ * Like {@link java.util.zip.ZipFile} the CRC values of entries are not verified.
+ *
+ * @author Matt
+ */
+public class MappedZipFile implements Closeable {
+	private static final int SEGMENT_SIZE = 1 << 30;
+	private static final int SEGMENT_OVERLAP = 1 << 20;
+	private static final int INPUT_CHUNK = 1 << 16;
+	private static final int SIG_LOCAL = 0x04034b50;
+	private static final int SIG_CENTRAL = 0x02014b50;
+	private static final int SIG_END = 0x06054b50;
+	private static final int SIG_END64 = 0x06064b50;
+	private static final int SIG_END64_LOCATOR = 0x07064b50;
+	private static final int SIG_DESCRIPTOR = 0x08074b50;
+	private static final int FLAG_ENCRYPTED = 1;
+	private static final int FLAG_DESCRIPTOR = 8;
+	private static final int END_SIZE = 22;
+	private static final int CENTRAL_SIZE = 46;
+	private static final int LOCAL_SIZE = 30;
+	private static final long U32_MAX = 0xFFFFFFFFL;
+	private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+	private static final ThreadLocal<byte[]> CHUNKS = ThreadLocal.withInitial(() -> new byte[INPUT_CHUNK]);
+	private final FileChannel channel;
+	private final long size;
+	private final MappedByteBuffer[] segments;
+	private final List<MappedZipEntry> entries;
+	private long centralStart;
+
+	/**
+	 * Maps the archive and reads its central directory.
+	 *
+	 * @param path
+	 * 		Path to the archive.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be mapped, or when the central directory is malformed.
+	 */
+	public MappedZipFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			size = channel.size();
+			int count = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			segments = new MappedByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				long start = (long) i * SEGMENT_SIZE;
+				long length = Math.min(size - start, (long) SEGMENT_SIZE + SEGMENT_OVERLAP);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+			entries = Collections.unmodifiableList(readCentralDirectory());
+		} catch (IOException | RuntimeException ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return Entries of the central directory, in order.
+	 */
+	public List<MappedZipEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param entry
+	 * 		Entry in the archive.
+	 *
+	 * @return Content of the entry. Stored entries are read-only views of the mapping, which are only valid
+	 * until the archive is {@link #close() closed}. Deflated entries are inflated into a new heap buffer.
+	 *
+	 * @throws IOException
+	 * 		When the local header is malformed, or the content cannot be inflated.
+	 */
+	public ByteBuffer getContent(MappedZipEntry entry) throws IOException {
+		long start = dataStart(entry);
+		long csize = entry.getCompressedSize();
+		switch (entry.getMethod()) {
+			case ZipEntry.STORED:
+				return slice(start, checkLength(entry, csize));
+			case ZipEntry.DEFLATED:
+				return ByteBuffer.wrap(inflate(entry, start, csize));
+			default:
+				throw new ZipException("Invalid compression method for entry: " + entry.getName());
+		}
+	}
+
+	/**
+	 * @param entry
+	 * 		Entry in the archive.
+	 *
+	 * @return Content of the entry as a new array.
+	 *
+	 * @throws IOException
+	 * 		When the local header is malformed, or the content cannot be inflated.
+	 */
+	public byte[] read(MappedZipEntry entry) throws IOException {
+		if (entry.getMethod() == ZipEntry.DEFLATED)
+			return inflate(entry, dataStart(entry), entry.getCompressedSize());
+		ByteBuffer content = getContent(entry);
+		byte[] value = new byte[content.remaining()];
+		content.get(value);
+		return value;
+	}
+
+	/**
+	 * Readers of local headers, such as {@link java.util.zip.ZipInputStream}, see the same entries as readers
+	 * of the central directory only if the two agree. Archives written by regular tools always do,
+	 * but obfuscators may add duplicate names, hide entries from the central directory,
+	 * or write local headers that differ from it.
+	 *
+	 * @return {@code true} when the central directory has no duplicate names, and the local headers of its
+	 * entries follow each other in the same order from the start of the file up to the central directory,
+	 * with the same names, methods, sizes and CRC values.
+	 *
+	 * @throws IOException
+	 * 		When a header lies outside of the archive.
+	 */
+	public boolean hasConsistentHeaders() throws IOException {
+		Set<String> names = new HashSet<>();
+		long expected = 0;
+		for (MappedZipEntry entry : entries) {
+			if (!names.add(entry.getName()) || entry.getLocalHeaderOffset() != expected)
+				return false;
+			expected = localEnd(entry);
+			if (expected < 0)
+				return false;
+		}
+		return expected == centralStart;
+	}
+
+	/**
+	 * @param entry
+	 * 		Entry in the archive.
+	 *
+	 * @return Offset after the entry's data and data descriptor,
+	 * or {@code -1} if the local header differs from the central directory.
+	 *
+	 * @throws IOException
+	 * 		When the header lies outside of the archive.
+	 */
+	private long localEnd(MappedZipEntry entry) throws IOException {
+		long local = entry.getLocalHeaderOffset();
+		if (local + LOCAL_SIZE > size || i32(local) != SIG_LOCAL)
+			return -1;
+		int flags = u16(local + 6);
+		int nameLen = u16(local + 26);
+		byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+		if ((flags & FLAG_ENCRYPTED) != 0 || u16(local + 8) != entry.getMethod() ||
+				!Arrays.equals(bytes(local + LOCAL_SIZE, nameLen), name))
+			return -1;
+		long csize = entry.getCompressedSize();
+		long end = local + LOCAL_SIZE + nameLen + u16(local + 28) + csize;
+		boolean zip64 = csize >= U32_MAX || entry.getSize() >= U32_MAX;
+		if ((flags & FLAG_DESCRIPTOR) == 0)
+			return zip64 || hasSameValues(local, entry) ? end : -1;
+		// Only deflated entries can have their sizes in a descriptor after the data
+		if (entry.getMethod() != ZipEntry.DEFLATED)
+			return -1;
+		if (end + 4 <= size && i32(end) == SIG_DESCRIPTOR)
+			end += 4;
+		return end + (zip64 ? 20 : 12);
+	}
+
+	private boolean hasSameValues(long local, MappedZipEntry entry) throws IOException {
+		return u32(local + 14) == entry.getCrc() && u32(local + 18) == entry.getCompressedSize() &&
+				u32(local + 22) == entry.getSize();
+	}
+
+	/**
+	 * Releases the mapped segments right away, so the archive is not locked until they are garbage collected.
+	 * Views returned by {@link #getContent(MappedZipEntry)} must not be used afterwards.
+	 *
+	 * @throws IOException
+	 * 		When the file channel cannot be closed.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		// Segments are not set yet if the archive could not be mapped
+		for (int i = 0; segments != null && i < segments.length; i++) {
+			if (segments[i] != null)
+				VMUtil.unmap(segments[i]);
+			// Reads after closing fail instead of accessing released memory
+			segments[i] = null;
+		}
+		channel.close();
+	}
+
+	private List<MappedZipEntry> readCentralDirectory() throws IOException {
+		long end = findEnd();
+		long cdSize = u32(end + 12);
+		long cdOffset = u32(end + 16);
+		long cdEnd = end;
+		// Check for ZIP64 end of central directory record
+		long locator = end - 20;
+		if (isZip64(end) && locator >= 0 && i32(locator) == SIG_END64_LOCATOR) {
+			long end64 = i64(locator + 8);
+			if (end64 < 0 || end64 + 56 > size || i32(end64) != SIG_END64)
+				throw new ZipException("Invalid ZIP64 end header");
+			cdSize = i64(end64 + 40);
+			cdOffset = i64(end64 + 48);
+			cdEnd = end64;
+		}
+		// Data may be prepended to the archive, so offsets are relative to where the central directory
+		// actually starts rather than the start of the file.
+		long base = cdEnd - cdSize - cdOffset;
+		if (base < 0 || cdSize < 0)
+			throw new ZipException("Invalid central directory bounds");
+		long pos = centralStart = base + cdOffset;
+		List<MappedZipEntry> list = new ArrayList<>();
+		while (pos + CENTRAL_SIZE <= cdEnd && i32(pos) == SIG_CENTRAL) {
+			int nameLen = u16(pos + 28);
+			int extraLen = u16(pos + 30);
+			int commentLen = u16(pos + 32);
+			long next = pos + CENTRAL_SIZE + nameLen + extraLen + commentLen;
+			if (next > cdEnd)
+				throw new ZipException("Invalid central directory header");
+			list.add(readCentralEntry(pos, base));
+			pos = next;
+		}
+		return list;
+	}
+
+	private boolean isZip64(long end) throws IOException {
+		return u16(end + 10) == 0xFFFF || u32(end + 12) == U32_MAX || u32(end + 16) == U32_MAX;
+	}
+
+	private MappedZipEntry readCentralEntry(long pos, long base) throws IOException {
+		int method = u16(pos + 10);
+		int nameLen = u16(pos + 28);
+		int extraLen = u16(pos + 30);
+		// Sizes and offset, possibly replaced by ZIP64 extended values
+		long[] values = {u32(pos + 24), u32(pos + 20), u32(pos + 42)};
+		String name = new String(bytes(pos + CENTRAL_SIZE, nameLen), StandardCharsets.UTF_8);
+		readZip64Extra(pos + CENTRAL_SIZE + nameLen, extraLen, values);
+		MappedZipEntry entry = new MappedZipEntry(name, base + values[2]);
+		// Unsupported methods are left unset and rejected once the content is read
+		if (method == ZipEntry.STORED || method == ZipEntry.DEFLATED)
+			entry.setMethod(method);
+		entry.setCrc(u32(pos + 16));
+		if (values[0] >= 0)
+			entry.setSize(values[0]);
+		if (values[1] >= 0)
+			entry.setCompressedSize(values[1]);
+		return entry;
+	}
+
+	private void readZip64Extra(long extra, int extraLen, long[] values) throws IOException {
+		long extraEnd = extra + extraLen;
+		while (extra + 4 <= extraEnd) {
+			int tag = u16(extra);
+			int tagSize = u16(extra + 2);
+			long data = extra + 4;
+			if (tag == 0x0001) {
+				// Only values that overflowed in the header are present, in the order: size, csize, offset
+				for (int i = 0; i < values.length; i++) {
+					if (values[i] == U32_MAX && data + 8 <= extraEnd) {
+						values[i] = i64(data);
+						data += 8;
+					}
+				}
+				return;
+			}
+			extra = data + tagSize;
+		}
+	}
+
+	private long findEnd() throws IOException {
+		long min = Math.max(0, size - END_SIZE - 0xFFFF);
+		long candidate = -1;
+		for (long pos = size - END_SIZE; pos >= min; pos--) {
+			if (i32(pos) != SIG_END)
+				continue;
+			// Prefer the header whose comment spans exactly to the end of the file
+			if (pos + END_SIZE + u16(pos + 20) == size)
+				return pos;
+			if (candidate < 0)
+				candidate = pos;
+		}
+		if (candidate < 0)
+			throw new ZipException("Zip end header not found");
+		return candidate;
+	}
+
+	private long dataStart(MappedZipEntry entry) throws IOException {
+		long local = entry.getLocalHeaderOffset();
+		if (local < 0 || local + LOCAL_SIZE > size || i32(local) != SIG_LOCAL)
+			throw new ZipException("Invalid local header for entry: " + entry.getName());
+		return local + LOCAL_SIZE + u16(local + 26) + u16(local + 28);
+	}
+
+	private byte[] inflate(MappedZipEntry entry, long start, long csize) throws IOException {
+		checkLength(entry, csize);
+		long declared = entry.getSize();
+		byte[] out = new byte[declared >= 0 && declared < Integer.MAX_VALUE - 8 ? (int) declared : 8192];
+		Inflater inflater = INFLATERS.get();
+		byte[] chunk = CHUNKS.get();
+		inflater.reset();
+		try {
+			long pos = start;
+			long remaining = csize;
+			boolean dummy = false;
+			int written = 0;
+			while (!inflater.finished()) {
+				if (inflater.needsInput()) {
+					if (remaining > 0) {
+						int len = (int) Math.min(chunk.length, remaining);
+						copy(pos, chunk, 0, len);
+						pos += len;
+						remaining -= len;
+						inflater.setInput(chunk, 0, len);
+					} else if (!dummy) {
+						// The nowrap inflater may need an extra dummy byte to finish
+						chunk[0] = 0;
+						inflater.setInput(chunk, 0, 1);
+						dummy = true;
+					} else {
+						throw new ZipException("Unexpected end of deflated entry: " + entry.getName());
+					}
+				}
+				if (inflater.needsDictionary())
+					throw new ZipException("Unsupported preset dictionary for entry: " + entry.getName());
+				if (written == out.length) {
+					// Declared size was not accurate, grow the output
+					out = Arrays.copyOf(out, Math.max(8192, out.length * 2));
+				}
+				written += inflater.inflate(out, written, out.length - written);
+			}
+			return written == out.length ? out : Arrays.copyOf(out, written);
+		} catch (DataFormatException ex) {
+			throw new ZipException("Invalid deflated data for entry: " + entry.getName());
+		}
+	}
+
+	private static int checkLength(MappedZipEntry entry, long length) throws ZipException {
+		if (length < 0 || length > Integer.MAX_VALUE - 8)
+			throw new ZipException("Unsupported entry size for entry: " + entry.getName());
+		return (int) length;
+	}
+
+	private ByteBuffer slice(long pos, int length) throws IOException {
+		checkBounds(pos, length);
+		int index = (int) (pos / SEGMENT_SIZE);
+		int offset = (int) (pos % SEGMENT_SIZE);
+		ByteBuffer segment = segments[index];
+		if (offset + length <= segment.capacity()) {
+			ByteBuffer dup = segment.duplicate();
+			dup.position(offset);
+			dup.limit(offset + length);
+			return dup.slice().asReadOnlyBuffer();
+		}
+		// Spans beyond the overlap of the segment, fall back to a copy
+		byte[] value = new byte[length];
+		copy(pos, value, 0, length);
+		return ByteBuffer.wrap(value).asReadOnlyBuffer();
+	}
+
+	private void copy(long pos, byte[] dst, int off, int len) throws IOException {
+		checkBounds(pos, len);
+		while (len > 0) {
+			int index = (int) (pos / SEGMENT_SIZE);
+			int offset = (int) (pos % SEGMENT_SIZE);
+			ByteBuffer dup = segments[index].duplicate();
+			int n = Math.min(len, dup.capacity() - offset);
+			dup.position(offset);
+			dup.get(dst, off, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	private byte[] bytes(long pos, int len) throws IOException {
+		byte[] value = new byte[len];
+		copy(pos, value, 0, len);
+		return value;
+	}
+
+	private void checkBounds(long pos, long len) throws ZipException {
+		if (pos < 0 || len < 0 || pos + len > size)
+			throw new ZipException("Read out of archive bounds");
+	}
+
+	private int u16(long pos) throws IOException {
+		return i16(pos) & 0xFFFF;
+	}
+
+	private long u32(long pos) throws IOException {
+		return i32(pos) & U32_MAX;
+	}
+
+	private short i16(long pos) throws IOException {
+		checkBounds(pos, 2);
+		return segments[(int) (pos / SEGMENT_SIZE)].getShort((int) (pos % SEGMENT_SIZE));
+	}
+
+	private int i32(long pos) throws IOException {
+		checkBounds(pos, 4);
+		return segments[(int) (pos / SEGMENT_SIZE)].getInt((int) (pos % SEGMENT_SIZE));
+	}
+
+	private long i64(long pos) throws IOException {
+		checkBounds(pos, 8);
+		return segments[(int) (pos / SEGMENT_SIZE)].getLong((int) (pos % SEGMENT_SIZE));
+	}
+
+	/**
+	 * Zip entry with the location of its local header in the mapped archive.
+	 */
+	public static class MappedZipEntry extends ZipEntry {
+		private final long localHeaderOffset;
+
+		private MappedZipEntry(String name, long localHeaderOffset) {
+			super(name);
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		/**
+		 * @return Offset of the entry's local header in the archive.
+		 */
+		public long getLocalHeaderOffset() {
+			return localHeaderOffset;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package me.coley.recaf.workspace;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.coley.recaf.util.IOUtil;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Archive reader that walks the central directory of a zip file once and inflates entries on a bounded
+ * pool of worker threads.
+ * <br>
+ * Entry contents are handed back in archive order on the calling thread, so stateful consumers such as
+ * {@link EntryLoader} see the same sequence they would from a sequential read.
+ * <br>
+ * Entries are read either through {@link ZipFile} or through a {@link MappedZipFile}. Neither verifies
+ * entry CRC values, so archives with intentionally bogus CRC values are read without any special handling.
+ *
+ * @author Matt
+ */
+public class ParallelArchiveReader {
+	static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int WINDOW_PER_THREAD = 16;
+	private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+	private final Path path;
+	private final int threads;
+	private final boolean mapped;
+
+	/**
+	 * Constructs a reader that uses one worker per available processor.
+	 *
+	 * @param path
+	 * 		Path to the archive.
+	 */
+	public ParallelArchiveReader(Path path) {
+		this(path, DEFAULT_THREADS, false);
+	}
+
+	/**
+	 * Constructs a reader that uses one worker per available processor.
+	 *
+	 * @param path
+	 * 		Path to the archive.
+	 * @param mapped
+	 * 		{@code true} to read the archive through a {@link MappedZipFile}.
+	 */
+	public ParallelArchiveReader(Path path, boolean mapped) {
+		this(path, DEFAULT_THREADS, mapped);
+	}
+
+	/**
+	 * @param path
+	 * 		Path to the archive.
+	 * @param threads
+	 * 		Number of worker threads to inflate entries with.
+	 * 		Values of {@code 1} or lower read entries on the calling thread.
+	 * @param mapped
+	 * 		{@code true} to read the archive through a {@link MappedZipFile}.
+	 */
+	public ParallelArchiveReader(Path path, int threads, boolean mapped) {
+		this.path = path;
+		this.threads = threads;
+		this.mapped = mapped;
+	}
+
+	/**
+	 * Read the archive.
+	 *
+	 * @param filter
+	 * 		Filter for entries to read. Entries not matching the filter are never inflated.
+	 * @param consumer
+	 * 		Consumer fed the entries and their content, in archive order, on the calling thread.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be opened, or when an entry cannot be read.
+	 */
+	public void read(Predicate<ZipEntry> filter, EntryConsumer consumer) throws IOException {
+		if (mapped) {
+			try (MappedZipFile zf = new MappedZipFile(path)) {
+				read(zf.getEntries(), filter, entry -> zf.read((MappedZipFile.MappedZipEntry) entry), consumer);
+			}
+		} else {
+			try (ZipFile zf = new ZipFile(path.toFile())) {
+				read(Collections.list(zf.entries()), filter, entry -> inflate(zf, entry), consumer);
+			}
+		}
+	}
+
+	private void read(List<? extends ZipEntry> all, Predicate<ZipEntry> filter, ContentReader<ZipEntry> source,
+					  EntryConsumer consumer) throws IOException {
+		List<ZipEntry> entries = new ArrayList<>();
+		for (ZipEntry entry : all)
+			if (filter.test(entry))
+				entries.add(entry);
+		readOrdered(entries, threads, source, consumer::accept);
+	}
+
+	/**
+	 * Reads the content of the given items on a bounded pool of worker threads.
+	 *
+	 * @param items
+	 * 		Items to read.
+	 * @param threads
+	 * 		Number of worker threads to read with.
+	 * 		Values of {@code 1} or lower read items on the calling thread.
+	 * @param reader
+	 * 		Reader for item content, called on the worker threads.
+	 * @param consumer
+	 * 		Consumer fed the items and their content, in order, on the calling thread.
+	 * @param <T>
+	 * 		Item type.
+	 *
+	 * @throws IOException
+	 * 		When the reader or consumer fail.
+	 */
+	static <T> void readOrdered(List<T> items, int threads, ContentReader<T> reader,
+								ContentConsumer<T> consumer) throws IOException {
+		if (threads <= 1 || items.size() <= 1) {
+			for (T item : items)
+				consumer.accept(item, reader.read(item));
+			return;
+		}
+		ExecutorService service = Executors.newFixedThreadPool(Math.min(threads, items.size()),
+				new ThreadFactoryBuilder()
+						.setNameFormat("Recaf Archive Reader #%d")
+						.setDaemon(true).build());
+		// Only a limited number of items are in-flight at a time, which bounds the amount
+		// of read content waiting on the consumer.
+		int window = threads * WINDOW_PER_THREAD;
+		Deque<Future<byte[]>> pending = new ArrayDeque<>(window);
+		try {
+			int next = 0;
+			for (T item : items) {
+				pending.add(service.submit(() -> reader.read(item)));
+				if (pending.size() >= window)
+					consumer.accept(items.get(next++), await(pending.poll()));
+			}
+			while (!pending.isEmpty())
+				consumer.accept(items.get(next++), await(pending.poll()));
+		} finally {
+			service.shutdownNow();
+			// Workers may still be reading from a mapped archive, which must stay open until they are done
+			awaitTermination(service);
+		}
+	}
+
+	private static void awaitTermination(ExecutorService service) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (service.awaitTermination(1, TimeUnit.MINUTES))
+					break;
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private static byte[] inflate(ZipFile zf, ZipEntry entry) throws IOException {
+		long size = entry.getSize();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ?
+				(int) size : 8192);
+		try (InputStream in = zf.getInputStream(entry)) {
+			return IOUtil.toByteArray(in, out, BUFFERS.get());
+		}
+	}
+
+	private static byte[] await(Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading archive");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException("Failed to read archive entry", cause);
+		}
+	}
+
+	/**
+	 * Reader of item content.
+	 *
+	 * @param <T>
+	 * 		Item type.
+	 */
+	@FunctionalInterface
+	interface ContentReader<T> {
+		byte[] read(T item) throws IOException;
+	}
+
+	/**
+	 * Consumer of item content.
+	 *
+	 * @param <T>
+	 * 		Item type.
+	 */
+	@FunctionalInterface
+	interface ContentConsumer<T> {
+		void accept(T item, byte[] content) throws IOException;
+	}
+
+	/**
+	 * Consumer of archive entries.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer {
+		/**
+		 * @param entry
+		 * 		Entry in the archive.
+		 * @param content
+		 * 		Inflated content of the entry.
+		 *
+		 * @throws IOException
+		 * 		When the consumer cannot handle the content.
+		 */
+		void accept(ZipEntry entry, byte[] content) throws IOException;
+	}
+}
@@ -0,0 +1,262 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.Recaf;
+import me.coley.recaf.util.ClasspathUtil;
+import me.coley.recaf.util.Log;
+import org.objectweb.asm.*;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the types referenced by classes, used by {@link PhantomResource} to find which classes
+ * reference missing types. Types available on the system classpath are not recorded.
+ * <br>
+ * The {@link Declaration declarations} of the classes are recorded in the same pass, so that the
+ * hierarchy and member tables of an analysis can be created without reading all classes again.
+ *
+ * @author Matt
+ */
+public class PhantomReferenceIndex {
+	// Types referenced by each indexed class
+	private final Map<String, Set<String>> references = new HashMap<>();
+	// Indexed classes referencing each type
+	private final Map<String, Set<String>> referrers = new HashMap<>();
+	// Declaration of each indexed class
+	private final Map<String, Declaration> declarations = new HashMap<>();
+	private final Map<String, Boolean> systemTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * Record the types referenced by a class. The class should not already be indexed.
+	 *
+	 * @param name
+	 * 		Class name.
+	 * @param code
+	 * 		Class bytecode.
+	 *
+	 * @return Types referenced by the class.
+	 */
+	public Set<String> index(String name, byte[] code) {
+		Set<String> types = new HashSet<>();
+		Remapper collector = new Remapper() {
+			@Override
+			public String map(String internalName) {
+				if (!isSystemType(internalName))
+					types.add(internalName);
+				return internalName;
+			}
+		};
+		ReferenceVisitor visitor = new ReferenceVisitor();
+		try {
+			new ClassReader(code).accept(new ClassRemapper(visitor, collector),
+					ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			declarations.put(name, visitor.declaration);
+		} catch (Exception ex) {
+			Log.debug("Could not read references of {}", name, ex);
+		}
+		types.remove(name);
+		references.put(name, types);
+		for (String type : types)
+			referrers.computeIfAbsent(type, k -> new HashSet<>()).add(name);
+		return types;
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Types that were referenced by the class, or {@code null} if the class was not indexed.
+	 */
+	public Set<String> unindex(String name) {
+		declarations.remove(name);
+		Set<String> types = references.remove(name);
+		if (types == null)
+			return null;
+		for (String type : types) {
+			Set<String> names = referrers.get(type);
+			names.remove(name);
+			if (names.isEmpty())
+				referrers.remove(type);
+		}
+		return types;
+	}
+
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Types referenced by the class.
+	 */
+	public Set<String> getReferences(String name) {
+		return references.getOrDefault(name, Collections.emptySet());
+	}
+
+	/**
+	 * @param type
+	 * 		Type name.
+	 *
+	 * @return Indexed classes referencing the type.
+	 */
+	public Set<String> getReferrers(String type) {
+		return referrers.getOrDefault(type, Collections.emptySet());
+	}
+
+	/**
+	 * @return Declarations of the indexed classes that could be read.
+	 */
+	public Collection<Declaration> getDeclarations() {
+		return Collections.unmodifiableCollection(declarations.values());
+	}
+
+	/**
+	 * @param classes
+	 * 		Available classes.
+	 *
+	 * @return Referenced types that are not available.
+	 */
+	public Set<String> getMissingTypes(Map<String, byte[]> classes) {
+		Set<String> types = new HashSet<>();
+		for (String type : referrers.keySet())
+			if (!classes.containsKey(type))
+				types.add(type);
+		return types;
+	}
+
+	/**
+	 * @param classes
+	 * 		Available classes.
+	 * @param type
+	 * 		Type name.
+	 *
+	 * @return {@code true} when the type is referenced, but not available.
+	 */
+	public boolean isMissing(Map<String, byte[]> classes, String type) {
+		return referrers.containsKey(type) && !classes.containsKey(type);
+	}
+
+	/**
+	 * Remove all indexed classes.
+	 */
+	public void clear() {
+		references.clear();
+		referrers.clear();
+		declarations.clear();
+	}
+
+	private boolean isSystemType(String name) {
+		return systemTypes.computeIfAbsent(name, n -> ClasspathUtil.resourceExists(n + ".class"));
+	}
+
+	/**
+	 * Declaration of a class and its members, without any code.
+	 */
+	public static class Declaration {
+		private final int version;
+		private final int access;
+		private final String name;
+		private final String superName;
+		private final String[] interfaces;
+		private final List<Member> fields = new ArrayList<>();
+		private final List<Member> methods = new ArrayList<>();
+
+		private Declaration(int version, int access, String name, String superName, String[] interfaces) {
+			this.version = version;
+			this.access = access;
+			this.name = name;
+			this.superName = superName;
+			this.interfaces = interfaces == null ? new String[0] : interfaces;
+		}
+
+		/**
+		 * @return Class access flags.
+		 */
+		public int getAccess() {
+			return access;
+		}
+
+		/**
+		 * @return Internal class name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Internal name of the parent class. May be {@code null} for {@code java/lang/Object}.
+		 */
+		public String getSuperName() {
+			return superName;
+		}
+
+		/**
+		 * @return Internal names of implemented interfaces.
+		 */
+		public String[] getInterfaces() {
+			return interfaces.clone();
+		}
+
+		/**
+		 * Visit the declaration of the class and its members.
+		 *
+		 * @param cv
+		 * 		Visitor to pass the declaration to.
+		 */
+		public void accept(ClassVisitor cv) {
+			cv.visit(version, access, name, null, superName, interfaces);
+			for (Member field : fields)
+				cv.visitField(field.access, field.name, field.desc, null, null);
+			for (Member method : methods)
+				cv.visitMethod(method.access, method.name, method.desc, null, method.exceptions);
+			cv.visitEnd();
+		}
+	}
+
+	/**
+	 * Declaration of a field or method.
+	 */
+	private static class Member {
+		private final int access;
+		private final String name;
+		private final String desc;
+		private final String[] exceptions;
+
+		private Member(int access, String name, String desc, String[] exceptions) {
+			this.access = access;
+			this.name = name;
+			this.desc = desc;
+			this.exceptions = exceptions;
+		}
+	}
+
+	/**
+	 * Visitor that visits all members, so that a wrapping {@link ClassRemapper} sees every referenced type.
+	 * The class declaration is recorded along the way.
+	 */
+	private static class ReferenceVisitor extends ClassVisitor {
+		private Declaration declaration;
+
+		private ReferenceVisitor() {
+			super(Recaf.ASM_VERSION);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String sig, String superName,
+						  String[] interfaces) {
+			declaration = new Declaration(version, access, name, superName, interfaces);
+		}
+
+		@Override
+		public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+			declaration.fields.add(new Member(access, name, desc, null));
+			return new FieldVisitor(api) {};
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+			declaration.methods.add(new Member(access, name, desc, exceptions));
+			return new MethodVisitor(api) {};
+		}
+	}
+}
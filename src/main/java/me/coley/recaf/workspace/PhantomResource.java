@@ -4,6 +4,8 @@ import me.coley.recaf.Recaf;
 import me.coley.recaf.util.ClassUtil;
 import me.coley.recaf.util.Log;
 import me.coley.recaf.util.ReflectUtil;
+import me.coley.recaf.util.struct.InternalBiConsumer;
+import me.coley.recaf.util.struct.InternalConsumer;
 import org.clyze.jphantom.ClassMembers;
 import org.clyze.jphantom.JPhantom;
 import org.clyze.jphantom.Options;
@@ -12,6 +14,7 @@ import org.clyze.jphantom.access.ClassAccessStateMachine;
 import org.clyze.jphantom.access.FieldAccessStateMachine;
 import org.clyze.jphantom.access.MethodAccessStateMachine;
 import org.clyze.jphantom.adapters.ClassPhantomExtractor;
+import org.clyze.jphantom.constraints.Constraint;
 import org.clyze.jphantom.hier.ClassHierarchy;
 import org.clyze.jphantom.hier.IncrementalClassHierarchy;
 import org.objectweb.asm.*;
@@ -19,9 +22,13 @@ import org.objectweb.asm.tree.ClassNode;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Resource for holding phantom references.
+ * <br>
+ * The types referenced by each input class are tracked, so that {@link #updatePhantoms(Map, Collection)
+ * updates} only analyze the classes that reference the same missing types as the updated classes.
  *
  * @author Matt
  */
@@ -32,12 +39,21 @@ public class PhantomResource extends JavaResource {
 	//  - assembling methods (just at startup?)
 
 	// TODO: Add a visual indicator when this passes / fails
+	private final PhantomReferenceIndex references = new PhantomReferenceIndex();
+	// Classes of the followed resource updated since phantoms were last generated
+	private final Set<String> updates = ConcurrentHashMap.newKeySet();
+	private final InternalBiConsumer<String, byte[]> putListener =
+			InternalBiConsumer.internal((name, code) -> updates.add(name));
+	private final InternalConsumer<Object> removeListener =
+			InternalConsumer.internal(key -> updates.add(String.valueOf(key)));
+	private JavaResource followed;
+	private boolean populated;
 
 	/**
 	 * Constructs the phantom resource.
 	 */
 	public PhantomResource() {
-		super(ResourceKind.JAR);
+		super(ResourceKind.JAR, true);
 	}
 
 	/**
@@ -46,8 +62,10 @@ public class PhantomResource extends JavaResource {
 	 * @throws IOException
 	 * 		When the files cannot be deleted.
 	 */
-	public void clear() throws IOException {
+	public synchronized void clear() throws IOException {
 		getClasses().clear();
+		references.clear();
+		populated = false;
 	}
 
 	/**
@@ -60,49 +78,176 @@ public class PhantomResource extends JavaResource {
 	 * @throws IOException
 	 * 		Thrown when JPhantom cannot read from the temporary file where these classes are written to.
 	 */
-	public void populatePhantoms(Map<String, byte[]> classes) throws IOException {
+	public synchronized void populatePhantoms(Map<String, byte[]> classes) throws IOException {
 		Log.debug("Begin generating phantom classes, given {} input classes", classes.size());
 		// Clear old classes
 		clear();
-		// Write the parameter passed classes to a temp jar
+		classes.forEach(references::index);
+		populated = true;
+		// Only classes that reference missing types need to be analyzed
+		Set<String> types = new HashSet<>();
+		Set<String> users = new HashSet<>();
+		for (String type : references.getMissingTypes(classes)) {
+			types.add(type);
+			users.addAll(references.getReferrers(type));
+		}
+		generate(classes, users, types);
+	}
+
+	/**
+	 * Updates the current resource's phantom classes for the classes of the given resource.
+	 * Updates to the resource are followed from the first call on, so that later calls only cover the classes
+	 * updated in between. The listeners doing so are internal, so after the resource is
+	 * {@link JavaResource#invalidate() invalidated} the next call covers all classes again.
+	 *
+	 * @param resource
+	 * 		Resource to generate phantoms for.
+	 *
+	 * @throws IOException
+	 * 		Thrown when JPhantom cannot read from the temporary file where these classes are written to.
+	 */
+	public synchronized void updatePhantoms(JavaResource resource) throws IOException {
+		if (followed != resource || !resource.getClasses().getPutListeners().contains(putListener)) {
+			if (followed != null) {
+				followed.getClasses().getPutListeners().remove(putListener);
+				followed.getClasses().getRemoveListeners().remove(removeListener);
+			}
+			resource.getClasses().getPutListeners().add(putListener);
+			resource.getClasses().getRemoveListeners().add(removeListener);
+			followed = resource;
+			updates.clear();
+			populated = false;
+		}
+		Set<String> updated = new HashSet<>(updates);
+		updates.removeAll(updated);
+		updatePhantoms(resource.getClasses(), updated);
+	}
+
+	/**
+	 * Updates the current resource's phantom classes after some of the given classes have changed.
+	 * Only the missing types referenced by the changed classes are generated again, along with the
+	 * missing types that are referenced together with them.
+	 * If the phantoms have not been {@link #populatePhantoms(Map) populated} yet, they are populated instead.
+	 *
+	 * @param classes
+	 * 		Collection of classes to generate phantoms for.
+	 * @param updated
+	 * 		Names of classes that were added, changed or removed since the last update.
+	 *
+	 * @throws IOException
+	 * 		Thrown when JPhantom cannot read from the temporary file where these classes are written to.
+	 */
+	public synchronized void updatePhantoms(Map<String, byte[]> classes, Collection<String> updated)
+			throws IOException {
+		if (!populated) {
+			populatePhantoms(classes);
+			return;
+		}
+		Set<String> affected = new HashSet<>();
+		for (String name : updated) {
+			Set<String> old = references.unindex(name);
+			if (old != null)
+				affected.addAll(old);
+			byte[] code = classes.get(name);
+			if (code != null)
+				affected.addAll(references.index(name, code));
+			// The class may have been a missing type, or now be one
+			affected.add(name);
+		}
+		// Drop phantoms of types that are no longer missing
+		Set<String> roots = new HashSet<>();
+		for (String type : affected) {
+			if (references.isMissing(classes, type))
+				roots.add(type);
+			else
+				getClasses().remove(type);
+		}
+		if (roots.isEmpty()) {
+			Log.debug("Phantom update skipped, {} updated classes reference no missing types", updated.size());
+			return;
+		}
+		// Missing types used by the same class constrain each other, so collect all connected types
+		Set<String> types = new HashSet<>();
+		Set<String> users = new HashSet<>();
+		Deque<String> queue = new ArrayDeque<>(roots);
+		while (!queue.isEmpty()) {
+			String type = queue.pop();
+			if (!types.add(type))
+				continue;
+			for (String user : references.getReferrers(type))
+				if (users.add(user))
+					for (String other : references.getReferences(user))
+						if (!types.contains(other) && references.isMissing(classes, other))
+							queue.push(other);
+		}
+		Log.debug("Begin updating {} phantom classes, given {} of {} input classes",
+				types.size(), users.size(), classes.size());
+		generate(classes, users, types);
+	}
+
+	/**
+	 * Runs JPhantom and populates the current resource with the generated classes.
+	 *
+	 * @param classes
+	 * 		All input classes.
+	 * @param users
+	 * 		Names of input classes to analyze.
+	 * @param types
+	 * 		Missing types to replace existing phantoms of.
+	 *
+	 * @throws IOException
+	 * 		Thrown when JPhantom cannot read from the temporary file where these classes are written to.
+	 */
+	private void generate(Map<String, byte[]> classes, Set<String> users, Set<String> types) throws IOException {
 		Map<Type, ClassNode> nodes = new HashMap<>();
-		classes.forEach((name, c) -> {
-			ClassReader cr = new ClassReader(c);
+		for (String name : users) {
+			ClassReader cr = new ClassReader(classes.get(name));
 			ClassNode node = ClassUtil.getNode(cr, 0);
 			nodes.put(Type.getObjectType(node.name), node);
-		});
-		// Read into JPhantom
-		Options.V().setSoftFail(true);
-		Options.V().setJavaVersion(8);
-		ClassHierarchy hierarchy = createHierarchy(classes);
-		ClassMembers members = createMembers(classes, hierarchy);
-		classes.forEach((name, c) -> {
-			ClassReader cr = new ClassReader(c);
-			if (cr.getClassName().contains("$"))
-				return;
-			try {
-				cr.accept(new ClassPhantomExtractor(hierarchy, members), 0);
-			} catch (Throwable t) {
-				Log.debug("Phantom extraction failed: {}", t);
+		}
+		try {
+			// Read into JPhantom
+			Options.V().setSoftFail(true);
+			Options.V().setJavaVersion(8);
+			// The tables are created from the indexed declarations, since reading all classes
+			// again would make every update as slow as populating from scratch.
+			ClassHierarchy hierarchy = createHierarchy(references.getDeclarations());
+			ClassMembers members = createMembers(references.getDeclarations(), hierarchy);
+			for (String name : users) {
+				ClassReader cr = new ClassReader(classes.get(name));
+				if (cr.getClassName().contains("$"))
+					continue;
+				try {
+					cr.accept(new ClassPhantomExtractor(hierarchy, members), 0);
+				} catch (Throwable t) {
+					Log.debug("Phantom extraction failed: {}", t);
+				}
+			}
+			// Remove duplicate constraints for faster analysis
+			Collection<Constraint> constraints = ClassAccessStateMachine.v().getConstraints();
+			Set<Constraint> unique = new LinkedHashSet<>(constraints);
+			constraints.clear();
+			constraints.addAll(unique);
+			// Execute and populate the current resource with generated classes.
+			// Phantoms of unrelated types are kept from earlier runs.
+			JPhantom phantom = new JPhantom(nodes, hierarchy, members);
+			phantom.run();
+			int count = 0;
+			for (Map.Entry<Type, byte[]> e : phantom.getGenerated().entrySet()) {
+				String name = e.getKey().getInternalName();
+				if (types.contains(name) || !getClasses().containsKey(name)) {
+					getClasses().put(name, decorate(e.getValue()));
+					count++;
+				}
 			}
-		});
-		// Remove duplicate constraints for faster analysis
-		Set<String> existingConstraints = new HashSet<>();
-		ClassAccessStateMachine.v().getConstraints().removeIf(c -> {
-			boolean isDuplicate = existingConstraints.contains(c.toString());
-			existingConstraints.add(c.toString());
-			return isDuplicate;
-		});
-		// Execute and populate the current resource with generated classes
-		JPhantom phantom = new JPhantom(nodes, hierarchy, members);
-		phantom.run();
-		phantom.getGenerated().forEach((k, v) -> getClasses().put(k.getInternalName(), decorate(v)));
-		Log.debug("Phantom analysis complete, generated {} classes", classes.size());
-		// Cleanup
-		Phantoms.refresh();
-		ClassAccessStateMachine.refresh();
-		FieldAccessStateMachine.refresh();
-		MethodAccessStateMachine.refresh();
+			Log.debug("Phantom analysis complete, generated {} classes", count);
+		} finally {
+			// Cleanup
+			Phantoms.refresh();
+			ClassAccessStateMachine.refresh();
+			FieldAccessStateMachine.refresh();
+			MethodAccessStateMachine.refresh();
+		}
 	}
 
 	/**
@@ -114,15 +259,7 @@ public class PhantomResource extends JavaResource {
 	 * @return Members instance.
 	 */
 	public static ClassMembers createMembers(Map<String, byte[]> classMap, ClassHierarchy hierarchy) {
-		Class<?>[] argTypes = new Class[]{ClassHierarchy.class};
-		Object[] argVals = new Object[]{hierarchy};
-		ClassMembers repo = ReflectUtil.quietNew(ClassMembers.class, argTypes, argVals);
-		try {
-			new ClassReader("java/lang/Object").accept(repo.new Feeder(), 0);
-		} catch (IOException ex) {
-			Log.error("Failed to get initial reader ClassMembers, could not lookup 'java/lang/Object'");
-			throw new IllegalStateException();
-		}
+		ClassMembers repo = newMembers(hierarchy);
 		for (Map.Entry<String, byte[]> e : classMap.entrySet()) {
 			try {
 				new ClassReader(e.getValue()).accept(repo.new Feeder(), 0);
@@ -133,6 +270,27 @@ public class PhantomResource extends JavaResource {
 		return repo;
 	}
 
+	/**
+	 * @param declarations
+	 * 		Declarations of the classes to pull members from.
+	 * @param hierarchy
+	 * 		Hierarchy to pass to {@link ClassMembers} constructor.
+	 *
+	 * @return Members instance.
+	 */
+	public static ClassMembers createMembers(Collection<PhantomReferenceIndex.Declaration> declarations,
+											 ClassHierarchy hierarchy) {
+		ClassMembers repo = newMembers(hierarchy);
+		for (PhantomReferenceIndex.Declaration declaration : declarations) {
+			try {
+				declaration.accept(repo.new Feeder());
+			} catch (Throwable t) {
+				Log.debug("Could not supply {} to ClassMembers feeder", declaration.getName(), t);
+			}
+		}
+		return repo;
+	}
+
 	/**
 	 * @param classMap
 	 * 		Map to pull classes from.
@@ -144,20 +302,8 @@ public class PhantomResource extends JavaResource {
 		for (Map.Entry<String, byte[]> e : classMap.entrySet()) {
 			try {
 				ClassReader reader = new ClassReader(e.getValue());
-				String[] ifaceNames = reader.getInterfaces();
-				Type clazz = Type.getObjectType(reader.getClassName());
-				Type superclass = reader.getSuperName() == null ?
-						Type.getObjectType("java/lang/Object") : Type.getObjectType(reader.getSuperName());
-				Type[] ifaces = new Type[ifaceNames.length];
-				for (int i = 0; i < ifaces.length; i++)
-					ifaces[i] = Type.getObjectType(ifaceNames[i]);
-				// Add type to hierarchy
-				boolean isInterface = (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0;
-				if (isInterface) {
-					hierarchy.addInterface(clazz, ifaces);
-				} else {
-					hierarchy.addClass(clazz, superclass, ifaces);
-				}
+				addToHierarchy(hierarchy, reader.getClassName(), reader.getSuperName(),
+						reader.getInterfaces(), reader.getAccess());
 			} catch (Exception ex) {
 				Log.error("JPhantom: Hierarchy failure for: {}", e.getKey(), ex);
 			}
@@ -165,6 +311,55 @@ public class PhantomResource extends JavaResource {
 		return hierarchy;
 	}
 
+	/**
+	 * @param declarations
+	 * 		Declarations of the classes to add to the hierarchy.
+	 *
+	 * @return Class hierarchy.
+	 */
+	public static ClassHierarchy createHierarchy(Collection<PhantomReferenceIndex.Declaration> declarations) {
+		ClassHierarchy hierarchy = new IncrementalClassHierarchy();
+		for (PhantomReferenceIndex.Declaration declaration : declarations) {
+			try {
+				addToHierarchy(hierarchy, declaration.getName(), declaration.getSuperName(),
+						declaration.getInterfaces(), declaration.getAccess());
+			} catch (Exception ex) {
+				Log.error("JPhantom: Hierarchy failure for: {}", declaration.getName(), ex);
+			}
+		}
+		return hierarchy;
+	}
+
+	private static ClassMembers newMembers(ClassHierarchy hierarchy) {
+		Class<?>[] argTypes = new Class[]{ClassHierarchy.class};
+		Object[] argVals = new Object[]{hierarchy};
+		ClassMembers repo = ReflectUtil.quietNew(ClassMembers.class, argTypes, argVals);
+		try {
+			new ClassReader("java/lang/Object").accept(repo.new Feeder(), 0);
+		} catch (IOException ex) {
+			Log.error("Failed to get initial reader ClassMembers, could not lookup 'java/lang/Object'");
+			throw new IllegalStateException();
+		}
+		return repo;
+	}
+
+	private static void addToHierarchy(ClassHierarchy hierarchy, String name, String superName,
+									   String[] ifaceNames, int access) {
+		Type clazz = Type.getObjectType(name);
+		Type superclass = superName == null ?
+				Type.getObjectType("java/lang/Object") : Type.getObjectType(superName);
+		Type[] ifaces = new Type[ifaceNames.length];
+		for (int i = 0; i < ifaces.length; i++)
+			ifaces[i] = Type.getObjectType(ifaceNames[i]);
+		// Add type to hierarchy
+		boolean isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+		if (isInterface) {
+			hierarchy.addInterface(clazz, ifaces);
+		} else {
+			hierarchy.addClass(clazz, superclass, ifaces);
+		}
+	}
+
 	/**
 	 * Adds a note to the given class that it has been auto-generated.
 	 *
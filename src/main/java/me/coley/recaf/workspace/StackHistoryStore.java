@@ -0,0 +1,37 @@
+package me.coley.recaf.workspace;
+
+import java.util.Stack;
+
+/**
+ * History store that keeps a full copy of each save-state in memory.
+ *
+ * @author Matt
+ */
+public class StackHistoryStore implements HistoryStore {
+	private final Stack<byte[]> stack = new Stack<>();
+
+	@Override
+	public void push(byte[] content) {
+		stack.push(content);
+	}
+
+	@Override
+	public byte[] pop() {
+		return stack.isEmpty() ? null : stack.pop();
+	}
+
+	@Override
+	public byte[] peek() {
+		return stack.isEmpty() ? null : stack.peek();
+	}
+
+	@Override
+	public int size() {
+		return stack.size();
+	}
+
+	@Override
+	public void clear() {
+		stack.clear();
+	}
+}
@@ -2,14 +2,15 @@ package me.coley.recaf.workspace;
 
 import me.coley.recaf.util.IOUtil;
 
-import java.io.*;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Enumeration;
-import java.util.Map;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import static me.coley.recaf.util.Log.*;
+
 /**
  * Importable war resource.
  *
@@ -32,61 +33,65 @@ public class WarResource extends ArchiveResource {
 	}
 
 	@Override
-	protected Map<String, byte[]> loadClasses() throws IOException {
+	protected void readArchive(ArchiveConsumer classes, ArchiveConsumer files) throws IOException {
 		// iterate war entries
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		byte[] buffer = new byte[8192];
 		EntryLoader loader = getEntryLoader();
-		ZipInputStream zis = new ZipInputStream(new FileInputStream(getPath().toFile()));
-		ZipEntry entry;
-		while ((entry = zis.getNextEntry()) != null) {
-			// verify entries are classes and valid files
-			// - skip intentional garbage / zip file abnormalities
-			if (shouldSkip(entry.getName()))
-				continue;
-			if(!loader.isValidFileEntry(entry))
-				continue;
-			if (loader.isValidClassEntry(entry)) {
-				out.reset();
-				byte[] in = IOUtil.toByteArray(zis, out, buffer);
-				// There is no possible way a "class" under 30 bytes is valid
-				if (in.length < 30)
-					continue;
-				String name = entry.getName();
-				if (name.startsWith(WAR_CLASS_PREFIX))
-					name = name.substring(WAR_CLASS_PREFIX.length());
-				loader.onClass(name, in);
-			}
+		ParallelArchiveReader reader = new ParallelArchiveReader(getPath(), isMemoryMapped());
+		if (!hasConsistentHeaders()) {
+			// Classes are read from the local headers, which obfuscators may make differ from the central directory.
+			// Files are read from the central directory either way.
+			debug("Local headers of '{}' differ from its central directory, reading classes sequentially",
+					getPath());
+			readClassStream(classes);
+			reader.read(entry -> !shouldSkip(entry.getName()) && loader.isValidFileEntry(entry) &&
+					!loader.isValidClassEntry(entry), (entry, in) -> files.accept(entry.getName(), in));
+			return;
 		}
-		loader.finishClasses();
-		return loader.getClasses();
+		// verify entries are valid files
+		// - skip intentional garbage / zip file abnormalities
+		reader.read(entry -> !shouldSkip(entry.getName()) && loader.isValidFileEntry(entry), (entry, in) -> {
+			String name = entry.getName();
+			if (!loader.isValidClassEntry(entry)) {
+				files.accept(name, in);
+				return;
+			}
+			acceptClass(classes, name, in);
+		});
 	}
 
-	@Override
-	protected Map<String, byte[]> loadFiles() throws IOException {
-		// iterate war entries
+	/**
+	 * Reads classes from the local entry headers of the archive.
+	 *
+	 * @param classes
+	 * 		Consumer of class entry names and their content.
+	 *
+	 * @throws IOException
+	 * 		When the archive cannot be read.
+	 */
+	private void readClassStream(ArchiveConsumer classes) throws IOException {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		byte[] buffer = new byte[8192];
 		EntryLoader loader = getEntryLoader();
-		try (ZipFile zipFile = new ZipFile(getPath().toFile())) {
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while(entries.hasMoreElements()) {
-				// verify entries are not classes and are valid files
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(getPath().toFile()))) {
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null) {
+				// verify entries are classes and valid files
 				// - skip intentional garbage / zip file abnormalities
-				ZipEntry entry = entries.nextElement();
-				if (shouldSkip(entry.getName()))
-					continue;
-				if(loader.isValidClassEntry(entry))
-					continue;
-				if(!loader.isValidFileEntry(entry))
+				if (shouldSkip(entry.getName()) || !loader.isValidFileEntry(entry) ||
+						!loader.isValidClassEntry(entry))
 					continue;
 				out.reset();
-				InputStream stream = zipFile.getInputStream(entry);
-				byte[] in = IOUtil.toByteArray(stream, out, buffer);
-				loader.onFile(entry.getName(), in);
+				acceptClass(classes, entry.getName(), IOUtil.toByteArray(zis, out, buffer));
 			}
 		}
-		loader.finishFiles();
-		return loader.getFiles();
+	}
+
+	private static void acceptClass(ArchiveConsumer classes, String name, byte[] in) throws IOException {
+		// There is no possible way a "class" under 30 bytes is valid
+		if (in.length < 30)
+			return;
+		if (name.startsWith(WAR_CLASS_PREFIX))
+			name = name.substring(WAR_CLASS_PREFIX.length());
+		classes.accept(name, in);
 	}
 }
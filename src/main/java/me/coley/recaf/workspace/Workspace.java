@@ -14,6 +14,9 @@ import me.coley.recaf.graph.inheritance.HierarchyGraph;
 import me.coley.recaf.mapping.AsmMappingUtils;
 import me.coley.recaf.parse.javadoc.Javadocs;
 import me.coley.recaf.parse.source.*;
+import me.coley.recaf.search.ReferenceIndex;
+import me.coley.recaf.search.StringIndex;
+import me.coley.recaf.util.ClassHeader;
 import me.coley.recaf.util.Log;
 import me.coley.recaf.util.ThreadUtil;
 import org.objectweb.asm.ClassReader;
@@ -33,11 +36,16 @@ public class Workspace {
 	private static final LazyClasspathResource CP = LazyClasspathResource.get();
 	private final Map<String, String> aggregatedMappings = new TreeMap<>();
 	private final PhantomResource phantoms = new PhantomResource();
+	private final Object indexLock = new Object();
 	private final JavaResource primary;
-	private final List<JavaResource> libraries;
+	private final LibraryList libraries;
+	private final ClassOwnerIndex classOwners;
 	private HierarchyGraph hierarchyGraph;
 	private FlowGraph flowGraph;
+	private volatile StringIndex stringIndex;
+	private volatile ReferenceIndex referenceIndex;
 	private ParserConfiguration config;
+	private boolean offHeapStorage;
 
 	/**
 	 * Constructs a workspace.
@@ -60,7 +68,8 @@ public class Workspace {
 	public Workspace(JavaResource primary, List<JavaResource> libraries) {
 		this.primary = primary;
 		this.primary.setPrimary(true);
-		this.libraries = libraries;
+		this.libraries = new LibraryList(libraries);
+		this.classOwners = new ClassOwnerIndex(primary, this.libraries);
 	}
 
 	/**
@@ -77,6 +86,37 @@ public class Workspace {
 		return libraries;
 	}
 
+	/**
+	 * @return Number of times the {@link #getLibraries() libraries} have been modified. Indexes that include
+	 * library content compare it to what they were built with, since the libraries are not listened to.
+	 */
+	public int getLibraryModifications() {
+		return libraries.getModifications();
+	}
+
+	/**
+	 * @return {@code true} if library content is stored in off-heap segments.
+	 */
+	public boolean isOffHeapStorage() {
+		return offHeapStorage;
+	}
+
+	/**
+	 * Set where the content of libraries is stored. The primary resource is kept on the heap, since its
+	 * {@link History save-states} hold heap copies of its content anyway.
+	 *
+	 * @param offHeapStorage
+	 * 		{@code true} to store content in off-heap segments.
+	 * 		{@code false} to store content as regular arrays.
+	 *
+	 * @see JavaResource#setOffHeap(boolean)
+	 */
+	public void setOffHeapStorage(boolean offHeapStorage) {
+		this.offHeapStorage = offHeapStorage;
+		for (JavaResource library : libraries)
+			library.setOffHeap(offHeapStorage);
+	}
+
 	/**
 	 * @return Recaf managed resource containing phantom references.
 	 */
@@ -93,6 +133,16 @@ public class Workspace {
 		return hierarchyGraph;
 	}
 
+	/**
+	 * @param hierarchyGraph
+	 * 		Inheritance hierarchy utility to use.
+	 */
+	void setHierarchyGraph(HierarchyGraph hierarchyGraph) {
+		if (this.hierarchyGraph != null)
+			this.hierarchyGraph.detach();
+		this.hierarchyGraph = hierarchyGraph;
+	}
+
 	/**
 	 * @return Method flow utility.
 	 */
@@ -102,6 +152,49 @@ public class Workspace {
 		return flowGraph;
 	}
 
+	/**
+	 * @return Index of the string constants in the primary resource.
+	 */
+	public StringIndex getStringIndex() {
+		if(stringIndex == null) {
+			synchronized(indexLock) {
+				if(stringIndex == null)
+					stringIndex = new StringIndex(this);
+			}
+		}
+		return stringIndex;
+	}
+
+	/**
+	 * @return Index of the class and member references in the primary resource.
+	 */
+	public ReferenceIndex getReferenceIndex() {
+		if(referenceIndex == null) {
+			synchronized(indexLock) {
+				if(referenceIndex == null)
+					referenceIndex = new ReferenceIndex(this);
+			}
+		}
+		return referenceIndex;
+	}
+
+	/**
+	 * Build the {@link #getStringIndex() string} and {@link #getReferenceIndex() reference} indexes in the
+	 * background, so that the first searches do not have to wait for them.
+	 */
+	public void buildIndexes() {
+		StringIndex strings = getStringIndex();
+		ReferenceIndex references = getReferenceIndex();
+		ThreadUtil.run(() -> {
+			try {
+				strings.build();
+				references.build();
+			} catch (Throwable t) {
+				Log.error(t, "Failed to index primary resource");
+			}
+		});
+	}
+
 	/**
 	 * @return Aggregated ASM mappings for the workspace.
 	 */
@@ -141,7 +234,8 @@ public class Workspace {
 	}
 
 	/**
-	 * Update the generated jar file
+	 * Update the generated jar file.
+	 * After the first analysis, only phantoms related to the primary classes updated since are generated again.
 	 */
 	public void analyzePhantoms() {
 		Controller controller = Recaf.getController();
@@ -157,7 +251,7 @@ public class Workspace {
 		ThreadUtil.run(() -> {
 			try {
 				long start = System.currentTimeMillis();
-				phantoms.populatePhantoms(primary.getClasses());
+				phantoms.updatePhantoms(primary);
 				Log.debug("Generated {} phantom classes in {} ms",
 						phantoms.getClasses().size(), (System.currentTimeMillis() - start));
 			} catch (Throwable t) {
@@ -249,11 +343,9 @@ public class Workspace {
 	 * @return The resource that contains the class.
 	 */
 	public JavaResource getContainingResourceForClass(String name) {
-		if(getPrimary().getClasses().containsKey(name))
-			return primary;
-		for(JavaResource resource : getLibraries())
-			if(resource.getClasses().containsKey(name))
-				return resource;
+		JavaResource owner = classOwners.getOwner(name);
+		if(owner != null)
+			return owner;
 		if(CP.getClasses().containsKey(name))
 			return CP;
 		else if (phantoms.getClasses().containsKey(name))
@@ -284,11 +376,8 @@ public class Workspace {
 	 * @return {@code true} if one of the workspace sources contains the class.
 	 */
 	public boolean hasClass(String name) {
-		if (primary.getClasses().containsKey(name))
+		if (classOwners.getOwner(name) != null)
 			return true;
-		for (JavaResource resource : getLibraries())
-			if (resource.getClasses().containsKey(name))
-				return true;
 		if (CP.getClasses().containsKey(name))
 			return true;
 		else
@@ -317,11 +406,9 @@ public class Workspace {
 	 * @return Raw bytecode of the class by the given name.
 	 */
 	public byte[] getRawClass(String name) {
-		byte[] ret = primary.getClasses().get(name);
-		if(ret != null)
-			return ret;
-		for(JavaResource resource : getLibraries()) {
-			ret = resource.getClasses().get(name);
+		JavaResource owner = classOwners.getOwner(name);
+		if(owner != null) {
+			byte[] ret = owner.getClasses().get(name);
 			if(ret != null)
 				return ret;
 		}
@@ -345,6 +432,18 @@ public class Workspace {
 		return null;
 	}
 
+	/**
+	 * @param name
+	 * 		Class name.
+	 *
+	 * @return Summary of the class declaration, without parsing the class again.
+	 * {@code null} if no workspace source contains the class.
+	 */
+	public ClassHeader getClassHeader(String name) {
+		JavaResource owner = getContainingResourceForClass(name);
+		return owner == null ? null : owner.getClassHeader(name);
+	}
+
 	/**
 	 * @param flags
 	 * 		Writer flags.
@@ -0,0 +1,557 @@
+package me.coley.recaf.workspace;
+
+import me.coley.recaf.graph.flow.CallGraph;
+import me.coley.recaf.graph.inheritance.HierarchyGraph;
+import me.coley.recaf.plugin.PluginsManager;
+import me.coley.recaf.plugin.api.LoadInterceptorPlugin;
+import me.coley.recaf.search.StringIndex;
+import me.coley.recaf.util.ThreadUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static me.coley.recaf.util.Log.*;
+
+/**
+ * On-disk snapshot cache for {@link Workspace} content. Complements {@link WorkspaceIO}, which only stores
+ * references to resources.
+ * <br>
+ * A snapshot holds the content of a resource <i>after</i> it has been run through its {@link EntryLoader},
+ * so restoring one skips reading, validating, and patching the resource's classes. Snapshots are keyed by
+ * the resource's path, size, modification time, and content hash, along with the entry loader, active
+ * {@link LoadInterceptorPlugin load interceptors}, and skipped prefixes used to produce them. The primary
+ * resource's snapshot also stores the edges of the {@link HierarchyGraph}, along with the calls of the
+ * {@link CallGraph} and the string locations of the {@link StringIndex} if they have been built.
+ * <br>
+ * Only resources backed by a single file <i>(classes, jars, and wars)</i> are cached. Once the snapshots
+ * exceed the {@link #setMaxSize(long) size limit}, the least recently used ones are removed.
+ * <br>
+ * The resource is hashed in the background while its snapshot is read. The snapshot is only restored once the
+ * hash matches, so a resource that changed without changing its size or modification time is read from disk,
+ * and its snapshot is removed.
+ *
+ * @author Matt
+ */
+public class WorkspaceCache {
+	private static final int MAGIC = 0x52435753;
+	private static final int VERSION = 5;
+	private static final String EXTENSION = ".snapshot";
+	private static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+	private final Path directory;
+	private long maxSize = DEFAULT_MAX_SIZE;
+
+	/**
+	 * @param directory
+	 * 		Directory to store snapshots in.
+	 */
+	public WorkspaceCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return Directory to store snapshots in.
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return Combined size in bytes the snapshots may take up.
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize
+	 * 		Combined size in bytes the snapshots may take up.
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param json
+	 * 		Json file.
+	 *
+	 * @return Workspace loaded from a json config, with content restored from snapshots where possible.
+	 *
+	 * @throws Exception
+	 * 		Thrown if the path could not be read or parsed.
+	 */
+	public Workspace fromJson(Path json) throws Exception {
+		Workspace workspace = WorkspaceIO.fromJson(json);
+		restore(workspace);
+		return workspace;
+	}
+
+	/**
+	 * Restore content of the workspace's resources from their snapshots.
+	 * Resources without a matching snapshot are left to load normally.
+	 *
+	 * @param workspace
+	 * 		Workspace to restore.
+	 *
+	 * @return {@code true} if every cacheable resource was restored.
+	 */
+	public boolean restore(Workspace workspace) {
+		boolean restored = restoreResource(workspace, workspace.getPrimary());
+		for (JavaResource library : workspace.getLibraries())
+			restored &= restoreResource(workspace, library);
+		return restored;
+	}
+
+	/**
+	 * Write snapshots of the workspace's resources. This loads any resource content that has not yet
+	 * been loaded. Resources with modifications are not written, since a snapshot must reflect the
+	 * resource as it is on disk.
+	 *
+	 * @param workspace
+	 * 		Workspace to save.
+	 */
+	public void save(Workspace workspace) {
+		saveResource(workspace, workspace.getPrimary());
+		for (JavaResource library : workspace.getLibraries())
+			saveResource(workspace, library);
+		trim();
+	}
+
+	/**
+	 * Write snapshots of the workspace's resources in the background, after building the
+	 * {@link StringIndex} so that it is stored as well.
+	 *
+	 * @param workspace
+	 * 		Workspace to save.
+	 *
+	 * @return Task writing the snapshots.
+	 */
+	public Future<?> saveAsync(Workspace workspace) {
+		return ThreadUtil.run(() -> {
+			try {
+				workspace.getStringIndex().build();
+				save(workspace);
+			} catch (Throwable t) {
+				error(t, "Failed to write workspace snapshots");
+			}
+		});
+	}
+
+	/**
+	 * Remove all snapshots.
+	 *
+	 * @throws IOException
+	 * 		When the snapshots could not be deleted.
+	 */
+	public void clear() throws IOException {
+		if (!Files.isDirectory(directory))
+			return;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (Path path : stream)
+				Files.deleteIfExists(path);
+		}
+	}
+
+	private boolean restoreResource(Workspace workspace, JavaResource resource) {
+		Path source = getSource(resource);
+		if (source == null)
+			return true;
+		Path snapshot = getSnapshotPath(source);
+		if (!Files.isRegularFile(snapshot))
+			return false;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot),
+				1 << 16))) {
+			String hash = readKey(in, resource, source);
+			if (hash == null)
+				return false;
+			FutureTask<String> current = new FutureTask<>(() -> hash(source));
+			ThreadUtil.run(current);
+			Map<String, byte[]> classes = readTable(in);
+			Map<String, byte[]> files = readTable(in);
+			Map<String, Set<String>> edges = readEdges(in);
+			Map<String, Map<String, List<String>>> calls = readCalls(in);
+			Map<String, List<StringIndex.Location>> strings = readStrings(in);
+			Path attachedSource = readAttachment(in);
+			Path attachedDocs = readAttachment(in);
+			if (!hash.equals(await(current))) {
+				warn("Snapshot of '{}' is outdated, reading it from disk", source.getFileName());
+				in.close();
+				delete(snapshot);
+				return false;
+			}
+			if (!resource.restore(classes, files))
+				return false;
+			if (resource == workspace.getPrimary())
+				restoreIndexes(workspace, edges, calls, strings);
+			if (attachedSource != null && resource.getClassSourcePath() == null)
+				resource.setClassSources(attachedSource);
+			if (attachedDocs != null && resource.getClassDocsPath() == null)
+				resource.setClassDocs(attachedDocs);
+			debug("Restored '{}' from snapshot", source.getFileName());
+		} catch (IOException ex) {
+			warn("Discarding unreadable snapshot of '{}': {}", source.getFileName(), ex.getMessage());
+			delete(snapshot);
+			return false;
+		}
+		try {
+			// Mark as recently used, so it is kept over older snapshots when trimming
+			Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ex) {
+			debug("Failed to update snapshot of '{}'", source.getFileName());
+		}
+		return true;
+	}
+
+	private static String await(FutureTask<String> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while hashing resource");
+		} catch (ExecutionException ex) {
+			throw new IOException("Failed to hash resource", ex.getCause());
+		}
+	}
+
+	private static void restoreIndexes(Workspace workspace, Map<String, Set<String>> edges,
+									   Map<String, Map<String, List<String>>> calls,
+									   Map<String, List<StringIndex.Location>> strings) {
+		if (edges != null)
+			workspace.setHierarchyGraph(new HierarchyGraph(workspace, edges));
+		if (calls != null)
+			workspace.getFlowGraph().getCallGraph().restore(calls);
+		if (strings != null)
+			workspace.getStringIndex().restore(strings);
+	}
+
+	private void saveResource(Workspace workspace, JavaResource resource) {
+		Path source = getSource(resource);
+		if (source == null)
+			return;
+		Map<String, byte[]> classes = resource.getClasses();
+		Map<String, byte[]> files = resource.getFiles();
+		if (!resource.getDirtyClasses().isEmpty() || !resource.getDirtyFiles().isEmpty())
+			return;
+		Path snapshot = getSnapshotPath(source);
+		Path temp = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, "snapshot", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+					1 << 16))) {
+				writeKey(out, resource, source);
+				writeTable(out, classes);
+				writeTable(out, files);
+				writeEdges(out, resource == workspace.getPrimary() ?
+						workspace.getHierarchyGraph().getDescendantEdges() : null);
+				writeCalls(out, resource == workspace.getPrimary() ?
+						workspace.getFlowGraph().getCallGraph().export() : null);
+				writeStrings(out, resource == workspace.getPrimary() ?
+						workspace.getStringIndex().export() : null);
+				writeAttachment(out, resource.getClassSourcePath());
+				writeAttachment(out, resource.getClassDocsPath());
+			}
+			try {
+				Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+			}
+			debug("Wrote snapshot of '{}'", source.getFileName());
+		} catch (IOException ex) {
+			error(ex, "Failed to write snapshot of '{}'", source.getFileName());
+			if (temp != null)
+				delete(temp);
+		}
+	}
+
+	/**
+	 * @param resource
+	 * 		Some resource.
+	 *
+	 * @return Path of the file backing the resource, or {@code null} if the resource cannot be cached.
+	 */
+	private static Path getSource(JavaResource resource) {
+		if (!(resource instanceof FileSystemResource))
+			return null;
+		Path path = ((FileSystemResource) resource).getPath().toAbsolutePath().normalize();
+		return Files.isRegularFile(path) ? path : null;
+	}
+
+	/**
+	 * Remove the least recently used snapshots until they fit in the size limit.
+	 */
+	private void trim() {
+		if (!Files.isDirectory(directory))
+			return;
+		List<Path> snapshots = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			stream.forEach(snapshots::add);
+		} catch (IOException ex) {
+			debug("Failed to list snapshots in '{}'", directory);
+			return;
+		}
+		Map<Path, Long> used = new HashMap<>();
+		for (Path snapshot : snapshots)
+			used.put(snapshot, snapshot.toFile().lastModified());
+		snapshots.sort(Comparator.comparing(used::get, Comparator.reverseOrder()));
+		long total = 0;
+		for (Path snapshot : snapshots) {
+			total += snapshot.toFile().length();
+			if (total > maxSize) {
+				debug("Removing least recently used snapshot '{}'", snapshot.getFileName());
+				delete(snapshot);
+			}
+		}
+	}
+
+	private Path getSnapshotPath(Path source) {
+		return directory.resolve(DigestUtils.sha1Hex(source.toString()) + EXTENSION);
+	}
+
+	private static void writeKey(DataOutputStream out, JavaResource resource, Path source) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeString(out, resource.getKind().name());
+		writeString(out, source.toString());
+		out.writeLong(Files.size(source));
+		out.writeLong(Files.getLastModifiedTime(source).toMillis());
+		writeString(out, hash(source));
+		writeString(out, resource.getEntryLoader().getClass().getName());
+		writeString(out, getInterceptors());
+		out.writeInt(resource.getSkippedPrefixes().size());
+		for (String prefix : resource.getSkippedPrefixes())
+			writeString(out, prefix);
+	}
+
+	/**
+	 * @return Content hash stored in the key, or {@code null} if the key does not match the resource.
+	 * The hash is not compared here, so that the resource can be hashed while the rest of the snapshot is read.
+	 */
+	private static String readKey(DataInputStream in, JavaResource resource, Path source) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			return null;
+		if (!resource.getKind().name().equals(readString(in)) || !source.toString().equals(readString(in)))
+			return null;
+		if (in.readLong() != Files.size(source))
+			return null;
+		if (in.readLong() != Files.getLastModifiedTime(source).toMillis())
+			return null;
+		String hash = readString(in);
+		if (!resource.getEntryLoader().getClass().getName().equals(readString(in)))
+			return null;
+		if (!getInterceptors().equals(readString(in)))
+			return null;
+		int prefixes = in.readInt();
+		List<String> skipped = new ArrayList<>(prefixes);
+		for (int i = 0; i < prefixes; i++)
+			skipped.add(readString(in));
+		return skipped.equals(resource.getSkippedPrefixes()) ? hash : null;
+	}
+
+	/**
+	 * @return Names and versions of the active load interceptors, which may change the loaded content.
+	 */
+	private static String getInterceptors() {
+		Set<String> interceptors = new TreeSet<>();
+		for (LoadInterceptorPlugin interceptor : PluginsManager.getInstance().ofType(LoadInterceptorPlugin.class))
+			interceptors.add(interceptor.getClass().getName() + "@" + interceptor.getVersion());
+		return String.join(";", interceptors);
+	}
+
+	private static void writeTable(DataOutputStream out, Map<String, byte[]> table) throws IOException {
+		out.writeInt(table.size());
+		for (Map.Entry<String, byte[]> e : table.entrySet()) {
+			writeString(out, e.getKey());
+			out.writeInt(e.getValue().length);
+			out.write(e.getValue());
+		}
+	}
+
+	private static Map<String, byte[]> readTable(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<String, byte[]> table = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String name = readString(in);
+			byte[] value = new byte[in.readInt()];
+			in.readFully(value);
+			table.put(name, value);
+		}
+		return table;
+	}
+
+	private static void writeEdges(DataOutputStream out, Map<String, Set<String>> edges) throws IOException {
+		if (edges == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(edges.size());
+		for (Map.Entry<String, Set<String>> e : edges.entrySet()) {
+			writeString(out, e.getKey());
+			out.writeInt(e.getValue().size());
+			for (String child : e.getValue())
+				writeString(out, child);
+		}
+	}
+
+	private static Map<String, Set<String>> readEdges(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0)
+			return null;
+		Map<String, Set<String>> edges = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String parent = readString(in);
+			int children = in.readInt();
+			Set<String> set = new HashSet<>();
+			for (int j = 0; j < children; j++)
+				set.add(readString(in));
+			edges.put(parent, set);
+		}
+		return edges;
+	}
+
+	private static void writeCalls(DataOutputStream out, Map<String, Map<String, List<String>>> calls)
+			throws IOException {
+		if (calls == null || calls.isEmpty()) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(calls.size());
+		for (Map.Entry<String, Map<String, List<String>>> e : calls.entrySet()) {
+			writeString(out, e.getKey());
+			out.writeInt(e.getValue().size());
+			for (Map.Entry<String, List<String>> method : e.getValue().entrySet()) {
+				writeString(out, method.getKey());
+				out.writeInt(method.getValue().size());
+				for (String callee : method.getValue())
+					writeString(out, callee);
+			}
+		}
+	}
+
+	private static Map<String, Map<String, List<String>>> readCalls(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0)
+			return null;
+		Map<String, Map<String, List<String>>> calls = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String name = readString(in);
+			int methods = in.readInt();
+			Map<String, List<String>> methodCalls = new LinkedHashMap<>();
+			for (int j = 0; j < methods; j++) {
+				String method = readString(in);
+				int callees = in.readInt();
+				List<String> list = new ArrayList<>(callees);
+				for (int k = 0; k < callees; k++)
+					list.add(readString(in));
+				methodCalls.put(method, list);
+			}
+			calls.put(name, methodCalls);
+		}
+		return calls;
+	}
+
+	private static void writeStrings(DataOutputStream out, Map<String, List<StringIndex.Location>> strings)
+			throws IOException {
+		if (strings == null || strings.isEmpty()) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(strings.size());
+		for (Map.Entry<String, List<StringIndex.Location>> e : strings.entrySet()) {
+			writeString(out, e.getKey());
+			out.writeInt(e.getValue().size());
+			for (StringIndex.Location location : e.getValue()) {
+				writeString(out, location.getText());
+				out.writeInt(location.getOwnerAccess());
+				out.writeInt(location.getMemberAccess());
+				writeString(out, location.getMemberName());
+				writeString(out, location.getMemberDesc());
+				out.writeInt(location.getInsn());
+			}
+		}
+	}
+
+	private static Map<String, List<StringIndex.Location>> readStrings(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0)
+			return null;
+		Map<String, List<StringIndex.Location>> strings = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String name = readString(in);
+			int count = in.readInt();
+			List<StringIndex.Location> list = new ArrayList<>(count);
+			for (int j = 0; j < count; j++)
+				list.add(new StringIndex.Location(readString(in), name, in.readInt(), in.readInt(),
+						readString(in), readString(in), in.readInt()));
+			strings.put(name, list);
+		}
+		return strings;
+	}
+
+	private static void writeAttachment(DataOutputStream out, Path path) throws IOException {
+		boolean present = path != null && Files.isRegularFile(path);
+		out.writeBoolean(present);
+		if (!present)
+			return;
+		writeString(out, path.toAbsolutePath().toString());
+		out.writeLong(Files.size(path));
+		out.writeLong(Files.getLastModifiedTime(path).toMillis());
+	}
+
+	/**
+	 * @return Path of the attachment, or {@code null} if there was no attachment or it no longer matches
+	 * the attached file.
+	 */
+	private static Path readAttachment(DataInputStream in) throws IOException {
+		if (!in.readBoolean())
+			return null;
+		Path path = Paths.get(readString(in));
+		long size = in.readLong();
+		long modified = in.readLong();
+		if (!Files.isRegularFile(path))
+			return null;
+		if (size != Files.size(path) || modified != Files.getLastModifiedTime(path).toMillis())
+			return null;
+		return path;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		// Not using writeUTF since obfuscated names can exceed its length limit
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] data = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+
+	private static String hash(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return DigestUtils.sha256Hex(in);
+		}
+	}
+
+	private static void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			debug("Failed to delete '{}'", path);
+		}
+	}
+}
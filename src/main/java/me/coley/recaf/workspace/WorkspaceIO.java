@@ -52,7 +52,10 @@ public class WorkspaceIO {
 			for(JsonValue value : jlibraries)
 				libraries.add(deserializeResource(value.asObject()));
 		}
-		return new Workspace(primary, libraries);
+		Workspace workspace = new Workspace(primary, libraries);
+		if (root.getBoolean("off-heap", false))
+			workspace.setOffHeapStorage(true);
+		return workspace;
 	}
 
 	/**
@@ -69,6 +72,8 @@ public class WorkspaceIO {
 			jlibraries.add(serializeResource(library));
 		root.add("primary", jprimary);
 		root.add("libraries", jlibraries);
+		if (workspace.isOffHeapStorage())
+			root.add("off-heap", true);
 		return root.toString(WriterConfig.PRETTY_PRINT);
 	}
 
@@ -237,6 +242,9 @@ public class WorkspaceIO {
 		if (resource.getClassDocsPath() != null) {
 			jresource.add("attach-docs", resource.getClassDocsPath().toAbsolutePath().toString());
 		}
+		if (resource instanceof FileSystemResource && ((FileSystemResource) resource).isMemoryMapped()) {
+			jresource.add("mapped", true);
+		}
 	}
 
 
@@ -257,6 +265,9 @@ public class WorkspaceIO {
 			value.asArray().forEach(val -> skipped.add(val.asString()));
 			resource.setSkippedPrefixes(skipped);
 		}
+		value = jresource.get("mapped");
+		if (value != null && resource instanceof FileSystemResource)
+			((FileSystemResource) resource).setMemoryMapped(value.asBoolean());
 		value = jresource.get("attach-src");
 		if (value != null) {
 			File src = new File(value.asString());
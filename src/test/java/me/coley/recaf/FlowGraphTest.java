@@ -1,19 +1,25 @@
 package me.coley.recaf;
 
 import me.coley.recaf.graph.*;
+import me.coley.recaf.graph.flow.FlowBuilder;
 import me.coley.recaf.graph.flow.FlowGraph;
 import me.coley.recaf.graph.flow.FlowVertex;
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.util.struct.Pair;
 import me.coley.recaf.workspace.JarResource;
 import me.coley.recaf.workspace.Workspace;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -102,6 +108,101 @@ public class FlowGraphTest extends Base {
 		assertEquals(interfaceThing, calledInterface);
 	}
 
+	@Test
+	public void testVertexCache() {
+		FlowVertex callsParent = graph.getVertex("test/Child", "callParentThing", "()V");
+		assertSame(callsParent, graph.getVertex("test/Child", "callParentThing", "()V"));
+		// Edges are parsed once, but the called vertices follow updates to the called class
+		assertEquals(1, callsParent.getEdges().size());
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		byte[] parent = classes.remove("test/Parent");
+		assertEquals(0, callsParent.getEdges().size());
+		classes.put("test/Parent", parent);
+		assertEquals(1, callsParent.getEdges().size());
+		// Updating a class drops its cached vertices
+		classes.put("test/Child", classes.get("test/Child"));
+		assertNotSame(callsParent, graph.getVertex("test/Child", "callParentThing", "()V"));
+	}
+
+	@Test
+	public void testCallers() {
+		FlowVertex callsParent = graph.getVertex("test/Child", "callParentThing", "()V");
+		assertTrue(graph.getCallers("test/Parent", "thing", "()V").contains(callsParent));
+		// Callers follow updates to the calling class
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		byte[] child = classes.remove("test/Child");
+		assertFalse(graph.getCallers("test/Parent", "thing", "()V").stream()
+				.anyMatch(caller -> caller.getOwner().equals("test/Child")));
+		classes.put("test/Child", child);
+		callsParent = graph.getVertex("test/Child", "callParentThing", "()V");
+		assertTrue(graph.getCallers("test/Parent", "thing", "()V").contains(callsParent));
+	}
+
+	@Test
+	public void testParallelBuild() {
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		for (String name : classes.keySet()) {
+			ClassHeader header = graph.getWorkspace().getPrimary().getClassHeader(name);
+			for (Pair<String, String> def : header.getMethodDefs())
+				assertSameBuild(graph.getVertex(name, def.getKey(), def.getValue()));
+		}
+	}
+
+	@Test
+	public void testParallelBuildGenerated() {
+		// Classes with static methods that call random methods of later classes.
+		// Calls only go forward so the depth stays low enough for the recursive serial build.
+		int classCount = 100;
+		int methodCount = 20;
+		Random random = new Random(0);
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		for (int c = 0; c < classCount; c++) {
+			ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+			cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "gen/C" + c, null, "java/lang/Object", null);
+			for (int m = 0; m < methodCount; m++) {
+				MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + m, "()V",
+						null, null);
+				mv.visitCode();
+				for (int i = 0; c < classCount - 1 && i < 4; i++)
+					mv.visitMethodInsn(Opcodes.INVOKESTATIC, "gen/C" + (c + 1 + random.nextInt(classCount - c - 1)),
+							"m" + random.nextInt(methodCount), "()V", false);
+				mv.visitInsn(Opcodes.RETURN);
+				mv.visitMaxs(0, 0);
+				mv.visitEnd();
+			}
+			cw.visitEnd();
+			classes.put("gen/C" + c, cw.toByteArray());
+		}
+		Set<FlowVertex> visited = assertSameBuild(graph.getVertex("gen/C0", "m0", "()V"));
+		assertTrue(visited.size() > methodCount);
+	}
+
+	/**
+	 * @param root
+	 * 		Vertex to build flows from.
+	 *
+	 * @return Vertices visited by the builds.
+	 */
+	private static Set<FlowVertex> assertSameBuild(FlowVertex root) {
+		FlowBuilder serial = new FlowBuilder();
+		Set<FlowVertex> visited = serial.build(root);
+		FlowBuilder parallel = new FlowBuilder();
+		assertEquals(visited, parallel.buildParallel(root));
+		assertEquals(serial.getVertices().keySet(), parallel.getVertices().keySet());
+		for (Map.Entry<String, FlowBuilder.Flow> e : serial.getVertices().entrySet()) {
+			FlowBuilder.Flow expected = e.getValue();
+			FlowBuilder.Flow actual = parallel.getVertices().get(e.getKey());
+			assertEquals(expected.toString(), actual.toString());
+			assertEquals(names(expected.getChildren()), names(actual.getChildren()));
+			assertEquals(names(expected.getParents()), names(actual.getParents()));
+		}
+		return visited;
+	}
+
+	private static List<String> names(List<FlowBuilder.Flow> flows) {
+		return flows.stream().map(FlowBuilder.Flow::toString).collect(Collectors.toList());
+	}
+
 	/**
 	 * @param vertex
 	 * 		Vertex with one edge.
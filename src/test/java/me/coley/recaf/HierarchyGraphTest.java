@@ -3,14 +3,18 @@ package me.coley.recaf;
 import me.coley.recaf.graph.ClassDfsSearch;
 import me.coley.recaf.graph.SearchResult;
 import me.coley.recaf.graph.inheritance.*;
+import me.coley.recaf.util.ClassUtil;
 import me.coley.recaf.workspace.JarResource;
 import me.coley.recaf.workspace.Workspace;
 import org.junit.jupiter.api.*;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -41,6 +45,39 @@ public class HierarchyGraphTest extends Base {
 		expectedChildren.forEach(child -> assertTrue(descendants.contains(child)));
 	}
 
+	@Test
+	public void testIncrementalUpdatesMatchRebuild() {
+		Workspace workspace = graph.getWorkspace();
+		Map<String, byte[]> classes = workspace.getPrimary().getClasses();
+		List<String> names = new ArrayList<>(classes.keySet());
+		for (int i = 0; i < 10; i++)
+			names.add("test/Generated" + i);
+		List<String> interfaces = Arrays.asList("test/Greetings", "java/lang/Runnable", "java/io/Serializable");
+		Random random = new Random(0);
+		for (int step = 0; step < 500; step++) {
+			String name = names.get(random.nextInt(names.size()));
+			int action = random.nextInt(4);
+			if (action == 0) {
+				classes.remove(name);
+			} else if (action == 1 && classes.containsKey(name)) {
+				// Rename, as done by mappings
+				String newName = name + "_" + step;
+				byte[] code = classes.get(name);
+				ClassReader reader = new ClassReader(code);
+				classes.remove(name);
+				classes.put(newName, createClass(newName, reader.getSuperName(), reader.getInterfaces()));
+				names.set(names.indexOf(name), newName);
+			} else {
+				String superName = random.nextInt(4) == 0 ? "java/lang/Object" : names.get(random.nextInt(names.size()));
+				String[] parents = interfaces.subList(0, random.nextInt(interfaces.size() + 1)).toArray(new String[0]);
+				classes.put(name, createClass(name, superName, parents));
+			}
+			HierarchyGraph rebuilt = new HierarchyGraph(workspace);
+			rebuilt.detach();
+			assertEquals(rebuilt.getDescendantEdges(), graph.getDescendantEdges(), "Edges differ after step " + step);
+		}
+	}
+
 	@Test
 	public void testParents() {
 		String actualChild = "test/Yoda";
@@ -50,6 +87,100 @@ public class HierarchyGraphTest extends Base {
 		expectedParents.forEach(parent -> assertTrue(parents.contains(parent)));
 	}
 
+	@Test
+	public void testCyclicInheritance() {
+		// Obfuscators may emit classes that inherit from each other, lookups should still finish
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		classes.put("test/CycleA", createClass("test/CycleA", "test/CycleB", new String[] {"test/Greetings"}));
+		classes.put("test/CycleB", createClass("test/CycleB", "test/CycleA", null));
+		Set<String> parents = graph.getAllParents("test/CycleA").collect(Collectors.toSet());
+		assertEquals(new HashSet<>(Arrays.asList(
+				"test/CycleA", "test/CycleB", "test/Greetings", "java/lang/Object")), parents);
+		Set<String> descendants = graph.getAllDescendants("test/CycleB").collect(Collectors.toSet());
+		assertEquals(new HashSet<>(Arrays.asList("test/CycleA", "test/CycleB")), descendants);
+		assertTrue(graph.areLinked("test/CycleB", "test/Yoda"));
+		assertTrue(graph.isLibrary("test/CycleA", "toString", "()Ljava/lang/String;"));
+		assertFalse(graph.isLibrary("test/CycleA", "say", "()V"));
+	}
+
+	@Test
+	public void testClosuresFollowUpdates() {
+		// Compute the closures before changing the hierarchy
+		assertTrue(graph.getAllParents("test/Yoda").anyMatch("test/Jedi"::equals));
+		assertTrue(graph.getAllDescendants("test/Jedi").anyMatch("test/Yoda"::equals));
+		// Move "Yoda" from "Jedi" to "Sith"
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		classes.put("test/Yoda", createClass("test/Yoda", "test/Sith", null));
+		Set<String> parents = graph.getAllParents("test/Yoda").collect(Collectors.toSet());
+		assertTrue(parents.contains("test/Sith"));
+		assertTrue(parents.contains("test/Person"));
+		assertFalse(parents.contains("test/Jedi"));
+		assertFalse(graph.getAllDescendants("test/Jedi").anyMatch("test/Yoda"::equals));
+		assertTrue(graph.getAllDescendants("test/Sith").anyMatch("test/Yoda"::equals));
+		// Removed classes are no longer children
+		classes.remove("test/Yoda");
+		assertFalse(graph.getAllDescendants("test/Person").anyMatch("test/Yoda"::equals));
+	}
+
+	@Test
+	public void testDeepHierarchyClosures() {
+		int depth = 3000;
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		for (int i = 0; i < depth; i++)
+			classes.put("test/Deep" + i, createClass("test/Deep" + i, i == 0 ?
+					"java/lang/Object" : "test/Deep" + (i - 1), null));
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < depth; i++)
+			order.add(i);
+		Collections.shuffle(order, new Random(0));
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			for (int i : order)
+				assertEquals(i + 1, graph.getAllParents("test/Deep" + i).count());
+			for (int i : order)
+				assertEquals(depth - i - 1, graph.getAllDescendants("test/Deep" + i).count());
+		});
+		// Cut the chain in half
+		int middle = depth / 2;
+		classes.put("test/Deep" + middle, createClass("test/Deep" + middle, "java/lang/Object", null));
+		assertEquals(middle - 1, graph.getAllDescendants("test/Deep0").count());
+		assertEquals(depth - middle, graph.getAllParents("test/Deep" + (depth - 1)).count());
+	}
+
+	@Test
+	public void testMethodFamily() {
+		Set<String> family = graph.getMethodFamily("test/Yoda", "say", "()V");
+		assertEquals(family, findDeclaringClasses("test/Yoda", "say", "()V"));
+		assertTrue(family.contains("test/Greetings"));
+		assertFalse(family.contains("test/Speech"));
+		// Library declarations are part of the family too
+		assertTrue(graph.getMethodFamily("test/Yoda", "toString", "()Ljava/lang/String;")
+				.contains("java/lang/Object"));
+		// Added and removed declarations are followed
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Padawan", null, "test/Jedi", null);
+		cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "say", "()V", null, null).visitEnd();
+		cw.visitEnd();
+		classes.put("test/Padawan", cw.toByteArray());
+		assertTrue(graph.getMethodFamily("test/Sith", "say", "()V").contains("test/Padawan"));
+		classes.remove("test/Padawan");
+		assertFalse(graph.getMethodFamily("test/Sith", "say", "()V").contains("test/Padawan"));
+		assertEquals(family, graph.getMethodFamily("test/Yoda", "say", "()V"));
+	}
+
+	@Test
+	public void testVertexCache() {
+		HierarchyVertex vertex = graph.getVertex("test/Yoda");
+		assertSame(vertex, graph.getVertex("test/Yoda"));
+		// Updated classes get new vertices with the new data
+		Map<String, byte[]> classes = graph.getWorkspace().getPrimary().getClasses();
+		byte[] updated = createClass("test/Yoda", "test/Sith", null);
+		classes.put("test/Yoda", updated);
+		HierarchyVertex updatedVertex = graph.getVertex("test/Yoda");
+		assertNotSame(vertex, updatedVertex);
+		assertEquals("test/Sith", updatedVertex.getData().getSuperName());
+	}
+
 	@Test
 	public void testParentToChildSearch() {
 		HierarchyVertex vertex = graph.getVertex("test/Person");
@@ -72,6 +203,20 @@ public class HierarchyGraphTest extends Base {
 		assertEquals("test/Person", graph.getCommon("test/Person", "test/Person"));
 	}
 
+	@Test
+	public void testMissingClassesNotInterned() {
+		HierarchyIndex index = new HierarchyIndex(name -> null);
+		for (int i = 0; i < 100; i++) {
+			String name = "missing/Type" + i;
+			assertEquals("java/lang/Object", index.getCommon(name, "missing/Other"));
+			assertTrue(index.getAllParents(name).isEmpty());
+			assertTrue(index.getHierarchy(name).isEmpty());
+			assertFalse(index.anyInHierarchy(name, other -> true));
+		}
+		assertEquals("missing/Type", index.getCommon("missing/Type", "missing/Type"));
+		assertEquals(0, index.size());
+	}
+
 	@Test
 	public void testChildToParentSearch() {
 		HierarchyVertex vertex = graph.getVertex("test/Yoda");
@@ -108,6 +253,18 @@ public class HierarchyGraphTest extends Base {
 		assertFalse(hierarchy.stream().anyMatch(v -> v.getData().getClassName().equals("test/Ability")));
 	}
 
+	@Test
+	public void testLibraryReplaced() throws IOException {
+		Workspace workspace = graph.getWorkspace();
+		workspace.getLibraries().add(new JarResource(getClasspathFile("calls.jar")));
+		assertTrue(graph.getParents("test/Child").anyMatch("test/Parent"::equals));
+		assertFalse(workspace.getFlowGraph().getCallGraph().getCalls("test/Chain", "one", "()V").isEmpty());
+		// Replacing a library does not change the number of libraries
+		workspace.getLibraries().set(0, new JarResource(getClasspathFile("calc.jar")));
+		assertEquals(0, graph.getParents("test/Child").count());
+		assertTrue(workspace.getFlowGraph().getCallGraph().getCalls("test/Chain", "one", "()V").isEmpty());
+	}
+
 	@Test
 	public void testIsLibrary() {
 		// The "say" method is defined only by classes in the input.
@@ -125,4 +282,18 @@ public class HierarchyGraphTest extends Base {
 		// No path between Yoda and Speech
 		assertFalse(graph.areLinked("test/Yoda", "say", "()V", "test/Speech", "say", "()V"));
 	}
-}
\ No newline at end of file
+
+	private Set<String> findDeclaringClasses(String owner, String name, String desc) {
+		Workspace workspace = graph.getWorkspace();
+		return graph.getHierarchyNames(owner).stream()
+				.filter(member -> ClassUtil.containsMethod(workspace.getClassReader(member), name, desc))
+				.collect(Collectors.toSet());
+	}
+
+	private static byte[] createClass(String name, String superName, String[] interfaces) {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, interfaces);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+}
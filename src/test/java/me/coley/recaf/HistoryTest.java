@@ -1,10 +1,13 @@
 package me.coley.recaf;
 
+import me.coley.recaf.util.DeltaUtil;
 import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -116,4 +119,102 @@ public class HistoryTest extends Base {
 		assertArrayEquals(DUMMY, resource.getFileHistory(key).pop());
 		assertArrayEquals(initial, resource.getFileHistory(key).pop());
 	}
+
+	@Test
+	public void testInitialStateIsNotCopied() {
+		String key = "Start";
+		assertSame(resource.getClasses().get(key), resource.getClassHistory(key).peek());
+	}
+
+	@Test
+	public void testDeltaRoundTrip() {
+		Random random = new Random(0);
+		byte[] source = new byte[4096];
+		random.nextBytes(source);
+		for (int i = 0; i < 50; i++) {
+			byte[] target = mutate(random, source);
+			byte[] delta = DeltaUtil.diff(source, target);
+			assertArrayEquals(target, DeltaUtil.patch(source, delta));
+			source = target;
+		}
+		// Small edits produce small deltas
+		byte[] edited = source.clone();
+		edited[2000] ^= 1;
+		assertTrue(DeltaUtil.diff(source, edited).length < 64);
+		// Degenerate inputs
+		assertArrayEquals(new byte[0], DeltaUtil.patch(source, DeltaUtil.diff(source, new byte[0])));
+		assertArrayEquals(DUMMY, DeltaUtil.patch(new byte[0], DeltaUtil.diff(new byte[0], DUMMY)));
+	}
+
+	@Test
+	public void testDeltaStoreMatchesStackStore() {
+		Random random = new Random(1);
+		HistorySpillPool pool = new HistorySpillPool(2048);
+		HistoryStore delta = new DeltaHistoryStore(pool);
+		HistoryStore stack = new StackHistoryStore();
+		byte[] content = new byte[1024];
+		random.nextBytes(content);
+		for (int i = 0; i < 40; i++) {
+			delta.push(content);
+			stack.push(content);
+			assertEquals(stack.size(), delta.size());
+			assertArrayEquals(stack.peek(), delta.peek());
+			content = mutate(random, content);
+			// Interleave some pops with the pushes
+			if (i % 7 == 6) {
+				assertArrayEquals(stack.pop(), delta.pop());
+				assertArrayEquals(stack.peek(), delta.peek());
+			}
+		}
+		// Cold revisions past the budget have been moved to disk
+		assertTrue(pool.getResidentBytes() <= pool.getBudget());
+		while (stack.size() > 0) {
+			assertEquals(stack.size(), delta.size());
+			assertArrayEquals(stack.pop(), delta.pop());
+		}
+		assertEquals(0, delta.size());
+		assertNull(delta.peek());
+		assertEquals(0, pool.getResidentBytes());
+	}
+
+	@Test
+	public void testSpilledHistoryRollback() {
+		String key = "Start";
+		HistorySpillPool pool = new HistorySpillPool(0);
+		History history = new History(resource.getClasses(), key, new DeltaHistoryStore(pool));
+		byte[] initial = resource.getClasses().get(key);
+		history.push(initial);
+		history.push(DUMMY);
+		byte[] modified = initial.clone();
+		modified[modified.length - 1] ^= 1;
+		history.push(modified);
+		assertEquals(0, pool.getResidentBytes());
+		assertArrayEquals(modified, history.pop());
+		assertArrayEquals(DUMMY, history.pop());
+		assertArrayEquals(initial, history.pop());
+		assertArrayEquals(initial, resource.getClasses().get(key));
+		assertTrue(history.isAtInitial());
+		assertEquals(1, history.size());
+	}
+
+	private static byte[] mutate(Random random, byte[] source) {
+		byte[] target = source.clone();
+		int edits = 1 + random.nextInt(4);
+		for (int e = 0; e < edits; e++)
+			target[random.nextInt(target.length)] = (byte) random.nextInt();
+		// Occasionally grow or shrink the content, as inserting constants would
+		if (random.nextBoolean()) {
+			int at = random.nextInt(target.length);
+			byte[] insert = new byte[random.nextInt(32)];
+			random.nextBytes(insert);
+			byte[] grown = new byte[target.length + insert.length];
+			System.arraycopy(target, 0, grown, 0, at);
+			System.arraycopy(insert, 0, grown, at, insert.length);
+			System.arraycopy(target, at, grown, at + insert.length, target.length - at);
+			target = grown;
+		} else if (target.length > 64) {
+			target = Arrays.copyOf(target, target.length - random.nextInt(32));
+		}
+		return target;
+	}
 }
@@ -0,0 +1,142 @@
+package me.coley.recaf;
+
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.workspace.JarResource;
+import me.coley.recaf.workspace.JavaResource;
+import me.coley.recaf.workspace.PhantomResource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for phantom class generation.
+ *
+ * @author Matt
+ */
+public class PhantomTest extends Base {
+	private final Map<String, byte[]> classes = new HashMap<>();
+	private PhantomResource phantoms;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		classes.clear();
+		classes.put("test/UsesA", createUser("test/UsesA", "missing/A", "run"));
+		classes.put("test/UsesB", createUser("test/UsesB", "missing/B", "run"));
+		phantoms = new PhantomResource();
+		phantoms.populatePhantoms(classes);
+	}
+
+	@Test
+	public void testPopulate() {
+		assertEquals(new HashSet<>(Arrays.asList("missing/A", "missing/B")), phantoms.getClasses().keySet());
+		assertTrue(phantoms.getClassHeader("missing/A").hasMethod("run", "()V"));
+	}
+
+	@Test
+	public void testAddClass() throws IOException {
+		byte[] phantomB = phantoms.getClasses().get("missing/B");
+		// New use of an existing phantom
+		classes.put("test/UsesA2", createUser("test/UsesA2", "missing/A", "stop"));
+		phantoms.updatePhantoms(classes, Collections.singleton("test/UsesA2"));
+		ClassHeader header = phantoms.getClassHeader("missing/A");
+		assertTrue(header.hasMethod("run", "()V"));
+		assertTrue(header.hasMethod("stop", "()V"));
+		// Unrelated phantoms are not generated again
+		assertSame(phantomB, phantoms.getClasses().get("missing/B"));
+		// Adding the missing class replaces its phantom
+		classes.put("missing/B", createUser("missing/B", "java/lang/Object", "toString"));
+		phantoms.updatePhantoms(classes, Collections.singleton("missing/B"));
+		assertFalse(phantoms.getClasses().containsKey("missing/B"));
+		assertTrue(phantoms.getClasses().containsKey("missing/A"));
+	}
+
+	@Test
+	public void testRemoveClass() throws IOException {
+		// Phantoms without any remaining users are removed
+		classes.remove("test/UsesB");
+		phantoms.updatePhantoms(classes, Collections.singleton("test/UsesB"));
+		assertEquals(Collections.singleton("missing/A"), phantoms.getClasses().keySet());
+		// Removing a class that is still used makes it a phantom
+		classes.put("test/Used", createUser("test/Used", "java/lang/Object", "toString"));
+		classes.put("test/UsesUsed", createUser("test/UsesUsed", "test/Used", "run"));
+		phantoms.updatePhantoms(classes, Arrays.asList("test/Used", "test/UsesUsed"));
+		assertFalse(phantoms.getClasses().containsKey("test/Used"));
+		classes.remove("test/Used");
+		phantoms.updatePhantoms(classes, Collections.singleton("test/Used"));
+		assertTrue(phantoms.getClasses().containsKey("test/Used"));
+	}
+
+	@Test
+	public void testUpdateWithoutMissingTypes() throws IOException {
+		byte[] phantomA = phantoms.getClasses().get("missing/A");
+		classes.put("test/Plain", createUser("test/Plain", "java/lang/Object", "toString"));
+		phantoms.updatePhantoms(classes, Collections.singleton("test/Plain"));
+		assertSame(phantomA, phantoms.getClasses().get("missing/A"));
+	}
+
+	@Test
+	public void testFollowResource() throws IOException {
+		Path jar = Files.createTempFile("recaf-phantoms", ".jar");
+		try {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+				for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+					zos.putNextEntry(new ZipEntry(e.getKey() + ".class"));
+					zos.write(e.getValue());
+					zos.closeEntry();
+				}
+			}
+			JavaResource resource = new JarResource(jar);
+			phantoms.updatePhantoms(resource);
+			assertEquals(new HashSet<>(Arrays.asList("missing/A", "missing/B")), phantoms.getClasses().keySet());
+			// Updates to the resource are followed
+			resource.getClasses().remove("test/UsesB");
+			phantoms.updatePhantoms(resource);
+			assertEquals(Collections.singleton("missing/A"), phantoms.getClasses().keySet());
+			// Invalidating the resource drops the listeners, so the next update covers all classes
+			resource.invalidate();
+			phantoms.updatePhantoms(resource);
+			assertEquals(new HashSet<>(Arrays.asList("missing/A", "missing/B")), phantoms.getClasses().keySet());
+		} finally {
+			Files.delete(jar);
+		}
+	}
+
+	/**
+	 * @param name
+	 * 		Name of class to create.
+	 * @param used
+	 * 		Type the class calls a method of.
+	 * @param method
+	 * 		Name of the called method.
+	 *
+	 * @return Class with a static method that calls the given method on its parameter.
+	 */
+	private static byte[] createUser(String name, String used, String method) {
+		String desc = method.equals("toString") ? "()Ljava/lang/String;" : "()V";
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "use",
+				"(L" + used + ";)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, used, method, desc, false);
+		if (!desc.endsWith("V"))
+			mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+}
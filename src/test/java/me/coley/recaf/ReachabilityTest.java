@@ -0,0 +1,221 @@
+package me.coley.recaf;
+
+import me.coley.recaf.command.impl.Reachability;
+import me.coley.recaf.control.headless.HeadlessController;
+import me.coley.recaf.graph.flow.ReachabilityAnalysis;
+import me.coley.recaf.workspace.JarResource;
+import me.coley.recaf.workspace.Workspace;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reachability analysis.
+ *
+ * @author Matt
+ */
+public class ReachabilityTest extends Base {
+	private static final String MAIN_DESC = "([Ljava/lang/String;)V";
+	private static final Handle METAFACTORY = new Handle(Opcodes.H_INVOKESTATIC,
+			"java/lang/invoke/LambdaMetafactory", "metafactory", "(Ljava/lang/invoke/MethodHandles$Lookup;" +
+			"Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;" +
+			"Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false);
+	private Workspace workspace;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		workspace = new Workspace(new JarResource(getClasspathFile("calls.jar")));
+		Map<String, byte[]> classes = workspace.getPrimary().getClasses();
+		// Service implementations, only one of which is created
+		ClassWriter cw = create("gen/Service", "java/lang/Object", Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT);
+		cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "run", "()V", null, null).visitEnd();
+		classes.put("gen/Service", finish(cw));
+		for (String impl : new String[] {"gen/ServiceA", "gen/ServiceB"}) {
+			cw = create(impl, "java/lang/Object", Opcodes.ACC_PUBLIC, "gen/Service");
+			constructor(cw, "java/lang/Object");
+			method(cw, "run", "()V", false, mv -> {});
+			classes.put(impl, finish(cw));
+		}
+		// Value with a method called back by the runtime
+		cw = create("gen/Value", "java/lang/Object", Opcodes.ACC_PUBLIC);
+		constructor(cw, "java/lang/Object");
+		method(cw, "toString", "()Ljava/lang/String;", false, mv -> {
+			mv.visitLdcInsn("value");
+			mv.visitInsn(Opcodes.ARETURN);
+		});
+		classes.put("gen/Value", finish(cw));
+		// Unused class
+		cw = create("gen/Unused", "java/lang/Object", Opcodes.ACC_PUBLIC);
+		method(cw, "unused", "()V", true, mv -> {});
+		classes.put("gen/Unused", finish(cw));
+		// Main creates an implementation and a value, then runs the service through the interface
+		cw = create("gen/Main", "java/lang/Object", Opcodes.ACC_PUBLIC);
+		method(cw, "main", MAIN_DESC, true, mv -> {
+			mv.visitTypeInsn(Opcodes.NEW, "gen/ServiceA");
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "gen/ServiceA", "<init>", "()V", false);
+			mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "gen/Service", "run", "()V", true);
+			mv.visitTypeInsn(Opcodes.NEW, "gen/Value");
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "gen/Value", "<init>", "()V", false);
+			mv.visitInsn(Opcodes.POP);
+		});
+		method(cw, "helper", "()V", true, mv -> {});
+		classes.put("gen/Main", finish(cw));
+	}
+
+	@Test
+	public void testChain() {
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(workspace)
+				.addEntryPoint("test/Chain", "one", "()V")
+				.run();
+		assertTrue(analysis.isReachable("test/Chain", "two", "()V"));
+		assertTrue(analysis.isReachable("test/Chain", "three", "()V"));
+		assertTrue(analysis.isClassReachable("test/Chain"));
+		assertFalse(analysis.isClassReachable("test/Loopback"));
+		assertTrue(analysis.getUnreachableClasses().contains("test/Loopback"));
+	}
+
+	@Test
+	public void testLoop() {
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(workspace)
+				.addEntryPoint("test/Loopback", "two", "()V")
+				.run();
+		assertTrue(analysis.isReachable("test/Loopback", "one", "()V"));
+		assertTrue(analysis.isReachable("test/Loopback", "three", "()V"));
+	}
+
+	@Test
+	public void testMainEntryPoints() {
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(workspace)
+				.addMainEntryPoints()
+				.run();
+		assertTrue(analysis.isReachable("gen/Main", "main", MAIN_DESC));
+		assertFalse(analysis.isReachable("gen/Main", "helper", "()V"));
+		assertTrue(analysis.getUnreachableMethods().contains("gen/Main.helper()V"));
+		// Interface calls reach all implementations
+		assertTrue(analysis.isReachable("gen/ServiceA", "run", "()V"));
+		assertTrue(analysis.isReachable("gen/ServiceB", "run", "()V"));
+		// Constructors are not dispatched
+		assertTrue(analysis.isReachable("gen/ServiceA", "<init>", "()V"));
+		assertFalse(analysis.isReachable("gen/ServiceB", "<init>", "()V"));
+		// Overrides of runtime methods in used classes may be called by the runtime
+		assertTrue(analysis.isReachable("gen/Value", "toString", "()Ljava/lang/String;"));
+		assertTrue(analysis.getUnreachableClasses().contains("gen/Unused"));
+		assertFalse(analysis.getUnreachableClasses().contains("gen/Value"));
+	}
+
+	@Test
+	public void testClassEntryPoint() {
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(workspace)
+				.addMainEntryPoints()
+				.addClassEntryPoint("gen/Unused")
+				.run();
+		assertTrue(analysis.isReachable("gen/Unused", "unused", "()V"));
+		assertFalse(analysis.getUnreachableClasses().contains("gen/Unused"));
+	}
+
+	@Test
+	public void testLambda() {
+		ClassWriter cw = create("gen/Lambda", "java/lang/Object", Opcodes.ACC_PUBLIC);
+		method(cw, "start", "()V", true, mv -> {
+			mv.visitInvokeDynamicInsn("run", "()Ljava/lang/Runnable;", METAFACTORY, Type.getType("()V"),
+					new Handle(Opcodes.H_INVOKESTATIC, "gen/Lambda", "lambda$start$0", "()V", false),
+					Type.getType("()V"));
+			mv.visitInsn(Opcodes.POP);
+		});
+		method(cw, "lambda$start$0", "()V", true, mv -> {});
+		workspace.getPrimary().getClasses().put("gen/Lambda", finish(cw));
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(workspace)
+				.addEntryPoint("gen/Lambda", "start", "()V")
+				.run();
+		assertTrue(analysis.isReachable("gen/Lambda", "lambda$start$0", "()V"));
+		assertFalse(analysis.getUnreachableMethods().contains("gen/Lambda.lambda$start$0()V"));
+	}
+
+	@Test
+	public void testMethodReference() {
+		ClassWriter cw = create("gen/Reference", "java/lang/Object", Opcodes.ACC_PUBLIC);
+		method(cw, "start", "()V", true, mv -> {
+			// ServiceB::new
+			mv.visitInvokeDynamicInsn("get", "()Ljava/util/function/Supplier;", METAFACTORY,
+					Type.getType("()Ljava/lang/Object;"),
+					new Handle(Opcodes.H_NEWINVOKESPECIAL, "gen/ServiceB", "<init>", "()V", false),
+					Type.getType("()Lgen/ServiceB;"));
+			mv.visitInsn(Opcodes.POP);
+			// Handle constant
+			mv.visitLdcInsn(new Handle(Opcodes.H_INVOKESTATIC, "gen/Unused", "unused", "()V", false));
+			mv.visitInsn(Opcodes.POP);
+		});
+		workspace.getPrimary().getClasses().put("gen/Reference", finish(cw));
+		ReachabilityAnalysis analysis = new ReachabilityAnalysis(workspace)
+				.addEntryPoint("gen/Reference", "start", "()V")
+				.run();
+		assertTrue(analysis.isReachable("gen/ServiceB", "<init>", "()V"));
+		assertFalse(analysis.isReachable("gen/ServiceA", "<init>", "()V"));
+		assertTrue(analysis.isReachable("gen/Unused", "unused", "()V"));
+		assertFalse(analysis.getUnreachableClasses().contains("gen/Unused"));
+	}
+
+	@Test
+	public void testCommand() throws Exception {
+		HeadlessController controller = new HeadlessController(null, null);
+		controller.setWorkspace(workspace);
+		Reachability command = new Reachability();
+		command.setController(controller);
+		new CommandLine(command).parseArgs("--entry", "test/Chain.one()V", "--keep", "gen/Unused", "--methods");
+		ReachabilityAnalysis analysis = command.call();
+		assertTrue(analysis.isReachable("test/Chain", "three", "()V"));
+		assertTrue(analysis.isReachable("gen/Unused", "unused", "()V"));
+		assertTrue(analysis.isReachable("gen/ServiceB", "run", "()V"));
+		// Invalid entry method format
+		Reachability invalid = new Reachability();
+		invalid.setController(controller);
+		new CommandLine(invalid).parseArgs("--entry", "test/Chain");
+		assertThrows(IllegalArgumentException.class, invalid::call);
+	}
+
+	private static ClassWriter create(String name, String superName, int access, String... interfaces) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+		return cw;
+	}
+
+	private static void constructor(ClassWriter cw, String superName) {
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void method(ClassWriter cw, String name, String desc, boolean isStatic,
+			Consumer<MethodVisitor> body) {
+		int access = Opcodes.ACC_PUBLIC | (isStatic ? Opcodes.ACC_STATIC : 0);
+		MethodVisitor mv = cw.visitMethod(access, name, desc, null, null);
+		mv.visitCode();
+		body.accept(mv);
+		if (desc.endsWith("V"))
+			mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static byte[] finish(ClassWriter cw) {
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+}
@@ -2,17 +2,23 @@ package me.coley.recaf;
 
 import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
+import me.coley.recaf.graph.inheritance.HierarchyGraph;
 import me.coley.recaf.mapping.*;
 import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
-import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.*;
 import org.objectweb.asm.tree.ClassNode;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import static me.coley.recaf.util.Log.info;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.objectweb.asm.ClassReader.*;
 
@@ -204,6 +210,125 @@ public class RemappingTest extends Base {
 		}
 	}
 
+	@Test
+	@Tag("benchmark")
+	public void testCommonParentCacheBenchmark() throws IOException {
+		Path jar = createHierarchyJar(600);
+		try {
+			Map<String, byte[]> uncachedResult = null;
+			Map<String, byte[]> cachedResult = null;
+			long uncached = Long.MAX_VALUE;
+			long cached = Long.MAX_VALUE;
+			for (int round = 0; round < 3; round++) {
+				for (boolean useCache : new boolean[] { false, true }) {
+					Workspace workspace = new Workspace(new JarResource(jar));
+					workspace.getHierarchyGraph().setCommonCacheLimit(useCache ?
+							HierarchyGraph.DEFAULT_COMMON_CACHE_LIMIT : 0);
+					Mappings mappings = new Mappings(workspace);
+					mappings.setMappings(Collections.singletonMap("bench/Base", "bench/RenamedBase"));
+					long start = System.nanoTime();
+					Map<String, byte[]> updated = mappings.accept(workspace.getPrimary());
+					long time = System.nanoTime() - start;
+					if (useCache) {
+						cached = Math.min(cached, time);
+						cachedResult = updated;
+					} else {
+						uncached = Math.min(uncached, time);
+						uncachedResult = updated;
+					}
+				}
+			}
+			// Same output either way
+			assertEquals(uncachedResult.keySet(), cachedResult.keySet());
+			for (Map.Entry<String, byte[]> e : uncachedResult.entrySet())
+				assertArrayEquals(e.getValue(), cachedResult.get(e.getKey()));
+			// Parent sets are cached by the graph as well, so the remap as a whole is no longer dominated
+			// by common parent lookups. Compare the lookups on their own instead.
+			HierarchyGraph graph = new Workspace(new JarResource(jar)).getHierarchyGraph();
+			List<String> names = new ArrayList<>(graph.getWorkspace().getPrimaryClassNames());
+			Random random = new Random(0);
+			List<String[]> pairs = new ArrayList<>();
+			for (int i = 0; i < 40; i++)
+				pairs.add(new String[] { names.get(random.nextInt(names.size())),
+						names.get(random.nextInt(names.size())) });
+			uncached = Long.MAX_VALUE;
+			cached = Long.MAX_VALUE;
+			for (int round = 0; round < 5; round++) {
+				for (boolean useCache : new boolean[] { false, true }) {
+					graph.setCommonCacheLimit(useCache ? HierarchyGraph.DEFAULT_COMMON_CACHE_LIMIT : 0);
+					long start = System.nanoTime();
+					for (int i = 0; i < 50_000; i++) {
+						String[] pair = pairs.get(i % pairs.size());
+						graph.getCommon(pair[0], pair[1]);
+					}
+					long time = System.nanoTime() - start;
+					if (useCache)
+						cached = Math.min(cached, time);
+					else
+						uncached = Math.min(uncached, time);
+				}
+			}
+			// Timings depend on the machine, so they are only reported
+			info("Common parent lookups: cached {}ms, uncached {}ms", cached / 1_000_000, uncached / 1_000_000);
+		} finally {
+			Files.delete(jar);
+		}
+	}
+
+	private static Path createHierarchyJar(int classCount) throws IOException {
+		// Classes extend a random earlier class, so hierarchies are deep and overlap
+		Random random = new Random(0);
+		List<String> names = new ArrayList<>();
+		names.add("bench/Base");
+		Map<String, String> parents = new LinkedHashMap<>();
+		parents.put("bench/Base", "java/lang/Object");
+		for (int i = 0; i < classCount; i++) {
+			String name = "bench/Type" + i;
+			parents.put(name, names.get(random.nextInt(names.size())));
+			names.add(name);
+		}
+		// Frames merge the same few type pairs in many classes, as is typical for real code
+		List<String[]> pairs = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			String first = names.get(random.nextInt(names.size()));
+			String second = names.get(random.nextInt(names.size()));
+			pairs.add(new String[] { first, second });
+		}
+		Path jar = Files.createTempFile("recaf-remap", ".jar");
+		try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+			for (Map.Entry<String, String> e : parents.entrySet()) {
+				ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+				cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, e.getKey(), null, e.getValue(), null);
+				for (int i = 0; i < 10; i++) {
+					// Branches that yield different types, so frames need their common parent
+					MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "pick" + i,
+							"(I)Ljava/lang/Object;", null, null);
+					mv.visitCode();
+					String[] pair = pairs.get(random.nextInt(pairs.size()));
+					Label other = new Label();
+					Label end = new Label();
+					mv.visitVarInsn(Opcodes.ILOAD, 0);
+					mv.visitJumpInsn(Opcodes.IFEQ, other);
+					mv.visitInsn(Opcodes.ACONST_NULL);
+					mv.visitTypeInsn(Opcodes.CHECKCAST, pair[0]);
+					mv.visitJumpInsn(Opcodes.GOTO, end);
+					mv.visitLabel(other);
+					mv.visitInsn(Opcodes.ACONST_NULL);
+					mv.visitTypeInsn(Opcodes.CHECKCAST, pair[1]);
+					mv.visitLabel(end);
+					mv.visitInsn(Opcodes.ARETURN);
+					mv.visitMaxs(0, 0);
+					mv.visitEnd();
+				}
+				cw.visitEnd();
+				zos.putNextEntry(new ZipEntry(e.getKey() + ".class"));
+				zos.write(cw.toByteArray());
+				zos.closeEntry();
+			}
+		}
+		return jar;
+	}
+
 	private void testSame(MappingImpl toCompare, Path mapping) {
 		try {
 			// Both of these files outline the same data, just in different formats
@@ -1,15 +1,48 @@
 package me.coley.recaf;
 
+import me.coley.recaf.graph.flow.CallGraph;
+import me.coley.recaf.search.StringIndex;
+import me.coley.recaf.search.StringMatchMode;
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.util.ClassUtil;
+import me.coley.recaf.util.IOUtil;
+import me.coley.recaf.util.struct.OffHeapByteMap;
 import me.coley.recaf.workspace.*;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
+import static me.coley.recaf.util.Log.info;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -32,6 +65,31 @@ public class ResourceInputTest extends Base {
 		}
 	}
 
+	@Test
+	public void testClassHeadersMatchClasses() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JavaResource resource = new JarResource(file);
+			for (Map.Entry<String, byte[]> e : resource.getClasses().entrySet()) {
+				ClassReader reader = new ClassReader(e.getValue());
+				ClassNode node = ClassUtil.getNode(reader, ClassReader.SKIP_CODE);
+				ClassHeader header = resource.getClassHeader(e.getKey());
+				assertNotNull(header);
+				assertEquals(node.name, header.getName());
+				assertEquals(node.superName, header.getSuperName());
+				assertEquals(node.interfaces, header.getInterfaces());
+				assertEquals(reader.getAccess(), header.getAccess());
+				assertEquals(ClassUtil.getVersion(e.getValue()), header.getVersion());
+				assertEquals(node.sourceFile, header.getSourceFile());
+				assertEquals(node.fields.size(), header.getFieldCount());
+				assertEquals(node.methods.size(), header.getMethodCount());
+			}
+			assertNull(resource.getClassHeader("Missing"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
 	@Test
 	public void testJarResourcesDoNotContainClasses() {
 		try {
@@ -44,6 +102,612 @@ public class ResourceInputTest extends Base {
 		}
 	}
 
+	@Test
+	public void testJarFilesBeforeClasses() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JavaResource expected = new JarResource(file);
+			JavaResource resource = new JarResource(file);
+			// Files requested first should hold the classes read in the same pass until they are requested
+			assertEquals(expected.getFiles().keySet(), resource.getFiles().keySet());
+			assertEquals(expected.getClasses().keySet(), resource.getClasses().keySet());
+			assertEquals(CLASSES_IN_CALC_JAR, resource.getClasses().size());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testParallelArchiveReaderOrder() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			List<String> sequential = new ArrayList<>();
+			List<String> parallel = new ArrayList<>();
+			new ParallelArchiveReader(file, 1, false).read(entry -> true,
+					(entry, content) -> sequential.add(entry.getName() + ":" + Arrays.hashCode(content)));
+			new ParallelArchiveReader(file, 4, false).read(entry -> true,
+					(entry, content) -> parallel.add(entry.getName() + ":" + Arrays.hashCode(content)));
+			assertFalse(sequential.isEmpty());
+			assertEquals(sequential, parallel);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testMappedArchiveReaderMatchesZipFile() {
+		try {
+			for (String name : new String[] {"calc.jar", "inherit.jar", "calls.jar", "InnerTest.jar"}) {
+				Path file = getClasspathFile(name);
+				List<String> expected = new ArrayList<>();
+				List<String> mapped = new ArrayList<>();
+				new ParallelArchiveReader(file, 1, false).read(entry -> true,
+						(entry, content) -> expected.add(entry.getName() + ":" + Arrays.hashCode(content)));
+				new ParallelArchiveReader(file, 4, true).read(entry -> true,
+						(entry, content) -> mapped.add(entry.getName() + ":" + Arrays.hashCode(content)));
+				assertEquals(expected, mapped, "Mismatch in " + name);
+			}
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testMappedJar() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JavaResource expected = new JarResource(file);
+			JarResource resource = new JarResource(file);
+			resource.setMemoryMapped(true);
+			assertEquals(expected.getClasses().keySet(), resource.getClasses().keySet());
+			assertEquals(expected.getFiles().keySet(), resource.getFiles().keySet());
+			for (String name : expected.getClasses().keySet())
+				assertArrayEquals(expected.getClasses().get(name), resource.getClasses().get(name));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testMappedStoredEntriesWithPrefix() {
+		try {
+			Path file = Files.createTempFile("recaf", ".jar");
+			file.toFile().deleteOnExit();
+			byte[] stored = "stored-content".getBytes(StandardCharsets.UTF_8);
+			byte[] deflated = new byte[4096];
+			Arrays.fill(deflated, (byte) 'x');
+			try (OutputStream os = Files.newOutputStream(file)) {
+				// Junk prepended to the archive shifts all offsets
+				os.write(new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+				ZipOutputStream zos = new ZipOutputStream(os);
+				ZipEntry entry = new ZipEntry("stored.txt");
+				CRC32 crc = new CRC32();
+				crc.update(stored);
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(stored.length);
+				entry.setCrc(crc.getValue());
+				zos.putNextEntry(entry);
+				zos.write(stored);
+				zos.closeEntry();
+				zos.putNextEntry(new ZipEntry("deflated.txt"));
+				zos.write(deflated);
+				zos.closeEntry();
+				zos.finish();
+			}
+			try (MappedZipFile zip = new MappedZipFile(file)) {
+				assertEquals(2, zip.getEntries().size());
+				ByteBuffer content = zip.getContent(zip.getEntries().get(0));
+				assertTrue(content.isReadOnly());
+				assertArrayEquals(stored, zip.read(zip.getEntries().get(0)));
+				assertArrayEquals(deflated, zip.read(zip.getEntries().get(1)));
+			}
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testJarMatchesLocalHeadersWhenCentralDirectoryDiffers() {
+		try {
+			byte[][] contents = {createBenchmarkClass("a/A"), createBenchmarkClass("a/B"), createBenchmarkClass("b/C")};
+			String[] names = {"a/A.class", "a/B.class", "b/C.class"};
+			Path[] jars = {
+					// Duplicate names, holding different classes
+					createRawJar(new String[] {"a/A.class", "a/A.class", "b/C.class"}, contents,
+							new int[] {0, 1, 2}, new String[] {"a/A.class", "a/A.class", "b/C.class"}, -1),
+					// Local entry missing from the central directory
+					createRawJar(names, contents, new int[] {0, 2}, new String[] {"a/A.class", "b/C.class"}, -1),
+					// Central directory name differing from the local header
+					createRawJar(names, contents, new int[] {0, 1, 2},
+							new String[] {"a/A.class", "a/B.txt", "b/C.class"}, -1)
+			};
+			for (Path jar : jars) {
+				try (MappedZipFile zip = new MappedZipFile(jar)) {
+					assertFalse(zip.hasConsistentHeaders());
+				}
+				assertJarMatchesLocalHeaders(jar, 3);
+			}
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testWarMatchesLocalHeadersWhenCentralDirectoryDiffers() {
+		try {
+			byte[][] contents = {createBenchmarkClass("a/A"), createBenchmarkClass("a/B"), createBenchmarkClass("b/C")};
+			String[] names = {"WEB-INF/classes/a/A.class", "WEB-INF/classes/a/B.class", "b/C.class"};
+			// Local entry missing from the central directory
+			Path war = createRawJar(names, contents, new int[] {0, 2}, new String[] {names[0], names[2]}, -1);
+			JavaResource resource = new WarResource(war);
+			assertEquals(new HashSet<>(Arrays.asList("a/A", "a/B", "b/C")), resource.getClasses().keySet());
+			assertArrayEquals(contents[1], resource.getClasses().get("a/B"));
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testJarWithInvalidCrc() {
+		try {
+			byte[][] contents = {createBenchmarkClass("a/A"), createBenchmarkClass("a/B"), createBenchmarkClass("b/C")};
+			String[] names = {"a/A.class", "a/B.class", "b/C.class"};
+			Path jar = createRawJar(names, contents, new int[] {0, 1, 2}, names, 1);
+			try (MappedZipFile zip = new MappedZipFile(jar)) {
+				assertTrue(zip.hasConsistentHeaders());
+			}
+			try (MappedZipFile zip = new MappedZipFile(getClasspathFile("calc.jar"))) {
+				assertTrue(zip.hasConsistentHeaders());
+			}
+			assertJarMatchesLocalHeaders(jar, 3);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testMappedZipReleasedOnClose() {
+		Path maps = Paths.get("/proc/self/maps");
+		Assumptions.assumeTrue(Files.isReadable(maps), "Mappings can only be listed on Linux");
+		try {
+			Path file = Files.createTempFile("recaf-mapped", ".jar");
+			Files.copy(getClasspathFile("calc.jar"), file, StandardCopyOption.REPLACE_EXISTING);
+			String name = file.toRealPath().toString();
+			JarResource resource = new JarResource(file);
+			resource.setMemoryMapped(true);
+			try (MappedZipFile zip = new MappedZipFile(file)) {
+				assertFalse(zip.getEntries().isEmpty());
+				assertTrue(new String(Files.readAllBytes(maps), StandardCharsets.UTF_8).contains(name));
+			}
+			assertEquals(CLASSES_IN_CALC_JAR, resource.getClasses().size());
+			// Mappings are released once the archive is read, not when they are garbage collected
+			assertFalse(new String(Files.readAllBytes(maps), StandardCharsets.UTF_8).contains(name));
+			Files.delete(file);
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testDirectoryMatchesSequentialWalk() {
+		try {
+			Path root = Files.createTempDirectory("recaf-dir");
+			byte[] junk = new byte[64];
+			Arrays.fill(junk, (byte) 7);
+			for (int p = 0; p < 40; p++) {
+				Path pkg = Files.createDirectories(root.resolve("pkg" + p).resolve("sub" + (p % 3)));
+				for (int c = 0; c < 50; c++) {
+					String name = "pkg" + p + "/sub" + (p % 3) + "/Type" + c;
+					ClassWriter cw = new ClassWriter(0);
+					cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+					cw.visitEnd();
+					Files.write(pkg.resolve("Type" + c + ".class"), cw.toByteArray());
+					Files.write(pkg.resolve("data" + c + ".txt"), name.getBytes(StandardCharsets.UTF_8));
+				}
+				Files.write(pkg.resolve("Junk.class"), junk);
+			}
+			// Expected content, read the way the loader used to: one walk per content kind
+			EntryLoader expected = new EntryLoader();
+			List<Path> paths = new ArrayList<>();
+			try (Stream<Path> stream = Files.walk(root)) {
+				stream.filter(Files::isRegularFile).forEach(paths::add);
+			}
+			for (Path path : paths) {
+				String relative = root.relativize(path).toString().replace(File.separator, "/");
+				if (expected.isFileValidClassName(relative))
+					expected.onClass(relative, Files.readAllBytes(path));
+			}
+			expected.finishClasses();
+			for (Path path : paths) {
+				String relative = root.relativize(path).toString().replace(File.separator, "/");
+				if (!expected.isFileValidClassName(relative))
+					expected.onFile(relative, Files.readAllBytes(path));
+			}
+			expected.finishFiles();
+			JavaResource resource = new DirectoryResource(root);
+			assertEquals(2000, resource.getClasses().size());
+			assertEquals(expected.getClasses().keySet(), resource.getClasses().keySet());
+			assertEquals(expected.getFiles().keySet(), resource.getFiles().keySet());
+			for (Map.Entry<String, byte[]> e : expected.getClasses().entrySet())
+				assertArrayEquals(e.getValue(), resource.getClasses().get(e.getKey()));
+			for (Map.Entry<String, byte[]> e : expected.getFiles().entrySet())
+				assertArrayEquals(e.getValue(), resource.getFiles().get(e.getKey()));
+			FileUtils.deleteDirectory(root.toFile());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testWorkspaceSnapshotRestore() {
+		try {
+			Path root = Files.createTempDirectory("recaf-cache");
+			Path primary = Files.copy(getClasspathFile("inherit.jar"), root.resolve("inherit.jar"));
+			Path library = Files.copy(getClasspathFile("calc.jar"), root.resolve("calc.jar"));
+			Path json = root.resolve("workspace.json");
+			Workspace cold = new Workspace(new JarResource(primary),
+					new ArrayList<>(Collections.singletonList(new JarResource(library))));
+			Files.write(json, WorkspaceIO.toJson(cold).getBytes(StandardCharsets.UTF_8));
+			WorkspaceCache cache = new WorkspaceCache(root.resolve("snapshots"));
+			// No snapshots exist yet
+			Workspace first = WorkspaceIO.fromJson(json);
+			assertFalse(cache.restore(first));
+			// Build the call graph, so that its calls are stored too
+			CallGraph calls = first.getFlowGraph().getCallGraph();
+			assertFalse(calls.getCallers("test/Person", "<init>", "()V").isEmpty());
+			first.getStringIndex().build();
+			cache.save(first);
+			// Reopen from snapshots, content should match the original load
+			Workspace warm = cache.fromJson(json);
+			Workspace expected = WorkspaceIO.fromJson(json);
+			assertTrue(cache.restore(WorkspaceIO.fromJson(json)));
+			assertTableEquals(expected.getPrimary().getClasses(), warm.getPrimary().getClasses());
+			assertTableEquals(expected.getPrimary().getFiles(), warm.getPrimary().getFiles());
+			assertTableEquals(expected.getLibraries().get(0).getClasses(),
+					warm.getLibraries().get(0).getClasses());
+			assertEquals(expected.getHierarchyGraph().getDescendantEdges(),
+					warm.getHierarchyGraph().getDescendantEdges());
+			CallGraph warmCalls = warm.getFlowGraph().getCallGraph();
+			assertEquals(calls.getCallers("test/Person", "<init>", "()V").size(),
+					warmCalls.getCallers("test/Person", "<init>", "()V").size());
+			assertEquals(calls.export().keySet(), warmCalls.export().keySet());
+			StringIndex warmStrings = warm.getStringIndex();
+			for (String text : new String[] {"", "e", "Person"})
+				assertEquals(describe(first.getStringIndex().find(text, StringMatchMode.CONTAINS)),
+						describe(warmStrings.find(text, StringMatchMode.CONTAINS)));
+			assertEquals(first.getStringIndex().export().keySet(), warmStrings.export().keySet());
+			// Restored primary content still tracks changes and history
+			String name = warm.getPrimary().getClasses().keySet().iterator().next();
+			assertEquals(1, warm.getPrimary().getClassHistory(name).size());
+			warm.getPrimary().getClasses().put(name, warm.getPrimary().getClasses().get(name));
+			assertTrue(warm.getPrimary().getDirtyClasses().contains(name));
+			FileUtils.deleteDirectory(root.toFile());
+		} catch(Exception ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testWorkspaceSnapshotStale() {
+		try {
+			Path root = Files.createTempDirectory("recaf-cache");
+			Path primary = Files.copy(getClasspathFile("inherit.jar"), root.resolve("input.jar"));
+			WorkspaceCache cache = new WorkspaceCache(root.resolve("snapshots"));
+			cache.save(new Workspace(new JarResource(primary)));
+			assertTrue(cache.restore(new Workspace(new JarResource(primary))));
+			// Skipped prefixes change the loaded content
+			JavaResource skipping = new JarResource(primary);
+			skipping.setSkippedPrefixes(Collections.singletonList("test"));
+			assertFalse(cache.restore(new Workspace(skipping)));
+			// Replacing the input invalidates the snapshot
+			Files.copy(getClasspathFile("calc.jar"), primary, StandardCopyOption.REPLACE_EXISTING);
+			JavaResource replaced = new JarResource(primary);
+			assertFalse(cache.restore(new Workspace(replaced)));
+			assertEquals(CLASSES_IN_CALC_JAR, replaced.getClasses().size());
+			// Corrupt snapshots are discarded
+			cache.save(new Workspace(new JarResource(primary)));
+			try (Stream<Path> stream = Files.list(cache.getDirectory())) {
+				for (Path snapshot : (Iterable<Path>) stream::iterator)
+					Files.write(snapshot, new byte[] { 0x52, 0x43 });
+			}
+			assertFalse(cache.restore(new Workspace(new JarResource(primary))));
+			cache.clear();
+			FileUtils.deleteDirectory(root.toFile());
+		} catch(Exception ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testWorkspaceSnapshotContentChanged() {
+		try {
+			Path root = Files.createTempDirectory("recaf-cache");
+			Path primary = root.resolve("input.jar");
+			byte[][] before = {createBenchmarkClass("a/A"), createBenchmarkClass("b/B")};
+			byte[][] after = {createBenchmarkClass("a/C"), createBenchmarkClass("b/D")};
+			String[] names = {"a/A.class", "b/B.class"};
+			Files.copy(createRawJar(names, before, new int[] {0, 1}, names, -1), primary);
+			WorkspaceCache cache = new WorkspaceCache(root.resolve("snapshots"));
+			cache.save(new Workspace(new JarResource(primary)));
+			// Same size and modification time, but different content
+			FileTime modified = Files.getLastModifiedTime(primary);
+			Files.copy(createRawJar(names, after, new int[] {0, 1}, names, -1), primary,
+					StandardCopyOption.REPLACE_EXISTING);
+			Files.setLastModifiedTime(primary, modified);
+			JavaResource changed = new JarResource(primary);
+			Workspace workspace = new Workspace(changed);
+			assertFalse(cache.restore(workspace));
+			assertEquals(new HashSet<>(Arrays.asList("a/C", "b/D")), changed.getClasses().keySet());
+			assertTrue(workspace.getHierarchyGraph().getHierarchyNames("a/C").contains("a/C"));
+			assertFalse(workspace.getHierarchyGraph().getHierarchyNames("a/A").contains("a/A"));
+			// The outdated snapshot is removed
+			try (Stream<Path> stream = Files.list(cache.getDirectory())) {
+				assertEquals(0, stream.count());
+			}
+			FileUtils.deleteDirectory(root.toFile());
+		} catch(Exception ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testWorkspaceSnapshotSizeLimit() {
+		try {
+			Path root = Files.createTempDirectory("recaf-cache");
+			Path first = Files.copy(getClasspathFile("inherit.jar"), root.resolve("first.jar"));
+			Path second = Files.copy(getClasspathFile("calc.jar"), root.resolve("second.jar"));
+			WorkspaceCache cache = new WorkspaceCache(root.resolve("snapshots"));
+			cache.save(new Workspace(new JarResource(first)));
+			cache.save(new Workspace(new JarResource(second)));
+			long largest = 0;
+			try (Stream<Path> stream = Files.list(cache.getDirectory())) {
+				for (Path snapshot : (Iterable<Path>) stream::iterator)
+					largest = Math.max(largest, Files.size(snapshot));
+			}
+			// Only the most recently written snapshot fits
+			cache.setMaxSize(largest);
+			cache.save(new Workspace(new JarResource(second)));
+			assertFalse(cache.restore(new Workspace(new JarResource(first))));
+			assertTrue(cache.restore(new Workspace(new JarResource(second))));
+			FileUtils.deleteDirectory(root.toFile());
+		} catch(Exception ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testOffHeapMatchesHeap() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JavaResource heap = new JarResource(file);
+			JavaResource offHeap = new JarResource(file);
+			offHeap.setOffHeap(true);
+			assertTableEquals(heap.getClasses(), offHeap.getClasses());
+			assertTableEquals(heap.getFiles(), offHeap.getFiles());
+			assertTrue(offHeap.getClasses().getBacking() instanceof OffHeapByteMap);
+			// Updates are visible through lookups
+			String name = offHeap.getClasses().keySet().iterator().next();
+			offHeap.getClasses().put(name, new byte[] { 1, 2, 3 });
+			assertArrayEquals(new byte[] { 1, 2, 3 }, offHeap.getClasses().get(name));
+			offHeap.getClasses().remove(name);
+			assertFalse(offHeap.getClasses().containsKey(name));
+			// Content can be moved back onto the heap
+			offHeap.setOffHeap(false);
+			assertFalse(offHeap.getClasses().getBacking() instanceof OffHeapByteMap);
+			assertEquals(CLASSES_IN_CALC_JAR - 1, offHeap.getClasses().size());
+			// The setting is kept by workspace configs, and only applies to libraries
+			Workspace workspace = new Workspace(new JarResource(file),
+					new ArrayList<>(Collections.singletonList(new JarResource(file))));
+			workspace.setOffHeapStorage(true);
+			Workspace loaded = WorkspaceIO.fromJson(WorkspaceIO.toJson(workspace));
+			assertTrue(loaded.isOffHeapStorage());
+			assertFalse(loaded.getPrimary().isOffHeap());
+			assertTrue(loaded.getLibraries().get(0).isOffHeap());
+		} catch(Exception ex) {
+			fail(ex);
+		}
+	}
+
+	@Test
+	public void testOffHeapUsesLessHeap() {
+		int entries = 2000;
+		Random random = new Random(0);
+		Map<String, byte[]> content = new HashMap<>();
+		for (int i = 0; i < entries; i++) {
+			byte[] value = new byte[4096 + random.nextInt(4096)];
+			random.nextBytes(value);
+			content.put("pkg/Type" + i, value);
+		}
+		OffHeapByteMap<String> offHeap = new OffHeapByteMap<>(content);
+		// Same lookup results
+		assertEquals(content.keySet(), offHeap.keySet());
+		assertTableEquals(content, offHeap);
+		assertNull(offHeap.get("pkg/Missing"));
+		// All value bytes live in off-heap segments
+		long valueBytes = content.values().stream().mapToLong(v -> v.length).sum();
+		assertEquals(valueBytes, offHeap.getStoredBytes());
+		assertTrue(offHeap.getOffHeapBytes() >= valueBytes);
+		// Replacing all values compacts unused space, without changing the values
+		for (String key : content.keySet())
+			offHeap.put(key, new byte[] { 1 });
+		assertEquals(entries, offHeap.getStoredBytes());
+		assertTrue(offHeap.getOffHeapBytes() < valueBytes);
+		for (String key : content.keySet())
+			assertArrayEquals(new byte[] { 1 }, offHeap.get(key));
+	}
+
+	@Test
+	public void testOffHeapViewsAllowUpdates() {
+		OffHeapByteMap<String> offHeap = new OffHeapByteMap<>();
+		for (int i = 0; i < 100; i++)
+			offHeap.put("pkg/Type" + i, new byte[] { (byte) i });
+		// Updating the map while iterating over its views does not fail
+		int visited = 0;
+		for (Map.Entry<String, byte[]> e : offHeap.entrySet()) {
+			if (visited++ == 0)
+				offHeap.keySet().forEach(key -> {
+					if (!key.equals(e.getKey()))
+						offHeap.remove(key);
+				});
+			offHeap.put("pkg/Added" + visited, e.getValue());
+		}
+		// Entries removed after the iteration started are skipped, apart from one that may have been read ahead
+		assertTrue(visited <= 2);
+		assertEquals(1 + visited, offHeap.size());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void testSingleParseIngestionBenchmark() throws IOException {
+		Map<String, byte[]> content = new LinkedHashMap<>();
+		for (int i = 0; i < 2000; i++)
+			content.put("bench/Type" + i + ".class", createBenchmarkClass("bench/Type" + i));
+		// Write as a jar to check the resource pipeline keeps the loader's headers
+		Path jar = Files.createTempFile("recaf-ingest", ".jar");
+		try {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+				for (Map.Entry<String, byte[]> e : content.entrySet()) {
+					zos.putNextEntry(new ZipEntry(e.getKey()));
+					zos.write(e.getValue());
+					zos.closeEntry();
+				}
+			}
+			JavaResource resource = new JarResource(jar);
+			assertEquals(content.size(), resource.getClasses().size());
+			Map<String, ClassHeader> loaded = resource.getEntryLoader().getClassHeaders();
+			for (String name : resource.getClasses().keySet())
+				assertSame(loaded.get(name), resource.getClassHeader(name));
+		} finally {
+			Files.delete(jar);
+		}
+		// Compare against the previous pipeline: validate, read the name twice, then parse again for headers
+		long previous = Long.MAX_VALUE;
+		long current = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			Map<String, ClassHeader> expected = new HashMap<>();
+			for (byte[] value : content.values()) {
+				if (!ClassUtil.isValidClass(value) || expected.containsKey(new ClassReader(value).getClassName()))
+					continue;
+				expected.put(new ClassReader(value).getClassName(), ClassUtil.getHeader(value));
+			}
+			previous = Math.min(previous, System.nanoTime() - start);
+			start = System.nanoTime();
+			EntryLoader loader = new EntryLoader();
+			content.forEach(loader::onClass);
+			loader.finishClasses();
+			current = Math.min(current, System.nanoTime() - start);
+			assertEquals(expected.keySet(), loader.getClassHeaders().keySet());
+		}
+		// Timings depend on the machine, so they are only reported
+		info("Class ingestion: single parse {}ms, previous pipeline {}ms", current / 1_000_000, previous / 1_000_000);
+	}
+
+	private static byte[] createBenchmarkClass(String name) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", new String[] { "java/io/Serializable" });
+		cw.visitField(Opcodes.ACC_PRIVATE, "value", "I", null, null).visitEnd();
+		for (int i = 0; i < 20; i++) {
+			MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "method" + i, "(I)I", null, null);
+			mv.visitCode();
+			for (int j = 0; j < 20; j++) {
+				mv.visitVarInsn(Opcodes.ILOAD, 1);
+				mv.visitLdcInsn(j * 31 + i);
+				mv.visitInsn(Opcodes.IADD);
+				mv.visitVarInsn(Opcodes.ISTORE, 1);
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static void assertJarMatchesLocalHeaders(Path jar, int count) throws IOException {
+		// Expected content, read the way the loader used to: local headers, with the central directory
+		// as fallback for invalid CRC values
+		EntryLoader expected = new EntryLoader();
+		try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(jar))) {
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null)
+				if (expected.isValidClassEntry(entry))
+					expected.onClass(entry.getName(), IOUtil.toByteArray(zis));
+		} catch (ZipException ex) {
+			assertTrue(ex.getMessage().contains("invalid entry CRC"));
+			try (ZipFile zf = new ZipFile(jar.toFile())) {
+				for (ZipEntry entry : Collections.list(zf.entries()))
+					if (expected.isValidClassEntry(entry))
+						expected.onClass(entry.getName(), IOUtil.toByteArray(zf.getInputStream(entry)));
+			}
+		}
+		expected.finishClasses();
+		assertEquals(count, expected.getClasses().size());
+		for (boolean mapped : new boolean[] {false, true}) {
+			JarResource resource = new JarResource(jar);
+			resource.setMemoryMapped(mapped);
+			assertTableEquals(expected.getClasses(), resource.getClasses());
+		}
+	}
+
+	/**
+	 * Writes an archive of stored entries, with a central directory that may differ from the local headers.
+	 */
+	private static Path createRawJar(String[] names, byte[][] contents, int[] listed, String[] listedNames,
+									 int badCrc) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int[] offsets = new int[names.length];
+		int[] crcs = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			CRC32 crc = new CRC32();
+			crc.update(contents[i]);
+			offsets[i] = out.size();
+			crcs[i] = (int) crc.getValue() ^ (i == badCrc ? 1 : 0);
+			byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+			ByteBuffer header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(0x04034b50).putShort((short) 10).putShort((short) 0).putShort((short) ZipEntry.STORED)
+					.putInt(0).putInt(crcs[i]).putInt(contents[i].length).putInt(contents[i].length)
+					.putShort((short) name.length).putShort((short) 0);
+			out.write(header.array());
+			out.write(name);
+			out.write(contents[i]);
+		}
+		int centralStart = out.size();
+		for (int j = 0; j < listed.length; j++) {
+			int i = listed[j];
+			byte[] name = listedNames[j].getBytes(StandardCharsets.UTF_8);
+			ByteBuffer header = ByteBuffer.allocate(46).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(0x02014b50).putShort((short) 20).putShort((short) 10).putShort((short) 0)
+					.putShort((short) ZipEntry.STORED).putInt(0).putInt(crcs[i]).putInt(contents[i].length)
+					.putInt(contents[i].length).putShort((short) name.length).putShort((short) 0)
+					.putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt(offsets[i]);
+			out.write(header.array());
+			out.write(name);
+		}
+		ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) listed.length)
+				.putShort((short) listed.length).putInt(out.size() - centralStart).putInt(centralStart)
+				.putShort((short) 0);
+		out.write(end.array());
+		Path file = Files.createTempFile("recaf", ".jar");
+		file.toFile().deleteOnExit();
+		Files.write(file, out.toByteArray());
+		return file;
+	}
+
+	private static List<String> describe(List<StringIndex.Location> locations) {
+		return locations.stream()
+				.map(loc -> loc.getText() + " in " + loc.toContext())
+				.collect(Collectors.toList());
+	}
+
+	private static void assertTableEquals(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, byte[]> e : expected.entrySet())
+			assertArrayEquals(e.getValue(), actual.get(e.getKey()));
+	}
+
 	@Test
 	public void testClass() {
 		try {
@@ -100,6 +764,22 @@ public class ResourceInputTest extends Base {
 		}
 	}
 
+	@Test
+	public void testSkipPrefixesAfterSinglePassRead() {
+		try {
+			Path file = getClasspathFile("calc.jar");
+			JavaResource resource = new JarResource(file);
+			resource.setPrimary(true);
+			// Reading files holds the classes of the same pass, which must not outlive a settings change
+			resource.getFiles();
+			resource.setSkippedPrefixes(Collections.singletonList("calc"));
+			resource.invalidate();
+			assertEquals(1, resource.getClasses().size());
+		} catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
 	// ================== BAD INPUTS ====================== //
 
 	@Test
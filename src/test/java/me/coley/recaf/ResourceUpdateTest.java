@@ -1,13 +1,19 @@
 package me.coley.recaf;
 
+import me.coley.recaf.util.ClassHeader;
+import me.coley.recaf.util.struct.ConcurrentListeningMap;
 import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Tests the listening map used in {@link me.coley.recaf.workspace.JavaResource}.
@@ -113,10 +119,278 @@ public class ResourceUpdateTest extends Base {
 		assertTrue(removed.contains(valueToRemove));
 	}
 
+	@Test
+	public void testClassHeaderFollowsUpdates() {
+		resource.getClasses().put("Test", createClass("Test", "java/lang/Object", "java/lang/Runnable"));
+		ClassHeader header = workspace.getClassHeader("Test");
+		assertEquals("java/lang/Object", header.getSuperName());
+		assertEquals(Collections.singletonList("java/lang/Runnable"), header.getInterfaces());
+		// Replacing the class updates the header
+		resource.getClasses().put("Test", createClass("Test", "java/lang/Thread"));
+		header = resource.getClassHeader("Test");
+		assertEquals("java/lang/Thread", header.getSuperName());
+		assertTrue(header.getInterfaces().isEmpty());
+		// Removed and cleared classes have no header
+		resource.getClasses().remove("Test");
+		assertNull(resource.getClassHeader("Test"));
+		resource.getClasses().put("Test", createClass("Test", "java/lang/Object"));
+		assertNotNull(resource.getClassHeader("Test"));
+		resource.getClasses().clear();
+		assertNull(resource.getClassHeader("Test"));
+		// Invalid content has no header
+		resource.getClasses().put("Bad", new byte[] { 1, 2, 3 });
+		assertNull(resource.getClassHeader("Bad"));
+	}
+
+	@Test
+	public void testClassOwnerShadowing() {
+		JavaResource first = new DummyResource();
+		JavaResource second = new DummyResource();
+		first.getClasses().put("Shared", new byte[] { 1 });
+		second.getClasses().put("Shared", new byte[] { 2 });
+		second.getClasses().put("Library", new byte[] { 3 });
+		workspace = new Workspace(resource, new ArrayList<>(Arrays.asList(first, second)));
+		assertSame(first, workspace.getContainingResourceForClass("Shared"));
+		assertSame(second, workspace.getContainingResourceForClass("Library"));
+		assertArrayEquals(new byte[] { 1 }, workspace.getRawClass("Shared"));
+		assertFalse(workspace.hasClass("Missing"));
+		// Primary content shadows library content once it is added
+		resource.getClasses().put("Shared", new byte[] { 0 });
+		assertSame(resource, workspace.getContainingResourceForClass("Shared"));
+		assertArrayEquals(new byte[] { 0 }, workspace.getRawClass("Shared"));
+		// Later libraries do not take ownership from earlier ones
+		second.getClasses().put("Library", new byte[] { 4 });
+		first.getClasses().put("Library", new byte[] { 5 });
+		assertSame(first, workspace.getContainingResourceForClass("Library"));
+		// Removing the owning copy exposes the next one in order
+		resource.getClasses().remove("Shared");
+		assertSame(first, workspace.getContainingResourceForClass("Shared"));
+		first.getClasses().remove("Shared");
+		assertArrayEquals(new byte[] { 2 }, workspace.getRawClass("Shared"));
+		second.getClasses().remove("Shared");
+		assertFalse(workspace.hasClass("Shared"));
+		assertNull(workspace.getContainingResourceForClass("Shared"));
+	}
+
+	@Test
+	public void testClassOwnerLibraryAdded() {
+		assertFalse(workspace.hasClass("Added"));
+		JavaResource library = new DummyResource();
+		library.getClasses().put("Added", new byte[] { 1 });
+		workspace.getLibraries().add(library);
+		assertTrue(workspace.hasClass("Added"));
+		assertSame(library, workspace.getContainingResourceForClass("Added"));
+		workspace.getLibraries().remove(library);
+		assertFalse(workspace.hasClass("Added"));
+		// Removed libraries no longer update the index
+		library.getClasses().put("Other", new byte[] { 2 });
+		assertFalse(workspace.hasClass("Other"));
+		// Classes from the runtime are still found after workspace content
+		assertTrue(workspace.hasClass("java/lang/Object"));
+	}
+
+	@Test
+	public void testClassOwnerLibraryRemovedIndirectly() {
+		JavaResource library = new DummyResource();
+		library.getClasses().put("Added", new byte[] { 1 });
+		workspace.getLibraries().addAll(Collections.singletonList(library));
+		assertSame(library, workspace.getContainingResourceForClass("Added"));
+		// Updates made through iterators count as modifications as well
+		workspace.getLibraries().removeIf(other -> other == library);
+		assertNull(workspace.getContainingResourceForClass("Added"));
+		workspace.getLibraries().add(library);
+		assertSame(library, workspace.getContainingResourceForClass("Added"));
+		workspace.getLibraries().subList(0, 1).clear();
+		assertNull(workspace.getContainingResourceForClass("Added"));
+	}
+
+	@Test
+	public void testClassOwnerLibraryReplacedAndCleared() {
+		JavaResource first = new DummyResource();
+		first.getClasses().put("Library", new byte[] { 1 });
+		workspace = new Workspace(resource, new ArrayList<>(Collections.singletonList(first)));
+		assertSame(first, workspace.getContainingResourceForClass("Library"));
+		// Replacing a library keeps the number of libraries the same
+		JavaResource second = new DummyResource();
+		second.getClasses().put("Library", new byte[] { 2 });
+		workspace.getLibraries().set(0, second);
+		assertSame(second, workspace.getContainingResourceForClass("Library"));
+		// Clearing does not notify listeners
+		second.getClasses().clear();
+		assertNull(workspace.getContainingResourceForClass("Library"));
+		// Invalidated resources drop the index's listeners, which are attached again on the next lookup
+		second.invalidate();
+		assertFalse(workspace.hasClass("Library"));
+		second.getClasses().put("Reloaded", new byte[] { 3 });
+		assertSame(second, workspace.getContainingResourceForClass("Reloaded"));
+	}
+
+	@Test
+	public void testConcurrentPutOrdering() throws Exception {
+		ConcurrentListeningMap<String, Integer> map = new ConcurrentListeningMap<>();
+		map.setBacking(new HashMap<>());
+		// Last value delivered to listeners for each key
+		Map<String, Integer> delivered = new HashMap<>();
+		AtomicInteger calls = new AtomicInteger();
+		map.getPutListeners().add((key, value) -> {
+			calls.incrementAndGet();
+			delivered.put(key, value);
+		});
+		map.getRemoveListeners().add(delivered::remove);
+		int threads = 8;
+		int operations = 20000;
+		hammer(threads, t -> {
+			Random random = new Random(t);
+			for (int i = 0; i < operations; i++) {
+				String key = "k" + random.nextInt(64);
+				if (random.nextInt(10) == 0)
+					map.remove(key);
+				else
+					map.put(key, t * operations + i);
+				// Reads and iteration are safe while other threads update the map
+				map.get(key);
+				for (String other : map.keySet())
+					assertNotNull(other);
+			}
+		});
+		// Listener delivery is atomic with each update, so what listeners last saw is the map content
+		assertEquals(delivered, new HashMap<>(map));
+		assertTrue(calls.get() > threads * operations / 2);
+	}
+
+	@Test
+	public void testConcurrentReadsDuringListeners() throws Exception {
+		ConcurrentListeningMap<String, Integer> map = new ConcurrentListeningMap<>();
+		map.setBacking(new HashMap<>());
+		ExecutorService service = Executors.newSingleThreadExecutor();
+		try {
+			// Listeners may wait on other threads reading the map
+			map.getPutListeners().add((key, value) -> {
+				try {
+					assertFalse(service.submit(() -> map.containsKey(key)).get(1, TimeUnit.MINUTES));
+				} catch (Exception ex) {
+					fail(ex);
+				}
+			});
+			map.put("key", 1);
+			assertEquals(2, map.merge("other", 2, Integer::sum).intValue());
+			assertEquals(1, map.get("key").intValue());
+		} finally {
+			service.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentConditionalUpdates() throws Exception {
+		ConcurrentListeningMap<String, Integer> map = new ConcurrentListeningMap<>();
+		map.setBacking(new ConcurrentHashMap<>());
+		AtomicInteger puts = new AtomicInteger();
+		map.getPutListeners().add((key, value) -> puts.incrementAndGet());
+		int threads = 8;
+		int increments = 5000;
+		// Only one thread may win the initial insert
+		Set<Integer> winners = ConcurrentHashMap.newKeySet();
+		hammer(threads, t -> winners.add(map.putIfAbsent("counter", 0) == null ? t : -1));
+		winners.remove(-1);
+		assertEquals(1, winners.size());
+		assertEquals(1, puts.get());
+		// Compare-and-set increments are never lost
+		hammer(threads, t -> {
+			for (int i = 0; i < increments; i++) {
+				Integer current;
+				do {
+					current = map.get("counter");
+				} while (!map.replace("counter", current, current + 1));
+			}
+		});
+		assertEquals(threads * increments, map.get("counter").intValue());
+		assertEquals(1 + threads * increments, puts.get());
+		// Failed conditional updates do not call listeners
+		assertFalse(map.replace("counter", -1, 0));
+		assertFalse(map.remove("counter", -1));
+		assertNull(map.replace("missing", 0));
+		assertEquals(1 + threads * increments, puts.get());
+	}
+
+	@Test
+	public void testConcurrentResource() throws Exception {
+		JavaResource concurrent = new DummyResource(true);
+		concurrent.setPrimary(true);
+		assertTrue(concurrent.isConcurrent());
+		assertTrue(concurrent.getClasses() instanceof ConcurrentListeningMap);
+		int threads = 8;
+		int classes = 500;
+		hammer(threads, t -> {
+			for (int i = 0; i < classes; i++) {
+				String name = "Type" + i;
+				concurrent.getClasses().put(name, new byte[] { (byte) t });
+				concurrent.getClassHistory(name).peek();
+			}
+		});
+		assertEquals(classes, concurrent.getClasses().size());
+		assertEquals(classes, concurrent.getDirtyClasses().size());
+		// Each new class gets exactly one initial save state
+		for (int i = 0; i < classes; i++)
+			assertEquals(1, concurrent.getClassHistory("Type" + i).size());
+	}
+
+	private static void hammer(int threads, IntConsumerWithException task) throws Exception {
+		ExecutorService service = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int id = t;
+				futures.add(service.submit(() -> {
+					start.await();
+					task.accept(id);
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures)
+				future.get(1, TimeUnit.MINUTES);
+		} finally {
+			service.shutdownNow();
+		}
+	}
+
+	/**
+	 * Task run by each thread in {@link #hammer(int, IntConsumerWithException)}.
+	 */
+	private interface IntConsumerWithException {
+		void accept(int thread) throws Exception;
+	}
+
 	/**
 	 * Empty resource that allows items to be added.
 	 */
-	private static class DummyResource extends EmptyResource {
+	private static byte[] createClass(String name, String superName, String... interfaces) {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, interfaces);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static class DummyResource extends JavaResource {
+		private DummyResource() {
+			this(false);
+		}
+
+		private DummyResource(boolean concurrent) {
+			super(ResourceKind.EMPTY, concurrent);
+		}
+
+		@Override
+		public ResourceLocation getShortName() {
+			return LiteralResourceLocation.ofKind(ResourceKind.EMPTY, "Dummy");
+		}
+
+		@Override
+		public ResourceLocation getName() {
+			return getShortName();
+		}
+
 		@Override
 		protected Map<String, byte[]> loadClasses() throws IOException {
 			return new HashMap<>();
@@ -1,15 +1,24 @@
 package me.coley.recaf;
 
 import me.coley.recaf.search.*;
+import me.coley.recaf.util.ThreadUtil;
 import me.coley.recaf.workspace.*;
 import org.junit.jupiter.api.*;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static me.coley.recaf.search.StringMatchMode.*;
+import static me.coley.recaf.util.Log.info;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -281,6 +290,482 @@ public class SearchTest extends Base {
 		assertTrue(results.contains("calc/Constant"));
 	}
 
+	@Test
+	public void testParallelMatchesSerial() throws IOException {
+		// Enough classes to split the search across several tasks
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/p" + (i % 5) + "/C" + i, createCaller("gen/p" + (i % 5) + "/C" + i, i));
+		Query[] queries = {
+				new StringQuery("EVAL", STARTS_WITH),
+				new ClassReferenceQuery("calc/Calculator"),
+				new MemberReferenceQuery("calc/Calculator", "evaluate", null, EQUALS),
+				new ValueQuery(7),
+				new ClassNameQuery("C1", CONTAINS)
+		};
+		List<String> serial = describe(SearchBuilder.in(large).query(queries[0]).query(queries[1])
+				.query(queries[2]).query(queries[3]).query(queries[4]).build());
+		SearchCollector collector = SearchBuilder.in(large).parallel().query(queries[0]).query(queries[1])
+				.query(queries[2]).query(queries[3]).query(queries[4]).build();
+		List<String> parallel = describe(collector);
+		assertTrue(serial.size() > 1000);
+		assertEquals(serial, parallel);
+		// Results are in class name order
+		List<String> owners = collector.getResultsMap().get(queries[0]).stream()
+				.map(res -> ((Context.MemberContext) res.getContext().getParent()).getParent().getName())
+				.collect(Collectors.toList());
+		List<String> sorted = new ArrayList<>(owners);
+		Collections.sort(sorted);
+		assertEquals(sorted, owners);
+		// Skipped packages are still skipped
+		List<String> skipSerial = describe(SearchBuilder.in(large).skipPackages(Arrays.asList("gen/p1", "gen/p3"))
+				.query(queries[0]).query(queries[1]).build());
+		List<String> skipParallel = describe(SearchBuilder.in(large).skipPackages(Arrays.asList("gen/p1", "gen/p3"))
+				.parallel().query(queries[0]).query(queries[1]).build());
+		assertEquals(skipSerial, skipParallel);
+		assertTrue(skipParallel.stream().noneMatch(res -> res.contains("gen/p1/") || res.contains("gen/p3/")));
+	}
+
+	@Test
+	public void testParallelWithoutCopies() throws IOException {
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/C" + i, createCaller("gen/C" + i, i));
+		// Subclass inheriting the copy of its parent, so the search is not split
+		Query custom = new StringQuery("EVAL", STARTS_WITH) {};
+		Query value = new ValueQuery(7);
+		List<String> serial = describe(SearchBuilder.in(large).query(custom).query(value).build());
+		SearchCollector collector = SearchBuilder.in(large).parallel().query(custom).query(value).build();
+		assertEquals(serial, describe(collector));
+		// Results of copied queries are filed under the queries given to the builder
+		collector = SearchBuilder.in(large).parallel().query(value).build();
+		assertEquals(Collections.singleton(value), collector.getResultsMap().keySet());
+		assertFalse(collector.getResultsMap().get(value).isEmpty());
+		assertTrue(value.getMatched().isEmpty());
+	}
+
+	@Test
+	public void testCompiledMatchers() {
+		List<String> texts = Arrays.asList("calc/Calculator", "calc/Constant", "Start", "EVAL: ", "", "a.b", "(I)V");
+		List<String> keys = Arrays.asList("calc/Calculator", "calc", "Calc", "or", "", "a.b", ".", "^\\w+$",
+				"^calc/.+or$", "(I)V", "\\(I\\)V");
+		for (String key : keys) {
+			for (String text : texts) {
+				String message = key + " on " + text;
+				assertEquals(text.equals(key), EQUALS.compile(key).match(text), message);
+				assertEquals(text.contains(key), CONTAINS.compile(key).match(text), message);
+				assertEquals(text.startsWith(key), STARTS_WITH.compile(key).match(text), message);
+				assertEquals(text.endsWith(key), ENDS_WITH.compile(key).match(text), message);
+				assertEquals(new jregex.Pattern(key).matcher(text).find(), REGEX.compile(key).match(text), message);
+				assertEquals(REGEX.match(key, text), REGEX.compile(key).match(text), message);
+			}
+		}
+		// Invalid patterns never match
+		assertFalse(REGEX.compile("calc/(").match("calc/("));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void testCompiledMatcherBenchmark() {
+		Random random = new Random(0);
+		List<String> texts = new ArrayList<>();
+		for (int i = 0; i < 50_000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 10 + random.nextInt(60);
+			for (int j = 0; j < length; j++)
+				sb.append((char) ('a' + random.nextInt(26)));
+			texts.add(sb.toString());
+		}
+		Map<StringMatchMode, String> keys = new EnumMap<>(StringMatchMode.class);
+		keys.put(EQUALS, texts.get(100));
+		keys.put(CONTAINS, "abc");
+		keys.put(STARTS_WITH, "ab");
+		keys.put(ENDS_WITH, "yz");
+		keys.put(REGEX, "ab[cd]+e");
+		for (Map.Entry<StringMatchMode, String> e : keys.entrySet()) {
+			StringMatchMode mode = e.getKey();
+			String key = e.getValue();
+			long uncompiled = Long.MAX_VALUE;
+			long compiled = Long.MAX_VALUE;
+			for (int round = 0; round < 5; round++) {
+				int uncompiledCount = 0;
+				int compiledCount = 0;
+				long start = System.nanoTime();
+				for (String text : texts)
+					if (mode.match(key, text))
+						uncompiledCount++;
+				uncompiled = Math.min(uncompiled, System.nanoTime() - start);
+				start = System.nanoTime();
+				StringMatcher matcher = mode.compile(key);
+				for (String text : texts)
+					if (matcher.match(text))
+						compiledCount++;
+				compiled = Math.min(compiled, System.nanoTime() - start);
+				assertEquals(uncompiledCount, compiledCount);
+			}
+			// Timings depend on the machine, so they are only reported
+			info("{} matching: compiled {}us, compiled per text {}us", mode, compiled / 1000, uncompiled / 1000);
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void testSkipUnqueriedContentAllocations() throws IOException {
+		java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/C" + i, createCaller("gen/C" + i, i));
+		long threadId = Thread.currentThread().getId();
+		long withCode = Long.MAX_VALUE;
+		long withoutCode = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long start = threads.getThreadAllocatedBytes(threadId);
+			SearchCollector collector = SearchBuilder.in(large).query(new ClassNameQuery("gen/C1", STARTS_WITH)).build();
+			withCode = Math.min(withCode, threads.getThreadAllocatedBytes(threadId) - start);
+			assertEquals(111, collector.getAllResults().size());
+			start = threads.getThreadAllocatedBytes(threadId);
+			collector = SearchBuilder.in(large).skipCode().query(new ClassNameQuery("gen/C1", STARTS_WITH)).build();
+			withoutCode = Math.min(withoutCode, threads.getThreadAllocatedBytes(threadId) - start);
+			assertEquals(111, collector.getAllResults().size());
+		}
+		// Name queries do not look at methods, so method bodies are skipped without being asked to.
+		// Allocations depend on the runtime, so they are only reported.
+		info("Class name search: allocated {} bytes, skipping code {} bytes", withCode, withoutCode);
+	}
+
+	@Test
+	public void testIndexedStringSearch() throws IOException {
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/p" + (i % 5) + "/C" + i, createCaller("gen/p" + (i % 5) + "/C" + i, i));
+		String[][] searches = {
+				{"EVAL 12", "EQUALS"}, {"EVAL 1", "STARTS_WITH"}, {"AL 4", "CONTAINS"}, {"7", "CONTAINS"},
+				{"", "CONTAINS"}, {"^EVAL \\d3$", "REGEX"}, {"missing", "CONTAINS"}, {"9", "ENDS_WITH"}
+		};
+		for (String[] search : searches) {
+			StringMatchMode mode = StringMatchMode.valueOf(search[1]);
+			List<String> expected = describe(SearchBuilder.in(large).skipDebug().parallel()
+					.query(new StringQuery(search[0], mode)).build());
+			List<String> indexed = describe(SearchBuilder.in(large).skipDebug().indexed()
+					.query(new StringQuery(search[0], mode)).build());
+			assertEquals(expected, indexed, mode + " " + search[0]);
+		}
+		// Skipped packages are still skipped
+		List<String> skipped = describe(SearchBuilder.in(large).skipPackages(Collections.singletonList("gen/p1"))
+				.indexed().query(new StringQuery("EVAL", STARTS_WITH)).build());
+		assertEquals(401, skipped.size());
+		assertTrue(skipped.stream().noneMatch(res -> res.contains("gen/p1/")));
+	}
+
+	@Test
+	public void testIndexedStringSearchFollowsUpdates() throws IOException {
+		Workspace updated = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = updated.getPrimary().getClasses();
+		StringIndex index = updated.getStringIndex();
+		assertEquals(1, index.find("EVAL: ", EQUALS).size());
+		classes.put("gen/A", createCaller("gen/A", 1));
+		classes.put("gen/B", createCaller("gen/B", 1));
+		List<StringIndex.Location> locations = index.find("EVAL 1", EQUALS);
+		assertEquals(Arrays.asList("gen/A", "gen/B"), locations.stream()
+				.map(StringIndex.Location::getOwner).collect(Collectors.toList()));
+		assertEquals("run", locations.get(0).getMemberName());
+		// Replaced and removed classes no longer contain their old strings
+		classes.put("gen/A", createCaller("gen/A", 2));
+		classes.remove("gen/B");
+		assertTrue(index.find("EVAL 1", EQUALS).isEmpty());
+		assertTrue(index.find("AL 1", CONTAINS).isEmpty());
+		assertTrue(index.find("EVAL 1", STARTS_WITH).isEmpty());
+		assertEquals(1, index.find("AL 2", CONTAINS).size());
+		// Strings are found again when they are added back
+		classes.put("gen/B", createCaller("gen/B", 1));
+		assertEquals(1, index.find("AL 1", CONTAINS).size());
+		index.detach();
+		classes.remove("gen/B");
+		assertEquals(1, index.find("AL 1", CONTAINS).size());
+	}
+
+	@Test
+	public void testIndexedStringSearchReadsUnindexedClasses() throws IOException {
+		Workspace mixed = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = mixed.getPrimary().getClasses();
+		for (int i = 0; i < 20; i++)
+			classes.put("gen/C" + i, i % 4 == 0 ? createAnnotated("gen/C" + i, i) : createCaller("gen/C" + i, i));
+		assertEquals(new TreeSet<>(Arrays.asList("gen/C0", "gen/C12", "gen/C16", "gen/C4", "gen/C8")),
+				mixed.getStringIndex().getUnindexed());
+		for (String key : Arrays.asList("EVAL", "EVAL anno", "EVAL indy 4", "VALUE", "EVAL 8")) {
+			List<String> expected = describe(SearchBuilder.in(mixed).skipDebug()
+					.query(new StringQuery(key, STARTS_WITH)).build());
+			assertEquals(expected, describe(SearchBuilder.in(mixed).indexed()
+					.query(new StringQuery(key, STARTS_WITH)).build()), key);
+		}
+		// Annotation and bootstrap argument strings are found
+		assertEquals(5, SearchBuilder.in(mixed).indexed().query(new StringQuery("EVAL anno", STARTS_WITH))
+				.build().getAllResults().size());
+		assertEquals(1, SearchBuilder.in(mixed).indexed().query(new StringQuery("EVAL indy 4", EQUALS))
+				.build().getAllResults().size());
+		// Replacing a class updates whether it is read
+		classes.put("gen/C4", createCaller("gen/C4", 4));
+		assertFalse(mixed.getStringIndex().getUnindexed().contains("gen/C4"));
+		assertEquals(4, SearchBuilder.in(mixed).indexed().query(new StringQuery("EVAL anno", STARTS_WITH))
+				.build().getAllResults().size());
+	}
+
+	@Test
+	public void testStringIndexCompacts() throws IOException {
+		Workspace updated = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = updated.getPrimary().getClasses();
+		StringIndex index = updated.getStringIndex();
+		index.build();
+		// Enough removed strings to compact the index several times
+		for (int i = 0; i < 5000; i++) {
+			classes.put("gen/A", createCaller("gen/A", i));
+			if (i % 100 == 0)
+				classes.put("gen/B" + i, createCaller("gen/B" + i, i));
+		}
+		assertEquals(1, index.find("EVAL: ", EQUALS).size());
+		assertEquals(Collections.singletonList("gen/A"), index.find("EVAL 4999", EQUALS).stream()
+				.map(StringIndex.Location::getOwner).collect(Collectors.toList()));
+		assertTrue(index.find("EVAL 4998", EQUALS).isEmpty());
+		assertTrue(index.find("AL 4998", CONTAINS).isEmpty());
+		assertEquals(2, index.find("EVAL 49", STARTS_WITH).size());
+		assertEquals(51, index.find("EVAL ", STARTS_WITH).size());
+		// Dropped strings are indexed again when they are added back
+		classes.put("gen/C", createCaller("gen/C", 4998));
+		assertEquals(1, index.find("AL 4998", CONTAINS).size());
+	}
+
+	@Test
+	public void testIndexesUpdatedWhileBuilding() throws Exception {
+		Workspace updated = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = updated.getPrimary().getClasses();
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/C" + i, createCaller("gen/C" + i, i));
+		// Primary content is read by the build while it is updated
+		assertTrue(updated.getPrimary().getClasses().getBacking() instanceof ConcurrentMap);
+		StringIndex strings = updated.getStringIndex();
+		ReferenceIndex references = updated.getReferenceIndex();
+		Future<?> build = ThreadUtil.run(() -> {
+			strings.build();
+			references.build();
+		});
+		// Updates are queued or applied directly, depending on how far the build is
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/C" + i, createCaller("gen/C" + i, i + 1000));
+		classes.remove("gen/C0");
+		build.get();
+		assertTrue(strings.find("EVAL 5", EQUALS).isEmpty());
+		assertEquals(499, strings.find("EVAL ", STARTS_WITH).size());
+		ReferenceIndex rebuilt = new ReferenceIndex(updated);
+		assertEquals(rebuilt.getReferences("calc/Calculator").size(),
+				references.getReferences("calc/Calculator").size());
+		assertTrue(references.getReferences("calc/Calculator").stream().noneMatch(l -> l.getOwner().equals("gen/C0")));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void testIndexedStringSearchBenchmark() throws IOException {
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 2000; i++)
+			classes.put("gen/C" + i, createCaller("gen/C" + i, i));
+		large.getStringIndex().build();
+		long scanned = Long.MAX_VALUE;
+		long indexed = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			int scanCount = SearchBuilder.in(large).skipDebug().parallel()
+					.query(new StringQuery("AL 199", CONTAINS)).build().getAllResults().size();
+			scanned = Math.min(scanned, System.nanoTime() - start);
+			start = System.nanoTime();
+			int indexCount = SearchBuilder.in(large).skipDebug().indexed()
+					.query(new StringQuery("AL 199", CONTAINS)).build().getAllResults().size();
+			indexed = Math.min(indexed, System.nanoTime() - start);
+			assertEquals(11, scanCount);
+			assertEquals(scanCount, indexCount);
+		}
+		// Timings depend on the machine, so they are only reported
+		info("String search: indexed {}us, parallel scan {}us", indexed / 1000, scanned / 1000);
+	}
+
+	@Test
+	public void testIndexedReferenceSearch() throws IOException {
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 500; i++)
+			classes.put("gen/p" + (i % 5) + "/C" + i, createCaller("gen/p" + (i % 5) + "/C" + i, i));
+		List<Supplier<Query>> searches = Arrays.asList(
+				() -> new ClassReferenceQuery("calc/Calculator"),
+				() -> new ClassReferenceQuery("java/lang/", STARTS_WITH),
+				() -> new ClassReferenceQuery("Exception", CONTAINS),
+				() -> new MemberReferenceQuery("calc/Calculator", "evaluate", null, EQUALS),
+				() -> new MemberReferenceQuery(null, "append", null, EQUALS),
+				() -> new MemberReferenceQuery(null, null, "I", EQUALS),
+				() -> new MemberReferenceQuery("missing", null, null, EQUALS));
+		for (Supplier<Query> search : searches) {
+			String message = search.get().getType() + " " + searches.indexOf(search);
+			List<String> expected = describe(SearchBuilder.in(large).query(search.get()).build());
+			assertEquals(expected, describe(SearchBuilder.in(large).indexed().query(search.get()).build()), message);
+			assertEquals(expected, describe(SearchBuilder.in(large).indexed().parallel()
+					.query(search.get()).build()), message);
+			assertEquals(describe(SearchBuilder.in(large).skipDebug().query(search.get()).build()),
+					describe(SearchBuilder.in(large).skipDebug().indexed().query(search.get()).build()), message);
+		}
+		// Mixed queries are searched together
+		List<String> expected = describe(SearchBuilder.in(large).query(searches.get(0).get())
+				.query(searches.get(4).get()).build());
+		assertEquals(expected, describe(SearchBuilder.in(large).indexed().query(searches.get(0).get())
+				.query(searches.get(4).get()).build()));
+		// Skipped packages are still skipped
+		List<String> skipped = describe(SearchBuilder.in(large).skipPackages(Collections.singletonList("gen/p1"))
+				.indexed().query(searches.get(3).get()).build());
+		assertEquals(describe(SearchBuilder.in(large).skipPackages(Collections.singletonList("gen/p1"))
+				.query(searches.get(3).get()).build()), skipped);
+		assertTrue(skipped.stream().noneMatch(res -> res.contains("gen/p1/")));
+	}
+
+	@Test
+	public void testReferenceIndexFollowsUpdates() throws IOException {
+		Workspace updated = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = updated.getPrimary().getClasses();
+		ReferenceIndex index = updated.getReferenceIndex();
+		String desc = "(ILjava/lang/String;)D";
+		int existing = index.getReferences("calc/Calculator", "evaluate", desc).size();
+		classes.put("gen/A", createCaller("gen/A", 1));
+		classes.put("gen/B", createCaller("gen/B", 2));
+		List<ReferenceIndex.Location> locations = index.getReferences("calc/Calculator", "evaluate", desc);
+		assertEquals(existing + 2, locations.size());
+		ReferenceIndex.Location location = locations.stream()
+				.filter(loc -> loc.getOwner().equals("gen/A")).findFirst().get();
+		assertEquals("run", location.getMemberName());
+		// Locations point to the instruction the search finds
+		SearchResult result = SearchBuilder.in(updated).skipPackages(Collections.singletonList("calc"))
+				.query(new MemberReferenceQuery("calc/Calculator", "evaluate", desc, EQUALS))
+				.build().getAllResults().get(0);
+		assertTrue(result.getContext().toString().contains(" " + location.getInsn() + ":"));
+		assertTrue(index.getReferences("gen/C").isEmpty());
+		// Replaced and removed classes no longer reference their old members
+		classes.put("gen/A", createCaller("gen/A", 3));
+		classes.remove("gen/B");
+		assertEquals(existing + 1, index.getReferences("calc/Calculator", "evaluate", desc).size());
+		Set<String> candidates = index.getCandidates(
+				new MemberReferenceQuery("calc/Calculator", "evaluate", null, EQUALS));
+		assertTrue(candidates.contains("gen/A"));
+		assertFalse(candidates.contains("gen/B"));
+		assertFalse(index.getCandidates(new ClassReferenceQuery("calc/Calculator")).contains("gen/B"));
+		index.detach();
+		classes.remove("gen/A");
+		assertEquals(existing + 1, index.getReferences("calc/Calculator", "evaluate", desc).size());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void testIndexedReferenceSearchBenchmark() throws IOException {
+		Workspace large = new Workspace(new JarResource(getClasspathFile("calc.jar")));
+		Map<String, byte[]> classes = large.getPrimary().getClasses();
+		for (int i = 0; i < 2000; i++)
+			classes.put("gen/C" + i, createCaller("gen/C" + i, i));
+		large.getReferenceIndex().build();
+		long scanned = Long.MAX_VALUE;
+		long indexed = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			int scanCount = SearchBuilder.in(large).parallel()
+					.query(new MemberReferenceQuery("calc/Parenthesis", null, null, EQUALS))
+					.build().getAllResults().size();
+			scanned = Math.min(scanned, System.nanoTime() - start);
+			start = System.nanoTime();
+			int indexCount = SearchBuilder.in(large).parallel().indexed()
+					.query(new MemberReferenceQuery("calc/Parenthesis", null, null, EQUALS))
+					.build().getAllResults().size();
+			indexed = Math.min(indexed, System.nanoTime() - start);
+			assertTrue(scanCount > 0);
+			assertEquals(scanCount, indexCount);
+		}
+		// Timings depend on the machine, so they are only reported
+		info("Member reference search: indexed {}us, parallel scan {}us", indexed / 1000, scanned / 1000);
+	}
+
+	/**
+	 * @param collector
+	 * 		Completed search.
+	 *
+	 * @return Sorted descriptions of the results, including their context.
+	 */
+	private static List<String> describe(SearchCollector collector) {
+		return collector.getResultsMap().entries().stream()
+				.map(e -> {
+					SearchResult res = e.getValue();
+					Object text = res instanceof ValueResult ? ((ValueResult) res).getValue() : res;
+					Object context = res.getContext();
+					if (context instanceof Context.LocalContext) {
+						Context.LocalContext local = (Context.LocalContext) context;
+						context = local.getParent() + " local " + local.getIndex();
+					}
+					return e.getKey().getType() + " " + text + " in " + context;
+				})
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param name
+	 * 		Name of class to create.
+	 * @param index
+	 * 		Value to put in the class.
+	 *
+	 * @return Class with a method that evaluates an expression with {@code calc/Calculator}.
+	 */
+	private static byte[] createCaller(String name, int index) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run",
+				"(Lcalc/Calculator;)D", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitIntInsn(Opcodes.BIPUSH, index % 10);
+		mv.visitLdcInsn("EVAL " + index);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "calc/Calculator", "evaluate", "(ILjava/lang/String;)D", false);
+		mv.visitInsn(Opcodes.DRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static byte[] createAnnotated(String name, int index) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		AnnotationVisitor av = cw.visitAnnotation("Lgen/Note;", true);
+		av.visit("value", "EVAL anno " + index);
+		av.visitEnd();
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run",
+				"()Ljava/lang/String;", null, null);
+		av = mv.visitAnnotation("Lgen/Kind;", true);
+		av.visitEnum("value", "Lgen/Kinds;", "VALUE");
+		av.visitEnd();
+		mv.visitCode();
+		mv.visitLdcInsn("EVAL " + index);
+		mv.visitInsn(Opcodes.POP);
+		Handle concat = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/StringConcatFactory",
+				"makeConcatWithConstants", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;" +
+				"Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+				false);
+		mv.visitInvokeDynamicInsn("makeConcatWithConstants", "()Ljava/lang/String;", concat,
+				"EVAL indy " + index);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
 	private static void contextEquals(Context<?> context, String owner, String name, String desc) {
 		assertTrue(context instanceof Context.MemberContext);
 		Context.MemberContext member = (Context.MemberContext) context;